@@ -0,0 +1,255 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.RayBatch;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.collision.bih.CompactBIHTree;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.CollisionData;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Sphere;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BIHTree} construction and ray / bounding volume queries
+ * through {@link Geometry#collideWith(com.jme3.collision.Collidable, CollisionResults)}.
+ * <p>
+ * The mesh is a sphere whose triangle count is controlled by the
+ * <code>samples</code> parameter (roughly 2 * samples<sup>2</sup> triangles).
+ * Rays start outside of the sphere and point at random spots inside it,
+ * so most of them hit. The <code>split</code> parameter selects the
+ * {@link BIHTree.SplitMethod} used both by the <code>construct</code>
+ * benchmark and for the tree the queries run against, so one run reports
+ * build time and query throughput of each method.
+ * <p>
+ * The <code>RayBatch</code> benchmarks find the nearest hit of the same rays
+ * with a {@link RayBatch}, compare them with <code>collideWithClosestRays</code>.
+ * The coherent variants use a fan of rays from a single eye point, the
+ * typical line of sight workload packets are made for.
+ * <p>
+ * The <code>Primitive</code> and <code>ClosestMode</code> benchmarks run the
+ * ray queries against {@link CollisionResults} with primitive storage.
+ * <p>
+ * With <code>compact</code> set, the tree is a {@link CompactBIHTree} built
+ * with the same split method instead.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BIHTreeBenchmark {
+
+    private static final int RAY_COUNT = 256;
+
+    @Param({"64", "256", "1024"})
+    public int samples;
+
+    @Param({"Center", "SAH"})
+    public BIHTree.SplitMethod split;
+
+    @Param({"false", "true"})
+    public boolean compact;
+
+    private Mesh mesh;
+    private Geometry geometry;
+    private Ray[] rays;
+    private BoundingSphere volume;
+    private final CollisionResults results = new CollisionResults();
+    private final CollisionResults primitiveResults = new CollisionResults(CollisionResults.Mode.All);
+    private final CollisionResults closestResults = new CollisionResults(CollisionResults.Mode.Closest);
+
+    private float[] origins;
+    private float[] directions;
+    private Ray[] coherentRays;
+    private float[] coherentOrigins;
+    private float[] coherentDirections;
+    private final RayBatch batch = new RayBatch();
+    private final float[] distances = new float[RAY_COUNT];
+    private final int[] triangles = new int[RAY_COUNT];
+    private final Geometry[] geometries = new Geometry[RAY_COUNT];
+
+    @Setup
+    public void setUp() {
+        mesh = new Sphere(samples, samples, 10f);
+        geometry = new Geometry("Sphere", mesh);
+        geometry.updateModelBound();
+        geometry.updateGeometricState();
+        // builds the collision data once for the query benchmarks
+        if (compact) {
+            mesh.setCollisionData(new CompactBIHTree(mesh, split));
+        } else {
+            mesh.createCollisionData(split);
+        }
+
+        Random random = new Random(BenchmarkUtil.SEED);
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vector3f origin = BenchmarkUtil.randomDirection(random).multLocal(50f);
+            Vector3f target = BenchmarkUtil.randomDirection(random).multLocal(5f);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+        volume = new BoundingSphere(2f, new Vector3f(0f, 0f, 9f));
+
+        // 16 x 16 grid of rays from one eye point towards the sphere
+        coherentRays = new Ray[RAY_COUNT];
+        Vector3f eye = new Vector3f(0f, 0f, -50f);
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vector3f target = new Vector3f((i % 16) * 0.1f - 0.75f, (i / 16) * 0.1f - 0.75f, 0f);
+            coherentRays[i] = new Ray(eye, target.subtractLocal(eye).normalizeLocal());
+        }
+        origins = toArray(rays, true);
+        directions = toArray(rays, false);
+        coherentOrigins = toArray(coherentRays, true);
+        coherentDirections = toArray(coherentRays, false);
+    }
+
+    private static float[] toArray(Ray[] rays, boolean origins) {
+        float[] array = new float[rays.length * 3];
+        for (int i = 0; i < rays.length; i++) {
+            Vector3f v = origins ? rays[i].getOrigin() : rays[i].getDirection();
+            array[i * 3] = v.x;
+            array[i * 3 + 1] = v.y;
+            array[i * 3 + 2] = v.z;
+        }
+        return array;
+    }
+
+    @Benchmark
+    public CollisionData construct() {
+        if (compact) {
+            return new CompactBIHTree(mesh, split);
+        }
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct(split);
+        return tree;
+    }
+
+    @Benchmark
+    public int collideWithRays() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            hits += geometry.collideWith(ray, results);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithClosestRays() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            geometry.collideWith(ray, results);
+            if (results.getClosestCollision() != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithRaysPrimitive() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            primitiveResults.clear();
+            hits += geometry.collideWith(ray, primitiveResults);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithClosestRaysClosestMode() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            closestResults.clear();
+            geometry.collideWith(ray, closestResults);
+            if (closestResults.size() > 0) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithRayBatch() {
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        return batch.collideWith(geometry, origins, directions, RAY_COUNT, distances, triangles, geometries);
+    }
+
+    @Benchmark
+    public int collideWithClosestCoherentRays() {
+        int hits = 0;
+        for (Ray ray : coherentRays) {
+            results.clear();
+            geometry.collideWith(ray, results);
+            if (results.getClosestCollision() != null) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithCoherentRayBatch() {
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        return batch.collideWith(geometry, coherentOrigins, coherentDirections, RAY_COUNT,
+                                 distances, triangles, geometries);
+    }
+
+    @Benchmark
+    public int collideWithBoundingVolume() {
+        results.clear();
+        return geometry.collideWith(volume, results);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.plugins.ClasspathLocator;
+import com.jme3.material.Material;
+import com.jme3.material.TechniqueDef;
+import com.jme3.material.plugins.J3MLoader;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.plugins.GLSLLoader;
+import com.jme3.system.NullRenderer;
+import java.util.Random;
+
+/**
+ * Helpers shared by the benchmarks to create headless engine objects
+ * and synthetic scenes.
+ * <p>
+ * Nothing here touches a GPU or a windowing system: rendering goes through a
+ * {@link NullRenderer} and assets are loaded from the classpath only, so the
+ * benchmarks can be run on build servers and headless JVMs.
+ *
+ * @author jMonkeyEngine
+ */
+public final class BenchmarkUtil {
+
+    /**
+     * Seed used for every random scene so that runs are comparable.
+     */
+    public static final long SEED = 0x6A4D45L;
+
+    private BenchmarkUtil() {
+    }
+
+    /**
+     * Creates an asset manager that can load material definitions and
+     * shaders from the classpath without any platform configuration.
+     */
+    public static AssetManager createAssetManager() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator("/", ClasspathLocator.class);
+        assetManager.registerLoader(J3MLoader.class, "j3m", "j3md");
+        assetManager.registerLoader(GLSLLoader.class, "vert", "frag", "geom", "glsl", "glsllib");
+        return assetManager;
+    }
+
+    /**
+     * Creates a render manager backed by a {@link NullRenderer}.
+     */
+    public static RenderManager createRenderManager() {
+        return new RenderManager(new NullRenderer());
+    }
+
+    /**
+     * Creates a material from the given definition and selects its default
+     * technique so that it has a valid sort id.
+     */
+    public static Material createMaterial(AssetManager assetManager, RenderManager renderManager, String matDef) {
+        Material mat = new Material(assetManager, matDef);
+        mat.selectTechnique(TechniqueDef.DEFAULT_TECHNIQUE_NAME, renderManager);
+        return mat;
+    }
+
+    /**
+     * Creates a node with <code>width</code> children per level and
+     * <code>depth</code> levels of nodes. The leaves are geometries sharing
+     * the same mesh.
+     *
+     * @param depth number of node levels below the returned node
+     * @param width number of children per node
+     * @return the root of the tree
+     */
+    public static Node createTree(int depth, int width) {
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Random random = new Random(SEED);
+        Node root = new Node("Root");
+        populate(root, depth, width, mesh, random);
+        return root;
+    }
+
+    private static void populate(Node node, int depth, int width, Mesh mesh, Random random) {
+        for (int i = 0; i < width; i++) {
+            Spatial child;
+            if (depth > 1) {
+                Node childNode = new Node(node.getName() + "/" + i);
+                populate(childNode, depth - 1, width, mesh, random);
+                child = childNode;
+            } else {
+                child = new Geometry(node.getName() + "/" + i, mesh);
+            }
+            randomizeTransform(child, random);
+            node.attachChild(child);
+        }
+    }
+
+    /**
+     * Assigns a random local translation and rotation to the spatial.
+     */
+    public static void randomizeTransform(Spatial spatial, Random random) {
+        spatial.setLocalTranslation(random.nextFloat() * 20f - 10f,
+                random.nextFloat() * 20f - 10f,
+                random.nextFloat() * 20f - 10f);
+        Quaternion rot = new Quaternion();
+        rot.fromAngles(random.nextFloat() * FastMath.TWO_PI,
+                random.nextFloat() * FastMath.TWO_PI,
+                random.nextFloat() * FastMath.TWO_PI);
+        spatial.setLocalRotation(rot);
+    }
+
+    /**
+     * Returns a random unit vector.
+     */
+    public static Vector3f randomDirection(Random random) {
+        Vector3f dir = new Vector3f(random.nextFloat() - 0.5f,
+                random.nextFloat() - 0.5f,
+                random.nextFloat() - 0.5f);
+        if (dir.lengthSquared() < FastMath.FLT_EPSILON) {
+            dir.set(Vector3f.UNIT_Z);
+        }
+        return dir.normalizeLocal();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.shape.Sphere;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures writing and reading J3O data with {@link BinaryExporter} and
+ * {@link BinaryImporter}, entirely in memory.
+ * <p>
+ * The "scene" content is a node tree with many small savables (spatials,
+ * transforms, a shared mesh), the "mesh" content is a single geometry with
+ * large vertex buffers. {@link #loadMapped() } reads the same data from a
+ * memory mapped file. A non-zero chunk size writes the chunked, compressed
+ * layout of format version 3.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BinaryExportBenchmark {
+
+    @Param({"scene", "mesh"})
+    public String content;
+
+    @Param({"0", "65536"})
+    public int chunkSize;
+
+    private Savable savable;
+    private byte[] data;
+    private File file;
+    private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    @Setup
+    public void setUp() throws IOException {
+        if ("scene".equals(content)) {
+            savable = BenchmarkUtil.createTree(4, 6);
+        } else {
+            savable = new Geometry("Sphere", new Sphere(256, 256, 1f));
+        }
+        data = export();
+
+        file = File.createTempFile("BinaryExportBenchmark", ".j3o");
+        FileOutputStream fos = new FileOutputStream(file);
+        try {
+            fos.write(data);
+        } finally {
+            fos.close();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        BinaryImporter.setMemoryMapping(false);
+        file.delete();
+    }
+
+    private byte[] export() throws IOException {
+        out.reset();
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setChunkSize(chunkSize);
+        exporter.save(savable, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public byte[] save() throws IOException {
+        return export();
+    }
+
+    @Benchmark
+    public Savable load() throws IOException {
+        return new BinaryImporter().load(data);
+    }
+
+    @Benchmark
+    public Savable loadMapped() throws IOException {
+        BinaryImporter.setMemoryMapping(true);
+        return new BinaryImporter().load(file);
+    }
+}
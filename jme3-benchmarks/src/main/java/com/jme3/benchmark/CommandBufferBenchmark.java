@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.CommandBuffer;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.ViewPort;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures rendering a viewport directly to a
+ * {@link com.jme3.system.NullRenderer}, recording it into a
+ * {@link CommandBuffer}, and replaying the recorded buffer.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CommandBufferBenchmark {
+
+    @Param({"1000"})
+    public int geometryCount;
+
+    private RenderManager renderManager;
+    private ViewPort viewPort;
+    private CommandBuffer buffer;
+
+    @Setup
+    public void setUp() {
+        AssetManager assetManager = BenchmarkUtil.createAssetManager();
+        renderManager = BenchmarkUtil.createRenderManager();
+
+        Node root = BenchmarkUtil.createTree(1, geometryCount);
+        for (int i = 0; i < geometryCount; i++) {
+            Spatial child = root.getChild(i);
+            Material mat = BenchmarkUtil.createMaterial(assetManager, renderManager, "Common/MatDefs/Misc/Unshaded.j3md");
+            mat.setColor("Color", new ColorRGBA(i / (float) geometryCount, 0f, 0f, 1f));
+            child.setMaterial(mat);
+        }
+        root.updateGeometricState();
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 0.1f, 1000f);
+        cam.setLocation(new Vector3f(0f, 0f, 30f));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        viewPort = new ViewPort("Benchmark", cam);
+        viewPort.attachScene(root);
+
+        buffer = new CommandBuffer();
+        renderManager.renderViewPort(viewPort, 0f, buffer);
+    }
+
+    @Benchmark
+    public ViewPort renderDirect() {
+        renderManager.renderViewPort(viewPort, 0f);
+        return viewPort;
+    }
+
+    @Benchmark
+    public CommandBuffer record() {
+        buffer.clear();
+        renderManager.renderViewPort(viewPort, 0f, buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public CommandBuffer replay() {
+        buffer.replay(renderManager.getRenderer());
+        return buffer;
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.RenderManager;
+import com.jme3.renderer.queue.GeometryComparator;
+import com.jme3.renderer.queue.GeometryList;
+import com.jme3.renderer.queue.OpaqueComparator;
+import com.jme3.renderer.queue.TransparentComparator;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures sorting of a render queue bucket, as done by
+ * {@link com.jme3.renderer.queue.RenderQueue} each frame.
+ * <p>
+ * The geometries are added to the {@link GeometryList} in the same unsorted
+ * order on every invocation and their cached queue distance is reset, like
+ * the render queue does after rendering. The <code>radixSort</code>
+ * parameter compares the comparison sort against sorting by draw keys.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeometryListSortBenchmark {
+
+    private static final String[] MAT_DEFS = {
+        "Common/MatDefs/Misc/Unshaded.j3md",
+        "Common/MatDefs/Light/Lighting.j3md",
+        "Common/MatDefs/Misc/Particle.j3md"
+    };
+
+    @Param({"1000", "20000"})
+    public int geometryCount;
+
+    @Param({"opaque", "transparent"})
+    public String bucket;
+
+    @Param({"false", "true"})
+    public boolean radixSort;
+
+    private Geometry[] geometries;
+    private GeometryList list;
+
+    @Setup
+    public void setUp() {
+        AssetManager assetManager = BenchmarkUtil.createAssetManager();
+        RenderManager renderManager = BenchmarkUtil.createRenderManager();
+        Random random = new Random(BenchmarkUtil.SEED);
+
+        // several materials per definition, so that both the sort id
+        // and the distance to the camera take part in the sort.
+        Material[] materials = new Material[MAT_DEFS.length * 4];
+        for (int i = 0; i < materials.length; i++) {
+            materials[i] = BenchmarkUtil.createMaterial(assetManager, renderManager, MAT_DEFS[i % MAT_DEFS.length]);
+        }
+
+        Node root = BenchmarkUtil.createTree(1, geometryCount);
+        geometries = new Geometry[geometryCount];
+        for (int i = 0; i < geometryCount; i++) {
+            Spatial child = root.getChild(i);
+            child.setMaterial(materials[random.nextInt(materials.length)]);
+            geometries[i] = (Geometry) child;
+        }
+        root.updateGeometricState();
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 0.1f, 1000f);
+        cam.setLocation(new Vector3f(0f, 0f, 30f));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+
+        GeometryComparator comparator = "opaque".equals(bucket)
+                ? new OpaqueComparator()
+                : new TransparentComparator();
+        list = new GeometryList(comparator);
+        list.setRadixSort(radixSort);
+        list.setCamera(cam);
+    }
+
+    @Benchmark
+    public GeometryList sort() {
+        list.clear();
+        for (Geometry geom : geometries) {
+            geom.queueDistance = Float.NEGATIVE_INFINITY;
+            list.add(geom);
+        }
+        list.sort();
+        return list;
+    }
+}
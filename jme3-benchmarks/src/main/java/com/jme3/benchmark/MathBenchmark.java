@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the {@link Vector3f}, {@link Quaternion} and {@link Matrix4f}
+ * operations used by transform combination and culling.
+ * <p>
+ * The in-place ("Local") variants are measured next to the allocating ones
+ * to make allocation regressions visible.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark {
+
+    private final Vector3f v1 = new Vector3f();
+    private final Vector3f v2 = new Vector3f();
+    private final Vector3f vStore = new Vector3f();
+    private final Quaternion q1 = new Quaternion();
+    private final Quaternion q2 = new Quaternion();
+    private final Quaternion qStore = new Quaternion();
+    private final Matrix4f m1 = new Matrix4f();
+    private final Matrix4f m2 = new Matrix4f();
+    private final Matrix4f mStore = new Matrix4f();
+    private final Transform parent = new Transform();
+    private final Transform child = new Transform();
+    private final Transform tStore = new Transform();
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkUtil.SEED);
+        v1.set(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        v2.set(BenchmarkUtil.randomDirection(random));
+        q1.fromAngles(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        q2.fromAngles(random.nextFloat(), random.nextFloat(), random.nextFloat());
+        m1.setTransform(v1, new Vector3f(1f, 2f, 3f), q1.toRotationMatrix());
+        m2.setTransform(v2, Vector3f.UNIT_XYZ, q2.toRotationMatrix());
+        parent.setTranslation(v1);
+        parent.setRotation(q1);
+        parent.setScale(2f);
+        child.setTranslation(v2);
+        child.setRotation(q2);
+    }
+
+    @Benchmark
+    public Vector3f vectorCross() {
+        return v1.cross(v2);
+    }
+
+    @Benchmark
+    public Vector3f vectorCrossLocal() {
+        return vStore.set(v1).crossLocal(v2);
+    }
+
+    @Benchmark
+    public Vector3f vectorNormalize() {
+        return v1.normalize();
+    }
+
+    @Benchmark
+    public float vectorDot() {
+        return v1.dot(v2);
+    }
+
+    @Benchmark
+    public Quaternion quaternionMult() {
+        return q1.mult(q2);
+    }
+
+    @Benchmark
+    public Quaternion quaternionMultLocal() {
+        return qStore.set(q1).multLocal(q2);
+    }
+
+    @Benchmark
+    public Vector3f quaternionRotateVector() {
+        return q1.mult(v1, vStore);
+    }
+
+    @Benchmark
+    public Quaternion quaternionSlerp() {
+        qStore.set(q1);
+        qStore.slerp(q2, 0.3f);
+        return qStore;
+    }
+
+    @Benchmark
+    public Matrix4f matrixMult() {
+        return m1.mult(m2, mStore);
+    }
+
+    @Benchmark
+    public Matrix4f matrixInvert() {
+        return m1.invert(mStore);
+    }
+
+    @Benchmark
+    public Vector3f matrixTransformVector() {
+        return m1.mult(v1, vStore);
+    }
+
+    @Benchmark
+    public Transform transformCombineWithParent() {
+        tStore.set(child);
+        return tStore.combineWithParent(parent);
+    }
+}
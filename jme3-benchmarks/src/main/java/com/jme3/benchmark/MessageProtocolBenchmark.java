@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.Vector3f;
+import com.jme3.network.AbstractMessage;
+import com.jme3.network.Message;
+import com.jme3.network.base.MessageProtocol;
+import com.jme3.network.serializing.Serializable;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures encoding and decoding of network messages through
+ * {@link Serializer} and {@link MessageProtocol}.
+ * <p>
+ * The message is a typical state update: a few primitives, a string,
+ * vectors and a small array, serialized by the field serializer.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageProtocolBenchmark {
+
+    @Serializable
+    public static class StateMessage extends AbstractMessage {
+
+        public int entityId;
+        public long timestamp;
+        public String name;
+        public Vector3f position;
+        public Vector3f velocity;
+        public float[] values;
+
+        public StateMessage() {
+        }
+    }
+
+    static {
+        Serializer.registerClass(StateMessage.class);
+    }
+
+    private StateMessage message;
+    private final ByteBuffer buffer = ByteBuffer.allocate(32767 + 2);
+    private ByteBuffer encoded;
+    private final MessageProtocol protocol = new MessageProtocol();
+
+    @Setup
+    public void setUp() {
+        message = new StateMessage();
+        message.entityId = 4242;
+        message.timestamp = 123456789L;
+        message.name = "Sinbad";
+        message.position = new Vector3f(1f, 2f, 3f);
+        message.velocity = new Vector3f(0.5f, 0f, -0.5f);
+        message.values = new float[]{0.1f, 0.2f, 0.3f, 0.4f, 0.5f, 0.6f, 0.7f, 0.8f};
+
+        ByteBuffer buf = MessageProtocol.messageToBuffer(message, null);
+        encoded = ByteBuffer.allocate(buf.remaining());
+        encoded.put(buf);
+        encoded.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer encode() throws IOException {
+        buffer.clear();
+        return MessageProtocol.messageToBuffer(message, buffer);
+    }
+
+    @Benchmark
+    public Object serializeOnly() throws IOException {
+        buffer.clear();
+        Serializer.writeClassAndObject(buffer, message);
+        buffer.flip();
+        return Serializer.readClassAndObject(buffer);
+    }
+
+    @Benchmark
+    public Message decode() {
+        encoded.rewind();
+        protocol.addBuffer(encoded);
+        return protocol.getMessage();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures ray and bounding volume queries against a node with many static
+ * children through {@link Node#collideWith(com.jme3.collision.Collidable, CollisionResults)},
+ * with and without the node's {@link com.jme3.scene.SceneCollisionTree}.
+ * <p>
+ * The children are small boxes scattered in a cube of 200 units. Rays
+ * cross the whole cube, so each ray hits a few children out of all of
+ * them. The <code>refit</code> benchmark moves a tenth of the children and
+ * updates the scene, to measure the cost of keeping the tree up to date.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneCollisionBenchmark {
+
+    private static final int RAY_COUNT = 256;
+
+    @Param({"1000", "20000"})
+    public int children;
+
+    @Param({"false", "true"})
+    public boolean tree;
+
+    private Node root;
+    private Ray[] rays;
+    private BoundingBox volume;
+    private final CollisionResults results = new CollisionResults();
+    private float offset = 1f;
+
+    @Setup
+    public void setUp() {
+        Mesh mesh = new Box(0.5f, 0.5f, 0.5f);
+        Random random = new Random(BenchmarkUtil.SEED);
+        root = new Node("Root");
+        for (int i = 0; i < children; i++) {
+            Geometry geom = new Geometry("Box" + i, mesh);
+            geom.setLocalTranslation(random.nextFloat() * 200f - 100f,
+                    random.nextFloat() * 200f - 100f,
+                    random.nextFloat() * 200f - 100f);
+            root.attachChild(geom);
+        }
+        root.setCollisionTreeEnabled(tree);
+        root.updateGeometricState();
+        mesh.createCollisionData();
+
+        rays = new Ray[RAY_COUNT];
+        for (int i = 0; i < RAY_COUNT; i++) {
+            Vector3f origin = BenchmarkUtil.randomDirection(random).multLocal(200f);
+            Vector3f target = BenchmarkUtil.randomDirection(random).multLocal(50f);
+            rays[i] = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+        }
+        volume = new BoundingBox(new Vector3f(10f, 10f, 10f), 15f, 15f, 15f);
+    }
+
+    @Benchmark
+    public int collideWithRays() {
+        int hits = 0;
+        for (Ray ray : rays) {
+            results.clear();
+            hits += root.collideWith(ray, results);
+        }
+        return hits;
+    }
+
+    @Benchmark
+    public int collideWithBoundingVolume() {
+        results.clear();
+        return root.collideWith(volume, results);
+    }
+
+    @Benchmark
+    public Node refit() {
+        offset = -offset;
+        for (int i = 0; i < children; i += 10) {
+            root.getChild(i).move(offset, 0f, 0f);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.math.FastMath;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Spatial#updateGeometricState()} on synthetic scene graphs.
+ * <p>
+ * The "deep" shape is a tree of 8 levels with 3 children per node, the
+ * "wide" shape is a single node holding 10000 geometries. Every invocation
+ * dirties the whole tree by moving the root (world transforms and bounds of
+ * every spatial have to be recomputed) or by moving a single leaf (only one
+ * branch is refreshed).
+ * <p>
+ * With <code>parallel</code> set, the root uses
+ * {@link Node#setParallelUpdate(boolean) parallel updates}.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SceneGraphUpdateBenchmark {
+
+    @Param({"deep", "wide"})
+    public String shape;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private Node root;
+    private Spatial leaf;
+    private float angle;
+
+    @Setup
+    public void setUp() {
+        if ("deep".equals(shape)) {
+            root = BenchmarkUtil.createTree(8, 3);
+        } else {
+            root = BenchmarkUtil.createTree(1, 10000);
+        }
+        root.setParallelUpdate(parallel);
+        root.updateGeometricState();
+
+        Spatial s = root;
+        while (s instanceof Node) {
+            s = ((Node) s).getChild(0);
+        }
+        leaf = s;
+    }
+
+    @Benchmark
+    public Node updateAll() {
+        angle += 0.01f;
+        root.setLocalTranslation(FastMath.sin(angle), 0f, 0f);
+        root.updateGeometricState();
+        return root;
+    }
+
+    @Benchmark
+    public Node updateSingleLeaf() {
+        angle += 0.01f;
+        leaf.setLocalTranslation(FastMath.sin(angle), 0f, 0f);
+        root.updateGeometricState();
+        return root;
+    }
+}
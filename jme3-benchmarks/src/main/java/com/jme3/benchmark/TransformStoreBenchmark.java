@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.benchmark;
+
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.TransformStore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares moving every child of a large node ("crowd") one spatial at a
+ * time with moving them through the node's {@link TransformStore}.
+ *
+ * @author jMonkeyEngine
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformStoreBenchmark {
+
+    private static final int CROWD_SIZE = 10000;
+
+    private Node spatialCrowd;
+    private Node storeCrowd;
+    private float[] offsets;
+
+    @Setup
+    public void setUp() {
+        spatialCrowd = BenchmarkUtil.createTree(1, CROWD_SIZE);
+        spatialCrowd.updateGeometricState();
+
+        storeCrowd = BenchmarkUtil.createTree(1, CROWD_SIZE);
+        storeCrowd.setTransformStoreEnabled(true);
+        storeCrowd.updateGeometricState();
+
+        offsets = new float[CROWD_SIZE * 3];
+        for (int i = 0; i < offsets.length; i++) {
+            offsets[i] = (i % 7) * 0.001f;
+        }
+    }
+
+    @Benchmark
+    public Node moveSpatials() {
+        Spatial[] children = spatialCrowd.getChildren().toArray(new Spatial[CROWD_SIZE]);
+        for (int i = 0; i < children.length; i++) {
+            children[i].move(offsets[i * 3], offsets[i * 3 + 1], offsets[i * 3 + 2]);
+        }
+        spatialCrowd.updateGeometricState();
+        return spatialCrowd;
+    }
+
+    @Benchmark
+    public Node moveWithStore() {
+        storeCrowd.getTransformStore().translate(0, CROWD_SIZE, offsets, 0);
+        storeCrowd.updateGeometricState();
+        return storeCrowd;
+    }
+}
@@ -37,6 +37,9 @@ package com.jme3.asset;
  * to receive an event when an asset has been requested
  * (one of the AssetManager.load***() methods were called), or when
  * an asset has been loaded.
+ * <p>
+ * Implement {@link AssetLoadTimingListener} to also receive the time
+ * needed to serve each request.
  * 
  * @author Kirill Vainer
  */
@@ -31,7 +31,9 @@
  */
 package com.jme3.asset;
 
+import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 
 /**
  * The result of locating an asset through an AssetKey. Provides
@@ -73,4 +75,30 @@ public abstract class AssetInfo {
      */
     public abstract InputStream openStream();
 
+    /**
+     * Returns the file containing the asset data, if the asset is stored
+     * as a file on the local file system. Loaders may use it to access the
+     * data without going through {@link #openStream() }, e.g. by memory
+     * mapping it.
+     * 
+     * @return The asset file, or null if the asset is not file-backed.
+     */
+    public File getFile() {
+        return null;
+    }
+
+    /**
+     * Returns the asset data as a buffer, if the locator holds it in memory
+     * already, e.g. in a memory mapped archive. Loaders may read from it
+     * instead of copying the data through {@link #openStream() }.
+     * <p>
+     * Each invocation returns a new read-only buffer, positioned at the
+     * start of the data.
+     * 
+     * @return The asset data, or null if not available as a buffer.
+     */
+    public ByteBuffer getBuffer() {
+        return null;
+    }
+
 }
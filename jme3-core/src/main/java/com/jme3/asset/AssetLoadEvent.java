@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+/**
+ * <code>AssetLoadEvent</code> describes how an asset request was served:
+ * the time spent in each stage, the amount of data read and whether the
+ * asset came from the cache.
+ * <p>
+ * Times are measured on the thread which requested the asset. The loader
+ * time of an asset includes the time needed to load its dependencies,
+ * which are reported with events of their own.
+ *
+ * @see AssetLoadTimingListener
+ * @author jMonkeyEngine
+ */
+public final class AssetLoadEvent {
+
+    private final AssetKey key;
+    private final Class<? extends AssetLoader> loaderClass;
+    private final long locateNanos;
+    private final long loadNanos;
+    private final long processNanos;
+    private final long bytesRead;
+    private final boolean cacheHit;
+    private final String threadName;
+
+    public AssetLoadEvent(AssetKey key, Class<? extends AssetLoader> loaderClass,
+                          long locateNanos, long loadNanos, long processNanos,
+                          long bytesRead, boolean cacheHit, String threadName) {
+        this.key = key;
+        this.loaderClass = loaderClass;
+        this.locateNanos = locateNanos;
+        this.loadNanos = loadNanos;
+        this.processNanos = processNanos;
+        this.bytesRead = bytesRead;
+        this.cacheHit = cacheHit;
+        this.threadName = threadName;
+    }
+
+    /**
+     * @return The key of the requested asset.
+     */
+    public AssetKey getKey() {
+        return key;
+    }
+
+    /**
+     * @return The loader which loaded the asset, or null if it was taken
+     * from the cache.
+     */
+    public Class<? extends AssetLoader> getLoaderClass() {
+        return loaderClass;
+    }
+
+    /**
+     * @return The time spent locating the asset, in nanoseconds.
+     */
+    public long getLocateNanos() {
+        return locateNanos;
+    }
+
+    /**
+     * @return The time spent in the loader, in nanoseconds.
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return The time spent post-processing and cloning the asset, in
+     * nanoseconds.
+     */
+    public long getProcessNanos() {
+        return processNanos;
+    }
+
+    /**
+     * @return The total time needed to serve the request, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return locateNanos + loadNanos + processNanos;
+    }
+
+    /**
+     * Returns the number of bytes the loader read through
+     * {@link AssetInfo#openStream() } and {@link AssetInfo#getBuffer() }.
+     * Data read directly from {@link AssetInfo#getFile() } is not counted.
+     *
+     * @return The number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * @return True if the asset was taken from the cache.
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    /**
+     * @return The name of the thread which served the request.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[key=" + key
+                + ", loader=" + (loaderClass != null ? loaderClass.getSimpleName() : null)
+                + ", locate=" + locateNanos + "ns, load=" + loadNanos
+                + "ns, process=" + processNanos + "ns, bytes=" + bytesRead
+                + ", cacheHit=" + cacheHit + ", thread=" + threadName + "]";
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * <code>AssetLoadStatistics</code> aggregates the measurements of asset
+ * requests into a histogram of load times per loader, to find out which
+ * loaders are worth optimizing.
+ * <p>
+ * Register it with the asset manager to start recording, and optionally
+ * with the platform MBean server to inspect it with a JMX console:
+ * <pre>
+ * AssetLoadStatistics stats = new AssetLoadStatistics();
+ * assetManager.addAssetEventListener(stats);
+ * stats.register("MyApp");
+ * </pre>
+ * Requests served from the cache are recorded under {@link #CACHE}.
+ *
+ * @author jMonkeyEngine
+ */
+public class AssetLoadStatistics implements AssetLoadTimingListener, AssetLoadStatisticsMBean {
+
+    private static final Logger logger = Logger.getLogger(AssetLoadStatistics.class.getName());
+
+    /**
+     * The name under which cache hits are recorded.
+     */
+    public static final String CACHE = "(cache)";
+
+    /**
+     * The number of histogram buckets. Bucket 0 counts requests taking
+     * less than 2 microseconds, bucket i those taking 2^i to 2^(i+1)
+     * microseconds, the last bucket counts all longer requests.
+     */
+    public static final int BUCKET_COUNT = 32;
+
+    private final ConcurrentHashMap<String, LoaderStatistics> loaders =
+            new ConcurrentHashMap<String, LoaderStatistics>();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong dependenciesNotFound = new AtomicLong();
+
+    private ObjectName objectName;
+
+    /**
+     * The measurements of a single loader.
+     */
+    public static final class LoaderStatistics {
+
+        private final String name;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+        private final AtomicLong locateNanos = new AtomicLong();
+        private final AtomicLong loadNanos = new AtomicLong();
+        private final AtomicLong processNanos = new AtomicLong();
+        private final AtomicLong bytesRead = new AtomicLong();
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+        LoaderStatistics(String name) {
+            this.name = name;
+        }
+
+        void record(AssetLoadEvent event) {
+            long nanos = event.getTotalNanos();
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            locateNanos.addAndGet(event.getLocateNanos());
+            loadNanos.addAndGet(event.getLoadNanos());
+            processNanos.addAndGet(event.getProcessNanos());
+            bytesRead.addAndGet(event.getBytesRead());
+            buckets.incrementAndGet(getBucket(nanos));
+
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /**
+         * @return The name of the loader class, or {@link #CACHE}.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return The number of recorded requests.
+         */
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * @return The total time of all requests, in nanoseconds.
+         */
+        public long getTotalNanos() {
+            return totalNanos.get();
+        }
+
+        /**
+         * @return The time of the slowest request, in nanoseconds.
+         */
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * @return The time spent locating assets, in nanoseconds.
+         */
+        public long getLocateNanos() {
+            return locateNanos.get();
+        }
+
+        /**
+         * @return The time spent in the loader, in nanoseconds.
+         */
+        public long getLoadNanos() {
+            return loadNanos.get();
+        }
+
+        /**
+         * @return The time spent post-processing and cloning, in
+         * nanoseconds.
+         */
+        public long getProcessNanos() {
+            return processNanos.get();
+        }
+
+        /**
+         * @return The number of bytes read.
+         */
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        /**
+         * @return A copy of the histogram, see {@link #BUCKET_COUNT}.
+         */
+        public long[] getBucketCounts() {
+            long[] counts = new long[BUCKET_COUNT];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = buckets.get(i);
+            }
+            return counts;
+        }
+
+        /**
+         * Estimates a percentile of the request time from the histogram.
+         *
+         * @param percentile The percentile, between 0 and 100
+         * @return The upper bound of the histogram bucket containing the
+         * percentile, in nanoseconds, or 0 if nothing was recorded.
+         */
+        public long getPercentileNanos(double percentile) {
+            long[] counts = getBucketCounts();
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(total * Math.min(Math.max(percentile, 0), 100) / 100.0);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= Math.max(rank, 1)) {
+                    return i == counts.length - 1 ? getMaxNanos() : (2000L << i);
+                }
+            }
+            return getMaxNanos();
+        }
+
+        @Override
+        public String toString() {
+            long n = Math.max(getCount(), 1);
+            return String.format("%s: count=%d, avg=%.3fms (locate=%.3fms, load=%.3fms, process=%.3fms), "
+                    + "p50=%.3fms, p95=%.3fms, max=%.3fms, bytes=%d",
+                    name, getCount(), getTotalNanos() / n / 1e6,
+                    getLocateNanos() / n / 1e6, getLoadNanos() / n / 1e6, getProcessNanos() / n / 1e6,
+                    getPercentileNanos(50) / 1e6, getPercentileNanos(95) / 1e6,
+                    getMaxNanos() / 1e6, getBytesRead());
+        }
+    }
+
+    static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        if (micros < 2) {
+            return 0;
+        }
+        return Math.min(63 - Long.numberOfLeadingZeros(micros), BUCKET_COUNT - 1);
+    }
+
+    public void assetLoaded(AssetKey key) {
+    }
+
+    public void assetRequested(AssetKey key) {
+    }
+
+    public void assetDependencyNotFound(AssetKey parentKey, AssetKey dependentAssetKey) {
+        dependenciesNotFound.incrementAndGet();
+    }
+
+    public void assetLoadTimed(AssetLoadEvent event) {
+        String name;
+        if (event.isCacheHit()) {
+            cacheHits.incrementAndGet();
+            name = CACHE;
+        } else {
+            cacheMisses.incrementAndGet();
+            name = event.getLoaderClass() != null ? event.getLoaderClass().getName() : "unknown";
+        }
+        LoaderStatistics stats = loaders.get(name);
+        if (stats == null) {
+            LoaderStatistics created = new LoaderStatistics(name);
+            stats = loaders.putIfAbsent(name, created);
+            if (stats == null) {
+                stats = created;
+            }
+        }
+        stats.record(event);
+    }
+
+    /**
+     * @param name The name of the loader class, or {@link #CACHE}.
+     * @return The measurements of the loader, or null if it has not loaded
+     * any asset.
+     */
+    public LoaderStatistics getLoaderStatistics(String name) {
+        return loaders.get(name);
+    }
+
+    /**
+     * @return The measurements of all loaders, sorted by name.
+     */
+    public List<LoaderStatistics> getAllLoaderStatistics() {
+        List<String> names = new ArrayList<String>(loaders.keySet());
+        Collections.sort(names);
+        List<LoaderStatistics> list = new ArrayList<LoaderStatistics>(names.size());
+        for (String name : names) {
+            LoaderStatistics stats = loaders.get(name);
+            if (stats != null) {
+                list.add(stats);
+            }
+        }
+        return list;
+    }
+
+    public long getRequestCount() {
+        return cacheHits.get() + cacheMisses.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getCacheMissCount() {
+        return cacheMisses.get();
+    }
+
+    public long getDependencyNotFoundCount() {
+        return dependenciesNotFound.get();
+    }
+
+    public long getBytesRead() {
+        long bytes = 0;
+        for (LoaderStatistics stats : loaders.values()) {
+            bytes += stats.getBytesRead();
+        }
+        return bytes;
+    }
+
+    public String[] getLoaderNames() {
+        List<LoaderStatistics> list = getAllLoaderStatistics();
+        String[] names = new String[list.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = list.get(i).getName();
+        }
+        return names;
+    }
+
+    public String[] getLoaderReport() {
+        List<LoaderStatistics> list = getAllLoaderStatistics();
+        String[] report = new String[list.size()];
+        for (int i = 0; i < report.length; i++) {
+            report[i] = list.get(i).toString();
+        }
+        return report;
+    }
+
+    public void reset() {
+        loaders.clear();
+        cacheHits.set(0);
+        cacheMisses.set(0);
+        dependenciesNotFound.set(0);
+    }
+
+    /**
+     * Registers the statistics with the platform MBean server, under
+     * <code>com.jme3.asset:type=AssetLoadStatistics,name=&lt;name&gt;</code>.
+     *
+     * @param name The name distinguishing this instance from others.
+     * @return True if registered, false if JMX refused the registration.
+     */
+    public synchronized boolean register(String name) {
+        unregister();
+        try {
+            ObjectName on = new ObjectName("com.jme3.asset:type=AssetLoadStatistics,name="
+                    + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+            objectName = on;
+            return true;
+        } catch (JMException ex) {
+            logger.log(Level.WARNING, "Cannot register asset load statistics", ex);
+            return false;
+        }
+    }
+
+    /**
+     * Removes the statistics from the platform MBean server, if registered.
+     */
+    public synchronized void unregister() {
+        if (objectName == null) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(objectName)) {
+                server.unregisterMBean(objectName);
+            }
+        } catch (JMException ex) {
+            logger.log(Level.WARNING, "Cannot unregister asset load statistics", ex);
+        }
+        objectName = null;
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+/**
+ * The management interface of {@link AssetLoadStatistics}, exposed
+ * through JMX once registered.
+ *
+ * @author jMonkeyEngine
+ */
+public interface AssetLoadStatisticsMBean {
+
+    /**
+     * @return The number of requests served, including cache hits.
+     */
+    public long getRequestCount();
+
+    /**
+     * @return The number of requests served from the cache.
+     */
+    public long getCacheHitCount();
+
+    /**
+     * @return The number of requests which required loading the asset.
+     */
+    public long getCacheMissCount();
+
+    /**
+     * @return The number of dependencies which could not be found.
+     */
+    public long getDependencyNotFoundCount();
+
+    /**
+     * @return The number of bytes read by all loaders.
+     */
+    public long getBytesRead();
+
+    /**
+     * @return The names of the loaders with recorded loads.
+     */
+    public String[] getLoaderNames();
+
+    /**
+     * @return One line per loader, summarizing its load counts and times.
+     */
+    public String[] getLoaderReport();
+
+    /**
+     * Discards all recorded measurements.
+     */
+    public void reset();
+
+}
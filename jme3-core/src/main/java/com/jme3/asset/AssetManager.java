@@ -48,6 +48,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
 
 /**
  * <code>AssetManager</code> provides an interface for managing the data assets
@@ -233,6 +236,39 @@ public interface AssetManager {
      */
     public <T> T loadAsset(AssetKey<T> key);
 
+    /**
+     * Loads an asset from a key on the asset loading threads, see
+     * {@link #loadAsset(com.jme3.asset.AssetKey) }.
+     * <p>
+     * Concurrent requests for an equal key are loaded only once if the
+     * key specifies a {@link AssetKey#getCacheType() cache}, each request
+     * then receives the asset from the cache, e.g. its own clone. Loaders
+     * running on the loading threads may use this method to load their
+     * dependencies in parallel.
+     *
+     * <p>
+     * The default implementation calls {@link #loadAsset(com.jme3.asset.AssetKey) }
+     * on the {@link ForkJoinPool#commonPool() common pool}, without merging
+     * concurrent requests.
+     *
+     * @param <T> The object type that will be loaded from the AssetKey instance.
+     * @param key The AssetKey
+     * @return A future completed with the loaded asset, or exceptionally
+     * with the {@link AssetNotFoundException} or {@link AssetLoadException}
+     * thrown while loading.
+     */
+    public default <T> CompletableFuture<T> loadAssetAsync(final AssetKey<T> key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+        return CompletableFuture.supplyAsync(new Supplier<T>() {
+            @Override
+            public T get() {
+                return loadAsset(key);
+            }
+        });
+    }
+
     /**
      * Load an asset by name, calling this method is the same as calling
      * <code>loadAsset(new AssetKey(name))</code>.
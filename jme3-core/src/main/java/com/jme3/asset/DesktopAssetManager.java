@@ -44,15 +44,22 @@ import com.jme3.shader.Glsl150ShaderGenerator;
 import com.jme3.shader.ShaderGenerator;
 import com.jme3.system.JmeSystem;
 import com.jme3.texture.Texture;
+import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -75,6 +82,14 @@ public class DesktopAssetManager implements AssetManager {
     private List<ClassLoader> classLoaders =
             Collections.synchronizedList(new ArrayList<ClassLoader>());
 
+    private final ThreadingManager threadingManager = new ThreadingManager(this);
+
+    private volatile PersistentAssetCache persistentCache;
+
+    // cached assets currently loaded by loadAssetAsync
+    private final ConcurrentHashMap<AssetKey, CompletableFuture<?>> pendingLoads =
+            new ConcurrentHashMap<AssetKey, CompletableFuture<?>>();
+
     public DesktopAssetManager(){
         this(null);
     }
@@ -127,6 +142,27 @@ public class DesktopAssetManager implements AssetManager {
         eventListeners.add(listener);
     }
 
+    private boolean isTimingEnabled() {
+        for (AssetEventListener listener : eventListeners) {
+            if (listener instanceof AssetLoadTimingListener) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void fireLoadTimed(AssetKey key, LoadMetrics metrics, boolean cacheHit) {
+        AssetLoadEvent event = new AssetLoadEvent(key, metrics.loaderClass,
+                metrics.locateNanos, metrics.loadNanos, metrics.processNanos,
+                metrics.info != null ? metrics.info.getBytesRead() : 0,
+                cacheHit, Thread.currentThread().getName());
+        for (AssetEventListener listener : eventListeners) {
+            if (listener instanceof AssetLoadTimingListener) {
+                ((AssetLoadTimingListener) listener).assetLoadTimed(event);
+            }
+        }
+    }
+
     public void registerLoader(Class<? extends AssetLoader> loader, String ... extensions){
         handler.addLoader(loader, extensions);
         if (logger.isLoggable(Level.FINER)){
@@ -187,6 +223,26 @@ public class DesktopAssetManager implements AssetManager {
         }
     }
     
+    /**
+     * Sets the on-disk cache used to store loaded assets across application
+     * runs. Assets found in the cache are not loaded from their source again,
+     * see {@link PersistentAssetCache}.
+     *
+     * @param persistentCache The persistent cache, or null to disable it
+     * (the default).
+     */
+    public void setPersistentCache(PersistentAssetCache persistentCache) {
+        this.persistentCache = persistentCache;
+    }
+
+    /**
+     * @return The on-disk cache, or null if disabled.
+     * @see #setPersistentCache(com.jme3.asset.PersistentAssetCache)
+     */
+    public PersistentAssetCache getPersistentCache() {
+        return persistentCache;
+    }
+
     public AssetInfo locateAsset(AssetKey<?> key){
         AssetInfo info = handler.tryLocate(key);
         if (info == null){
@@ -252,16 +308,41 @@ public class DesktopAssetManager implements AssetManager {
      * other error.
      */
     protected <T> T loadLocatedAsset(AssetKey<T> key, AssetInfo info, AssetProcessor proc, AssetCache cache) {
+        return loadLocatedAsset(key, info, proc, cache, null);
+    }
+
+    private <T> T loadLocatedAsset(AssetKey<T> key, AssetInfo info, AssetProcessor proc, AssetCache cache,
+                                   LoadMetrics metrics) {
         AssetLoader loader = handler.aquireLoader(key);
         Object obj;
+        long start = 0;
+        if (metrics != null) {
+            metrics.loaderClass = loader.getClass();
+            start = System.nanoTime();
+        }
         try {
             handler.establishParentKey(key);
-            obj = loader.load(info);
+            PersistentAssetCache diskCache = persistentCache;
+            boolean useDiskCache = diskCache != null && !(info instanceof StreamAssetInfo);
+            if (metrics != null) {
+                metrics.info = new CountingAssetInfo(info);
+                info = metrics.info;
+            }
+            if (useDiskCache) {
+                obj = diskCache.load(loader, info);
+            } else {
+                obj = loader.load(info);
+            }
         } catch (IOException ex) {
             throw new AssetLoadException("An exception has occured while loading asset: " + key, ex);
         } finally {
             handler.releaseParentKey(key);
         }
+        if (metrics != null) {
+            long end = System.nanoTime();
+            metrics.loadNanos = end - start;
+            start = end;
+        }
         if (obj == null) {
             throw new AssetLoadException("Error occured while loading asset \""
                     + key + "\" using " + loader.getClass().getSimpleName());
@@ -274,6 +355,9 @@ public class DesktopAssetManager implements AssetManager {
             if (proc != null) {
                 // do processing on asset before caching
                 obj = proc.postProcess(key, obj);
+                if (metrics != null) {
+                    metrics.processNanos += System.nanoTime() - start;
+                }
             }
 
             if (cache != null) {
@@ -338,7 +422,12 @@ public class DesktopAssetManager implements AssetManager {
         
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         StreamAssetInfo info = new StreamAssetInfo(this, key, inputStream);
-        return loadLocatedAsset(key, info, proc, null);
+        LoadMetrics metrics = isTimingEnabled() ? new LoadMetrics() : null;
+        T obj = loadLocatedAsset(key, info, proc, null, metrics);
+        if (metrics != null) {
+            fireLoadTimed(key, metrics, false);
+        }
+        return obj;
     }
     
     @Override
@@ -349,14 +438,25 @@ public class DesktopAssetManager implements AssetManager {
         for (AssetEventListener listener : eventListeners){
             listener.assetRequested(key);
         }
+
+        PersistentAssetCache diskCache = persistentCache;
+        if (diskCache != null) {
+            diskCache.assetRequested(key);
+        }
         
         AssetCache cache = handler.getCache(key.getCacheType());
         AssetProcessor proc = handler.getProcessor(key.getProcessorType());
         
+        LoadMetrics metrics = isTimingEnabled() ? new LoadMetrics() : null;
         Object obj = cache != null ? cache.getFromCache(key) : null;
+        boolean cacheHit = obj != null;
         if (obj == null){
             // Asset not in cache, load it from file system.
+            long start = metrics != null ? System.nanoTime() : 0;
             AssetInfo info = handler.tryLocate(key);
+            if (metrics != null) {
+                metrics.locateNanos = System.nanoTime() - start;
+            }
             if (info == null){
                 if (handler.getParentKey() != null){
                     // Inform event listener that an asset has failed to load.
@@ -367,21 +467,175 @@ public class DesktopAssetManager implements AssetManager {
                         listener.assetDependencyNotFound(handler.getParentKey(), key);
                     }
                 }
+                if (diskCache != null) {
+                    diskCache.assetNotFound(key);
+                }
                 throw new AssetNotFoundException(key.toString());
             }
             
-            obj = loadLocatedAsset(key, info, proc, cache);
+            obj = loadLocatedAsset(key, info, proc, cache, metrics);
         }
 
         T clone = (T) obj;
         
         if (obj instanceof CloneableSmartAsset) {
+            long start = metrics != null ? System.nanoTime() : 0;
             clone = registerAndCloneSmartAsset(key, clone, proc, cache);
+            if (metrics != null) {
+                metrics.processNanos += System.nanoTime() - start;
+            }
+        }
+
+        if (metrics != null) {
+            fireLoadTimed(key, metrics, cacheHit);
         }
         
         return clone;
     }
 
+    @Override
+    public <T> CompletableFuture<T> loadAssetAsync(final AssetKey<T> key) {
+        if (key == null) {
+            throw new IllegalArgumentException("key cannot be null");
+        }
+
+        // dependencies loaded on other threads report to the same parent
+        final AssetKey parentKey = handler.getParentKey();
+        if (handler.getCache(key.getCacheType()) == null) {
+            // uncached assets are loaded for every request
+            CompletableFuture<T> future = new CompletableFuture<T>();
+            threadingManager.getExecutor().execute(new AsyncLoadingTask<T>(key, parentKey, future, false));
+            return future;
+        }
+
+        CompletableFuture<T> future = new CompletableFuture<T>();
+        CompletableFuture<T> pending = (CompletableFuture<T>) pendingLoads.putIfAbsent(key, future);
+        if (pending == null) {
+            threadingManager.getExecutor().execute(new AsyncLoadingTask<T>(key, parentKey, future, true));
+            return future;
+        }
+
+        // the asset is in the cache once the pending load is done,
+        // get it from there to respect the cache semantics, e.g. cloning
+        return pending.thenApplyAsync(new Function<T, T>() {
+            @Override
+            public T apply(T loaded) {
+                return loadAssetWithParent(key, parentKey);
+            }
+        }, threadingManager.getExecutor());
+    }
+
+    private <T> T loadAssetWithParent(AssetKey<T> key, AssetKey parentKey) {
+        if (parentKey == null) {
+            return loadAsset(key);
+        }
+        handler.establishParentKey(parentKey);
+        try {
+            return loadAsset(key);
+        } finally {
+            handler.releaseParentKey(parentKey);
+        }
+    }
+
+    // the measurements of a request, taken if timing listeners are registered
+    private static final class LoadMetrics {
+
+        Class<? extends AssetLoader> loaderClass;
+        long locateNanos;
+        long loadNanos;
+        long processNanos;
+        CountingAssetInfo info;
+    }
+
+    // counts the bytes the loader reads, possibly on several threads
+    private static final class CountingAssetInfo extends AssetInfo {
+
+        private final AssetInfo info;
+        private final AtomicLong bytesRead = new AtomicLong();
+
+        public CountingAssetInfo(AssetInfo info) {
+            super(info.getManager(), info.getKey());
+            this.info = info;
+        }
+
+        public long getBytesRead() {
+            return bytesRead.get();
+        }
+
+        @Override
+        public InputStream openStream() {
+            InputStream in = info.openStream();
+            if (in == null) {
+                return null;
+            }
+            return new FilterInputStream(in) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        bytesRead.incrementAndGet();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int read = super.read(b, off, len);
+                    if (read > 0) {
+                        bytesRead.addAndGet(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public File getFile() {
+            return info.getFile();
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            ByteBuffer buffer = info.getBuffer();
+            if (buffer != null) {
+                bytesRead.addAndGet(buffer.remaining());
+            }
+            return buffer;
+        }
+
+        @Override
+        public String toString() {
+            return info.toString();
+        }
+    }
+
+    private class AsyncLoadingTask<T> implements Runnable {
+
+        private final AssetKey<T> key;
+        private final AssetKey parentKey;
+        private final CompletableFuture<T> future;
+        private final boolean pending;
+
+        public AsyncLoadingTask(AssetKey<T> key, AssetKey parentKey, CompletableFuture<T> future, boolean pending) {
+            this.key = key;
+            this.parentKey = parentKey;
+            this.future = future;
+            this.pending = pending;
+        }
+
+        public void run() {
+            try {
+                future.complete(loadAssetWithParent(key, parentKey));
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                if (pending) {
+                    pendingLoads.remove(key, future);
+                }
+            }
+        }
+    }
+
     public Object loadAsset(String name){
         return loadAsset(new AssetKey(name));
     }
@@ -0,0 +1,514 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.audio.AudioKey;
+import com.jme3.export.Savable;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.system.JmeVersion;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * <code>PersistentAssetCache</code> stores the output of asset loaders on
+ * disk, so that the source files do not have to be parsed or decoded again
+ * when the application is started the next time.
+ * <p>
+ * An entry is identified by a hash of the source content, the asset key,
+ * the loader class and the engine version. Modifying the source file or
+ * updating the engine therefore never returns stale data. Assets loaded
+ * through the asset manager while the entry was created, e.g. shader
+ * includes or material libraries, are stored with the hash of their
+ * content and the entry is discarded if any of them changed.
+ * <p>
+ * {@link Savable} assets are stored in the binary J3O format, strings are
+ * stored as UTF-8. Other assets, and J3O files which already are in binary
+ * form, are not cached. Audio is never cached, so that streams stay
+ * streamed, and once a loader returned an asset that cannot be stored,
+ * the assets of that loader are loaded from their source directly without
+ * being read and hashed first. Entries are written to a temporary file first and
+ * then moved into place, a corrupted entry is deleted and the asset is
+ * loaded from its source.
+ * <p>
+ * Once the entries exceed the size budget, the least recently used
+ * entries are deleted.
+ *
+ * @see DesktopAssetManager#setPersistentCache(com.jme3.asset.PersistentAssetCache)
+ * @author jMonkeyEngine
+ */
+public class PersistentAssetCache {
+
+    private static final Logger logger = Logger.getLogger(PersistentAssetCache.class.getName());
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAGIC = 0x4A4D4543; // JMEC
+    private static final int VERSION = 1;
+    private static final String SUFFIX = ".jmec";
+
+    private static final byte TYPE_SAVABLE = 0;
+    private static final byte TYPE_STRING = 1;
+
+    /**
+     * The default size budget, 512 MB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private final File directory;
+    private final long maxSize;
+    private final AtomicLong size = new AtomicLong();
+    // loaders that returned an asset which cannot be stored
+    private final Set<Class<?>> uncacheableLoaders
+            = Collections.newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+    // the dependencies of the entries being created on this thread
+    private final ThreadLocal<ArrayDeque<Recording>> recordings = new ThreadLocal<ArrayDeque<Recording>>() {
+        @Override
+        protected ArrayDeque<Recording> initialValue() {
+            return new ArrayDeque<Recording>();
+        }
+    };
+
+    private static final class Recording {
+
+        final LinkedHashSet<String> dependencies = new LinkedHashSet<String>();
+        boolean complete = true;
+    }
+
+    /**
+     * Creates a cache in the given directory with the
+     * {@link #DEFAULT_MAX_SIZE default budget}.
+     *
+     * @param directory The cache directory, created if it does not exist
+     */
+    public PersistentAssetCache(File directory) {
+        this(directory, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache in the given directory.
+     *
+     * @param directory The cache directory, created if it does not exist
+     * @param maxSize The size budget in bytes
+     */
+    public PersistentAssetCache(File directory, long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Cannot create cache directory " + directory);
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        for (File file : listEntries()) {
+            size.addAndGet(file.length());
+        }
+    }
+
+    /**
+     * @return The cache directory
+     */
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return The size budget in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The size of all entries in bytes
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * Deletes all entries.
+     */
+    public void clear() {
+        for (File file : listEntries()) {
+            delete(file);
+        }
+    }
+
+    /**
+     * Returns true if the assets of the given key can be stored in the cache.
+     *
+     * @param key The asset key
+     * @return True if the asset may be cached
+     */
+    protected boolean isCacheable(AssetKey key) {
+        if (key instanceof AudioKey) {
+            return false;
+        }
+        String extension = key.getExtension();
+        return !extension.equals("j3o") && !extension.equals("j3f");
+    }
+
+    /**
+     * Loads an asset from the cache, or with the given loader if the cache
+     * has no valid entry for it. Called by the asset manager in place of
+     * {@link AssetLoader#load(com.jme3.asset.AssetInfo) }.
+     */
+    Object load(AssetLoader loader, final AssetInfo info) throws IOException {
+        if (!isCacheable(info.getKey()) || uncacheableLoaders.contains(loader.getClass())) {
+            return loader.load(info);
+        }
+
+        final byte[] content = readFully(info);
+        File file = getEntryFile(info.getKey(), loader, content);
+        Object obj = read(file, info.getManager());
+        if (obj != null) {
+            return obj;
+        }
+
+        // the loader gets the content that was hashed
+        AssetInfo contentInfo = new AssetInfo(info.getManager(), info.getKey()) {
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(content);
+            }
+
+            @Override
+            public File getFile() {
+                return info.getFile();
+            }
+
+            @Override
+            public ByteBuffer getBuffer() {
+                return info.getBuffer();
+            }
+        };
+
+        Recording recording = beginRecording();
+        try {
+            obj = loader.load(contentInfo);
+        } finally {
+            endRecording(recording);
+        }
+        if (obj != null && !(obj instanceof Savable) && !(obj instanceof String)) {
+            uncacheableLoaders.add(loader.getClass());
+        } else if (obj != null && recording.complete) {
+            write(file, obj, recording.dependencies, info.getManager());
+        }
+        return obj;
+    }
+
+    /**
+     * Notifies the cache that an asset was requested on this thread.
+     */
+    void assetRequested(AssetKey key) {
+        Recording recording = recordings.get().peek();
+        if (recording != null) {
+            recording.dependencies.add(key.getName());
+        }
+    }
+
+    /**
+     * Notifies the cache that an asset requested on this thread was not
+     * found. The entry being created is not stored, since the loader may
+     * have substituted a placeholder.
+     */
+    void assetNotFound(AssetKey key) {
+        Recording recording = recordings.get().peek();
+        if (recording != null) {
+            recording.complete = false;
+        }
+    }
+
+    private Recording beginRecording() {
+        Recording recording = new Recording();
+        recordings.get().push(recording);
+        return recording;
+    }
+
+    private void endRecording(Recording recording) {
+        ArrayDeque<Recording> stack = recordings.get();
+        stack.pop();
+        Recording parent = stack.peek();
+        if (parent != null) {
+            // dependencies of a dependency may be part of the parent asset
+            parent.dependencies.addAll(recording.dependencies);
+            parent.complete &= recording.complete;
+        }
+    }
+
+    private File getEntryFile(AssetKey key, AssetLoader loader, byte[] content) {
+        MessageDigest digest = createDigest();
+        digest.update(content);
+        digest.update(key.getClass().getName().getBytes(UTF8));
+        digest.update(key.toString().getBytes(UTF8));
+        digest.update(loader.getClass().getName().getBytes(UTF8));
+        digest.update(JmeVersion.FULL_NAME.getBytes(UTF8));
+        digest.update((byte) VERSION);
+        return new File(directory, toHex(digest.digest()) + SUFFIX);
+    }
+
+    private Object read(File file, AssetManager manager) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            ByteBuffer buffer;
+            try {
+                FileChannel channel = raf.getChannel();
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } finally {
+                raf.close();
+            }
+
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a cache entry");
+            }
+            int dependencyCount = buffer.getInt();
+            String[] dependencies = new String[dependencyCount];
+            byte[] hash = new byte[createDigest().getDigestLength()];
+            for (int i = 0; i < dependencyCount; i++) {
+                byte[] name = new byte[buffer.getInt()];
+                buffer.get(name);
+                buffer.get(hash);
+                dependencies[i] = new String(name, UTF8);
+                byte[] current = hashDependency(manager, dependencies[i]);
+                if (current == null || !Arrays.equals(hash, current)) {
+                    delete(file);
+                    return null;
+                }
+            }
+
+            Object obj;
+            byte type = buffer.get();
+            if (type == TYPE_SAVABLE) {
+                BinaryImporter importer = BinaryImporter.getInstance();
+                importer.setAssetManager(manager);
+                obj = importer.load(buffer.slice());
+            } else if (type == TYPE_STRING) {
+                byte[] string = new byte[buffer.remaining()];
+                buffer.get(string);
+                obj = new String(string, UTF8);
+            } else {
+                throw new IOException("Unknown entry type " + type);
+            }
+
+            // an entry being created for an enclosing asset
+            // depends on the dependencies of this one as well
+            Recording recording = recordings.get().peek();
+            if (recording != null) {
+                recording.dependencies.addAll(Arrays.asList(dependencies));
+            }
+
+            // the entry was used, keep it longer
+            file.setLastModified(System.currentTimeMillis());
+            return obj;
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Cannot read cache entry " + file + ", deleting it", ex);
+            delete(file);
+            return null;
+        }
+    }
+
+    private void write(File file, Object obj, Iterable<String> dependencies, AssetManager manager) {
+        if (!(obj instanceof Savable) && !(obj instanceof String)) {
+            return;
+        }
+
+        File temp = null;
+        try {
+            temp = File.createTempFile("entry", ".tmp", directory);
+            OutputStream os = new FileOutputStream(temp);
+            try {
+                DataOutputStream out = new DataOutputStream(os);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+
+                ByteArrayOutputStream deps = new ByteArrayOutputStream();
+                DataOutputStream depsOut = new DataOutputStream(deps);
+                int dependencyCount = 0;
+                for (String dependency : dependencies) {
+                    byte[] hash = hashDependency(manager, dependency);
+                    if (hash == null) {
+                        return;
+                    }
+                    byte[] name = dependency.getBytes(UTF8);
+                    depsOut.writeInt(name.length);
+                    depsOut.write(name);
+                    depsOut.write(hash);
+                    dependencyCount++;
+                }
+                out.writeInt(dependencyCount);
+                deps.writeTo(out);
+
+                if (obj instanceof Savable) {
+                    out.writeByte(TYPE_SAVABLE);
+                    out.flush();
+                    BinaryExporter.getInstance().save((Savable) obj, os);
+                } else {
+                    out.writeByte(TYPE_STRING);
+                    out.write(((String) obj).getBytes(UTF8));
+                }
+                out.flush();
+            } finally {
+                os.close();
+            }
+
+            long length = temp.length();
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException ex) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            temp = null;
+            size.addAndGet(length);
+        } catch (Exception ex) {
+            logger.log(Level.WARNING, "Cannot write cache entry for " + file, ex);
+        } finally {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+
+        if (size.get() > maxSize) {
+            evict();
+        }
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is within
+     * its budget.
+     */
+    private synchronized void evict() {
+        File[] files = listEntries();
+        Arrays.sort(files, new Comparator<File>() {
+            public int compare(File a, File b) {
+                long ta = a.lastModified();
+                long tb = b.lastModified();
+                return ta < tb ? -1 : (ta == tb ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length && size.get() > maxSize; i++) {
+            delete(files[i]);
+        }
+    }
+
+    private void delete(File file) {
+        long length = file.length();
+        if (file.delete()) {
+            size.addAndGet(-length);
+        }
+    }
+
+    private File[] listEntries() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        List<File> entries = new ArrayList<File>(files.length);
+        for (File file : files) {
+            if (file.getName().endsWith(SUFFIX)) {
+                entries.add(file);
+            }
+        }
+        return entries.toArray(new File[entries.size()]);
+    }
+
+    private static byte[] hashDependency(AssetManager manager, String name) throws IOException {
+        AssetInfo info = manager.locateAsset(new AssetKey(name));
+        if (info == null) {
+            return null;
+        }
+        MessageDigest digest = createDigest();
+        digest.update(readFully(info));
+        return digest.digest();
+    }
+
+    private static byte[] readFully(AssetInfo info) throws IOException {
+        InputStream in = info.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new UnsupportedOperationException("SHA-1 is not available", ex);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
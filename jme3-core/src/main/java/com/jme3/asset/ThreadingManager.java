@@ -38,6 +38,10 @@ import java.util.concurrent.*;
  * within the Content Manager system. A pool of threads and a task queue
  * is used to load resource data and perform I/O while the application's
  * render thread is active. 
+ * <p>
+ * Asynchronous loads of the asset manager run on a separate
+ * {@link ForkJoinPool}, so a loading thread that waits for other assets
+ * being loaded on that pool does not starve it.
  */
 public class ThreadingManager {
 
@@ -45,6 +49,10 @@ public class ThreadingManager {
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), 
                                          new LoadingThreadFactory());
 
+    protected final ForkJoinPool asyncPool =
+            new ForkJoinPool(Runtime.getRuntime().availableProcessors(),
+                             new LoadingWorkerThreadFactory(), null, false);
+
     protected final AssetManager owner;
     protected int nextThreadId = 0;
 
@@ -61,6 +69,18 @@ public class ThreadingManager {
         }
     }
 
+    protected class LoadingWorkerThreadFactory implements ForkJoinPool.ForkJoinWorkerThreadFactory {
+        public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            synchronized (ThreadingManager.this) {
+                t.setName("jME3-threadpool-" + (nextThreadId++));
+            }
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        }
+    }
+
     protected class LoadingTask<T> implements Callable<T> {
 
         private final AssetKey<T> assetKey;
@@ -78,6 +98,13 @@ public class ThreadingManager {
         return executor.submit(new LoadingTask(assetKey));
     }
 
+    /**
+     * @return the pool running the asynchronous loads of the asset manager
+     */
+    public Executor getExecutor() {
+        return asyncPool;
+    }
+
     public static boolean isLoadingThread() {
         return Thread.currentThread().getName().startsWith("jME3-threadpool");
     }
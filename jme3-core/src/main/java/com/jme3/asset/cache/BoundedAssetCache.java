@@ -0,0 +1,479 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.material.MatParam;
+import com.jme3.material.MatParamTexture;
+import com.jme3.material.Material;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.SceneGraphVisitor;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.nio.ShortBuffer;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <code>BoundedAssetCache</code> is an asset cache that keeps the estimated
+ * size of its assets under a byte budget. Once the budget is exceeded,
+ * assets are evicted either by least recent use ({@link EvictionPolicy#LRU})
+ * or least frequent use ({@link EvictionPolicy#LFU}).
+ * <p>
+ * The size of an asset is estimated from the data buffers of images,
+ * textures, meshes, materials and scene graphs, see
+ * {@link #estimateSize(java.lang.Object) }. Assets that are larger than
+ * the whole budget are not cached.
+ * <p>
+ * Since caches are created by the asset manager with their empty
+ * constructor, a key uses a bounded cache with a different budget by
+ * returning a subclass from {@link AssetKey#getCacheType() }, e.g.
+ * <pre>
+ * public class TextureCache extends BoundedAssetCache {
+ *     public TextureCache() {
+ *         super(128 * 1024 * 1024, EvictionPolicy.LRU);
+ *     }
+ * }
+ * </pre>
+ * Cloneable assets are stored as they were loaded, the asset manager gives
+ * out clones of them.
+ * <p>
+ * The keys are split among a number of stripes, each guarded by its own
+ * lock, so that threads using different assets rarely contend.
+ *
+ * @author jMonkeyEngine
+ */
+public class BoundedAssetCache implements AssetCache {
+
+    /**
+     * The default budget, 256 MB.
+     */
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    /**
+     * Size assumed for assets that contain no known data buffers.
+     */
+    protected static final long DEFAULT_ASSET_SIZE = 1024;
+
+    private static final int STRIPE_COUNT = 16;
+
+    /**
+     * Determines which asset is evicted when the budget is exceeded.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Evict the asset that was not used for the longest time.
+         */
+        LRU,
+        /**
+         * Evict the asset that was used the least often. Ties are broken by
+         * least recent use.
+         */
+        LFU
+    }
+
+    private static final class Entry {
+
+        final Object asset;
+        final long size;
+        long lastUse;
+        int uses;
+
+        Entry(Object asset, long size, long lastUse) {
+            this.asset = asset;
+            this.size = size;
+            this.lastUse = lastUse;
+            this.uses = 1;
+        }
+    }
+
+    private static final class Stripe {
+
+        final ReentrantLock lock = new ReentrantLock();
+        // iterated from the least recently used entry
+        final LinkedHashMap<AssetKey, Entry> entries = new LinkedHashMap<AssetKey, Entry>(16, 0.75f, true);
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong size = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private volatile long maxSize;
+    private volatile EvictionPolicy policy;
+
+    /**
+     * Creates a cache with the {@link #DEFAULT_MAX_SIZE default budget}
+     * and LRU eviction.
+     */
+    public BoundedAssetCache() {
+        this(DEFAULT_MAX_SIZE, EvictionPolicy.LRU);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxSize The budget in bytes
+     * @param policy The eviction policy
+     */
+    public BoundedAssetCache(long maxSize, EvictionPolicy policy) {
+        setMaxSize(maxSize);
+        setEvictionPolicy(policy);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Sets the budget of the cache. If the cached assets exceed the new
+     * budget, assets are evicted immediately.
+     *
+     * @param maxSize The budget in bytes
+     */
+    public void setMaxSize(long maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.maxSize = maxSize;
+        if (stripes[0] != null) {
+            evict(null);
+        }
+    }
+
+    /**
+     * @return The budget in bytes
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param policy The policy used for subsequent evictions
+     */
+    public void setEvictionPolicy(EvictionPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("policy cannot be null");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * @return The eviction policy
+     */
+    public EvictionPolicy getEvictionPolicy() {
+        return policy;
+    }
+
+    /**
+     * @return The estimated size in bytes of all cached assets
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return The number of cached assets
+     */
+    public int getAssetCount() {
+        int count = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                count += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of {@link #getFromCache(com.jme3.asset.AssetKey) }
+     * calls that found their asset
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return The number of {@link #getFromCache(com.jme3.asset.AssetKey) }
+     * calls that did not find their asset
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return The number of assets removed to stay within the budget
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    private Stripe getStripe(AssetKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return stripes[h & (STRIPE_COUNT - 1)];
+    }
+
+    public <T> void addToCache(AssetKey<T> key, T obj) {
+        long assetSize = estimateSize(obj);
+        if (assetSize > maxSize) {
+            deleteFromCache(key);
+            return;
+        }
+
+        Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            Entry old = stripe.entries.put(key, new Entry(obj, assetSize, clock.incrementAndGet()));
+            size.addAndGet(old != null ? assetSize - old.size : assetSize);
+        } finally {
+            stripe.lock.unlock();
+        }
+        evict(key);
+    }
+
+    public <T> void registerAssetClone(AssetKey<T> key, T clone) {
+    }
+
+    public void notifyNoAssetClone() {
+    }
+
+    public <T> T getFromCache(AssetKey<T> key) {
+        Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.get(key);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return null;
+            }
+            hits.incrementAndGet();
+            entry.lastUse = clock.incrementAndGet();
+            entry.uses++;
+            return (T) entry.asset;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public boolean deleteFromCache(AssetKey key) {
+        Stripe stripe = getStripe(key);
+        stripe.lock.lock();
+        try {
+            Entry entry = stripe.entries.remove(key);
+            if (entry == null) {
+                return false;
+            }
+            size.addAndGet(-entry.size);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void clearCache() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                for (Entry entry : stripe.entries.values()) {
+                    size.addAndGet(-entry.size);
+                }
+                stripe.entries.clear();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Evicts assets until the cache is within its budget.
+     * Only one stripe lock is held at a time.
+     *
+     * @param keep The key that was just added and must not be evicted,
+     * or null
+     */
+    private void evict(AssetKey keep) {
+        while (size.get() > maxSize) {
+            // find the victim among the candidates of every stripe
+            Stripe victimStripe = null;
+            AssetKey victimKey = null;
+            Entry victim = null;
+            for (Stripe stripe : stripes) {
+                stripe.lock.lock();
+                try {
+                    for (Map.Entry<AssetKey, Entry> e : stripe.entries.entrySet()) {
+                        if (e.getKey().equals(keep)) {
+                            continue;
+                        }
+                        if (victim == null || isBetterVictim(e.getValue(), victim)) {
+                            victimStripe = stripe;
+                            victimKey = e.getKey();
+                            victim = e.getValue();
+                        }
+                        if (policy == EvictionPolicy.LRU) {
+                            // the first entry is the least recently used
+                            break;
+                        }
+                    }
+                } finally {
+                    stripe.lock.unlock();
+                }
+            }
+
+            if (victim == null) {
+                return;
+            }
+
+            victimStripe.lock.lock();
+            try {
+                // may have been used or removed by another thread meanwhile
+                if (victimStripe.entries.get(victimKey) == victim
+                        && victimStripe.entries.remove(victimKey) != null) {
+                    size.addAndGet(-victim.size);
+                    evictions.incrementAndGet();
+                }
+            } finally {
+                victimStripe.lock.unlock();
+            }
+        }
+    }
+
+    private boolean isBetterVictim(Entry candidate, Entry victim) {
+        if (policy == EvictionPolicy.LFU && candidate.uses != victim.uses) {
+            return candidate.uses < victim.uses;
+        }
+        return candidate.lastUse < victim.lastUse;
+    }
+
+    /**
+     * Estimates the memory used by an asset. Images, textures, meshes,
+     * materials and spatials are measured by the size of their data
+     * buffers, buffers shared between several parts of the asset
+     * are counted once. Other assets, and assets without data, are assumed to be
+     * {@link #DEFAULT_ASSET_SIZE} bytes.
+     * <p>
+     * Subclasses may override this method to measure other asset types.
+     *
+     * @param asset The asset to measure
+     * @return The estimated size in bytes
+     */
+    protected long estimateSize(Object asset) {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        long assetSize = estimateSize(asset, visited);
+        return assetSize > 0 ? assetSize : DEFAULT_ASSET_SIZE;
+    }
+
+    private static long estimateSize(Object asset, final Set<Object> visited) {
+        if (asset == null || !visited.add(asset)) {
+            return 0;
+        }
+        if (asset instanceof Image) {
+            long total = 0;
+            if (((Image) asset).getData() != null) {
+                for (ByteBuffer data : ((Image) asset).getData()) {
+                    total += estimateSize(data, visited);
+                }
+            }
+            return total;
+        } else if (asset instanceof Texture) {
+            return estimateSize(((Texture) asset).getImage(), visited);
+        } else if (asset instanceof Mesh) {
+            long total = 0;
+            for (VertexBuffer vb : ((Mesh) asset).getBufferList()) {
+                total += estimateSize(vb.getData(), visited);
+            }
+            return total;
+        } else if (asset instanceof Material) {
+            long total = 0;
+            for (MatParam param : ((Material) asset).getParams()) {
+                if (param instanceof MatParamTexture) {
+                    total += estimateSize(((MatParamTexture) param).getTextureValue(), visited);
+                }
+            }
+            return total;
+        } else if (asset instanceof Spatial) {
+            final long[] total = new long[1];
+            ((Spatial) asset).depthFirstTraversal(new SceneGraphVisitor() {
+                public void visit(Spatial spatial) {
+                    if (spatial instanceof Geometry) {
+                        Geometry geom = (Geometry) spatial;
+                        total[0] += estimateSize(geom.getMesh(), visited);
+                        total[0] += estimateSize(geom.getMaterial(), visited);
+                    }
+                }
+            });
+            return total[0];
+        } else if (asset instanceof Buffer) {
+            Buffer buffer = (Buffer) asset;
+            if (buffer instanceof ByteBuffer) {
+                return buffer.capacity();
+            } else if (buffer instanceof ShortBuffer || buffer instanceof CharBuffer) {
+                return buffer.capacity() * 2L;
+            } else if (buffer instanceof LongBuffer || buffer instanceof DoubleBuffer) {
+                return buffer.capacity() * 8L;
+            } else {
+                return buffer.capacity() * 4L;
+            }
+        } else if (asset instanceof byte[]) {
+            return ((byte[]) asset).length;
+        } else if (asset instanceof String) {
+            return ((String) asset).length() * 2L;
+        }
+        return 0;
+    }
+}
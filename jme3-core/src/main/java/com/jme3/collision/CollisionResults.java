@@ -32,23 +32,102 @@
 package com.jme3.collision;
 
 import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 /**
  * <code>CollisionResults</code> is a collection returned as a result of a 
  * collision detection operation done by {@link Collidable}.
+ * <p>
+ * Results created with {@link #CollisionResults()} keep a list of
+ * {@link CollisionResult} objects. Results created with
+ * {@link #CollisionResults(com.jme3.collision.CollisionResults.Mode)} store
+ * the hits in primitive arrays instead: once the arrays have grown, adding
+ * hits does not allocate, and they are sorted by distance with a primitive
+ * sort. Their {@link CollisionResult} objects are views that are filled on
+ * access and reused, so changes made to them are not stored; use the
+ * indexed getters such as {@link #getDistance(int)} to avoid the views
+ * altogether. Keep such results around and {@link #clear() clear} them
+ * between queries.
  * 
  * @author Kirill Vainer
  */
 public class CollisionResults implements Iterable<CollisionResult> {
 
+    /**
+     * Which hits results with primitive storage keep.
+     */
+    public enum Mode {
+        /**
+         * Keeps every hit.
+         */
+        All,
+        /**
+         * Keeps only the closest hit.
+         */
+        Closest,
+        /**
+         * Keeps the first hit, after which {@link CollisionResults#isDone()}
+         * tells collision code to stop looking.
+         */
+        Any
+    }
+
     private ArrayList<CollisionResult> results = null, reusing = null;
     private boolean sorted = true;
     private int reuseIndex = 0;
 
+    // primitive storage, only used when mode is not null
+    private final Mode mode;
+    private int count;
+    // number of hits stored since the last clear, stamps mark when a slot was written
+    private int addCount;
+    private float[] distances;
+    private float[] points;
+    private float[] normals;
+    private int[] triangles;
+    private int[] stamps;
+    private Geometry[] geometries;
+    private int[] order;
+    private long[] sortKeys;
+    private CollisionResult[] views;
+    // contact point and normal of each view, kept while a slot has none
+    private Vector3f[] viewVectors;
+    private CollisionResult scratch;
+
+    /**
+     * Creates results that keep {@link CollisionResult} objects.
+     */
+    public CollisionResults() {
+        this.mode = null;
+    }
+
+    /**
+     * Creates results that store hits in primitive arrays.
+     *
+     * @param mode which hits to keep
+     */
+    public CollisionResults(Mode mode) {
+        if (mode == null) {
+            throw new IllegalArgumentException("mode cannot be null");
+        }
+        this.mode = mode;
+        allocate(4);
+    }
+
+    /**
+     * @return the mode of primitive storage, or null if the results keep
+     * {@link CollisionResult} objects
+     */
+    public Mode getMode() {
+        return mode;
+    }
+
     /**
      * Clears all collision results added to this list
      */
@@ -57,6 +136,22 @@ public class CollisionResults implements Iterable<CollisionResult> {
         if (results != null) {
             results.clear();
         }
+        if (mode != null) {
+            Arrays.fill(geometries, 0, count, null);
+            count = 0;
+            addCount = 0;
+            sorted = true;
+        }
+    }
+
+    /**
+     * Tells collision code that no more hits are needed, which is the case
+     * for {@link Mode#Any} results holding a hit.
+     *
+     * @return true if collision code can stop looking for hits
+     */
+    public boolean isDone() {
+        return mode == Mode.Any && count > 0;
     }
 
     /**
@@ -65,6 +160,11 @@ public class CollisionResults implements Iterable<CollisionResult> {
      * @return the iterator
      */
     public Iterator<CollisionResult> iterator() {
+        if (mode != null) {
+            sort();
+            return new ViewIterator();
+        }
+
         if (results == null) {
             List<CollisionResult> dumbCompiler = Collections.emptyList();            
             return dumbCompiler.iterator();
@@ -78,8 +178,26 @@ public class CollisionResults implements Iterable<CollisionResult> {
         return results.iterator();
     }
 
+    /**
+     * Adds a collision, reusing a previously cleared
+     * <code>CollisionResult</code> when possible.
+     * <p>
+     * With primitive storage the returned object only holds a copy of the
+     * values, changing it has no effect; use
+     * {@link #addCollision(com.jme3.math.Vector3f, com.jme3.math.Vector3f, float, int)}
+     * to pass a normal or triangle index.
+     */
     public CollisionResult addReusedCollision(float pX, float pY, float pZ,
                                    float distance) {
+        if (mode != null) {
+            store(pX, pY, pZ, Float.NaN, 0f, 0f, distance, 0, null);
+            if (scratch == null) {
+                scratch = new CollisionResult(new Vector3f(), 0f);
+            }
+            scratch.getContactPoint().set(pX, pY, pZ);
+            scratch.setDistance(distance);
+            return scratch;
+        }
         if( results == null ) {
             results = new ArrayList<CollisionResult>();
         }
@@ -100,8 +218,48 @@ public class CollisionResults implements Iterable<CollisionResult> {
         reuseIndex++;
         return reuse;
     }
+
+    /**
+     * Adds a collision, copying the given values.
+     *
+     * @param contactPoint the contact point
+     * @param contactNormal the contact normal, or null
+     * @param distance the distance of the contact
+     * @param triangleIndex the index of the triangle that was hit
+     */
+    public void addCollision(Vector3f contactPoint, Vector3f contactNormal,
+                             float distance, int triangleIndex) {
+        if (mode != null) {
+            if (contactNormal != null) {
+                store(contactPoint.x, contactPoint.y, contactPoint.z,
+                      contactNormal.x, contactNormal.y, contactNormal.z, distance, triangleIndex, null);
+            } else {
+                store(contactPoint.x, contactPoint.y, contactPoint.z,
+                      Float.NaN, 0f, 0f, distance, triangleIndex, null);
+            }
+            return;
+        }
+        CollisionResult cr = addReusedCollision(contactPoint.x, contactPoint.y, contactPoint.z, distance);
+        if (contactNormal == null) {
+            cr.setContactNormal(null);
+        } else if (cr.getContactNormal() == null) {
+            cr.setContactNormal(contactNormal.clone());
+        } else {
+            cr.getContactNormal().set(contactNormal);
+        }
+        cr.setTriangleIndex(triangleIndex);
+        cr.setGeometry(null);
+    }
     
     public void addCollision(CollisionResult result){
+        if (mode != null) {
+            Vector3f p = result.getContactPoint();
+            Vector3f n = result.getContactNormal();
+            store(p != null ? p.x : Float.NaN, p != null ? p.y : 0f, p != null ? p.z : 0f,
+                  n != null ? n.x : Float.NaN, n != null ? n.y : 0f, n != null ? n.z : 0f,
+                  result.getDistance(), result.getTriangleIndex(), result.getGeometry());
+            return;
+        }
         if (results == null) {
             results = new ArrayList<CollisionResult>();
         }
@@ -110,6 +268,9 @@ public class CollisionResults implements Iterable<CollisionResult> {
     }
 
     public int size(){
+        if (mode != null) {
+            return count;
+        }
         if (results == null) {
             return 0;
         }
@@ -117,9 +278,13 @@ public class CollisionResults implements Iterable<CollisionResult> {
     }
 
     public CollisionResult getClosestCollision(){
-        if (results == null || size() == 0)
+        if (size() == 0)
             return null;
 
+        if (mode != null) {
+            return getCollision(0);
+        }
+
         if (!sorted){
             Collections.sort(results);
             sorted = true;
@@ -129,9 +294,13 @@ public class CollisionResults implements Iterable<CollisionResult> {
     }
 
     public CollisionResult getFarthestCollision(){
-        if (results == null || size() == 0)
+        if (size() == 0)
             return null;
 
+        if (mode != null) {
+            return getCollision(count - 1);
+        }
+
         if (!sorted){
             Collections.sort(results);
             sorted = true;
@@ -141,6 +310,10 @@ public class CollisionResults implements Iterable<CollisionResult> {
     }
 
     public CollisionResult getCollision(int index){
+        if (mode != null) {
+            return view(index, slot(index));
+        }
+
         if (results == null) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
         }
@@ -159,17 +332,261 @@ public class CollisionResults implements Iterable<CollisionResult> {
      * @return
      */
     public CollisionResult getCollisionDirect(int index){
+        if (mode != null) {
+            checkIndex(index);
+            return view(index, index);
+        }
         if (results == null) {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: 0");
         }
         return results.get(index);
     }
 
+    /**
+     * @param index the index of the collision, sorted by distance
+     * @return the distance of the collision
+     */
+    public float getDistance(int index) {
+        if (mode != null) {
+            return distances[slot(index)];
+        }
+        return getCollision(index).getDistance();
+    }
+
+    /**
+     * @param index the index of the collision, sorted by distance
+     * @return the index of the triangle that was hit
+     */
+    public int getTriangleIndex(int index) {
+        if (mode != null) {
+            return triangles[slot(index)];
+        }
+        return getCollision(index).getTriangleIndex();
+    }
+
+    /**
+     * @param index the index of the collision, sorted by distance
+     * @return the geometry that was hit, or null
+     */
+    public Geometry getGeometry(int index) {
+        if (mode != null) {
+            return geometries[slot(index)];
+        }
+        return getCollision(index).getGeometry();
+    }
+
+    /**
+     * @param index the index of the collision, sorted by distance
+     * @param store where to store the contact point
+     * @return <code>store</code>, or null if the collision has no contact
+     * point
+     */
+    public Vector3f getContactPoint(int index, Vector3f store) {
+        if (mode != null) {
+            return get(points, slot(index), store);
+        }
+        Vector3f point = getCollision(index).getContactPoint();
+        return point != null ? store.set(point) : null;
+    }
+
+    /**
+     * @param index the index of the collision, sorted by distance
+     * @param store where to store the contact normal
+     * @return <code>store</code>, or null if the collision has no contact
+     * normal
+     */
+    public Vector3f getContactNormal(int index, Vector3f store) {
+        if (mode != null) {
+            return get(normals, slot(index), store);
+        }
+        Vector3f normal = getCollision(index).getContactNormal();
+        return normal != null ? store.set(normal) : null;
+    }
+
+    /**
+     * Internal use only. Marks the current end of the results, see
+     * {@link #setGeometrySince(int, com.jme3.scene.Geometry)}.
+     *
+     * @return the mark
+     */
+    public int getMark() {
+        return mode != null ? addCount : size();
+    }
+
+    /**
+     * Internal use only. Sets the geometry of every collision added since
+     * the mark was taken.
+     */
+    public void setGeometrySince(int mark, Geometry geometry) {
+        if (mode == null) {
+            for (int i = mark; i < size(); i++) {
+                results.get(i).setGeometry(geometry);
+            }
+            return;
+        }
+        for (int i = firstSince(mark); i < count; i++) {
+            geometries[i] = geometry;
+        }
+    }
+
+    /**
+     * Internal use only. Sets the triangle index of every collision added
+     * since the mark was taken.
+     */
+    public void setTriangleIndexSince(int mark, int triangleIndex) {
+        if (mode == null) {
+            for (int i = mark; i < size(); i++) {
+                results.get(i).setTriangleIndex(triangleIndex);
+            }
+            return;
+        }
+        for (int i = firstSince(mark); i < count; i++) {
+            triangles[i] = triangleIndex;
+        }
+    }
+
+    /**
+     * Finds the first slot written since the mark was taken. Slots are only
+     * appended in All mode, so the stamps grow with the slot and the walk
+     * stops at the first older hit. The other modes keep at most one slot.
+     */
+    private int firstSince(int mark) {
+        int i = count;
+        while (i > 0 && stamps[i - 1] >= mark) {
+            i--;
+        }
+        return i;
+    }
+
+    private void allocate(int capacity) {
+        distances = new float[capacity];
+        points = new float[capacity * 3];
+        normals = new float[capacity * 3];
+        triangles = new int[capacity];
+        stamps = new int[capacity];
+        geometries = new Geometry[capacity];
+        order = new int[capacity];
+        sortKeys = new long[capacity];
+        views = new CollisionResult[capacity];
+        viewVectors = new Vector3f[capacity * 2];
+    }
+
+    private void grow() {
+        int capacity = distances.length * 2;
+        distances = Arrays.copyOf(distances, capacity);
+        points = Arrays.copyOf(points, capacity * 3);
+        normals = Arrays.copyOf(normals, capacity * 3);
+        triangles = Arrays.copyOf(triangles, capacity);
+        stamps = Arrays.copyOf(stamps, capacity);
+        geometries = Arrays.copyOf(geometries, capacity);
+        order = Arrays.copyOf(order, capacity);
+        sortKeys = Arrays.copyOf(sortKeys, capacity);
+        views = Arrays.copyOf(views, capacity);
+        viewVectors = Arrays.copyOf(viewVectors, capacity * 2);
+    }
+
+    /**
+     * Stores a hit according to the mode, NaN as first coordinate stands
+     * for a null vector.
+     */
+    private void store(float pX, float pY, float pZ, float nX, float nY, float nZ,
+                       float distance, int triangleIndex, Geometry geometry) {
+        int slot;
+        if (mode == Mode.All) {
+            if (count == distances.length) {
+                grow();
+            }
+            slot = count++;
+            sorted = false;
+        } else if (count == 0 || (mode == Mode.Closest && Float.compare(distance, distances[0]) < 0)) {
+            slot = 0;
+            count = 1;
+            order[0] = 0;
+        } else {
+            return;
+        }
+        distances[slot] = distance;
+        points[slot * 3] = pX;
+        points[slot * 3 + 1] = pY;
+        points[slot * 3 + 2] = pZ;
+        normals[slot * 3] = nX;
+        normals[slot * 3 + 1] = nY;
+        normals[slot * 3 + 2] = nZ;
+        triangles[slot] = triangleIndex;
+        geometries[slot] = geometry;
+        stamps[slot] = addCount++;
+    }
+
+    /**
+     * Sorts the slots by distance. The keys hold the distance bits, mapped
+     * so that they order like {@link Float#compare(float, float)}, above the
+     * slot, which keeps hits at the same distance in the order they were
+     * added.
+     */
+    private void sort() {
+        if (sorted) {
+            return;
+        }
+        for (int i = 0; i < count; i++) {
+            int bits = Float.floatToIntBits(distances[i]);
+            bits ^= (bits >> 31) & 0x7fffffff;
+            sortKeys[i] = ((long) bits << 32) | i;
+        }
+        Arrays.sort(sortKeys, 0, count);
+        for (int i = 0; i < count; i++) {
+            order[i] = (int) sortKeys[i];
+        }
+        sorted = true;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+    }
+
+    private int slot(int index) {
+        checkIndex(index);
+        sort();
+        return order[index];
+    }
+
+    private static Vector3f get(float[] array, int slot, Vector3f store) {
+        float x = array[slot * 3];
+        if (Float.isNaN(x)) {
+            return null;
+        }
+        return store.set(x, array[slot * 3 + 1], array[slot * 3 + 2]);
+    }
+
+    /**
+     * Fills the reused view at <code>index</code> with a slot.
+     */
+    private CollisionResult view(int index, int slot) {
+        CollisionResult view = views[index];
+        if (view == null) {
+            view = new CollisionResult();
+            views[index] = view;
+            viewVectors[index * 2] = new Vector3f();
+            viewVectors[index * 2 + 1] = new Vector3f();
+        }
+        view.setContactPoint(get(points, slot, viewVectors[index * 2]));
+        view.setContactNormal(get(normals, slot, viewVectors[index * 2 + 1]));
+        view.setDistance(distances[slot]);
+        view.setTriangleIndex(triangles[slot]);
+        view.setGeometry(geometries[slot]);
+        return view;
+    }
+
     @Override
     public String toString(){
         StringBuilder sb = new StringBuilder();
         sb.append("CollisionResults[");
-        if (results != null) {
+        if (mode != null) {
+            for (int i = 0; i < count; i++) {
+                sb.append(i > 0 ? ", " : "").append(getCollision(i));
+            }
+        } else if (results != null) {
             for (CollisionResult result : results){
                 sb.append(result).append(", ");
             }
@@ -181,4 +598,27 @@ public class CollisionResults implements Iterable<CollisionResult> {
         return sb.toString();
     }
 
+    /**
+     * Iterates over the views of results with primitive storage.
+     */
+    private class ViewIterator implements Iterator<CollisionResult> {
+
+        private int index;
+
+        public boolean hasNext() {
+            return index < count;
+        }
+
+        public CollisionResult next() {
+            if (index >= count) {
+                throw new NoSuchElementException();
+            }
+            int i = index++;
+            return view(i, order[i]);
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
 }
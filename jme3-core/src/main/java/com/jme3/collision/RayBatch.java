@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.bih.BIHRayPacket;
+import com.jme3.collision.bih.BIHTree;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.CollisionData;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import java.nio.FloatBuffer;
+import java.util.List;
+
+/**
+ * Finds the nearest hit of many rays against a scene at once.
+ * <p>
+ * Rays are grouped in packets of {@link BIHRayPacket#MAX_SIZE} consecutive
+ * rays. A packet walks the scene graph once, skipping spatials whose world
+ * bound none of its rays reach, and traverses the {@link BIHTree} of each
+ * mesh as a whole. Results go into primitive arrays supplied by the caller:
+ * the distance, triangle index and geometry of the nearest hit of each ray.
+ * Once the internal buffers have grown, a query does not allocate.
+ * <p>
+ * Order the rays so that neighbours are coherent, for example a fan of line
+ * of sight rays sorted by angle. A <code>RayBatch</code> is not thread safe;
+ * use one per thread. Like {@link Spatial#collideWith(com.jme3.collision.Collidable,
+ * com.jme3.collision.CollisionResults) }, the world transforms and bounds
+ * of the scene are updated on demand.
+ *
+ * @author jMonkeyEngine
+ */
+public class RayBatch {
+
+    private final BIHRayPacket packet = new BIHRayPacket();
+    private final Matrix4f inverse = new Matrix4f();
+    private final Vector3f origin = new Vector3f();
+    private final Vector3f direction = new Vector3f();
+    private final float[] box = new float[6];
+
+    // fallback for collision data other than BIHTree
+    private final Ray ray = new Ray();
+    private final CollisionResults results = new CollisionResults();
+
+    private float[] bufferOrigins = new float[0];
+    private float[] bufferDirections = new float[0];
+
+    // the current query
+    private float[] origins;
+    private float[] directions;
+    private float[] distances;
+    private int[] triangles;
+    private Geometry[] geometries;
+
+    /**
+     * Finds the nearest hit of each ray.
+     * <p>
+     * Ray <code>i</code> starts at <code>origins[i * 3]</code> to
+     * <code>origins[i * 3 + 2]</code> and points along the same elements of
+     * <code>directions</code>. Distances are measured in multiples of the
+     * direction length, so use unit directions to get world distances.
+     *
+     * @param scene the spatial to collide with
+     * @param origins the ray origins in world space, x, y, z per ray
+     * @param directions the ray directions in world space, x, y, z per ray
+     * @param count the number of rays
+     * @param distances on input the maximum distance of each ray
+     * (use {@link Float#POSITIVE_INFINITY} for no limit), on output the
+     * distance of its nearest hit
+     * @param triangles receives the triangle index of the nearest hit of
+     * each ray, or -1
+     * @param geometries receives the geometry of the nearest hit of each
+     * ray, or null
+     * @return the number of rays that hit something
+     */
+    public int collideWith(Spatial scene, float[] origins, float[] directions, int count,
+            float[] distances, int[] triangles, Geometry[] geometries) {
+        if (origins.length < count * 3 || directions.length < count * 3) {
+            throw new IllegalArgumentException("Not enough origins or directions for " + count + " rays");
+        }
+        if (distances.length < count || triangles.length < count || geometries.length < count) {
+            throw new IllegalArgumentException("Output arrays are smaller than " + count);
+        }
+        this.origins = origins;
+        this.directions = directions;
+        this.distances = distances;
+        this.triangles = triangles;
+        this.geometries = geometries;
+        try {
+            for (int i = 0; i < count; i++) {
+                triangles[i] = -1;
+                geometries[i] = null;
+            }
+            for (int start = 0; start < count; start += BIHRayPacket.MAX_SIZE) {
+                collidePacket(scene, start, Math.min(BIHRayPacket.MAX_SIZE, count - start));
+            }
+            int hits = 0;
+            for (int i = 0; i < count; i++) {
+                if (geometries[i] != null) {
+                    hits++;
+                }
+            }
+            return hits;
+        } finally {
+            this.origins = null;
+            this.directions = null;
+            this.distances = null;
+            this.triangles = null;
+            this.geometries = null;
+        }
+    }
+
+    /**
+     * Finds the nearest hit of each ray, reading the rays from buffers.
+     * The rays start at the current position of each buffer, which is left
+     * unchanged.
+     *
+     * @see #collideWith(com.jme3.scene.Spatial, float[], float[], int, float[], int[], com.jme3.scene.Geometry[])
+     */
+    public int collideWith(Spatial scene, FloatBuffer origins, FloatBuffer directions, int count,
+            float[] distances, int[] triangles, Geometry[] geometries) {
+        int length = count * 3;
+        if (origins.remaining() < length || directions.remaining() < length) {
+            throw new IllegalArgumentException("Not enough origins or directions for " + count + " rays");
+        }
+        if (bufferOrigins.length < length) {
+            bufferOrigins = new float[length];
+            bufferDirections = new float[length];
+        }
+        int o = origins.position();
+        int d = directions.position();
+        for (int i = 0; i < length; i++) {
+            bufferOrigins[i] = origins.get(o + i);
+            bufferDirections[i] = directions.get(d + i);
+        }
+        return collideWith(scene, bufferOrigins, bufferDirections, count, distances, triangles, geometries);
+    }
+
+    private void collidePacket(Spatial spatial, int start, int size) {
+        BoundingVolume bound = spatial.getWorldBound();
+        if (bound != null && !reachesBound(bound, start, size)) {
+            return;
+        }
+        if (spatial instanceof Node) {
+            List<Spatial> children = ((Node) spatial).getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                collidePacket(children.get(i), start, size);
+            }
+        } else if (spatial instanceof Geometry && bound != null) {
+            collideGeometry((Geometry) spatial, start, size);
+        }
+    }
+
+    private void collideGeometry(Geometry geometry, int start, int size) {
+        Mesh mesh = geometry.getMesh();
+        if (mesh == null || mesh.getVertexCount() == 0) {
+            return;
+        }
+        geometry.computeWorldMatrix();
+        CollisionData data = mesh.getCollisionData();
+
+        if (!(data instanceof BIHTree)) {
+            for (int i = start; i < start + size; i++) {
+                ray.setOrigin(origin.set(origins[i * 3], origins[i * 3 + 1], origins[i * 3 + 2]));
+                ray.setDirection(direction.set(directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2]));
+                ray.setLimit(distances[i]);
+                results.clear();
+                geometry.collideWith(ray, results);
+                if (results.size() > 0) {
+                    CollisionResult closest = results.getClosestCollision();
+                    if (closest.getDistance() < distances[i]) {
+                        distances[i] = closest.getDistance();
+                        triangles[i] = closest.getTriangleIndex();
+                        geometries[i] = geometry;
+                    }
+                }
+            }
+            return;
+        }
+
+        // parameters along the rays are kept by the affine transform, so
+        // local hit distances are world distances
+        inverse.set(geometry.getWorldMatrix()).invertLocal();
+        packet.clear();
+        for (int i = start; i < start + size; i++) {
+            origin.set(origins[i * 3], origins[i * 3 + 1], origins[i * 3 + 2]);
+            direction.set(directions[i * 3], directions[i * 3 + 1], directions[i * 3 + 2]);
+            inverse.mult(origin, origin);
+            inverse.multNormal(direction, direction);
+            packet.add(origin, direction, distances[i]);
+        }
+        if (((BIHTree) data).collideWithPacket(packet) == 0) {
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            int triangle = packet.getTriangleIndex(i);
+            if (triangle >= 0) {
+                distances[start + i] = packet.getDistance(i);
+                triangles[start + i] = triangle;
+                geometries[start + i] = geometry;
+            }
+        }
+    }
+
+    /**
+     * Tests whether any ray of the packet reaches the box around the bound
+     * before its current nearest hit.
+     */
+    private boolean reachesBound(BoundingVolume bound, int start, int size) {
+        Vector3f center = bound.getCenter();
+        float ex, ey, ez;
+        if (bound instanceof BoundingBox) {
+            BoundingBox bbox = (BoundingBox) bound;
+            ex = bbox.getXExtent();
+            ey = bbox.getYExtent();
+            ez = bbox.getZExtent();
+        } else if (bound instanceof BoundingSphere) {
+            ex = ey = ez = ((BoundingSphere) bound).getRadius();
+        } else {
+            return true;
+        }
+        box[0] = center.x - ex;
+        box[1] = center.y - ey;
+        box[2] = center.z - ez;
+        box[3] = center.x + ex;
+        box[4] = center.y + ey;
+        box[5] = center.z + ez;
+
+        rays:
+        for (int i = start; i < start + size; i++) {
+            float near = 0f;
+            float far = distances[i];
+            for (int a = 0; a < 3; a++) {
+                float o = origins[i * 3 + a];
+                float d = directions[i * 3 + a];
+                if (d == 0f) {
+                    if (o < box[a] || o > box[a + 3]) {
+                        continue rays;
+                    }
+                    continue;
+                }
+                float inv = 1f / d;
+                float t1 = (box[a] - o) * inv;
+                float t2 = (box[a + 3] - o) * inv;
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+                if (near > far) {
+                    continue rays;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
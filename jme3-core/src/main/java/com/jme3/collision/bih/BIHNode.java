@@ -33,9 +33,9 @@ package com.jme3.collision.bih;
 
 import com.jme3.bounding.BoundingBox;
 import com.jme3.collision.Collidable;
-import com.jme3.collision.CollisionResult;
 import com.jme3.collision.CollisionResults;
 import com.jme3.export.*;
+import com.jme3.math.FastMath;
 import com.jme3.math.Matrix4f;
 import com.jme3.math.Ray;
 import com.jme3.math.Triangle;
@@ -111,6 +111,21 @@ public final class BIHNode implements Savable {
         this.rightPlane = rightPlane;
     }
 
+    /**
+     * @return the split axis, or 3 for a leaf
+     */
+    int getAxis() {
+        return axis;
+    }
+
+    int getLeftIndex() {
+        return leftIndex;
+    }
+
+    int getRightIndex() {
+        return rightIndex;
+    }
+
     public void write(JmeExporter ex) throws IOException {
         OutputCapsule oc = ex.getCapsule(this);
         oc.write(leftIndex, "left_index", 0);
@@ -222,18 +237,15 @@ public final class BIHNode implements Savable {
                     worldMatrix.mult(t.get3(), t.get3());
                 }
 
+                int mark = results.getMark();
                 int added = col.collideWith(t, results);
 
                 if (added > 0) {
-                    int index = tree.getTriangleIndex(i);
-                    int start = results.size() - added;
-
-                    for (int j = start; j < results.size(); j++) {
-                        CollisionResult cr = results.getCollisionDirect(j);
-                        cr.setTriangleIndex(index);
-                    }
-
+                    results.setTriangleIndexSince(mark, tree.getTriangleIndex(i));
                     cols += added;
+                    if (results.isDone()) {
+                        break stackloop;
+                    }
                 }
             }
         }
@@ -292,9 +304,7 @@ public final class BIHNode implements Savable {
                 if (t < tHit) {
                     tHit = t;
                     vars.vect4.set(r.direction).multLocal(tHit).addLocal(r.origin);
-                    CollisionResult cr = results.addReusedCollision(vars.vect4.x, vars.vect4.y, vars.vect4.z, tHit);                    
-                    cr.setTriangleIndex(tree.getTriangleIndex(i));
-                    results.addCollision(cr);
+                    results.addCollision(vars.vect4, null, tHit, tree.getTriangleIndex(i));
                     cols++;
                 }
             }
@@ -440,19 +450,17 @@ public final class BIHNode implements Savable {
                         t = t_world;
                     }
 
-                    Vector3f contactPoint = vars.vect4.set(d).multLocal(t).addLocal(o);
+                    Vector3f contactNormal = Triangle.computeTriangleNormal(v1, v2, v3, vars.vect7);
+                    Vector3f contactPoint = vars.vect6.set(d).multLocal(t).addLocal(o);
                     float worldSpaceDist = o.distance(contactPoint);
 
                     // don't add the collision if it is longer than the ray length
                     if( worldSpaceDist <= r.limit ) {
-                        CollisionResult cr = results.addReusedCollision(contactPoint.x, contactPoint.y, contactPoint.z, worldSpaceDist);
-                        if( cr.getContactNormal() == null ) {
-                            cr.setContactNormal(Triangle.computeTriangleNormal(v1, v2, v3, null));
-                        } else {
-                            Triangle.computeTriangleNormal(v1, v2, v3, cr.getContactNormal()); 
-                        }
-                        cr.setTriangleIndex(tree.getTriangleIndex(i));
+                        results.addCollision(contactPoint, contactNormal, worldSpaceDist, tree.getTriangleIndex(i));
                         cols++;
+                        if (results.isDone()) {
+                            break stackloop;
+                        }
                     }
                 }
             }
@@ -463,4 +471,189 @@ public final class BIHNode implements Savable {
 
         return cols;
     }
+
+    /**
+     * Traverses the subtree with all rays of the packet at once, keeping
+     * the nearest hit of each ray. A child is visited when any ray reaches
+     * it and every triangle of a visited leaf is set up once for the whole
+     * packet. The start interval of each ray is read from
+     * <code>packet.nodeMin</code> and <code>packet.nodeMax</code>.
+     */
+    public final int intersectPacket(BIHRayPacket packet, BIHTree tree) {
+        int n = packet.size;
+
+        float[] far = packet.distance;
+        int[] hits = packet.triangle;
+        float[] tMin = packet.nodeMin, tMax = packet.nodeMax;
+        float[] lMin = packet.leftMin, lMax = packet.leftMax;
+        float[] rMin = packet.rightMin, rMax = packet.rightMax;
+        float[] ox = packet.origin[0], oy = packet.origin[1], oz = packet.origin[2];
+        float[] dx = packet.direction[0], dy = packet.direction[1], dz = packet.direction[2];
+
+        int sp = 0;
+        BIHNode node = this;
+        while (node != null) {
+            while (node.axis != 3) {
+                float[] o = packet.origin[node.axis];
+                float[] inv = packet.invDirection[node.axis];
+                float leftPlane = node.leftPlane;
+                float rightPlane = node.rightPlane;
+                boolean anyLeft = false, anyRight = false;
+                int leftFirst = 0;
+
+                for (int i = 0; i < n; i++) {
+                    float lo = tMin[i];
+                    float hi = Math.min(tMax[i], far[i]);
+                    lMin[i] = rMin[i] = Float.POSITIVE_INFINITY;
+                    lMax[i] = rMax[i] = Float.NEGATIVE_INFINITY;
+                    if (lo > hi) {
+                        continue;
+                    }
+                    // left child holds points <= leftPlane, right child >= rightPlane
+                    if (inv[i] > 0f) {
+                        lMin[i] = lo;
+                        lMax[i] = Math.min(hi, (leftPlane - o[i]) * inv[i]);
+                        rMin[i] = Math.max(lo, (rightPlane - o[i]) * inv[i]);
+                        rMax[i] = hi;
+                        leftFirst++;
+                    } else if (inv[i] < 0f) {
+                        lMin[i] = Math.max(lo, (leftPlane - o[i]) * inv[i]);
+                        lMax[i] = hi;
+                        rMin[i] = lo;
+                        rMax[i] = Math.min(hi, (rightPlane - o[i]) * inv[i]);
+                        leftFirst--;
+                    } else {
+                        if (o[i] <= leftPlane) {
+                            lMin[i] = lo;
+                            lMax[i] = hi;
+                        }
+                        if (o[i] >= rightPlane) {
+                            rMin[i] = lo;
+                            rMax[i] = hi;
+                        }
+                    }
+                    anyLeft |= lMin[i] <= lMax[i];
+                    anyRight |= rMin[i] <= rMax[i];
+                }
+
+                float[] tmp;
+                if (anyLeft && anyRight) {
+                    if (sp == packet.stackNode.length) {
+                        packet.growStack(sp * 2);
+                    }
+                    // visit the child most rays reach first, push the other
+                    if (leftFirst >= 0) {
+                        tmp = packet.stackMin[sp]; packet.stackMin[sp] = rMin; rMin = tmp;
+                        tmp = packet.stackMax[sp]; packet.stackMax[sp] = rMax; rMax = tmp;
+                        packet.stackNode[sp++] = node.right;
+                        tmp = tMin; tMin = lMin; lMin = tmp;
+                        tmp = tMax; tMax = lMax; lMax = tmp;
+                        node = node.left;
+                    } else {
+                        tmp = packet.stackMin[sp]; packet.stackMin[sp] = lMin; lMin = tmp;
+                        tmp = packet.stackMax[sp]; packet.stackMax[sp] = lMax; lMax = tmp;
+                        packet.stackNode[sp++] = node.left;
+                        tmp = tMin; tMin = rMin; rMin = tmp;
+                        tmp = tMax; tMax = rMax; rMax = tmp;
+                        node = node.right;
+                    }
+                } else if (anyLeft) {
+                    tmp = tMin; tMin = lMin; lMin = tmp;
+                    tmp = tMax; tMax = lMax; lMax = tmp;
+                    node = node.left;
+                } else if (anyRight) {
+                    tmp = tMin; tMin = rMin; rMin = tmp;
+                    tmp = tMax; tMax = rMax; rMax = tmp;
+                    node = node.right;
+                } else {
+                    node = null;
+                    break;
+                }
+            }
+
+            if (node != null) {
+                // a leaf, same test as Ray.intersects(Vector3f, Vector3f, Vector3f)
+                Vector3f v0 = packet.v0, v1 = packet.v1, v2 = packet.v2;
+                for (int k = node.leftIndex; k <= node.rightIndex; k++) {
+                    tree.getTriangle(k, v0, v1, v2);
+                    float v0x = v0.x, v0y = v0.y, v0z = v0.z;
+                    float edge1X = v1.x - v0x;
+                    float edge1Y = v1.y - v0y;
+                    float edge1Z = v1.z - v0z;
+                    float edge2X = v2.x - v0x;
+                    float edge2Y = v2.y - v0y;
+                    float edge2Z = v2.z - v0z;
+                    float normX = ((edge1Y * edge2Z) - (edge1Z * edge2Y));
+                    float normY = ((edge1Z * edge2X) - (edge1X * edge2Z));
+                    float normZ = ((edge1X * edge2Y) - (edge1Y * edge2X));
+
+                    for (int i = 0; i < n; i++) {
+                        if (tMin[i] > Math.min(tMax[i], far[i])) {
+                            continue;
+                        }
+                        float dirDotNorm = dx[i] * normX + dy[i] * normY + dz[i] * normZ;
+                        float sign;
+                        if (dirDotNorm > FastMath.FLT_EPSILON) {
+                            sign = 1f;
+                        } else if (dirDotNorm < -FastMath.FLT_EPSILON) {
+                            sign = -1f;
+                            dirDotNorm = -dirDotNorm;
+                        } else {
+                            continue;
+                        }
+
+                        float diffX = ox[i] - v0x;
+                        float diffY = oy[i] - v0y;
+                        float diffZ = oz[i] - v0z;
+                        float dirDotDiffxEdge2 = sign * (dx[i] * ((diffY * edge2Z) - (diffZ * edge2Y))
+                                + dy[i] * ((diffZ * edge2X) - (diffX * edge2Z))
+                                + dz[i] * ((diffX * edge2Y) - (diffY * edge2X)));
+                        if (dirDotDiffxEdge2 < 0f) {
+                            continue;
+                        }
+                        float dirDotEdge1xDiff = sign * (dx[i] * ((edge1Y * diffZ) - (edge1Z * diffY))
+                                + dy[i] * ((edge1Z * diffX) - (edge1X * diffZ))
+                                + dz[i] * ((edge1X * diffY) - (edge1Y * diffX)));
+                        if (dirDotEdge1xDiff < 0f || dirDotDiffxEdge2 + dirDotEdge1xDiff > dirDotNorm) {
+                            continue;
+                        }
+                        float diffDotNorm = -sign * (diffX * normX + diffY * normY + diffZ * normZ);
+                        if (diffDotNorm < 0f) {
+                            continue;
+                        }
+                        float t = diffDotNorm * (1f / dirDotNorm);
+                        if (t < far[i]) {
+                            far[i] = t;
+                            hits[i] = tree.getTriangleIndex(k);
+                        }
+                    }
+                }
+            }
+
+            if (sp == 0) {
+                break;
+            }
+            sp--;
+            float[] tmp = tMin; tMin = packet.stackMin[sp]; packet.stackMin[sp] = tmp;
+            tmp = tMax; tMax = packet.stackMax[sp]; packet.stackMax[sp] = tmp;
+            node = packet.stackNode[sp];
+            packet.stackNode[sp] = null;
+        }
+
+        // the scratch arrays were swapped around, hand them back
+        packet.nodeMin = tMin;
+        packet.nodeMax = tMax;
+        packet.leftMin = lMin;
+        packet.leftMax = lMax;
+        packet.rightMin = rMin;
+        packet.rightMax = rMax;
+
+        int hitCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (hits[i] >= 0) {
+                hitCount++;
+            }
+        }
+        return hitCount;
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.math.Vector3f;
+import java.util.Arrays;
+
+/**
+ * A group of up to {@link #MAX_SIZE} rays that traverse a {@link BIHTree}
+ * together, see {@link BIHTree#collideWithPacket(com.jme3.collision.bih.BIHRayPacket) }.
+ * <p>
+ * Rays are given in the local space of the mesh. Each ray keeps only its
+ * nearest hit, so the packet also holds the traversal stack and never
+ * allocates while a query runs. Packets work best when their rays are
+ * coherent, for example neighbours in a fan of line of sight rays.
+ * A packet is not thread safe; use one per thread.
+ *
+ * @author jMonkeyEngine
+ */
+public final class BIHRayPacket {
+
+    /**
+     * Maximum number of rays in a packet.
+     */
+    public static final int MAX_SIZE = 16;
+
+    int size;
+    final float[][] origin = new float[3][MAX_SIZE];
+    final float[][] direction = new float[3][MAX_SIZE];
+    /**
+     * Inverse of the direction, 0 on axes where the ray is parallel.
+     */
+    final float[][] invDirection = new float[3][MAX_SIZE];
+    /**
+     * Maximum distance of each ray, shrinks to the nearest hit.
+     */
+    final float[] distance = new float[MAX_SIZE];
+    final int[] triangle = new int[MAX_SIZE];
+
+    // traversal scratch, the arrays are swapped around while traversing
+    float[] nodeMin = new float[MAX_SIZE];
+    float[] nodeMax = new float[MAX_SIZE];
+    float[] leftMin = new float[MAX_SIZE];
+    float[] leftMax = new float[MAX_SIZE];
+    float[] rightMin = new float[MAX_SIZE];
+    float[] rightMax = new float[MAX_SIZE];
+    final Vector3f v0 = new Vector3f();
+    final Vector3f v1 = new Vector3f();
+    final Vector3f v2 = new Vector3f();
+    BIHNode[] stackNode = new BIHNode[0];
+    float[][] stackMin = new float[0][];
+    float[][] stackMax = new float[0][];
+
+    public BIHRayPacket() {
+        growStack(BIHTree.MAX_TREE_DEPTH + 2);
+    }
+
+    /**
+     * Removes all rays from the packet.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @return the number of rays in the packet
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a ray to the packet. Hit distances are measured in multiples of
+     * the direction length.
+     *
+     * @param origin the origin of the ray, in mesh space
+     * @param direction the direction of the ray, in mesh space
+     * @param maxDistance only hits closer than this are reported
+     * @return the index of the ray in the packet
+     * @throws IllegalStateException if the packet is full
+     */
+    public int add(Vector3f origin, Vector3f direction, float maxDistance) {
+        if (size == MAX_SIZE) {
+            throw new IllegalStateException("Packet is full");
+        }
+        int i = size++;
+        for (int a = 0; a < 3; a++) {
+            float d = direction.get(a);
+            float inv = 1f / d;
+            this.origin[a][i] = origin.get(a);
+            this.direction[a][i] = d;
+            this.invDirection[a][i] = Float.isInfinite(inv) ? 0f : inv;
+        }
+        distance[i] = maxDistance;
+        triangle[i] = -1;
+        return i;
+    }
+
+    /**
+     * @param index the index of the ray
+     * @return the distance of the nearest hit, or the maximum distance of
+     * the ray if nothing was hit
+     */
+    public float getDistance(int index) {
+        return distance[index];
+    }
+
+    /**
+     * @param index the index of the ray
+     * @return the index of the nearest triangle hit, or -1 if nothing was
+     * hit
+     */
+    public int getTriangleIndex(int index) {
+        return triangle[index];
+    }
+
+    void growStack(int capacity) {
+        int old = stackNode.length;
+        stackNode = Arrays.copyOf(stackNode, capacity);
+        stackMin = Arrays.copyOf(stackMin, capacity);
+        stackMax = Arrays.copyOf(stackMax, capacity);
+        for (int i = old; i < capacity; i++) {
+            stackMin[i] = new float[MAX_SIZE];
+            stackMax[i] = new float[MAX_SIZE];
+        }
+    }
+}
@@ -62,6 +62,25 @@ public class BIHTree implements CollisionData {
 
     public static final int MAX_TREE_DEPTH = 100;
     public static final int MAX_TRIS_PER_NODE = 21;
+
+    /**
+     * Strategy used by {@link #construct(com.jme3.collision.bih.BIHTree.SplitMethod)}
+     * to divide the triangles of a node.
+     */
+    public enum SplitMethod {
+        /**
+         * Splits at the center of the node bounds on the axis where the
+         * bounds shrank the most. Fast to build, single threaded.
+         */
+        Center,
+        /**
+         * Binned surface area heuristic. Produces trees that are cheaper to
+         * query, large subtrees are built in parallel on the
+         * {@link java.util.concurrent.ForkJoinPool#commonPool() common pool}.
+         */
+        SAH
+    }
+
     private Mesh mesh;
     private BIHNode root;
     private int maxTrisPerNode;
@@ -71,6 +90,8 @@ public class BIHTree implements CollisionData {
     
     // private transient CollisionResults boundResults = new CollisionResults();
     private transient float[] bihSwapTmp;
+    // bounds of all triangles, computed on the first packet query
+    private transient float[] packetBounds;
     
     private static final TriangleAxisComparator[] comparators = new TriangleAxisComparator[]
     {
@@ -143,8 +164,22 @@ public class BIHTree implements CollisionData {
     }
 
     public void construct() {
-        BoundingBox sceneBbox = createBox(0, numTris - 1);
-        root = createNode(0, numTris - 1, sceneBbox, 0);
+        construct(SplitMethod.Center);
+    }
+
+    /**
+     * Builds the tree using the given split method. The collision results
+     * of a query do not depend on the method, only its speed does.
+     *
+     * @param method how to split the triangles of a node
+     */
+    public void construct(SplitMethod method) {
+        if (method == SplitMethod.SAH) {
+            root = new SAHBuilder(pointData, triIndices, numTris, maxTrisPerNode).build();
+        } else {
+            BoundingBox sceneBbox = createBox(0, numTris - 1);
+            root = createNode(0, numTris - 1, sceneBbox, 0);
+        }
     }
 
     private BoundingBox createBox(int l, int r) {
@@ -173,6 +208,14 @@ public class BIHTree implements CollisionData {
         return triIndices[triIndex];
     }
 
+    int getTriangleCount() {
+        return numTris;
+    }
+
+    BIHNode getRoot() {
+        return root;
+    }
+
     private int sortTriangles(int l, int r, float split, int axis) {
         int pivot = l;
         int j = r;
@@ -461,6 +504,56 @@ public class BIHTree implements CollisionData {
         return root.intersectWhere(bv, bbox, worldMatrix, this, results);
     }
 
+    /**
+     * Finds the nearest triangle hit by each ray of the packet. The rays
+     * traverse the tree together and every triangle of a visited leaf is
+     * loaded once for the whole packet. Rays only record hits closer than
+     * their current distance.
+     *
+     * @param packet the rays, in the local space of the mesh
+     * @return the number of rays of the packet that have a hit
+     */
+    public int collideWithPacket(BIHRayPacket packet) {
+        if (packet.size == 0 || root == null) {
+            return 0;
+        }
+        float[] bounds = packetBounds;
+        if (bounds == null) {
+            bounds = new float[]{Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY,
+                Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+            for (int i = 0; i < pointData.length; i += 3) {
+                for (int a = 0; a < 3; a++) {
+                    bounds[a] = Math.min(bounds[a], pointData[i + a]);
+                    bounds[a + 3] = Math.max(bounds[a + 3], pointData[i + a]);
+                }
+            }
+            packetBounds = bounds;
+        }
+
+        // clip the rays to the bounds of the mesh, misses get an empty interval
+        for (int i = 0; i < packet.size; i++) {
+            float near = 0f;
+            float far = packet.distance[i];
+            for (int a = 0; a < 3 && near <= far; a++) {
+                float o = packet.origin[a][i];
+                float inv = packet.invDirection[a][i];
+                if (inv == 0f) {
+                    if (o < bounds[a] || o > bounds[a + 3]) {
+                        far = Float.NEGATIVE_INFINITY;
+                    }
+                    continue;
+                }
+                float t1 = (bounds[a] - o) * inv;
+                float t2 = (bounds[a + 3] - o) * inv;
+                near = Math.max(near, Math.min(t1, t2));
+                far = Math.min(far, Math.max(t1, t2));
+            }
+            packet.nodeMin[i] = near;
+            packet.nodeMax[i] = far;
+        }
+        return root.intersectPacket(packet, this);
+    }
+
     public int collideWith(Collidable other,
             Matrix4f worldMatrix,
             BoundingVolume worldBound,
@@ -0,0 +1,595 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.collision.UnsupportedCollisionException;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Ray;
+import com.jme3.math.Triangle;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.CollisionData;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Mesh.Mode;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.mesh.IndexBuffer;
+import com.jme3.scene.mesh.VirtualIndexBuffer;
+import com.jme3.scene.mesh.WrappedIndexBuffer;
+import com.jme3.util.TempVars;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+
+/**
+ * A bounding interval hierarchy with a flat, quantized node layout, for
+ * large static meshes where the memory of a {@link BIHTree} matters.
+ * <p>
+ * The tree is built like a <code>BIHTree</code> and then flattened. Each
+ * node takes two ints:
+ * <ul>
+ * <li>inner node: <code>(firstChild &lt;&lt; 2) | axis</code>, then the
+ * left and right split planes as 16 bit values relative to the mesh
+ * bounds. The children are stored next to each other. The left plane is
+ * rounded up and the right plane down, so the planes still enclose the
+ * triangles of each child and queries find the same collisions.</li>
+ * <li>leaf: <code>(firstTriangle &lt;&lt; 2) | 3</code>, then the triangle
+ * count.</li>
+ * </ul>
+ * Triangles are read from the position and index buffers of the mesh
+ * through a permutation of triangle indices, instead of keeping a copy of
+ * every vertex. Like a <code>BIHTree</code>, the tree has to be rebuilt when
+ * the mesh changes.
+ * <p>
+ * The tree is {@link com.jme3.export.Savable}; set it on a mesh with
+ * {@link Mesh#setCollisionData(com.jme3.scene.CollisionData)} to save it
+ * prebuilt into a J3O file.
+ *
+ * @author jMonkeyEngine
+ */
+public class CompactBIHTree implements CollisionData {
+
+    private static final int LEAF = 3;
+    private static final int QUANTIZED_MAX = 0xFFFF;
+
+    private Mesh mesh;
+    private int[] nodes;
+    private int[] triIndices;
+    private float[] bounds;
+    private int depth;
+
+    // size of one quantization step per axis
+    private transient float[] step;
+    private transient IndexBuffer indices;
+
+    /**
+     * Builds a compact tree with the surface area heuristic.
+     *
+     * @param mesh the mesh
+     */
+    public CompactBIHTree(Mesh mesh) {
+        this(mesh, BIHTree.SplitMethod.SAH);
+    }
+
+    /**
+     * Builds a compact tree.
+     *
+     * @param mesh the mesh
+     * @param method how to split the triangles of a node
+     */
+    public CompactBIHTree(Mesh mesh, BIHTree.SplitMethod method) {
+        this.mesh = mesh;
+
+        // build a regular tree, then keep only its layout
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct(method);
+
+        int numTris = tree.getTriangleCount();
+        triIndices = new int[numTris];
+        bounds = new float[6];
+        if (numTris > 0) {
+            bounds[0] = bounds[1] = bounds[2] = Float.POSITIVE_INFINITY;
+            bounds[3] = bounds[4] = bounds[5] = Float.NEGATIVE_INFINITY;
+        }
+        Vector3f[] v = {new Vector3f(), new Vector3f(), new Vector3f()};
+        for (int i = 0; i < numTris; i++) {
+            triIndices[i] = tree.getTriangleIndex(i);
+            tree.getTriangle(i, v[0], v[1], v[2]);
+            for (Vector3f vertex : v) {
+                for (int a = 0; a < 3; a++) {
+                    bounds[a] = Math.min(bounds[a], vertex.get(a));
+                    bounds[a + 3] = Math.max(bounds[a + 3], vertex.get(a));
+                }
+            }
+        }
+        initStep();
+
+        BIHNode root = tree.getRoot();
+        nodes = new int[countNodes(root) * 2];
+        flatten(root, 0, 1, 0);
+    }
+
+    /**
+     * Serialization only. Do not use.
+     */
+    public CompactBIHTree() {
+    }
+
+    private static int countNodes(BIHNode node) {
+        if (node.getAxis() == LEAF) {
+            return 1;
+        }
+        return 1 + countNodes(node.getLeftChild()) + countNodes(node.getRightChild());
+    }
+
+    /**
+     * Writes the node into <code>slot</code> and its subtree into the slots
+     * from <code>next</code> on.
+     *
+     * @return the next free slot
+     */
+    private int flatten(BIHNode node, int slot, int next, int level) {
+        depth = Math.max(depth, level);
+        int axis = node.getAxis();
+        if (axis == LEAF) {
+            nodes[slot * 2] = (node.getLeftIndex() << 2) | LEAF;
+            nodes[slot * 2 + 1] = node.getRightIndex() - node.getLeftIndex() + 1;
+            return next;
+        }
+        int child = next;
+        nodes[slot * 2] = (child << 2) | axis;
+        nodes[slot * 2 + 1] = (quantizeLeft(axis, node.getLeftPlane()) << 16)
+                | quantizeRight(axis, node.getRightPlane());
+        next = flatten(node.getLeftChild(), child, next + 2, level + 1);
+        return flatten(node.getRightChild(), child + 1, next, level + 1);
+    }
+
+    private void initStep() {
+        step = new float[3];
+        for (int a = 0; a < 3; a++) {
+            step[a] = (bounds[a + 3] - bounds[a]) / QUANTIZED_MAX;
+        }
+    }
+
+    private float leftPlane(int axis, int q) {
+        return q == QUANTIZED_MAX ? Float.POSITIVE_INFINITY : bounds[axis] + q * step[axis];
+    }
+
+    private float rightPlane(int axis, int q) {
+        return q == 0 ? Float.NEGATIVE_INFINITY : bounds[axis] + q * step[axis];
+    }
+
+    /**
+     * @return the smallest value whose left plane is at least
+     * <code>plane</code>
+     */
+    private int quantizeLeft(int axis, float plane) {
+        int q = 0;
+        if (step[axis] > 0f) {
+            q = (int) Math.ceil((plane - bounds[axis]) / step[axis]);
+            q = Math.max(0, Math.min(QUANTIZED_MAX, q));
+        }
+        while (leftPlane(axis, q) < plane) {
+            q++;
+        }
+        return q;
+    }
+
+    /**
+     * @return the largest value whose right plane is at most
+     * <code>plane</code>
+     */
+    private int quantizeRight(int axis, float plane) {
+        int q = 0;
+        if (step[axis] > 0f) {
+            q = (int) Math.floor((plane - bounds[axis]) / step[axis]);
+            q = Math.max(0, Math.min(QUANTIZED_MAX, q));
+        }
+        while (rightPlane(axis, q) > plane) {
+            q--;
+        }
+        return q;
+    }
+
+    private IndexBuffer getIndices() {
+        IndexBuffer ib = indices;
+        if (ib == null) {
+            // same view of the triangles as the BIHTree constructor
+            ib = mesh.getIndexBuffer();
+            if (ib == null) {
+                ib = new VirtualIndexBuffer(mesh.getVertexCount(), mesh.getMode());
+            } else if (mesh.getMode() != Mode.Triangles) {
+                ib = new WrappedIndexBuffer(mesh);
+            }
+            indices = ib;
+        }
+        return ib;
+    }
+
+    /**
+     * Reads a triangle from the mesh buffers.
+     *
+     * @param index the position of the triangle in the tree
+     */
+    public void getTriangle(int index, Vector3f v1, Vector3f v2, Vector3f v3) {
+        IndexBuffer ib = getIndices();
+        FloatBuffer pb = mesh.getFloatBuffer(Type.Position);
+        int tri = triIndices[index] * 3;
+        int vert = ib.get(tri) * 3;
+        v1.set(pb.get(vert), pb.get(vert + 1), pb.get(vert + 2));
+        vert = ib.get(tri + 1) * 3;
+        v2.set(pb.get(vert), pb.get(vert + 1), pb.get(vert + 2));
+        vert = ib.get(tri + 2) * 3;
+        v3.set(pb.get(vert), pb.get(vert + 1), pb.get(vert + 2));
+    }
+
+    /**
+     * @return the number of nodes in the tree
+     */
+    public int getNodeCount() {
+        return nodes.length / 2;
+    }
+
+    /**
+     * @return the number of levels below the root
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    private int collideWithRay(Ray r,
+            Matrix4f worldMatrix,
+            BoundingVolume worldBound,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        try {
+            CollisionResults boundResults = vars.collisionResults;
+            boundResults.clear();
+            worldBound.collideWith(r, boundResults);
+            if (boundResults.size() > 0) {
+                float tMin = boundResults.getClosestCollision().getDistance();
+                float tMax = boundResults.getFarthestCollision().getDistance();
+
+                if (tMax <= 0) {
+                    tMax = Float.POSITIVE_INFINITY;
+                } else if (tMin == tMax) {
+                    tMin = 0;
+                }
+
+                if (tMin <= 0) {
+                    tMin = 0;
+                }
+
+                if (r.getLimit() < Float.POSITIVE_INFINITY) {
+                    tMax = Math.min(tMax, r.getLimit());
+                    if (tMin > tMax){
+                        return 0;
+                    }
+                }
+
+                return intersectRay(r, worldMatrix, tMin, tMax, results);
+            }
+            return 0;
+        } finally {
+            vars.release();
+        }
+    }
+
+    /**
+     * Same traversal as {@link BIHNode#intersectWhere(com.jme3.math.Ray,
+     * com.jme3.math.Matrix4f, com.jme3.collision.bih.BIHTree, float, float,
+     * com.jme3.collision.CollisionResults) } on the flat layout.
+     */
+    private int intersectRay(Ray r,
+            Matrix4f worldMatrix,
+            float sceneMin,
+            float sceneMax,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] nodeStack = vars.bihNodeStack;
+        float[] minStack = vars.bihMinStack;
+        float[] maxStack = vars.bihMaxStack;
+        if (depth + 1 > nodeStack.length) {
+            nodeStack = new int[depth + 1];
+            minStack = new float[depth + 1];
+            maxStack = new float[depth + 1];
+        }
+
+        Vector3f o = vars.vect1.set(r.getOrigin());
+        Vector3f d = vars.vect2.set(r.getDirection());
+
+        Matrix4f inv = vars.tempMat4.set(worldMatrix).invertLocal();
+        inv.mult(r.getOrigin(), r.getOrigin());
+        inv.multNormal(r.getDirection(), r.getDirection());
+        r.getDirection().normalizeLocal();
+
+        Vector3f v1 = vars.vect3,
+                v2 = vars.vect4,
+                v3 = vars.vect5;
+        int cols = 0;
+
+        int sp = 0;
+        nodeStack[sp] = 0;
+        minStack[sp] = sceneMin;
+        maxStack[sp] = sceneMax;
+        sp++;
+
+        stackloop:
+        while (sp > 0) {
+            sp--;
+            int node = nodeStack[sp];
+            float tMin = minStack[sp],
+                    tMax = maxStack[sp];
+
+            if (tMax < tMin) {
+                continue;
+            }
+
+            int header = nodes[node * 2];
+            while ((header & 3) != LEAF) {
+                int a = header & 3;
+                int planes = nodes[node * 2 + 1];
+                float origin = r.getOrigin().get(a);
+                float invDirection = 1f / r.getDirection().get(a);
+
+                float tNearSplit = (leftPlane(a, planes >>> 16) - origin) * invDirection;
+                float tFarSplit = (rightPlane(a, planes & QUANTIZED_MAX) - origin) * invDirection;
+                int nearNode = header >>> 2;
+                int farNode = nearNode + 1;
+
+                if (invDirection < 0) {
+                    float tmpSplit = tNearSplit;
+                    tNearSplit = tFarSplit;
+                    tFarSplit = tmpSplit;
+
+                    nearNode++;
+                    farNode--;
+                }
+
+                if (tMin > tNearSplit && tMax < tFarSplit) {
+                    continue stackloop;
+                }
+
+                if (tMin > tNearSplit) {
+                    tMin = Math.max(tMin, tFarSplit);
+                    node = farNode;
+                } else if (tMax < tFarSplit) {
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                } else {
+                    nodeStack[sp] = farNode;
+                    minStack[sp] = Math.max(tMin, tFarSplit);
+                    maxStack[sp] = tMax;
+                    sp++;
+                    tMax = Math.min(tMax, tNearSplit);
+                    node = nearNode;
+                }
+                header = nodes[node * 2];
+            }
+
+            // a leaf
+            int first = header >>> 2;
+            int last = first + nodes[node * 2 + 1] - 1;
+            for (int i = first; i <= last; i++) {
+                getTriangle(i, v1, v2, v3);
+
+                float t = r.intersects(v1, v2, v3);
+                if (!Float.isInfinite(t)) {
+                    if (worldMatrix != null) {
+                        worldMatrix.mult(v1, v1);
+                        worldMatrix.mult(v2, v2);
+                        worldMatrix.mult(v3, v3);
+                        vars.ray.setOrigin(o);
+                        vars.ray.setDirection(d);
+                        float t_world = vars.ray.intersects(v1, v2, v3);
+                        t = t_world;
+                    }
+
+                    Vector3f contactNormal = Triangle.computeTriangleNormal(v1, v2, v3, vars.vect7);
+                    Vector3f contactPoint = vars.vect6.set(d).multLocal(t).addLocal(o);
+                    float worldSpaceDist = o.distance(contactPoint);
+
+                    // don't add the collision if it is longer than the ray length
+                    if (worldSpaceDist <= r.limit) {
+                        results.addCollision(contactPoint, contactNormal, worldSpaceDist, triIndices[i]);
+                        cols++;
+                        if (results.isDone()) {
+                            break stackloop;
+                        }
+                    }
+                }
+            }
+        }
+        vars.release();
+        r.setOrigin(o);
+        r.setDirection(d);
+
+        return cols;
+    }
+
+    private int collideWithBoundingVolume(BoundingVolume bv,
+            Matrix4f worldMatrix,
+            CollisionResults results) {
+        BoundingBox bbox;
+        if (bv instanceof BoundingSphere) {
+            BoundingSphere sphere = (BoundingSphere) bv;
+            bbox = new BoundingBox(bv.getCenter().clone(), sphere.getRadius(),
+                    sphere.getRadius(),
+                    sphere.getRadius());
+        } else if (bv instanceof BoundingBox) {
+            bbox = new BoundingBox((BoundingBox) bv);
+        } else {
+            throw new UnsupportedCollisionException("BoundingVolume:" + bv);
+        }
+
+        bbox.transform(worldMatrix.invert(), bbox);
+        return intersectBox(bv, bbox, worldMatrix, results);
+    }
+
+    /**
+     * Same traversal as {@link BIHNode#intersectWhere(com.jme3.collision.Collidable,
+     * com.jme3.bounding.BoundingBox, com.jme3.math.Matrix4f,
+     * com.jme3.collision.bih.BIHTree, com.jme3.collision.CollisionResults) }
+     * on the flat layout.
+     */
+    private int intersectBox(Collidable col,
+            BoundingBox box,
+            Matrix4f worldMatrix,
+            CollisionResults results) {
+
+        TempVars vars = TempVars.get();
+        int[] nodeStack = vars.bihNodeStack;
+        if (depth + 1 > nodeStack.length) {
+            nodeStack = new int[depth + 1];
+        }
+
+        Vector3f center = box.getCenter();
+        float[] minExts = {center.x - box.getXExtent(),
+            center.y - box.getYExtent(),
+            center.z - box.getZExtent()};
+        float[] maxExts = {center.x + box.getXExtent(),
+            center.y + box.getYExtent(),
+            center.z + box.getZExtent()};
+
+        Triangle t = new Triangle();
+        int cols = 0;
+
+        int sp = 0;
+        nodeStack[sp++] = 0;
+
+        stackloop:
+        while (sp > 0) {
+            int node = nodeStack[--sp];
+            int header = nodes[node * 2];
+
+            while ((header & 3) != LEAF) {
+                int a = header & 3;
+                int planes = nodes[node * 2 + 1];
+                float leftPlane = leftPlane(a, planes >>> 16);
+                float rightPlane = rightPlane(a, planes & QUANTIZED_MAX);
+                int left = header >>> 2;
+
+                float maxExt = maxExts[a];
+                float minExt = minExts[a];
+
+                if (leftPlane < rightPlane) {
+                    // means there's a gap in the middle
+                    // if the box is in that gap, we stop there
+                    if (minExt > leftPlane
+                            && maxExt < rightPlane) {
+                        continue stackloop;
+                    }
+                }
+
+                if (maxExt < rightPlane) {
+                    node = left;
+                } else if (minExt > leftPlane) {
+                    node = left + 1;
+                } else {
+                    nodeStack[sp++] = left + 1;
+                    node = left;
+                }
+                header = nodes[node * 2];
+            }
+
+            int first = header >>> 2;
+            int last = first + nodes[node * 2 + 1] - 1;
+            for (int i = first; i <= last; i++) {
+                getTriangle(i, t.get1(), t.get2(), t.get3());
+                if (worldMatrix != null) {
+                    worldMatrix.mult(t.get1(), t.get1());
+                    worldMatrix.mult(t.get2(), t.get2());
+                    worldMatrix.mult(t.get3(), t.get3());
+                }
+
+                int mark = results.getMark();
+                int added = col.collideWith(t, results);
+
+                if (added > 0) {
+                    results.setTriangleIndexSince(mark, triIndices[i]);
+                    cols += added;
+                    if (results.isDone()) {
+                        break stackloop;
+                    }
+                }
+            }
+        }
+        vars.release();
+        return cols;
+    }
+
+    public int collideWith(Collidable other,
+            Matrix4f worldMatrix,
+            BoundingVolume worldBound,
+            CollisionResults results) {
+
+        if (triIndices.length == 0) {
+            return 0;
+        }
+        if (other instanceof Ray) {
+            Ray ray = (Ray) other;
+            return collideWithRay(ray, worldMatrix, worldBound, results);
+        } else if (other instanceof BoundingVolume) {
+            BoundingVolume bv = (BoundingVolume) other;
+            return collideWithBoundingVolume(bv, worldMatrix, results);
+        } else {
+            throw new UnsupportedCollisionException("Collidable:" + other);
+        }
+    }
+
+    public void write(JmeExporter ex) throws IOException {
+        OutputCapsule oc = ex.getCapsule(this);
+        oc.write(mesh, "mesh", null);
+        oc.write(nodes, "nodes", null);
+        oc.write(triIndices, "indices", null);
+        oc.write(bounds, "bounds", null);
+        oc.write(depth, "depth", 0);
+    }
+
+    public void read(JmeImporter im) throws IOException {
+        InputCapsule ic = im.getCapsule(this);
+        mesh = (Mesh) ic.readSavable("mesh", null);
+        nodes = ic.readIntArray("nodes", null);
+        triIndices = ic.readIntArray("indices", null);
+        bounds = ic.readFloatArray("bounds", null);
+        depth = ic.readInt("depth", 0);
+        initStep();
+    }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a {@link BIHNode} hierarchy using a binned surface area heuristic.
+ * <p>
+ * Every node bins the centroids of its triangles into {@link #BIN_COUNT}
+ * buckets along each axis and splits at the bucket boundary with the lowest
+ * cost <code>area(left) * count(left) + area(right) * count(right)</code>.
+ * Subtrees with at least {@link #PARALLEL_THRESHOLD} triangles are built as
+ * fork-join tasks. The builder only reorders an index array, so tasks work on
+ * disjoint ranges without locking; the triangle data of the tree is permuted
+ * once at the end.
+ * <p>
+ * The resulting nodes have the same layout as the ones created by
+ * {@link BIHTree#construct()}: leaves hold at most <code>maxTrisPerNode</code>
+ * triangles and the planes of an inner node are the maximum extent of the
+ * left triangles and the minimum extent of the right triangles on the split
+ * axis, so queries work unchanged.
+ *
+ * @author jMonkeyEngine
+ */
+final class SAHBuilder {
+
+    /**
+     * Number of centroid buckets per axis.
+     */
+    static final int BIN_COUNT = 16;
+    /**
+     * Minimum triangle count of a subtree built as a separate task.
+     */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private final int maxTrisPerNode;
+    private final float[] pointData;
+    private final int[] triIndices;
+    /**
+     * Bounds of every triangle: min x, y, z then max x, y, z.
+     */
+    private final float[] triBounds;
+    /**
+     * Triangle positions in build order, partitioned in place.
+     */
+    private final int[] order;
+
+    SAHBuilder(float[] pointData, int[] triIndices, int numTris, int maxTrisPerNode) {
+        this.pointData = pointData;
+        this.triIndices = triIndices;
+        this.maxTrisPerNode = maxTrisPerNode;
+        this.triBounds = new float[numTris * 6];
+        this.order = new int[numTris];
+
+        for (int i = 0; i < numTris; i++) {
+            order[i] = i;
+            int p = i * 9;
+            int b = i * 6;
+            for (int a = 0; a < 3; a++) {
+                float v1 = pointData[p + a];
+                float v2 = pointData[p + 3 + a];
+                float v3 = pointData[p + 6 + a];
+                triBounds[b + a] = Math.min(v1, Math.min(v2, v3));
+                triBounds[b + 3 + a] = Math.max(v1, Math.max(v2, v3));
+            }
+        }
+    }
+
+    /**
+     * Builds the hierarchy and reorders the triangle data of the tree to
+     * match the leaf ranges.
+     *
+     * @return the root node
+     */
+    BIHNode build() {
+        int numTris = order.length;
+        BIHNode root = new BuildTask(0, numTris - 1, 0).invoke();
+
+        float[] points = new float[pointData.length];
+        int[] indices = new int[numTris];
+        for (int i = 0; i < numTris; i++) {
+            int src = order[i];
+            System.arraycopy(pointData, src * 9, points, i * 9, 9);
+            indices[i] = triIndices[src];
+        }
+        System.arraycopy(points, 0, pointData, 0, points.length);
+        System.arraycopy(indices, 0, triIndices, 0, numTris);
+        return root;
+    }
+
+    private float centroid(int tri, int axis) {
+        int b = tri * 6;
+        return (triBounds[b + axis] + triBounds[b + 3 + axis]) * 0.5f;
+    }
+
+    /**
+     * Half of the surface area of the box stored at <code>offset</code>.
+     */
+    private static float halfArea(float[] box, int offset) {
+        float dx = box[offset + 3] - box[offset];
+        float dy = box[offset + 4] - box[offset + 1];
+        float dz = box[offset + 5] - box[offset + 2];
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private static void resetBox(float[] box, int offset) {
+        box[offset] = box[offset + 1] = box[offset + 2] = Float.POSITIVE_INFINITY;
+        box[offset + 3] = box[offset + 4] = box[offset + 5] = Float.NEGATIVE_INFINITY;
+    }
+
+    private static void growBox(float[] box, int offset, float[] src, int srcOffset) {
+        for (int a = 0; a < 3; a++) {
+            box[offset + a] = Math.min(box[offset + a], src[srcOffset + a]);
+            box[offset + 3 + a] = Math.max(box[offset + 3 + a], src[srcOffset + 3 + a]);
+        }
+    }
+
+    private static int binOf(float c, float min, float scale) {
+        int bin = (int) ((c - min) * scale);
+        return bin < 0 ? 0 : bin >= BIN_COUNT ? BIN_COUNT - 1 : bin;
+    }
+
+    /**
+     * Per task scratch memory for the binning pass.
+     */
+    private static final class Bins {
+
+        final int[] counts = new int[BIN_COUNT];
+        final float[] bounds = new float[BIN_COUNT * 6];
+        final float[] rightAreas = new float[BIN_COUNT];
+        final float[] box = new float[6];
+        final float[] centroidMin = new float[3];
+        final float[] centroidMax = new float[3];
+        /**
+         * Last index of the left range chosen by the latest split.
+         */
+        int pivot;
+    }
+
+    /**
+     * Chooses a split for the range and partitions it.
+     *
+     * @return the inner node without children, its left range is
+     * <code>l</code> to <code>bins.pivot</code> and its right range
+     * <code>bins.pivot + 1</code> to <code>r</code>
+     */
+    private BIHNode split(int l, int r, Bins bins) {
+        float[] cmin = bins.centroidMin;
+        float[] cmax = bins.centroidMax;
+        for (int a = 0; a < 3; a++) {
+            cmin[a] = Float.POSITIVE_INFINITY;
+            cmax[a] = Float.NEGATIVE_INFINITY;
+        }
+        for (int i = l; i <= r; i++) {
+            int tri = order[i];
+            for (int a = 0; a < 3; a++) {
+                float c = centroid(tri, a);
+                cmin[a] = Math.min(cmin[a], c);
+                cmax[a] = Math.max(cmax[a], c);
+            }
+        }
+
+        int bestAxis = -1;
+        int bestBin = 0;
+        float bestCost = Float.POSITIVE_INFINITY;
+        int[] counts = bins.counts;
+        float[] bounds = bins.bounds;
+        float[] rightAreas = bins.rightAreas;
+        float[] box = bins.box;
+
+        for (int a = 0; a < 3; a++) {
+            float extent = cmax[a] - cmin[a];
+            if (!(extent > 0f)) {
+                continue;
+            }
+            float scale = BIN_COUNT / extent;
+            for (int b = 0; b < BIN_COUNT; b++) {
+                counts[b] = 0;
+                resetBox(bounds, b * 6);
+            }
+            for (int i = l; i <= r; i++) {
+                int tri = order[i];
+                int b = binOf(centroid(tri, a), cmin[a], scale);
+                counts[b]++;
+                growBox(bounds, b * 6, triBounds, tri * 6);
+            }
+
+            // sweep from the right, rightAreas[b] covers bins b + 1 and up
+            resetBox(box, 0);
+            for (int b = BIN_COUNT - 1; b > 0; b--) {
+                growBox(box, 0, bounds, b * 6);
+                rightAreas[b - 1] = halfArea(box, 0);
+            }
+
+            resetBox(box, 0);
+            int leftCount = 0;
+            for (int b = 0; b < BIN_COUNT - 1; b++) {
+                leftCount += counts[b];
+                growBox(box, 0, bounds, b * 6);
+                int rightCount = (r - l + 1) - leftCount;
+                if (leftCount == 0 || rightCount == 0) {
+                    continue;
+                }
+                float cost = halfArea(box, 0) * leftCount + rightAreas[b] * rightCount;
+                if (cost < bestCost) {
+                    bestCost = cost;
+                    bestAxis = a;
+                    bestBin = b;
+                }
+            }
+        }
+
+        int pivot;
+        int axis;
+        if (bestAxis < 0) {
+            // all centroids coincide, split the range in half
+            axis = 0;
+            pivot = (l + r) / 2;
+        } else {
+            axis = bestAxis;
+            float scale = BIN_COUNT / (cmax[axis] - cmin[axis]);
+            int i = l;
+            int j = r;
+            while (i <= j) {
+                int tri = order[i];
+                if (binOf(centroid(tri, axis), cmin[axis], scale) <= bestBin) {
+                    i++;
+                } else {
+                    order[i] = order[j];
+                    order[j] = tri;
+                    j--;
+                }
+            }
+            pivot = j;
+        }
+
+        float leftPlane = Float.NEGATIVE_INFINITY;
+        for (int i = l; i <= pivot; i++) {
+            leftPlane = Math.max(leftPlane, triBounds[order[i] * 6 + 3 + axis]);
+        }
+        float rightPlane = Float.POSITIVE_INFINITY;
+        for (int i = pivot + 1; i <= r; i++) {
+            rightPlane = Math.min(rightPlane, triBounds[order[i] * 6 + axis]);
+        }
+
+        BIHNode node = new BIHNode(axis);
+        node.setLeftPlane(leftPlane);
+        node.setRightPlane(rightPlane);
+        bins.pivot = pivot;
+        return node;
+    }
+
+    private boolean isLeaf(int l, int r, int depth) {
+        return (r - l) < maxTrisPerNode || depth > BIHTree.MAX_TREE_DEPTH;
+    }
+
+    private BIHNode buildSequential(int l, int r, int depth, Bins bins) {
+        if (isLeaf(l, r, depth)) {
+            return new BIHNode(l, r);
+        }
+        BIHNode node = split(l, r, bins);
+        int pivot = bins.pivot;
+        node.setLeftChild(buildSequential(l, pivot, depth + 1, bins));
+        node.setRightChild(buildSequential(pivot + 1, r, depth + 1, bins));
+        return node;
+    }
+
+    private final class BuildTask extends RecursiveTask<BIHNode> {
+
+        private final int l, r, depth;
+
+        BuildTask(int l, int r, int depth) {
+            this.l = l;
+            this.r = r;
+            this.depth = depth;
+        }
+
+        @Override
+        protected BIHNode compute() {
+            Bins bins = new Bins();
+            if (r - l + 1 < PARALLEL_THRESHOLD) {
+                return buildSequential(l, r, depth, bins);
+            }
+            if (isLeaf(l, r, depth)) {
+                return new BIHNode(l, r);
+            }
+            BIHNode node = split(l, r, bins);
+            int pivot = bins.pivot;
+            BuildTask left = new BuildTask(l, pivot, depth + 1);
+            BuildTask right = new BuildTask(pivot + 1, r, depth + 1);
+            right.fork();
+            node.setLeftChild(left.compute());
+            node.setRightChild(right.join());
+            return node;
+        }
+    }
+}
@@ -43,6 +43,14 @@ public final class FormatVersion {
      */
     public static final int VERSION = 2;
     
+    /**
+     * Version of the binary format storing the object data in separately
+     * compressed chunks. Only J3O files written with chunks use it, other
+     * files and other exporters still write {@link #VERSION}, so older
+     * versions of the engine can load them.
+     */
+    public static final int CHUNKED_VERSION = 3;
+    
     /**
      * Signature of the format. Currently "JME3" as ASCII
      */
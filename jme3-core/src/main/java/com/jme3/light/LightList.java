@@ -54,6 +54,13 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
 
     private static final int DEFAULT_SIZE = 1;
 
+    /**
+     * The distance used for sorting is stored in the lights themselves and
+     * lights are shared between lists, so lists must not be sorted
+     * concurrently (e.g. by a parallel scene graph update).
+     */
+    private static final Object sortLock = new Object();
+
     private static final Comparator<Light> c = new Comparator<Light>() {
         /**
          * This assumes lastDistance have been computed in a previous step.
@@ -207,15 +214,17 @@ public final class LightList implements Iterable<Light>, Savable, Cloneable, Jme
                 System.arraycopy(list, 0, tlist, 0, list.length);
             }
 
-            if (transformChanged){
-                // check distance of each light
-                for (int i = 0; i < listSize; i++){
-                    list[i].computeLastDistance(owner);
+            synchronized (sortLock) {
+                if (transformChanged){
+                    // check distance of each light
+                    for (int i = 0; i < listSize; i++){
+                        list[i].computeLastDistance(owner);
+                    }
                 }
-            }
 
-            // now merge sort tlist into list
-            SortUtil.msort(tlist, list, 0, listSize - 1, c);
+                // now merge sort tlist into list
+                SortUtil.msort(tlist, list, 0, listSize - 1, c);
+            }
         }
     }
 
@@ -349,7 +349,21 @@ public enum Caps {
     /**
      * GPU can provide and accept binary shaders.
      */
-    BinaryShader;
+    BinaryShader,
+
+    /**
+     * Supports rendering many draws from a buffer of commands with
+     * glMultiDrawElementsIndirect (OpenGL 4.3 / ARB_multi_draw_indirect).
+     * 
+     * @see com.jme3.scene.mesh.MultiDrawMesh
+     */
+    MultiDrawIndirect,
+
+    /**
+     * Supports immutable buffer storage that can stay mapped while it is
+     * used for rendering (OpenGL 4.4 / ARB_buffer_storage).
+     */
+    BufferStorage;
 
     /**
      * Returns true if given the renderer capabilities, the texture
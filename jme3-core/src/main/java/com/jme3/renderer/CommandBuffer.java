@@ -0,0 +1,562 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.shader.Shader;
+import com.jme3.shader.Shader.ShaderSource;
+import com.jme3.shader.Uniform;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.util.ListMap;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.IdentityHashMap;
+
+/**
+ * A recorded stream of {@link Renderer} calls that can be replayed later,
+ * on the same or on another thread.
+ * <p>
+ * Commands are recorded through a {@link RecordingRenderer} and stored in a
+ * flat <code>int</code> array, with the objects they refer to (meshes,
+ * shaders, textures, framebuffers) kept in a parallel reference array, so
+ * recording does not create objects per command. Buffers are meant to be
+ * {@link #clear() cleared} and recorded again every frame, their storage
+ * grows to the largest frame and is then reused.
+ * <p>
+ * Values that the engine changes between draw calls are captured when they
+ * are recorded: the uniform values a shader is set with, render states and
+ * colors. All other referenced objects are replayed as they are at replay
+ * time, so meshes, textures and framebuffers must not be modified between
+ * recording and replaying a buffer. The uniform values are kept in copies
+ * owned by the buffer and uploaded with
+ * {@link Renderer#setShader(com.jme3.shader.Shader, com.jme3.shader.Uniform[], int, int) },
+ * replaying does not modify the uniforms of the shaders. The next frame can
+ * therefore be recorded into another buffer while a buffer is replayed.
+ * A single buffer must not be recorded and replayed at the same time.
+ * <p>
+ * Replaying to a {@link com.jme3.system.NullRenderer} allows command streams
+ * to be captured and compared headlessly, {@link #toString() } lists the
+ * recorded commands one per line.
+ *
+ * @see RecordingRenderer
+ * @see RenderManager#renderViewPort(com.jme3.renderer.ViewPort, float, com.jme3.renderer.CommandBuffer)
+ * @author jMonkeyEngine
+ */
+public class CommandBuffer {
+
+    static final int INITIALIZE = 0;
+    static final int INVALIDATE_STATE = 1;
+    static final int CLEAR_BUFFERS = 2;
+    static final int SET_BACKGROUND_COLOR = 3;
+    static final int APPLY_RENDER_STATE = 4;
+    static final int SET_DEPTH_RANGE = 5;
+    static final int POST_FRAME = 6;
+    static final int SET_VIEWPORT = 7;
+    static final int SET_CLIP_RECT = 8;
+    static final int CLEAR_CLIP_RECT = 9;
+    static final int SET_SHADER = 10;
+    static final int DELETE_SHADER = 11;
+    static final int DELETE_SHADER_SOURCE = 12;
+    static final int COPY_FRAMEBUFFER = 13;
+    static final int SET_FRAMEBUFFER = 14;
+    static final int SET_MAIN_FRAMEBUFFER_OVERRIDE = 15;
+    static final int READ_FRAMEBUFFER = 16;
+    static final int READ_FRAMEBUFFER_WITH_FORMAT = 17;
+    static final int DELETE_FRAMEBUFFER = 18;
+    static final int SET_TEXTURE = 19;
+    static final int MODIFY_TEXTURE = 20;
+    static final int DELETE_IMAGE = 21;
+    static final int UPDATE_BUFFER_DATA = 22;
+    static final int DELETE_BUFFER = 23;
+    static final int RENDER_MESH = 24;
+    static final int RESET_GL_OBJECTS = 25;
+    static final int CLEANUP = 26;
+    static final int SET_DEFAULT_ANISOTROPIC_FILTER = 27;
+    static final int SET_ALPHA_TO_COVERAGE = 28;
+    static final int SET_MAIN_FRAMEBUFFER_SRGB = 29;
+    static final int SET_LINEARIZE_SRGB_IMAGES = 30;
+
+    private static final String[] NAMES = {
+        "initialize", "invalidateState", "clearBuffers", "setBackgroundColor",
+        "applyRenderState", "setDepthRange", "postFrame", "setViewPort",
+        "setClipRect", "clearClipRect", "setShader", "deleteShader",
+        "deleteShaderSource", "copyFrameBuffer", "setFrameBuffer",
+        "setMainFrameBufferOverride", "readFrameBuffer",
+        "readFrameBufferWithFormat", "deleteFrameBuffer", "setTexture",
+        "modifyTexture", "deleteImage", "updateBufferData", "deleteBuffer",
+        "renderMesh", "resetGLObjects", "cleanup", "setDefaultAnisotropicFilter",
+        "setAlphaToCoverage", "setMainFrameBufferSrgb", "setLinearizeSrgbImages"
+    };
+
+    private int[] data = new int[256];
+    private int dataSize;
+    private Object[] refs = new Object[64];
+    private int refSize;
+    private int commandCount;
+
+    // reused snapshots of the render states passed to applyRenderState
+    private RenderState[] states = new RenderState[8];
+    private int stateCount;
+
+    // reused copies of the uniforms passed along with setShader
+    private Uniform[] uniforms = new Uniform[32];
+    private int uniformCount;
+    // last copy recorded for each shader uniform, recording leaves the
+    // update flags of the shader uniforms alone
+    private final IdentityHashMap<Uniform, Uniform> recordedUniforms = new IdentityHashMap<Uniform, Uniform>();
+
+    // renders view ports into this buffer, see RenderManager
+    RenderManager recordingContext;
+
+    private final ColorRGBA tmpColor = new ColorRGBA();
+
+    /**
+     * Removes all recorded commands. The storage is kept for the next
+     * recording.
+     */
+    public void clear() {
+        for (int i = 0; i < refSize; i++) {
+            refs[i] = null;
+        }
+        dataSize = 0;
+        refSize = 0;
+        commandCount = 0;
+        stateCount = 0;
+        uniformCount = 0;
+        recordedUniforms.clear();
+    }
+
+    /**
+     * @return true if no commands were recorded.
+     */
+    public boolean isEmpty() {
+        return commandCount == 0;
+    }
+
+    /**
+     * @return the number of recorded commands.
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Replays all recorded commands, in recording order, to the given renderer.
+     * The buffer is left unchanged and can be replayed again.
+     *
+     * @param renderer The renderer to issue the commands to
+     */
+    public void replay(Renderer renderer) {
+        int d = 0;
+        int r = 0;
+        for (int c = 0; c < commandCount; c++) {
+            int op = data[d++];
+            switch (op) {
+                case INITIALIZE:
+                    renderer.initialize();
+                    break;
+                case INVALIDATE_STATE:
+                    renderer.invalidateState();
+                    break;
+                case CLEAR_BUFFERS: {
+                    int bits = data[d++];
+                    renderer.clearBuffers((bits & 1) != 0, (bits & 2) != 0, (bits & 4) != 0);
+                    break;
+                }
+                case SET_BACKGROUND_COLOR:
+                    tmpColor.set(Float.intBitsToFloat(data[d]), Float.intBitsToFloat(data[d + 1]),
+                                 Float.intBitsToFloat(data[d + 2]), Float.intBitsToFloat(data[d + 3]));
+                    d += 4;
+                    renderer.setBackgroundColor(tmpColor);
+                    break;
+                case APPLY_RENDER_STATE:
+                    renderer.applyRenderState((RenderState) refs[r++]);
+                    break;
+                case SET_DEPTH_RANGE:
+                    renderer.setDepthRange(Float.intBitsToFloat(data[d]), Float.intBitsToFloat(data[d + 1]));
+                    d += 2;
+                    break;
+                case POST_FRAME:
+                    renderer.postFrame();
+                    break;
+                case SET_VIEWPORT:
+                    renderer.setViewPort(data[d], data[d + 1], data[d + 2], data[d + 3]);
+                    d += 4;
+                    break;
+                case SET_CLIP_RECT:
+                    renderer.setClipRect(data[d], data[d + 1], data[d + 2], data[d + 3]);
+                    d += 4;
+                    break;
+                case CLEAR_CLIP_RECT:
+                    renderer.clearClipRect();
+                    break;
+                case SET_SHADER:
+                    renderer.setShader((Shader) refs[r++], uniforms, data[d], data[d + 1]);
+                    d += 2;
+                    break;
+                case DELETE_SHADER:
+                    renderer.deleteShader((Shader) refs[r++]);
+                    break;
+                case DELETE_SHADER_SOURCE:
+                    renderer.deleteShaderSource((ShaderSource) refs[r++]);
+                    break;
+                case COPY_FRAMEBUFFER:
+                    renderer.copyFrameBuffer((FrameBuffer) refs[r], (FrameBuffer) refs[r + 1], data[d++] != 0);
+                    r += 2;
+                    break;
+                case SET_FRAMEBUFFER:
+                    renderer.setFrameBuffer((FrameBuffer) refs[r++]);
+                    break;
+                case SET_MAIN_FRAMEBUFFER_OVERRIDE:
+                    renderer.setMainFrameBufferOverride((FrameBuffer) refs[r++]);
+                    break;
+                case READ_FRAMEBUFFER:
+                    renderer.readFrameBuffer((FrameBuffer) refs[r], (ByteBuffer) refs[r + 1]);
+                    r += 2;
+                    break;
+                case READ_FRAMEBUFFER_WITH_FORMAT:
+                    renderer.readFrameBufferWithFormat((FrameBuffer) refs[r], (ByteBuffer) refs[r + 1],
+                                                       (Image.Format) refs[r + 2]);
+                    r += 3;
+                    break;
+                case DELETE_FRAMEBUFFER:
+                    renderer.deleteFrameBuffer((FrameBuffer) refs[r++]);
+                    break;
+                case SET_TEXTURE:
+                    renderer.setTexture(data[d++], (Texture) refs[r++]);
+                    break;
+                case MODIFY_TEXTURE:
+                    renderer.modifyTexture((Texture) refs[r], (Image) refs[r + 1], data[d], data[d + 1]);
+                    r += 2;
+                    d += 2;
+                    break;
+                case DELETE_IMAGE:
+                    renderer.deleteImage((Image) refs[r++]);
+                    break;
+                case UPDATE_BUFFER_DATA:
+                    renderer.updateBufferData((VertexBuffer) refs[r++]);
+                    break;
+                case DELETE_BUFFER:
+                    renderer.deleteBuffer((VertexBuffer) refs[r++]);
+                    break;
+                case RENDER_MESH:
+                    renderer.renderMesh((Mesh) refs[r], data[d], data[d + 1], (VertexBuffer[]) refs[r + 1]);
+                    r += 2;
+                    d += 2;
+                    break;
+                case RESET_GL_OBJECTS:
+                    renderer.resetGLObjects();
+                    break;
+                case CLEANUP:
+                    renderer.cleanup();
+                    break;
+                case SET_DEFAULT_ANISOTROPIC_FILTER:
+                    renderer.setDefaultAnisotropicFilter(data[d++]);
+                    break;
+                case SET_ALPHA_TO_COVERAGE:
+                    renderer.setAlphaToCoverage(data[d++] != 0);
+                    break;
+                case SET_MAIN_FRAMEBUFFER_SRGB:
+                    renderer.setMainFrameBufferSrgb(data[d++] != 0);
+                    break;
+                case SET_LINEARIZE_SRGB_IMAGES:
+                    renderer.setLinearizeSrgbImages(data[d++] != 0);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown command: " + op);
+            }
+        }
+    }
+
+    /**
+     * Lists the recorded commands, one per line, with their arguments.
+     * Objects are listed by their <code>toString()</code>, uniform values and
+     * render states by their recorded values.
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        int d = 0;
+        int r = 0;
+        for (int c = 0; c < commandCount; c++) {
+            int op = data[d++];
+            sb.append(NAMES[op]);
+            int ints = 0;
+            int objects = 0;
+            switch (op) {
+                case CLEAR_BUFFERS:
+                case SET_DEFAULT_ANISOTROPIC_FILTER:
+                case SET_ALPHA_TO_COVERAGE:
+                case SET_MAIN_FRAMEBUFFER_SRGB:
+                case SET_LINEARIZE_SRGB_IMAGES:
+                    ints = 1;
+                    break;
+                case SET_BACKGROUND_COLOR:
+                    sb.append(' ').append(Float.intBitsToFloat(data[d])).append(' ').append(Float.intBitsToFloat(data[d + 1]))
+                      .append(' ').append(Float.intBitsToFloat(data[d + 2])).append(' ').append(Float.intBitsToFloat(data[d + 3]));
+                    d += 4;
+                    break;
+                case SET_DEPTH_RANGE:
+                    sb.append(' ').append(Float.intBitsToFloat(data[d])).append(' ').append(Float.intBitsToFloat(data[d + 1]));
+                    d += 2;
+                    break;
+                case SET_VIEWPORT:
+                case SET_CLIP_RECT:
+                    ints = 4;
+                    break;
+                case APPLY_RENDER_STATE:
+                    RenderState state = (RenderState) refs[r++];
+                    sb.append(' ').append(state.toString().replace('\n', ' '));
+                    break;
+                case SET_SHADER: {
+                    sb.append(' ').append(refs[r++]);
+                    int first = data[d++];
+                    int count = data[d++];
+                    for (int i = first; i < first + count; i++) {
+                        sb.append(' ').append(uniforms[i].getName()).append('=');
+                        appendValue(sb, uniforms[i]);
+                    }
+                    break;
+                }
+                case COPY_FRAMEBUFFER:
+                    objects = 2;
+                    ints = 1;
+                    break;
+                case READ_FRAMEBUFFER:
+                case RENDER_MESH:
+                    objects = 2;
+                    ints = op == RENDER_MESH ? 2 : 0;
+                    break;
+                case READ_FRAMEBUFFER_WITH_FORMAT:
+                    objects = 3;
+                    break;
+                case SET_TEXTURE:
+                    ints = 1;
+                    objects = 1;
+                    break;
+                case MODIFY_TEXTURE:
+                    objects = 2;
+                    ints = 2;
+                    break;
+                case DELETE_SHADER:
+                case DELETE_SHADER_SOURCE:
+                case SET_FRAMEBUFFER:
+                case SET_MAIN_FRAMEBUFFER_OVERRIDE:
+                case DELETE_FRAMEBUFFER:
+                case DELETE_IMAGE:
+                case UPDATE_BUFFER_DATA:
+                case DELETE_BUFFER:
+                    objects = 1;
+                    break;
+                default:
+                    break;
+            }
+            for (int i = 0; i < ints; i++) {
+                sb.append(' ').append(data[d++]);
+            }
+            for (int i = 0; i < objects; i++) {
+                sb.append(' ').append(refs[r++]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    void beginCommand(int op) {
+        putInt(op);
+        commandCount++;
+    }
+
+    void putInt(int value) {
+        if (dataSize == data.length) {
+            int[] newData = new int[data.length * 2];
+            System.arraycopy(data, 0, newData, 0, dataSize);
+            data = newData;
+        }
+        data[dataSize++] = value;
+    }
+
+    void putFloat(float value) {
+        putInt(Float.floatToRawIntBits(value));
+    }
+
+    void putRef(Object ref) {
+        if (refSize == refs.length) {
+            Object[] newRefs = new Object[refs.length * 2];
+            System.arraycopy(refs, 0, newRefs, 0, refSize);
+            refs = newRefs;
+        }
+        refs[refSize++] = ref;
+    }
+
+    /**
+     * Records a copy of the render state, the given state may be modified
+     * once the call returns.
+     */
+    void putRenderState(RenderState state) {
+        if (stateCount == states.length) {
+            RenderState[] newStates = new RenderState[states.length * 2];
+            System.arraycopy(states, 0, newStates, 0, stateCount);
+            states = newStates;
+        }
+        RenderState copy = states[stateCount];
+        if (copy == null) {
+            copy = new RenderState();
+            states[stateCount] = copy;
+        }
+        stateCount++;
+        copy.set(state);
+        putRef(copy);
+    }
+
+    /**
+     * Records the shader along with copies of all its uniforms that need to
+     * be updated and hold another value than the one last recorded into
+     * this buffer. The uniforms of the shader are not modified, they stay
+     * marked until a renderer uploads them, so a buffer that is never
+     * replayed to that renderer does not leave it with stale values.
+     */
+    void putShader(Shader shader) {
+        putRef(shader);
+        int first = uniformCount;
+        ListMap<String, Uniform> shaderUniforms = shader.getUniformMap();
+        for (int i = 0; i < shaderUniforms.size(); i++) {
+            Uniform uniform = shaderUniforms.getValue(i);
+            if (!uniform.isUpdateNeeded() || uniform.getVarType() == null
+                    || uniform.getLocation() == Uniform.LOC_NOT_DEFINED) {
+                continue;
+            }
+            Uniform recorded = recordedUniforms.get(uniform);
+            if (recorded != null && sameValue(recorded, uniform)) {
+                continue;
+            }
+            recordedUniforms.put(uniform, putUniform(uniform));
+        }
+        putInt(first);
+        putInt(uniformCount - first);
+    }
+
+    /**
+     * Records the shader along with copies of the given uniforms.
+     */
+    void putShader(Shader shader, Uniform[] values, int offset, int count) {
+        putRef(shader);
+        int first = uniformCount;
+        for (int i = offset; i < offset + count; i++) {
+            putUniform(values[i]);
+        }
+        putInt(first);
+        putInt(count);
+    }
+
+    private Uniform putUniform(Uniform uniform) {
+        if (uniformCount == uniforms.length) {
+            Uniform[] newUniforms = new Uniform[uniforms.length * 2];
+            System.arraycopy(uniforms, 0, newUniforms, 0, uniformCount);
+            uniforms = newUniforms;
+        }
+        Uniform copy = uniforms[uniformCount];
+        if (copy == null) {
+            copy = new Uniform();
+            uniforms[uniformCount] = copy;
+        }
+        uniformCount++;
+        copy.copyFrom(uniform);
+        return copy;
+    }
+
+    /**
+     * Checks if a recorded copy still holds the value of the given uniform.
+     */
+    private static boolean sameValue(Uniform copy, Uniform uniform) {
+        if (copy.getVarType() != uniform.getVarType()
+                || copy.getLocation() != uniform.getLocation()) {
+            return false;
+        }
+        switch (uniform.getVarType()) {
+            case Float:
+            case Int:
+            case Boolean:
+            case Vector2:
+            case Vector3:
+            case Vector4:
+            case IntArray:
+                return uniform.getValue().equals(copy.getValue());
+            default:
+                // matrices and float arrays are uploaded from their buffer
+                return uniform.getMultiData().equals(copy.getMultiData());
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Uniform uniform) {
+        switch (uniform.getVarType()) {
+            case Float:
+            case Int:
+            case Boolean:
+            case Vector2:
+            case Vector3:
+            case Vector4:
+                sb.append(uniform.getValue());
+                break;
+            case IntArray: {
+                IntBuffer ib = (IntBuffer) uniform.getValue();
+                sb.append(uniform.getVarType()).append('[');
+                for (int i = ib.position(); i < ib.limit(); i++) {
+                    if (i > ib.position()) {
+                        sb.append(',');
+                    }
+                    sb.append(ib.get(i));
+                }
+                sb.append(']');
+                break;
+            }
+            default: {
+                FloatBuffer fb = uniform.getMultiData();
+                sb.append(uniform.getVarType()).append('[');
+                for (int i = fb.position(); i < fb.limit(); i++) {
+                    if (i > fb.position()) {
+                        sb.append(',');
+                    }
+                    sb.append(fb.get(i));
+                }
+                sb.append(']');
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.util.SafeArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Frustum culls the children of a scene root on a {@link ForkJoinPool}.
+ * <p>
+ * Each child subtree is culled into its own {@link CullList}, using a
+ * per-thread copy of the viewport camera so the camera's plane state is not
+ * shared between workers. The lists hold the visible geometries in the same
+ * order the serial traversal would enqueue them, so once all workers are
+ * done the render thread can walk the lists in child order and fill the
+ * render queue exactly as {@link RenderManager#renderScene} would.
+ * <p>
+ * Spatials that have controls are not entered by the workers, since
+ * {@link Spatial#runControlRender} may modify the scene. They are recorded
+ * together with the plane state they would have been culled with, and the
+ * render thread renders those subtrees serially when merging the lists.
+ *
+ * @see RenderManager#setParallelCulling(boolean)
+ * @author jMonkeyEngine
+ */
+final class ParallelCuller {
+
+    private static final Logger logger = Logger.getLogger(RenderManager.class.getName());
+
+    /**
+     * Root children are culled in chunks of at least this many children,
+     * so each task copies the camera at most once per chunk.
+     */
+    private static final int MIN_CHUNK = 16;
+
+    private final ThreadLocal<Camera> workerCams = new ThreadLocal<Camera>() {
+        @Override
+        protected Camera initialValue() {
+            return new Camera(1, 1);
+        }
+    };
+
+    private ForkJoinPool pool;
+    private CullList[] lists = new CullList[0];
+
+    void setPool(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    ForkJoinPool getPool() {
+        ForkJoinPool p = pool;
+        return p != null ? p : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Culls every child of the root against the camera, starting from
+     * the camera's current plane state. The root itself must already have
+     * passed culling.
+     *
+     * @return one list per child of the root, in child order
+     */
+    CullList[] cull(Node root, Camera cam) {
+        Spatial[] children = ((SafeArrayList<Spatial>) root.getChildren()).getArray();
+        if (lists.length < children.length) {
+            CullList[] newLists = new CullList[children.length];
+            System.arraycopy(lists, 0, newLists, 0, lists.length);
+            for (int i = lists.length; i < newLists.length; i++) {
+                newLists[i] = new CullList();
+            }
+            lists = newLists;
+        }
+
+        int chunk = Math.max(MIN_CHUNK, children.length / (getPool().getParallelism() * 4));
+        getPool().invoke(new CullTask(children, lists, cam, cam.getPlaneState(), 0, children.length, chunk));
+        return lists;
+    }
+
+    private final class CullTask extends RecursiveAction {
+
+        private final Spatial[] children;
+        private final CullList[] lists;
+        private final Camera cam;
+        private final int planeState;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        CullTask(Spatial[] children, CullList[] lists, Camera cam, int planeState, int from, int to, int chunk) {
+            this.children = children;
+            this.lists = lists;
+            this.cam = cam;
+            this.planeState = planeState;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new CullTask(children, lists, cam, planeState, from, mid, chunk),
+                          new CullTask(children, lists, cam, planeState, mid, to, chunk));
+                return;
+            }
+
+            Camera workerCam = workerCams.get();
+            workerCam.copyFrom(cam);
+            for (int i = from; i < to; i++) {
+                CullList list = lists[i];
+                list.clear();
+                workerCam.setPlaneState(planeState);
+                cullChild(children[i], workerCam, list);
+            }
+        }
+    }
+
+    private static void cullChild(Spatial s, Camera cam, CullList out) {
+        try {
+            cullSubScene(s, cam, out);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "renderSubScene crash contained: {0}", e.toString());
+        }
+    }
+
+    private static void cullSubScene(Spatial scene, Camera cam, CullList out) {
+        if (scene.getNumControls() > 0) {
+            // culled and rendered on the render thread
+            out.add(scene, cam.getPlaneState());
+            return;
+        }
+
+        if (!scene.checkCulling(cam)) {
+            return;
+        }
+
+        if (scene instanceof Node) {
+            Spatial[] children = ((SafeArrayList<Spatial>) ((Node) scene).getChildren()).getArray();
+            int camState = cam.getPlaneState();
+            for (int i = 0; i < children.length; i++) {
+                cam.setPlaneState(camState);
+                cullChild(children[i], cam, out);
+            }
+        } else if (scene instanceof Geometry) {
+            out.add(scene, CullList.ENQUEUE);
+        }
+    }
+
+    /**
+     * The result of culling one child subtree of the root.
+     * <p>
+     * Each entry is either a visible geometry to enqueue, or a spatial that
+     * has to be rendered serially starting from the recorded plane state.
+     */
+    static final class CullList {
+
+        static final int ENQUEUE = -1;
+
+        private Spatial[] spatials = new Spatial[16];
+        private int[] planeStates = new int[16];
+        private int size;
+
+        void add(Spatial spatial, int planeState) {
+            if (size == spatials.length) {
+                Spatial[] newSpatials = new Spatial[size * 2];
+                System.arraycopy(spatials, 0, newSpatials, 0, size);
+                spatials = newSpatials;
+                int[] newStates = new int[size * 2];
+                System.arraycopy(planeStates, 0, newStates, 0, size);
+                planeStates = newStates;
+            }
+            spatials[size] = spatial;
+            planeStates[size] = planeState;
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        Spatial getSpatial(int index) {
+            return spatials[index];
+        }
+
+        /**
+         * @return the plane state to render the spatial with, or
+         * {@link #ENQUEUE} if the spatial is a visible geometry.
+         */
+        int getPlaneState(int index) {
+            return planeStates[index];
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                spatials[i] = null;
+            }
+            size = 0;
+        }
+    }
+}
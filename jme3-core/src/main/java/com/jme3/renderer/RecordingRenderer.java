@@ -0,0 +1,311 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.shader.Shader;
+import com.jme3.shader.Shader.ShaderSource;
+import com.jme3.shader.Uniform;
+import com.jme3.texture.FrameBuffer;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.EnumSet;
+
+/**
+ * A {@link Renderer} that records all calls into a {@link CommandBuffer}
+ * instead of executing them.
+ * <p>
+ * Queries such as {@link #getCaps() } and {@link #getLimits() } are
+ * answered by the target renderer, which is the renderer the buffer is
+ * meant to be replayed to. {@link #getStatistics() } returns statistics
+ * owned by the recording renderer, as the ones of the target are not safe
+ * to update from another thread; the target counts the recorded work when
+ * the buffer is replayed. Calls that read back data, like
+ * {@link #readFrameBuffer(com.jme3.texture.FrameBuffer, java.nio.ByteBuffer) },
+ * only complete when the buffer is replayed.
+ *
+ * @see CommandBuffer
+ * @author jMonkeyEngine
+ */
+public class RecordingRenderer implements Renderer {
+
+    private final Renderer target;
+    private final Statistics statistics = new Statistics();
+    private CommandBuffer buffer;
+
+    /**
+     * Creates a recording renderer.
+     *
+     * @param target The renderer that answers queries
+     * @param buffer The buffer to record into
+     */
+    public RecordingRenderer(Renderer target, CommandBuffer buffer) {
+        if (target == null) {
+            throw new IllegalArgumentException("target cannot be null");
+        }
+        this.target = target;
+        setCommandBuffer(buffer);
+    }
+
+    /**
+     * @return The renderer that answers queries.
+     */
+    public Renderer getTarget() {
+        return target;
+    }
+
+    /**
+     * Sets the buffer that following calls are recorded into.
+     *
+     * @param buffer The buffer to record into
+     */
+    public void setCommandBuffer(CommandBuffer buffer) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer cannot be null");
+        }
+        this.buffer = buffer;
+    }
+
+    /**
+     * @return The buffer calls are recorded into.
+     */
+    public CommandBuffer getCommandBuffer() {
+        return buffer;
+    }
+
+    public void initialize() {
+        buffer.beginCommand(CommandBuffer.INITIALIZE);
+    }
+
+    public EnumSet<Caps> getCaps() {
+        return target.getCaps();
+    }
+
+    public EnumMap<Limits, Integer> getLimits() {
+        return target.getLimits();
+    }
+
+    public Statistics getStatistics() {
+        return statistics;
+    }
+
+    public void invalidateState() {
+        buffer.beginCommand(CommandBuffer.INVALIDATE_STATE);
+    }
+
+    public void clearBuffers(boolean color, boolean depth, boolean stencil) {
+        buffer.beginCommand(CommandBuffer.CLEAR_BUFFERS);
+        buffer.putInt((color ? 1 : 0) | (depth ? 2 : 0) | (stencil ? 4 : 0));
+    }
+
+    public void setBackgroundColor(ColorRGBA color) {
+        buffer.beginCommand(CommandBuffer.SET_BACKGROUND_COLOR);
+        buffer.putFloat(color.r);
+        buffer.putFloat(color.g);
+        buffer.putFloat(color.b);
+        buffer.putFloat(color.a);
+    }
+
+    public void applyRenderState(RenderState state) {
+        buffer.beginCommand(CommandBuffer.APPLY_RENDER_STATE);
+        buffer.putRenderState(state);
+    }
+
+    public void setDepthRange(float start, float end) {
+        buffer.beginCommand(CommandBuffer.SET_DEPTH_RANGE);
+        buffer.putFloat(start);
+        buffer.putFloat(end);
+    }
+
+    public void postFrame() {
+        buffer.beginCommand(CommandBuffer.POST_FRAME);
+    }
+
+    public void setViewPort(int x, int y, int width, int height) {
+        buffer.beginCommand(CommandBuffer.SET_VIEWPORT);
+        buffer.putInt(x);
+        buffer.putInt(y);
+        buffer.putInt(width);
+        buffer.putInt(height);
+    }
+
+    public void setClipRect(int x, int y, int width, int height) {
+        buffer.beginCommand(CommandBuffer.SET_CLIP_RECT);
+        buffer.putInt(x);
+        buffer.putInt(y);
+        buffer.putInt(width);
+        buffer.putInt(height);
+    }
+
+    public void clearClipRect() {
+        buffer.beginCommand(CommandBuffer.CLEAR_CLIP_RECT);
+    }
+
+    public void setShader(Shader shader) {
+        if (shader == null) {
+            throw new IllegalArgumentException("Shader cannot be null");
+        }
+        buffer.beginCommand(CommandBuffer.SET_SHADER);
+        buffer.putShader(shader);
+    }
+
+    @Override
+    public void setShader(Shader shader, Uniform[] uniforms, int offset, int count) {
+        if (shader == null) {
+            throw new IllegalArgumentException("Shader cannot be null");
+        }
+        buffer.beginCommand(CommandBuffer.SET_SHADER);
+        buffer.putShader(shader, uniforms, offset, count);
+    }
+
+    public void deleteShader(Shader shader) {
+        buffer.beginCommand(CommandBuffer.DELETE_SHADER);
+        buffer.putRef(shader);
+    }
+
+    public void deleteShaderSource(ShaderSource source) {
+        buffer.beginCommand(CommandBuffer.DELETE_SHADER_SOURCE);
+        buffer.putRef(source);
+    }
+
+    public void copyFrameBuffer(FrameBuffer src, FrameBuffer dst, boolean copyDepth) {
+        buffer.beginCommand(CommandBuffer.COPY_FRAMEBUFFER);
+        buffer.putInt(copyDepth ? 1 : 0);
+        buffer.putRef(src);
+        buffer.putRef(dst);
+    }
+
+    public void setFrameBuffer(FrameBuffer fb) {
+        buffer.beginCommand(CommandBuffer.SET_FRAMEBUFFER);
+        buffer.putRef(fb);
+    }
+
+    public void setMainFrameBufferOverride(FrameBuffer fb) {
+        buffer.beginCommand(CommandBuffer.SET_MAIN_FRAMEBUFFER_OVERRIDE);
+        buffer.putRef(fb);
+    }
+
+    public void readFrameBuffer(FrameBuffer fb, ByteBuffer byteBuf) {
+        buffer.beginCommand(CommandBuffer.READ_FRAMEBUFFER);
+        buffer.putRef(fb);
+        buffer.putRef(byteBuf);
+    }
+
+    public void readFrameBufferWithFormat(FrameBuffer fb, ByteBuffer byteBuf, Image.Format format) {
+        buffer.beginCommand(CommandBuffer.READ_FRAMEBUFFER_WITH_FORMAT);
+        buffer.putRef(fb);
+        buffer.putRef(byteBuf);
+        buffer.putRef(format);
+    }
+
+    public void deleteFrameBuffer(FrameBuffer fb) {
+        buffer.beginCommand(CommandBuffer.DELETE_FRAMEBUFFER);
+        buffer.putRef(fb);
+    }
+
+    public void setTexture(int unit, Texture tex) {
+        buffer.beginCommand(CommandBuffer.SET_TEXTURE);
+        buffer.putInt(unit);
+        buffer.putRef(tex);
+    }
+
+    public void modifyTexture(Texture tex, Image pixels, int x, int y) {
+        buffer.beginCommand(CommandBuffer.MODIFY_TEXTURE);
+        buffer.putInt(x);
+        buffer.putInt(y);
+        buffer.putRef(tex);
+        buffer.putRef(pixels);
+    }
+
+    public void deleteImage(Image image) {
+        buffer.beginCommand(CommandBuffer.DELETE_IMAGE);
+        buffer.putRef(image);
+    }
+
+    public void updateBufferData(VertexBuffer vb) {
+        buffer.beginCommand(CommandBuffer.UPDATE_BUFFER_DATA);
+        buffer.putRef(vb);
+    }
+
+    public void deleteBuffer(VertexBuffer vb) {
+        buffer.beginCommand(CommandBuffer.DELETE_BUFFER);
+        buffer.putRef(vb);
+    }
+
+    public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+        buffer.beginCommand(CommandBuffer.RENDER_MESH);
+        buffer.putInt(lod);
+        buffer.putInt(count);
+        buffer.putRef(mesh);
+        buffer.putRef(instanceData);
+    }
+
+    public void resetGLObjects() {
+        buffer.beginCommand(CommandBuffer.RESET_GL_OBJECTS);
+    }
+
+    public void cleanup() {
+        buffer.beginCommand(CommandBuffer.CLEANUP);
+    }
+
+    public void setDefaultAnisotropicFilter(int level) {
+        if (level < 1) {
+            throw new IllegalArgumentException("level cannot be less than 1");
+        }
+        buffer.beginCommand(CommandBuffer.SET_DEFAULT_ANISOTROPIC_FILTER);
+        buffer.putInt(level);
+    }
+
+    public void setAlphaToCoverage(boolean value) {
+        buffer.beginCommand(CommandBuffer.SET_ALPHA_TO_COVERAGE);
+        buffer.putInt(value ? 1 : 0);
+    }
+
+    public void setMainFrameBufferSrgb(boolean srgb) {
+        buffer.beginCommand(CommandBuffer.SET_MAIN_FRAMEBUFFER_SRGB);
+        buffer.putInt(srgb ? 1 : 0);
+    }
+
+    public void setLinearizeSrgbImages(boolean linearize) {
+        buffer.beginCommand(CommandBuffer.SET_LINEARIZE_SRGB_IMAGES);
+        buffer.putInt(linearize ? 1 : 0);
+    }
+
+    public String getGlString(int gl_string_id) {
+        return target.getGlString(gl_string_id);
+    }
+}
@@ -65,6 +65,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -101,6 +102,10 @@ public class RenderManager {
     private LightFilter lightFilter = new DefaultLightFilter();
     private TechniqueDef.LightMode preferredLightMode = TechniqueDef.LightMode.MultiPass;
     private int singlePassLightBatchSize = 1;
+    private boolean parallelCulling = false;
+    private final ParallelCuller culler = new ParallelCuller();
+    private boolean mergingCullLists = false;
+    private Timer timer;
 
     /**
      * Create a high-level rendering interface over the
@@ -395,6 +400,7 @@ public class RenderManager {
      * @param timer The timer to query time world parameters
      */
     public void setTimer(Timer timer) {
+        this.timer = timer;
         uniformBindingManager.setTimer(timer);
     }
 
@@ -513,6 +519,46 @@ public class RenderManager {
         this.handleTranlucentBucket = handleTranslucentBucket;
     }
 
+    /**
+     * Enables or disables parallel frustum culling of scenes.
+     * <p>
+     * When enabled, {@link #renderScene(com.jme3.scene.Spatial, com.jme3.renderer.ViewPort) }
+     * culls the children of a scene's root node on a {@link ForkJoinPool},
+     * then merges the visible geometries into the render queue in scene
+     * graph order, so the queue and the resulting statistics are the same
+     * as with serial culling. Subtrees of spatials with controls are still
+     * culled and rendered on the render thread, since controls may modify the
+     * scene when they are rendered. The scene must not be modified while it
+     * is being rendered.
+     * <p>
+     * Parallel culling is not used while VR instancing is active.
+     *
+     * @param parallelCulling true to cull scenes in parallel, false by default.
+     * @see #setParallelCullingPool(java.util.concurrent.ForkJoinPool)
+     */
+    public void setParallelCulling(boolean parallelCulling) {
+        this.parallelCulling = parallelCulling;
+    }
+
+    /**
+     * @return true if scenes are culled in parallel.
+     * @see #setParallelCulling(boolean)
+     */
+    public boolean isParallelCulling() {
+        return parallelCulling;
+    }
+
+    /**
+     * Sets the pool used for parallel culling.
+     *
+     * @param pool The pool to use, or null to use the
+     * {@link ForkJoinPool#commonPool() common pool}.
+     * @see #setParallelCulling(boolean)
+     */
+    public void setParallelCullingPool(ForkJoinPool pool) {
+        culler.setPool(pool);
+    }
+
     /**
      * Internal use only. Sets the world matrix to use for future
      * rendering. This has no effect unless objects are rendered manually
@@ -717,7 +763,58 @@ public class RenderManager {
         //reset of the camera plane state for proper culling (must be 0 for the first note of the scene to be rendered)
         vp.getCamera().setPlaneState(0);
         //rendering the scene
-        renderSubScene(scene, vp);
+        if (parallelCulling && !mergingCullLists && _VRInstancing_RightCamProjection == null
+                && scene instanceof Node && ((Node) scene).getQuantity() > 1) {
+            renderSceneParallel((Node) scene, vp);
+        } else {
+            renderSubScene(scene, vp);
+        }
+    }
+
+    // culls the children of the root in parallel, then enqueues in scene graph order
+    private void renderSceneParallel(Node scene, ViewPort vp) {
+        Camera cam = vp.getCamera();
+        if (!scene.checkCulling(cam)) {
+            return;
+        }
+        scene.runControlRender(this, vp);
+
+        ParallelCuller.CullList[] lists = culler.cull(scene, cam);
+        int count = scene.getQuantity();
+        RenderQueue queue = vp.getQueue();
+        // controls rendered below may render other scenes, those use the serial path
+        mergingCullLists = true;
+        try {
+            mergeCullLists(lists, count, queue, vp);
+        } finally {
+            mergingCullLists = false;
+        }
+    }
+
+    private void mergeCullLists(ParallelCuller.CullList[] lists, int count, RenderQueue queue, ViewPort vp) {
+        Camera cam = vp.getCamera();
+        for (int i = 0; i < count; i++) {
+            ParallelCuller.CullList list = lists[i];
+            for (int j = 0; j < list.size(); j++) {
+                Spatial s = list.getSpatial(j);
+                int planeState = list.getPlaneState(j);
+                try {
+                    if (planeState == ParallelCuller.CullList.ENQUEUE) {
+                        Geometry gm = (Geometry) s;
+                        if (gm.getMaterial() == null) {
+                            throw new IllegalStateException("No material is set for Geometry: " + gm.getName());
+                        }
+                        queue.addToQueue(gm, gm.getQueueBucket());
+                    } else {
+                        cam.setPlaneState(planeState);
+                        renderSubScene(s, vp);
+                    }
+                } catch(Exception e) {
+                    logger.log(Level.SEVERE, "renderSubScene crash contained: {0}", e.toString());
+                }
+            }
+            list.clear();
+        }
     }
     
     private Material setMaterialVRInstancing(Geometry geom) {
@@ -1214,6 +1311,84 @@ public class RenderManager {
         
         if (prof!=null) prof.vpStep(VpStep.EndRender, vp, null);
     }
+
+    /**
+     * Renders the {@link ViewPort} like {@link #renderViewPort(com.jme3.renderer.ViewPort, float) },
+     * but records the renderer calls into the given command buffer
+     * instead of executing them.
+     * <p>
+     * The commands are appended to the buffer and can be issued later with
+     * {@link #replay(com.jme3.renderer.CommandBuffer) }. The recorded
+     * commands do not depend on the renderer state left by earlier frames.
+     * <p>
+     * Recording uses a separate rendering context kept by the buffer, with
+     * the settings of this RenderManager (forced material and technique,
+     * light filter, light mode, timer...) copied at the start of each call.
+     * This RenderManager is not modified, so it can keep rendering on the
+     * render thread while a frame is recorded on another thread, as long as
+     * the scenes of the view port are not rendered or modified meanwhile.
+     * <p>
+     * View ports with {@link SceneProcessor scene processors} cannot be
+     * recorded, since processors render through the renderer they were
+     * initialized with.
+     *
+     * @param vp View port to render
+     * @param tpf Time per frame value
+     * @param commands The buffer to record into
+     * @throws IllegalArgumentException If the view port has scene processors
+     */
+    public void renderViewPort(ViewPort vp, float tpf, CommandBuffer commands) {
+        if (!vp.getProcessors().isEmpty()) {
+            throw new IllegalArgumentException("Cannot record ViewPort " + vp.getName()
+                    + ", it has scene processors");
+        }
+
+        RenderManager context = commands.recordingContext;
+        if (context == null || ((RecordingRenderer) context.renderer).getTarget() != renderer) {
+            context = new RenderManager(new RecordingRenderer(renderer, commands));
+            commands.recordingContext = context;
+        }
+        context.copySettings(this);
+        if (timer != null) {
+            context.uniformBindingManager.newFrame();
+        }
+        // make sure the view port is recorded
+        context.prevCam = null;
+        context.renderViewPort(vp, tpf);
+    }
+
+    private void copySettings(RenderManager source) {
+        forcedMaterial = source.forcedMaterial;
+        forcedTechnique = source.forcedTechnique;
+        forcedRenderState = source.forcedRenderState;
+        forcedOverrides.clear();
+        forcedOverrides.addAll(source.forcedOverrides);
+        handleTranlucentBucket = source.handleTranlucentBucket;
+        lightFilter = source.lightFilter;
+        preferredLightMode = source.preferredLightMode;
+        singlePassLightBatchSize = source.singlePassLightBatchSize;
+        parallelCulling = source.parallelCulling;
+        culler.setPool(source.culler.getPool());
+        if (timer != source.timer) {
+            setTimer(source.timer);
+        }
+    }
+
+    /**
+     * Replays the commands of the given buffer to the {@link #getRenderer() renderer}
+     * of this RenderManager. Must be called on the render thread.
+     * <p>
+     * Unlike {@link CommandBuffer#replay(com.jme3.renderer.Renderer) }, the
+     * view port of the next directly rendered camera is set again, since the
+     * buffer may have changed it.
+     *
+     * @param commands The buffer to replay
+     * @see #renderViewPort(com.jme3.renderer.ViewPort, float, com.jme3.renderer.CommandBuffer)
+     */
+    public void replay(CommandBuffer commands) {
+        commands.replay(renderer);
+        prevCam = null;
+    }
     
     /**
      * Called by the application to render any ViewPorts
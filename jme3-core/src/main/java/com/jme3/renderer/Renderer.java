@@ -37,10 +37,12 @@ import com.jme3.scene.Mesh;
 import com.jme3.scene.VertexBuffer;
 import com.jme3.shader.Shader;
 import com.jme3.shader.Shader.ShaderSource;
+import com.jme3.shader.Uniform;
 import com.jme3.system.AppSettings;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
+import com.jme3.util.ListMap;
 import com.jme3.util.NativeObject;
 import java.nio.ByteBuffer;
 import java.util.EnumMap;
@@ -167,6 +169,34 @@ public interface Renderer {
      */
     public void setShader(Shader shader);
 
+    /**
+     * Sets the shader to use for rendering, like {@link #setShader(com.jme3.shader.Shader) },
+     * but uploads the values of the given uniforms instead of the values held
+     * by the uniforms of the shader. The uniforms are matched by name, see
+     * {@link Uniform#copyFrom(com.jme3.shader.Uniform) } to capture them.
+     * <p>
+     * Renderers should upload the values without modifying the uniforms of
+     * the shader, so that they can be captured on one thread while captured
+     * values are uploaded on another, see {@link CommandBuffer}. The default
+     * implementation copies the values into the uniforms of the shader and
+     * calls {@link #setShader(com.jme3.shader.Shader) }.
+     *
+     * @param shader The shader to use for rendering.
+     * @param uniforms The uniform values to upload
+     * @param offset The index of the first uniform in <code>uniforms</code>
+     * @param count The number of uniforms to upload
+     */
+    public default void setShader(Shader shader, Uniform[] uniforms, int offset, int count) {
+        ListMap<String, Uniform> shaderUniforms = shader.getUniformMap();
+        for (int i = offset; i < offset + count; i++) {
+            Uniform uniform = shaderUniforms.get(uniforms[i].getName());
+            if (uniform != null) {
+                uniform.copyFrom(uniforms[i]);
+            }
+        }
+        setShader(shader);
+    }
+
     /**
      * Deletes a shader. This method also deletes
      * the attached shader sources.
@@ -55,10 +55,14 @@ public class Statistics {
     protected int numTextureBinds;
     protected int numFboSwitches;
     protected int numUniformsSet;
+    protected int numUniformsSkipped;
+    protected int numSortedObjects;
 
     protected int memoryShaders;
     protected int memoryFrameBuffers;
     protected int memoryTextures;
+    protected int memoryBufferArenas;
+    protected int memoryBufferAllocations;
 
     protected IntMap<Void> shadersUsed = new IntMap<Void>();
     protected IntMap<Void> texturesUsed = new IntMap<Void>();
@@ -90,7 +94,14 @@ public class Statistics {
 
                              "FrameBuffers (S)",
                              "FrameBuffers (F)",
-                             "FrameBuffers (M)" };
+                             "FrameBuffers (M)",
+
+                             "Sorted Objects",
+
+                             "Uniforms (Skipped)",
+
+                             "Buffer Arenas (M)",
+                             "Buffer Allocations (M)" };
 
     }
 
@@ -118,6 +129,13 @@ public class Statistics {
         data[10] = numFboSwitches;
         data[11] = fbosUsed.size();
         data[12] = memoryFrameBuffers;
+
+        data[13] = numSortedObjects;
+
+        data[14] = numUniformsSkipped;
+
+        data[15] = memoryBufferArenas;
+        data[16] = memoryBufferAllocations;
     }
 
     /**
@@ -173,6 +191,16 @@ public class Statistics {
         numUniformsSet ++;
     }
 
+    /**
+     * Called by the Renderer when setting a uniform was skipped
+     * because the shader already had the same value.
+     */
+    public void onUniformSkipped(){
+        if( !enabled )
+            return;
+        numUniformsSkipped ++;
+    }
+
     /**
      * Called by the Renderer when a texture has been set.
      * 
@@ -213,6 +241,17 @@ public class Statistics {
             numFboSwitches ++;
     }
     
+    /**
+     * Called by the RenderQueue when a geometry list has been sorted.
+     *
+     * @param count The number of geometries in the list
+     */
+    public void onGeometryListSorted(int count){
+        if( !enabled )
+            return;
+        numSortedObjects += count;
+    }
+
     /**
      * Clears all frame-specific statistics such as objects used per frame.
      */
@@ -228,6 +267,8 @@ public class Statistics {
         numTextureBinds = 0;
         numFboSwitches = 0;
         numUniformsSet = 0;
+        numUniformsSkipped = 0;
+        numSortedObjects = 0;
         
         lastShader = -1;
     }
@@ -286,6 +327,45 @@ public class Statistics {
         memoryFrameBuffers --;
     }
 
+    /**
+     * Called by the Renderer when it creates a shared buffer object
+     * for sub-allocating vertex buffers
+     */
+    public void onNewBufferArena(){
+        if( !enabled )
+            return;
+        memoryBufferArenas ++;
+    }
+
+    /**
+     * Called by the Renderer when it deletes a shared buffer object
+     */
+    public void onDeleteBufferArena(){
+        if( !enabled )
+            return;
+        memoryBufferArenas --;
+    }
+
+    /**
+     * Called by the Renderer when a vertex buffer was placed inside
+     * a shared buffer object
+     */
+    public void onBufferAllocated(){
+        if( !enabled )
+            return;
+        memoryBufferAllocations ++;
+    }
+
+    /**
+     * Called by the Renderer when a vertex buffer was removed from
+     * a shared buffer object
+     */
+    public void onBufferFreed(){
+        if( !enabled )
+            return;
+        memoryBufferAllocations --;
+    }
+
     /**
      * Called when video memory is cleared.
      */
@@ -293,6 +373,8 @@ public class Statistics {
         memoryFrameBuffers = 0;
         memoryShaders = 0;
         memoryTextures = 0;
+        memoryBufferArenas = 0;
+        memoryBufferAllocations = 0;
     }
 
     public void setEnabled( boolean f ) {
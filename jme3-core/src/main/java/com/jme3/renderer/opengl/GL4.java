@@ -31,6 +31,7 @@
  */
 package com.jme3.renderer.opengl;
 
+import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
 
 /**
@@ -42,5 +43,50 @@ public interface GL4 extends GL3 {
     public static final int GL_TESS_CONTROL_SHADER=0x8E88;
     public static final int GL_TESS_EVALUATION_SHADER=0x8E87;
     public static final int GL_PATCHES=0xE;
+    public static final int GL_DRAW_INDIRECT_BUFFER=0x8F3F;
+    public static final int GL_MAP_WRITE_BIT=0x0002;
+    public static final int GL_MAP_PERSISTENT_BIT=0x0040;
+    public static final int GL_MAP_COHERENT_BIT=0x0080;
     public void glPatchParameter(int count);
+
+    /**
+     * Renders multiple sets of indexed primitives, reading the draw commands
+     * from the buffer bound to {@link #GL_DRAW_INDIRECT_BUFFER}.
+     * Requires OpenGL 4.3 or ARB_multi_draw_indirect.
+     *
+     * @param mode the primitive type
+     * @param type the index type
+     * @param indirect the byte offset of the first command in the indirect buffer
+     * @param drawCount the number of commands to execute
+     * @param stride the distance in bytes between commands, 0 for tightly packed
+     */
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride);
+
+    /**
+     * Creates immutable storage for the buffer bound to the given target.
+     * Requires OpenGL 4.4 or ARB_buffer_storage.
+     *
+     * @param target the buffer target
+     * @param size the size of the storage in bytes
+     * @param flags the storage flags, e.g. {@link #GL_MAP_PERSISTENT_BIT}
+     */
+    public void glBufferStorage(int target, long size, int flags);
+
+    /**
+     * Maps a range of the buffer bound to the given target into client memory.
+     *
+     * @param target the buffer target
+     * @param offset the byte offset of the range
+     * @param length the length of the range in bytes
+     * @param access the access flags, e.g. {@link #GL_MAP_WRITE_BIT}
+     * @return the mapped memory
+     */
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access);
+
+    /**
+     * Releases the mapping of the buffer bound to the given target.
+     *
+     * @param target the buffer target
+     */
+    public void glUnmapBuffer(int target);
 }
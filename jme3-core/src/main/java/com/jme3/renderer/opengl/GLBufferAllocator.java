@@ -0,0 +1,530 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.renderer.RenderContext;
+import com.jme3.renderer.Statistics;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Places small {@link VertexBuffer vertex buffers} inside large shared GL
+ * buffer objects ("arenas") instead of creating one buffer object per
+ * vertex buffer.
+ * <p>
+ * Each arena keeps a free list of byte ranges. Freed ranges are coalesced
+ * with their neighbours, and {@link #defragment() } compacts all live
+ * allocations by orphaning the arenas and uploading the data again.
+ * Vertex buffers are only weakly referenced; ranges of buffers that were
+ * garbage collected without being deleted are reclaimed lazily.
+ * <p>
+ * A sub-allocated vertex buffer shares the id of its arena and stores the
+ * handle of its allocation, the renderer adds {@link #getOffset(VertexBuffer) }
+ * to all pointers into the buffer.
+ *
+ * @author jMonkeyEngine
+ */
+final class GLBufferAllocator {
+
+    static final int DEFAULT_ARENA_SIZE = 1024 * 1024;
+    static final int DEFAULT_MAX_ALLOCATION_SIZE = 64 * 1024;
+
+    /**
+     * Allocations are aligned so that any attribute or index
+     * format starts on a valid boundary.
+     */
+    static final int ALIGNMENT = 16;
+
+    private static final class Arena {
+        final int id;
+        final int target;
+        final int capacity;
+        final TreeMap<Integer, Integer> free = new TreeMap<Integer, Integer>();
+        int used;
+        int allocations;
+
+        Arena(int id, int target, int capacity) {
+            this.id = id;
+            this.target = target;
+            this.capacity = capacity;
+            free.put(0, capacity);
+        }
+
+        int allocate(int size) {
+            for (Map.Entry<Integer, Integer> range : free.entrySet()) {
+                if (range.getValue() >= size) {
+                    int offset = range.getKey();
+                    free.remove(offset);
+                    if (range.getValue() > size) {
+                        free.put(offset + size, range.getValue() - size);
+                    }
+                    used += size;
+                    allocations++;
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        void release(int offset, int size) {
+            used -= size;
+            allocations--;
+            int end = offset + size;
+            Map.Entry<Integer, Integer> next = free.ceilingEntry(end);
+            if (next != null && next.getKey() == end) {
+                free.remove(end);
+                size += next.getValue();
+            }
+            Map.Entry<Integer, Integer> prev = free.lowerEntry(offset);
+            if (prev != null && prev.getKey() + prev.getValue() == offset) {
+                offset = prev.getKey();
+                size += prev.getValue();
+            }
+            free.put(offset, size);
+        }
+
+        void reset() {
+            free.clear();
+            free.put(0, capacity);
+            used = 0;
+            allocations = 0;
+        }
+    }
+
+    private static final class Allocation {
+        WeakReference<VertexBuffer> buffer;
+        Arena arena;
+        int offset;
+        int size;
+    }
+
+    private final GL gl;
+    private final GLExt glext;
+    private final RenderContext context;
+    private final Statistics statistics;
+    private final IntBuffer intBuf1 = BufferUtils.createIntBuffer(1);
+
+    private final int arenaSize;
+    private final int maxAllocationSize;
+
+    private final ArrayList<Arena> arenas = new ArrayList<Arena>();
+    private final ArrayList<Allocation> allocations = new ArrayList<Allocation>();
+    private final ArrayList<Integer> freeHandles = new ArrayList<Integer>();
+
+    GLBufferAllocator(GL gl, GLExt glext, RenderContext context, Statistics statistics) {
+        this(gl, glext, context, statistics, DEFAULT_ARENA_SIZE, DEFAULT_MAX_ALLOCATION_SIZE);
+    }
+
+    GLBufferAllocator(GL gl, GLExt glext, RenderContext context, Statistics statistics,
+                      int arenaSize, int maxAllocationSize) {
+        if (maxAllocationSize > arenaSize) {
+            throw new IllegalArgumentException("Allocations cannot be larger than an arena");
+        }
+        this.gl = gl;
+        this.glext = glext;
+        this.context = context;
+        this.statistics = statistics;
+        this.arenaSize = arenaSize;
+        this.maxAllocationSize = maxAllocationSize;
+    }
+
+    /**
+     * @return true if the given vertex buffer may be placed in an arena.
+     */
+    boolean canAllocate(VertexBuffer vb) {
+        if (vb.getData() == null) {
+            return false;
+        }
+        Type type = vb.getBufferType();
+        if (type == Type.InterleavedData || type == Type.DrawIndirect) {
+            return false;
+        }
+        if (vb.getUsage() == Usage.Stream || vb.getUsage() == Usage.CpuOnly) {
+            return false;
+        }
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+            case Half:
+            case Short:
+            case UnsignedShort:
+            case Int:
+            case UnsignedInt:
+            case Float:
+                break;
+            default:
+                return false;
+        }
+        return getDataSize(vb) <= maxAllocationSize;
+    }
+
+    /**
+     * Uploads the data of the given vertex buffer into its allocation,
+     * allocating or moving it as needed.
+     *
+     * @return false if the buffer no longer fits in an arena. The buffer
+     * is released and reset in this case.
+     */
+    boolean upload(VertexBuffer vb) {
+        if (!canAllocate(vb)) {
+            if (vb.getAllocation() != -1) {
+                free(vb);
+                vb.resetObject();
+            }
+            return false;
+        }
+
+        int size = align(getDataSize(vb));
+        Allocation alloc = vb.getAllocation() != -1 ? allocations.get(vb.getAllocation()) : null;
+        if (alloc != null && alloc.size < size) {
+            free(vb);
+            alloc = null;
+        }
+        if (alloc == null) {
+            alloc = allocate(vb, size);
+        }
+        uploadData(alloc, vb);
+        return true;
+    }
+
+    /**
+     * @return the byte offset of the data of the given buffer within its
+     * buffer object, 0 if the buffer is not sub-allocated.
+     */
+    long getOffset(VertexBuffer vb) {
+        int handle = vb.getAllocation();
+        return handle == -1 ? 0 : allocations.get(handle).offset;
+    }
+
+    /**
+     * Releases the range used by the given buffer. The buffer itself is
+     * not modified.
+     *
+     * @return true if the buffer was sub-allocated.
+     */
+    boolean free(VertexBuffer vb) {
+        int handle = vb.getAllocation();
+        if (handle == -1) {
+            return false;
+        }
+        release(handle);
+        return true;
+    }
+
+    /**
+     * Releases the ranges of all vertex buffers that were garbage collected.
+     *
+     * @return the number of reclaimed allocations
+     */
+    int reclaim() {
+        int count = 0;
+        for (int i = 0; i < allocations.size(); i++) {
+            Allocation alloc = allocations.get(i);
+            if (alloc != null && alloc.buffer.get() == null) {
+                release(i);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compacts all live allocations to the start of the arenas and deletes
+     * arenas that are no longer needed. Each arena is orphaned before it is
+     * written again, so draws still in flight keep reading the old storage.
+     * <p>
+     * Offsets of sub-allocated buffers change, any vertex attribute
+     * pointers into the arenas must be set again.
+     */
+    void defragment() {
+        ArrayList<Allocation> live = new ArrayList<Allocation>(allocations.size());
+        ArrayList<VertexBuffer> liveBuffers = new ArrayList<VertexBuffer>(allocations.size());
+        for (Arena arena : arenas) {
+            for (int i = 0; i < allocations.size(); i++) {
+                Allocation alloc = allocations.get(i);
+                if (alloc == null || alloc.arena != arena) {
+                    continue;
+                }
+                VertexBuffer vb = alloc.buffer.get();
+                if (vb == null) {
+                    release(i);
+                } else {
+                    live.add(alloc);
+                    liveBuffers.add(vb);
+                }
+            }
+        }
+
+        for (Arena arena : arenas) {
+            arena.reset();
+            bind(arena);
+            gl.glBufferData(arena.target, arena.capacity, GL.GL_DYNAMIC_DRAW);
+        }
+
+        for (int i = 0; i < live.size(); i++) {
+            Allocation alloc = live.get(i);
+            VertexBuffer vb = liveBuffers.get(i);
+            Arena target = null;
+            int offset = -1;
+            for (Arena arena : arenas) {
+                if (arena.target == alloc.arena.target) {
+                    offset = arena.allocate(alloc.size);
+                    if (offset != -1) {
+                        target = arena;
+                        break;
+                    }
+                }
+            }
+            // all allocations fit in the arenas they came from
+            assert target != null;
+            alloc.arena = target;
+            alloc.offset = offset;
+            assign(vb, target, vb.getAllocation());
+            uploadData(alloc, vb);
+        }
+
+        for (int i = arenas.size() - 1; i >= 0; i--) {
+            if (arenas.get(i).allocations == 0) {
+                deleteArena(arenas.remove(i));
+            }
+        }
+    }
+
+    /**
+     * Deletes all arenas and resets all sub-allocated buffers.
+     */
+    void deleteAll() {
+        for (Arena arena : arenas) {
+            deleteArena(arena);
+        }
+        resetAll();
+    }
+
+    /**
+     * Forgets all arenas without deleting them, used when the GL context
+     * was lost. All sub-allocated buffers are reset.
+     */
+    void resetAll() {
+        for (Allocation alloc : allocations) {
+            if (alloc != null) {
+                VertexBuffer vb = alloc.buffer.get();
+                if (vb != null) {
+                    vb.resetObject();
+                }
+            }
+        }
+        arenas.clear();
+        allocations.clear();
+        freeHandles.clear();
+    }
+
+    /**
+     * @return the number of shared buffer objects.
+     */
+    int getArenaCount() {
+        return arenas.size();
+    }
+
+    /**
+     * @return the number of sub-allocated vertex buffers.
+     */
+    int getAllocationCount() {
+        return allocations.size() - freeHandles.size();
+    }
+
+    /**
+     * @return the number of bytes in use over all arenas, including
+     * alignment padding.
+     */
+    int getUsedBytes() {
+        int used = 0;
+        for (Arena arena : arenas) {
+            used += arena.used;
+        }
+        return used;
+    }
+
+    private Allocation allocate(VertexBuffer vb, int size) {
+        Arena arena = null;
+        int offset = -1;
+        int target = getTarget(vb);
+        for (int pass = 0; pass < 2 && offset == -1; pass++) {
+            if (pass == 1 && reclaim() == 0) {
+                break;
+            }
+            for (Arena a : arenas) {
+                if (a.target == target) {
+                    offset = a.allocate(size);
+                    if (offset != -1) {
+                        arena = a;
+                        break;
+                    }
+                }
+            }
+        }
+        if (offset == -1) {
+            arena = createArena(target);
+            offset = arena.allocate(size);
+        }
+
+        Allocation alloc = new Allocation();
+        alloc.buffer = new WeakReference<VertexBuffer>(vb);
+        alloc.arena = arena;
+        alloc.offset = offset;
+        alloc.size = size;
+
+        int handle;
+        if (freeHandles.isEmpty()) {
+            handle = allocations.size();
+            allocations.add(alloc);
+        } else {
+            handle = freeHandles.remove(freeHandles.size() - 1);
+            allocations.set(handle, alloc);
+        }
+        assign(vb, arena, handle);
+        statistics.onBufferAllocated();
+        return alloc;
+    }
+
+    private static void assign(VertexBuffer vb, Arena arena, int handle) {
+        boolean updateNeeded = vb.isUpdateNeeded();
+        if (vb.getId() != -1) {
+            vb.resetObject();
+        }
+        vb.setId(arena.id);
+        vb.setAllocation(handle);
+        if (!updateNeeded) {
+            vb.clearUpdateNeeded();
+        }
+    }
+
+    private void release(int handle) {
+        Allocation alloc = allocations.get(handle);
+        alloc.arena.release(alloc.offset, alloc.size);
+        allocations.set(handle, null);
+        freeHandles.add(handle);
+        statistics.onBufferFreed();
+    }
+
+    private Arena createArena(int target) {
+        intBuf1.clear();
+        gl.glGenBuffers(intBuf1);
+        Arena arena = new Arena(intBuf1.get(0), target, arenaSize);
+        bind(arena);
+        gl.glBufferData(target, arenaSize, GL.GL_DYNAMIC_DRAW);
+        arenas.add(arena);
+        statistics.onNewBufferArena();
+        return arena;
+    }
+
+    private void deleteArena(Arena arena) {
+        intBuf1.put(0, arena.id);
+        intBuf1.position(0).limit(1);
+        gl.glDeleteBuffers(intBuf1);
+        if (context.boundArrayVBO == arena.id) {
+            context.boundArrayVBO = 0;
+        }
+        if (context.boundElementArrayVBO == arena.id) {
+            context.boundElementArrayVBO = 0;
+        }
+        statistics.onDeleteBufferArena();
+    }
+
+    private void bind(Arena arena) {
+        if (arena.target == GL.GL_ELEMENT_ARRAY_BUFFER) {
+            if (context.boundElementArrayVBO != arena.id) {
+                gl.glBindBuffer(arena.target, arena.id);
+                context.boundElementArrayVBO = arena.id;
+            }
+        } else if (context.boundArrayVBO != arena.id) {
+            gl.glBindBuffer(arena.target, arena.id);
+            context.boundArrayVBO = arena.id;
+        }
+    }
+
+    private void uploadData(Allocation alloc, VertexBuffer vb) {
+        bind(alloc.arena);
+        Buffer data = vb.getData();
+        data.rewind();
+        int target = alloc.arena.target;
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+            case Half:
+                gl.glBufferSubData(target, alloc.offset, (ByteBuffer) data);
+                break;
+            case Short:
+            case UnsignedShort:
+                gl.glBufferSubData(target, alloc.offset, (ShortBuffer) data);
+                break;
+            case Int:
+            case UnsignedInt:
+                glext.glBufferSubData(target, alloc.offset, (IntBuffer) data);
+                break;
+            case Float:
+                gl.glBufferSubData(target, alloc.offset, (FloatBuffer) data);
+                break;
+            default:
+                throw new UnsupportedOperationException("Unknown buffer format.");
+        }
+    }
+
+    private static int getTarget(VertexBuffer vb) {
+        return vb.getBufferType() == Type.Index ? GL.GL_ELEMENT_ARRAY_BUFFER : GL.GL_ARRAY_BUFFER;
+    }
+
+    private static int getDataSize(VertexBuffer vb) {
+        Buffer data = vb.getData();
+        if (data instanceof ByteBuffer) {
+            return data.limit();
+        } else if (data instanceof ShortBuffer) {
+            return data.limit() * 2;
+        } else {
+            return data.limit() * 4;
+        }
+    }
+
+    private static int align(int size) {
+        return Math.max(ALIGNMENT, (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1));
+    }
+}
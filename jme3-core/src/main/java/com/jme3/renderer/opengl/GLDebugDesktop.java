@@ -95,6 +95,31 @@ public class GLDebugDesktop extends GLDebugES implements GL2, GL3, GL4 {
         checkError();
     }
 
+    @Override
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+        gl4.glMultiDrawElementsIndirect(mode, type, indirect, drawCount, stride);
+        checkError();
+    }
+
+    @Override
+    public void glBufferStorage(int target, long size, int flags) {
+        gl4.glBufferStorage(target, size, flags);
+        checkError();
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        ByteBuffer result = gl4.glMapBufferRange(target, offset, length, access);
+        checkError();
+        return result;
+    }
+
+    @Override
+    public void glUnmapBuffer(int target) {
+        gl4.glUnmapBuffer(target);
+        checkError();
+    }
+
     @Override
     public void glFramebufferTextureLayer(int param1, int param2, int param3, int param4, int param5) {
         gl3.glFramebufferTextureLayer(param1, param2, param3, param4, param5);
@@ -43,6 +43,7 @@ import com.jme3.scene.VertexBuffer;
 import com.jme3.scene.VertexBuffer.Format;
 import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.scene.mesh.MultiDrawMesh;
 import com.jme3.shader.Attribute;
 import com.jme3.shader.Shader;
 import com.jme3.shader.Shader.ShaderSource;
@@ -93,6 +94,12 @@ public final class GLRenderer implements Renderer {
     private int clipX, clipY, clipW, clipH;
     private int defaultAnisotropicFilter = 1;
     private boolean linearizeSrgbImages;
+    private final UniformShadowCache uniformCache = new UniformShadowCache();
+    private boolean uniformCaching = true;
+    private final GLBufferAllocator bufferAllocator;
+    private boolean bufferSubAllocation = false;
+    private final GLStreamingBuffers streamBuffers;
+    private boolean bufferStreaming = false;
     private HashSet<String> extensions;
 
     private final GL gl;
@@ -111,6 +118,8 @@ public final class GLRenderer implements Renderer {
         this.glfbo = glfbo;
         this.glext = glext;
         this.texUtil = new TextureUtil(gl, gl2, glext);
+        this.bufferAllocator = new GLBufferAllocator(gl, glext, context, statistics);
+        this.streamBuffers = new GLStreamingBuffers(gl, glext, context);
     }
 
     @Override
@@ -442,6 +451,16 @@ public final class GLRenderer implements Renderer {
             caps.add(Caps.CoreProfile);
         }
 
+        if (gl4 != null && caps.contains(Caps.OpenGL40)
+                && hasExtension("GL_ARB_multi_draw_indirect")) {
+            caps.add(Caps.MultiDrawIndirect);
+        }
+
+        if (gl4 != null && caps.contains(Caps.OpenGL40)
+                && hasExtension("GL_ARB_buffer_storage")) {
+            caps.add(Caps.BufferStorage);
+        }
+
         if (hasExtension("GL_ARB_get_program_binary")) {
             int binaryFormats = getInteger(GLExt.GL_NUM_PROGRAM_BINARY_FORMATS);
             if (binaryFormats > 0) {
@@ -541,6 +560,7 @@ public final class GLRenderer implements Renderer {
 
     public void invalidateState() {
         context.reset();
+        uniformCache.clear();
         if (gl2 != null) {
             context.initialDrawBuf = getInteger(GL2.GL_DRAW_BUFFER);
             context.initialReadBuf = getInteger(GL2.GL_READ_BUFFER);
@@ -550,6 +570,8 @@ public final class GLRenderer implements Renderer {
     public void resetGLObjects() {
         logger.log(Level.FINE, "Reseting objects and invalidating state");
         objManager.resetObjects();
+        bufferAllocator.resetAll();
+        streamBuffers.resetAll();
         statistics.clearMemory();
         invalidateState();
     }
@@ -557,6 +579,8 @@ public final class GLRenderer implements Renderer {
     public void cleanup() {
         logger.log(Level.FINE, "Deleting objects and invalidating state");
         objManager.deleteAllObjects(this);
+        bufferAllocator.deleteAll();
+        streamBuffers.deleteAll();
         OpenCLObjectManager.getInstance().deleteAllObjects();
         statistics.clearMemory();
         invalidateState();
@@ -941,6 +965,7 @@ public final class GLRenderer implements Renderer {
 
     public void postFrame() {
         objManager.deleteUnused(this);
+        streamBuffers.endFrame();
         OpenCLObjectManager.getInstance().deleteUnusedObjects();
         gl.resetStats();
     }
@@ -998,9 +1023,15 @@ public final class GLRenderer implements Renderer {
         if (uniform.getVarType() == null) {
             return; // value not set yet..
         }
-        statistics.onUniformSet();
 
         uniform.clearUpdateNeeded();
+        if (uniformCaching && uniformCache.isUpToDate(shaderId, loc, uniform)) {
+            // the program already holds this value
+            statistics.onUniformSkipped();
+            return;
+        }
+        statistics.onUniformSet();
+
         FloatBuffer fb;
         IntBuffer ib;
         switch (uniform.getVarType()) {
@@ -1087,6 +1118,8 @@ public final class GLRenderer implements Renderer {
     }
 
     protected void resetUniformLocations(Shader shader) {
+        // re-linking resets the values of the uniforms
+        uniformCache.clearProgram(shader.getId());
         ListMap<String, Uniform> uniforms = shader.getUniformMap();
         for (int i = 0; i < uniforms.size(); i++) {
             Uniform uniform = uniforms.getValue(i);
@@ -1307,6 +1340,37 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    @Override
+    public void setShader(Shader shader, Uniform[] uniforms, int offset, int count) {
+        if (shader == null) {
+            throw new IllegalArgumentException("Shader cannot be null");
+        }
+        if (shader.isUpdateNeeded()) {
+            updateShaderData(shader);
+        }
+
+        assert shader.getId() > 0;
+
+        ListMap<String, Uniform> shaderUniforms = shader.getUniformMap();
+        for (int i = offset; i < offset + count; i++) {
+            Uniform uniform = uniforms[i];
+            if (uniform.getLocation() == Uniform.LOC_UNKNOWN) {
+                // look up the location once for the shader's uniform as well
+                Uniform shaderUniform = shaderUniforms.get(uniform.getName());
+                if (shaderUniform != null && shaderUniform.getLocation() != Uniform.LOC_UNKNOWN) {
+                    uniform.setLocation(shaderUniform.getLocation());
+                } else {
+                    updateUniformLocation(shader, uniform);
+                    if (shaderUniform != null) {
+                        shaderUniform.setLocation(uniform.getLocation());
+                    }
+                }
+            }
+            updateUniform(shader, uniform);
+        }
+        bindProgram(shader);
+    }
+
     public void deleteShaderSource(ShaderSource source) {
         if (source.getId() < 0) {
             logger.warning("Shader source is not uploaded to GPU, cannot delete.");
@@ -1331,6 +1395,7 @@ public final class GLRenderer implements Renderer {
         }
 
         gl.glDeleteProgram(shader.getId());
+        uniformCache.clearProgram(shader.getId());
         statistics.onDeleteShader();
         shader.resetObject();
     }
@@ -2321,6 +2386,22 @@ public final class GLRenderer implements Renderer {
     }
 
     public void updateBufferData(VertexBuffer vb) {
+        if (streamBuffers.owns(vb)
+                || (bufferStreaming && vb.getId() == -1 && vb.getUsage() == Usage.Stream
+                    && streamBuffers.canStream(vb))) {
+            streamBuffers.upload(vb);
+            vb.clearUpdateNeeded();
+            return;
+        }
+
+        if (vb.getAllocation() != -1
+                || (bufferSubAllocation && vb.getId() == -1 && bufferAllocator.canAllocate(vb))) {
+            if (bufferAllocator.upload(vb)) {
+                vb.clearUpdateNeeded();
+                return;
+            }
+        }
+
         int bufId = vb.getId();
         boolean created = false;
         if (bufId == -1) {
@@ -2337,7 +2418,11 @@ public final class GLRenderer implements Renderer {
 
         // bind buffer
         int target;
-        if (vb.getBufferType() == VertexBuffer.Type.Index) {
+        if (vb.getBufferType() == VertexBuffer.Type.DrawIndirect) {
+            // not tracked in the context, only bound while drawing
+            target = GL4.GL_DRAW_INDIRECT_BUFFER;
+            gl.glBindBuffer(target, bufId);
+        } else if (vb.getBufferType() == VertexBuffer.Type.Index) {
             target = GL.GL_ELEMENT_ARRAY_BUFFER;
             if (context.boundElementArrayVBO != bufId) {
                 gl.glBindBuffer(target, bufId);
@@ -2384,6 +2469,16 @@ public final class GLRenderer implements Renderer {
     }
 
     public void deleteBuffer(VertexBuffer vb) {
+        if (streamBuffers.free(vb)) {
+            vb.resetObject();
+            return;
+        }
+        if (bufferAllocator.free(vb)) {
+            // shares the buffer object of its arena
+            vb.resetObject();
+            return;
+        }
+
         int bufId = vb.getId();
         if (bufId != -1) {
             // delete buffer
@@ -2462,10 +2557,12 @@ public final class GLRenderer implements Renderer {
                 gl.glEnableVertexAttribArray(loc + i);
             }
         }
-        if (attribs[loc] != vb) {
+        // streamed buffers move to another section with every update
+        if (attribs[loc] != vb || streamBuffers.owns(vb)) {
             // NOTE: Use id from interleaved buffer if specified
             int bufId = idb != null ? idb.getId() : vb.getId();
             assert bufId != -1;
+            long bufOffset = getBufferOffset(idb != null ? idb : vb);
             if (context.boundArrayVBO != bufId) {
                 gl.glBindBuffer(GL.GL_ARRAY_BUFFER, bufId);
                 context.boundArrayVBO = bufId;
@@ -2480,7 +2577,7 @@ public final class GLRenderer implements Renderer {
                         convertFormat(vb.getFormat()),
                         vb.isNormalized(),
                         vb.getStride(),
-                        vb.getOffset());
+                        bufOffset + vb.getOffset());
             } else {
                 for (int i = 0; i < slotsRequired; i++) {
                     // The pointer maps the next 4 floats in the slot.
@@ -2496,7 +2593,7 @@ public final class GLRenderer implements Renderer {
                             convertFormat(vb.getFormat()),
                             vb.isNormalized(),
                             4 * 4 * slotsRequired,
-                            4 * 4 * i);
+                            bufOffset + 4 * 4 * i);
                 }
             }
 
@@ -2518,6 +2615,16 @@ public final class GLRenderer implements Renderer {
         setVertexAttrib(vb, null);
     }
 
+    /**
+     * @return the byte offset of the buffer's data within its buffer object.
+     */
+    private long getBufferOffset(VertexBuffer vb) {
+        if (vb.getAllocation() == -1) {
+            return 0;
+        }
+        return streamBuffers.owns(vb) ? streamBuffers.getOffset(vb) : bufferAllocator.getOffset(vb);
+    }
+
     public void drawTriangleArray(Mesh.Mode mode, int count, int vertCount) {
         boolean useInstancing = count > 1 && caps.contains(Caps.MeshInstancing);
         if (useInstancing) {
@@ -2528,7 +2635,7 @@ public final class GLRenderer implements Renderer {
         }
     }
 
-    public void drawTriangleList(VertexBuffer indexBuf, Mesh mesh, int count) {
+    private void bindIndexBuffer(VertexBuffer indexBuf) {
         if (indexBuf.getBufferType() != VertexBuffer.Type.Index) {
             throw new IllegalArgumentException("Only index buffers are allowed as triangle lists.");
         }
@@ -2562,7 +2669,62 @@ public final class GLRenderer implements Renderer {
         } else {
             //statistics.onVertexBufferUse(indexBuf, true);
         }
+    }
 
+    /**
+     * Renders the visible draws of a {@link MultiDrawMesh}, with a single
+     * indirect call when supported, otherwise one call per draw.
+     */
+    private void drawMultiElements(VertexBuffer indexBuf, MultiDrawMesh mesh, int count) {
+        bindIndexBuffer(indexBuf);
+
+        boolean useInstancing = count > 1 && caps.contains(Caps.MeshInstancing);
+        int elMode = convertElementMode(mesh.getMode());
+        int fmt = convertFormat(indexBuf.getFormat());
+
+        // the commands address indices relative to the start of the buffer object
+        if (gl4 != null && caps.contains(Caps.MultiDrawIndirect) && indexBuf.getAllocation() == -1) {
+            VertexBuffer commands = mesh.getCommandBuffer(count);
+            if (mesh.getCommandCount() == 0) {
+                return;
+            }
+            if (commands.isUpdateNeeded()) {
+                updateBufferData(commands);
+            } else {
+                gl.glBindBuffer(GL4.GL_DRAW_INDIRECT_BUFFER, commands.getId());
+            }
+            gl4.glMultiDrawElementsIndirect(elMode, fmt, 0, mesh.getCommandCount(), 0);
+            return;
+        }
+
+        int elSize = indexBuf.getFormat().getComponentSize();
+        for (int i = 0; i < mesh.getDrawCount(); i++) {
+            if (!mesh.isDrawVisible(i)) {
+                continue;
+            }
+            long offset = getBufferOffset(indexBuf) + (long) mesh.getFirstIndex(i) * elSize;
+            if (useInstancing) {
+                glext.glDrawElementsInstancedARB(elMode,
+                        mesh.getIndexCount(i),
+                        fmt,
+                        offset,
+                        count);
+            } else {
+                int firstVertex = mesh.getFirstVertex(i);
+                gl.glDrawRangeElements(elMode,
+                        firstVertex,
+                        firstVertex + mesh.getDrawVertexCount(i) - 1,
+                        mesh.getIndexCount(i),
+                        fmt,
+                        offset);
+            }
+        }
+    }
+
+    public void drawTriangleList(VertexBuffer indexBuf, Mesh mesh, int count) {
+        bindIndexBuffer(indexBuf);
+
+        long bufOffset = getBufferOffset(indexBuf);
         int vertCount = mesh.getVertexCount();
         boolean useInstancing = count > 1 && caps.contains(Caps.MeshInstancing);
 
@@ -2576,7 +2738,7 @@ public final class GLRenderer implements Renderer {
             int listStart = modeStart[0];
             int stripStart = modeStart[1];
             int fanStart = modeStart[2];
-            int curOffset = 0;
+            long curOffset = bufOffset;
             for (int i = 0; i < elementLengths.length; i++) {
                 if (i == stripStart) {
                     elMode = convertElementMode(Mode.TriangleStrip);
@@ -2607,7 +2769,7 @@ public final class GLRenderer implements Renderer {
                 glext.glDrawElementsInstancedARB(convertElementMode(mesh.getMode()),
                         indexBuf.getData().limit(),
                         convertFormat(indexBuf.getFormat()),
-                        0,
+                        bufOffset,
                         count);
             } else {
                 gl.glDrawRangeElements(convertElementMode(mesh.getMode()),
@@ -2615,7 +2777,7 @@ public final class GLRenderer implements Renderer {
                         vertCount,
                         indexBuf.getData().limit(),
                         convertFormat(indexBuf.getFormat()),
-                        0);
+                        bufOffset);
             }
         }
     }
@@ -2755,7 +2917,9 @@ public final class GLRenderer implements Renderer {
 
         clearVertexAttribs();
         
-        if (indices != null) {
+        if (mesh instanceof MultiDrawMesh && indices != null) {
+            drawMultiElements(indices, (MultiDrawMesh) mesh, count);
+        } else if (indices != null) {
             drawTriangleList(indices, mesh, count);
         } else {
             drawTriangleArray(mesh.getMode(), count, mesh.getVertexCount());
@@ -2813,6 +2977,96 @@ public final class GLRenderer implements Renderer {
         }
     }
 
+    /**
+     * Enables or disables skipping of redundant uniform uploads.
+     * <p>
+     * When enabled, the renderer remembers the last value uploaded to each
+     * uniform of each shader program and does not upload a value again if
+     * the program already holds it. Skipped uploads are counted separately in
+     * the {@link Statistics}. Disable this if uniforms are also set directly
+     * through OpenGL, bypassing the renderer.
+     *
+     * @param uniformCaching true to skip redundant uploads, true by default.
+     */
+    public void setUniformCaching(boolean uniformCaching) {
+        this.uniformCaching = uniformCaching;
+        uniformCache.clear();
+    }
+
+    /**
+     * @return true if redundant uniform uploads are skipped.
+     * @see #setUniformCaching(boolean)
+     */
+    public boolean isUniformCaching() {
+        return uniformCaching;
+    }
+
+    /**
+     * Enables or disables placing small vertex buffers inside large shared
+     * buffer objects.
+     * <p>
+     * When enabled, static and dynamic vertex buffers of up to 64 KB are
+     * uploaded into 1 MB arenas with glBufferSubData instead of getting a
+     * buffer object each. Interleaved and {@link VertexBuffer.Usage#Stream stream}
+     * buffers always get their own buffer object. The number of arenas and
+     * sub-allocated buffers are tracked in the {@link Statistics}.
+     * Disabling only affects buffers uploaded afterwards.
+     *
+     * @param bufferSubAllocation true to sub-allocate small buffers, false by default.
+     */
+    public void setBufferSubAllocation(boolean bufferSubAllocation) {
+        this.bufferSubAllocation = bufferSubAllocation;
+    }
+
+    /**
+     * @return true if small vertex buffers are sub-allocated.
+     * @see #setBufferSubAllocation(boolean)
+     */
+    public boolean isBufferSubAllocation() {
+        return bufferSubAllocation;
+    }
+
+    /**
+     * Compacts the shared buffer objects used for sub-allocated vertex
+     * buffers, releasing space of buffers that were garbage collected and
+     * deleting arenas that are no longer needed.
+     * Must not be called while a mesh is being rendered.
+     */
+    public void defragmentBuffers() {
+        // attribute pointers into the arenas are about to move
+        clearVertexAttribs();
+        bufferAllocator.defragment();
+    }
+
+    /**
+     * Enables or disables ring-buffered uploads of
+     * {@link VertexBuffer.Usage#Stream stream} vertex buffers.
+     * <p>
+     * When enabled, each streamed buffer gets a buffer object with three
+     * sections that are written in turn, so an upload never waits for the
+     * GPU to finish reading the previous data. Only the range marked with
+     * {@link VertexBuffer#setUpdateNeeded(int, int) } is copied. With
+     * {@link Caps#BufferStorage} the buffer object stays mapped and the data
+     * is copied directly into it, guarded by one fence per frame. Otherwise
+     * the sections are written with glBufferSubData.
+     * Call after the renderer was initialized. Disabling only affects
+     * buffers uploaded afterwards.
+     *
+     * @param bufferStreaming true to stream buffers, false by default.
+     */
+    public void setBufferStreaming(boolean bufferStreaming) {
+        this.bufferStreaming = bufferStreaming;
+        streamBuffers.setPersistent(caps.contains(Caps.BufferStorage));
+    }
+
+    /**
+     * @return true if stream vertex buffers are ring-buffered.
+     * @see #setBufferStreaming(boolean)
+     */
+    public boolean isBufferStreaming() {
+        return bufferStreaming;
+    }
+
     public void setLinearizeSrgbImages(boolean linearize) {
         if (caps.contains(Caps.Srgb)) {
             linearizeSrgbImages = linearize;
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.renderer.RenderContext;
+import com.jme3.renderer.RendererException;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Uploads {@link VertexBuffer.Usage#Stream streamed} vertex buffers into
+ * ring buffers of {@link #SECTIONS} sections, so that a new upload never
+ * writes to a section the GPU may still be reading from.
+ * <p>
+ * With persistent mapping the buffer object is mapped once and the data is
+ * copied straight into the mapped memory, with fences making sure a section
+ * is only overwritten after the GPU finished the frame that last used it.
+ * Otherwise the section is written with glBufferSubData.
+ * <p>
+ * Only the elements marked with {@link VertexBuffer#setUpdateNeeded(int, int) }
+ * are copied. A section still holds the data of the upload
+ * {@link #SECTIONS} updates ago, so the ranges of the updates since then
+ * are copied as well.
+ *
+ * @author jMonkeyEngine
+ */
+final class GLStreamingBuffers {
+
+    static final int SECTIONS = 3;
+
+    /**
+     * Number of frames that can be in flight before the CPU waits.
+     */
+    private static final int MAX_FRAMES = 4;
+
+    private static final int MIN_SECTION_SIZE = 256;
+
+    private static final int MAP_FLAGS = GL4.GL_MAP_WRITE_BIT
+            | GL4.GL_MAP_PERSISTENT_BIT | GL4.GL_MAP_COHERENT_BIT;
+
+    private static final class Stream {
+        WeakReference<VertexBuffer> buffer;
+        Class<?> dataClass;
+        boolean persistent;
+        int id;
+        int target;
+        int sectionSize;
+        ByteBuffer mapped;
+        Buffer view;
+        int section = -1;
+        int uploads;
+        final long[] sectionFrames = new long[SECTIONS];
+        // dirty element ranges of the previous SECTIONS - 1 uploads
+        final int[] historyStart = new int[SECTIONS - 1];
+        final int[] historyEnd = new int[SECTIONS - 1];
+    }
+
+    private final GL gl;
+    private final GL4 gl4;
+    private final GLExt glext;
+    private final RenderContext context;
+    private final IntBuffer intBuf1 = BufferUtils.createIntBuffer(1);
+
+    private boolean persistent;
+    private final ArrayList<Stream> streams = new ArrayList<Stream>();
+    private final ArrayList<Integer> freeHandles = new ArrayList<Integer>();
+
+    private final Object[] fences = new Object[MAX_FRAMES];
+    private long frame = 0;
+    private long completedFrame = -1;
+    private boolean written;
+
+    GLStreamingBuffers(GL gl, GLExt glext, RenderContext context) {
+        this.gl = gl;
+        this.gl4 = gl instanceof GL4 ? (GL4) gl : null;
+        this.glext = glext;
+        this.context = context;
+    }
+
+    /**
+     * Selects persistent mapping for ring buffers created afterwards. Requires
+     * {@link com.jme3.renderer.Caps#BufferStorage}.
+     */
+    void setPersistent(boolean persistent) {
+        if (persistent && gl4 == null) {
+            throw new IllegalArgumentException("Persistent mapping requires GL4");
+        }
+        this.persistent = persistent;
+    }
+
+    boolean isPersistent() {
+        return persistent;
+    }
+
+    /**
+     * @return true if the given buffer can be streamed.
+     */
+    boolean canStream(VertexBuffer vb) {
+        if (vb.getData() == null) {
+            return false;
+        }
+        Type type = vb.getBufferType();
+        if (type == Type.InterleavedData || type == Type.DrawIndirect) {
+            return false;
+        }
+        switch (vb.getFormat()) {
+            case Byte:
+            case UnsignedByte:
+            case Half:
+            case Short:
+            case UnsignedShort:
+            case Int:
+            case UnsignedInt:
+            case Float:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if the given buffer is streamed by this instance.
+     */
+    boolean owns(VertexBuffer vb) {
+        int handle = vb.getAllocation();
+        if (handle < 0 || handle >= streams.size()) {
+            return false;
+        }
+        Stream stream = streams.get(handle);
+        return stream != null && stream.buffer.get() == vb;
+    }
+
+    /**
+     * Writes the modified range of the given buffer into the next section
+     * of its ring buffer.
+     */
+    void upload(VertexBuffer vb) {
+        Stream stream = owns(vb) ? streams.get(vb.getAllocation()) : null;
+        int size = getDataSize(vb);
+        boolean full = vb.hasDataSizeChanged();
+        if (stream == null || stream.sectionSize < size
+                || stream.dataClass != vb.getData().getClass()) {
+            stream = create(vb, stream, size);
+            full = true;
+        }
+
+        int elementSize = getElementSize(vb);
+        int numElements = vb.getNumElements();
+        int start = full ? 0 : vb.getDirtyStart();
+        int end = full ? numElements : vb.getDirtyEnd();
+        int section = (stream.section + 1) % SECTIONS;
+
+        // the section holds the data of SECTIONS uploads ago
+        int copyStart = start;
+        int copyEnd = end;
+        if (stream.uploads < SECTIONS) {
+            copyStart = 0;
+            copyEnd = numElements;
+        } else {
+            for (int i = 0; i < SECTIONS - 1; i++) {
+                copyStart = Math.min(copyStart, stream.historyStart[i]);
+                copyEnd = Math.max(copyEnd, stream.historyEnd[i]);
+            }
+        }
+        copyEnd = Math.min(copyEnd, numElements);
+
+        if (copyStart < copyEnd) {
+            if (stream.persistent) {
+                waitForFrame(stream.sectionFrames[section]);
+                written = true;
+            }
+            write(stream, vb, section, copyStart * elementSize, copyEnd * elementSize);
+        }
+
+        for (int i = SECTIONS - 2; i > 0; i--) {
+            stream.historyStart[i] = stream.historyStart[i - 1];
+            stream.historyEnd[i] = stream.historyEnd[i - 1];
+        }
+        stream.historyStart[0] = start;
+        stream.historyEnd[0] = end;
+        stream.section = section;
+        stream.sectionFrames[section] = frame;
+        stream.uploads++;
+    }
+
+    /**
+     * @return the byte offset of the section holding the latest data of
+     * the given buffer.
+     */
+    long getOffset(VertexBuffer vb) {
+        Stream stream = streams.get(vb.getAllocation());
+        return (long) stream.section * stream.sectionSize;
+    }
+
+    /**
+     * Deletes the ring buffer of the given buffer.
+     *
+     * @return true if the buffer was streamed
+     */
+    boolean free(VertexBuffer vb) {
+        if (!owns(vb)) {
+            return false;
+        }
+        release(vb.getAllocation());
+        return true;
+    }
+
+    /**
+     * Called at the end of each frame. Fences the frame if anything was
+     * written and deletes ring buffers of garbage collected vertex buffers.
+     */
+    void endFrame() {
+        if (written) {
+            int slot = (int) (frame % MAX_FRAMES);
+            if (fences[slot] != null) {
+                waitForFrame(frame - MAX_FRAMES);
+            }
+            fences[slot] = glext.glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        }
+        written = false;
+        frame++;
+
+        for (int i = 0; i < streams.size(); i++) {
+            Stream stream = streams.get(i);
+            if (stream != null && stream.buffer.get() == null) {
+                release(i);
+            }
+        }
+    }
+
+    /**
+     * Deletes all ring buffers and resets all streamed buffers.
+     */
+    void deleteAll() {
+        for (Stream stream : streams) {
+            if (stream != null) {
+                deleteBuffer(stream);
+            }
+        }
+        for (int i = 0; i < MAX_FRAMES; i++) {
+            if (fences[i] != null) {
+                glext.glDeleteSync(fences[i]);
+                fences[i] = null;
+            }
+        }
+        resetAll();
+    }
+
+    /**
+     * Forgets all ring buffers without deleting them, used when the GL
+     * context was lost. All streamed buffers are reset.
+     */
+    void resetAll() {
+        for (Stream stream : streams) {
+            if (stream != null) {
+                VertexBuffer vb = stream.buffer.get();
+                if (vb != null) {
+                    vb.resetObject();
+                }
+            }
+        }
+        streams.clear();
+        freeHandles.clear();
+        for (int i = 0; i < MAX_FRAMES; i++) {
+            fences[i] = null;
+        }
+        completedFrame = frame - 1;
+    }
+
+    /**
+     * @return the number of streamed vertex buffers.
+     */
+    int getStreamCount() {
+        return streams.size() - freeHandles.size();
+    }
+
+    private Stream create(VertexBuffer vb, Stream old, int size) {
+        int handle;
+        if (old != null) {
+            handle = vb.getAllocation();
+            deleteBuffer(old);
+        } else if (freeHandles.isEmpty()) {
+            handle = streams.size();
+            streams.add(null);
+        } else {
+            handle = freeHandles.remove(freeHandles.size() - 1);
+        }
+
+        Stream stream = new Stream();
+        stream.buffer = new WeakReference<VertexBuffer>(vb);
+        stream.dataClass = vb.getData().getClass();
+        Arrays.fill(stream.sectionFrames, -1);
+        stream.target = vb.getBufferType() == Type.Index ? GL.GL_ELEMENT_ARRAY_BUFFER : GL.GL_ARRAY_BUFFER;
+        // leave room to grow, sections stay aligned for any format
+        stream.sectionSize = Math.max(MIN_SECTION_SIZE, Integer.highestOneBit(Math.max(size - 1, 1)) << 1);
+        streams.set(handle, stream);
+
+        intBuf1.clear();
+        gl.glGenBuffers(intBuf1);
+        int id = intBuf1.get(0);
+        stream.id = id;
+        if (vb.getId() != -1) {
+            vb.resetObject();
+        }
+        vb.setId(id);
+        vb.setAllocation(handle);
+
+        bind(stream.target, id);
+        long capacity = (long) stream.sectionSize * SECTIONS;
+        stream.persistent = persistent;
+        if (persistent) {
+            gl4.glBufferStorage(stream.target, capacity, MAP_FLAGS);
+            stream.mapped = gl4.glMapBufferRange(stream.target, 0, capacity, MAP_FLAGS);
+            stream.mapped.order(ByteOrder.nativeOrder());
+            stream.view = createView(stream.mapped, vb);
+        } else {
+            gl.glBufferData(stream.target, capacity, GL.GL_STREAM_DRAW);
+        }
+        return stream;
+    }
+
+    private void release(int handle) {
+        deleteBuffer(streams.get(handle));
+        streams.set(handle, null);
+        freeHandles.add(handle);
+    }
+
+    private void deleteBuffer(Stream stream) {
+        int id = stream.id;
+        if (stream.mapped != null) {
+            bind(stream.target, id);
+            gl4.glUnmapBuffer(stream.target);
+            stream.mapped = null;
+        }
+        intBuf1.put(0, id);
+        intBuf1.position(0).limit(1);
+        gl.glDeleteBuffers(intBuf1);
+        if (context.boundArrayVBO == id) {
+            context.boundArrayVBO = 0;
+        }
+        if (context.boundElementArrayVBO == id) {
+            context.boundElementArrayVBO = 0;
+        }
+    }
+
+    private void write(Stream stream, VertexBuffer vb, int section, int startByte, int endByte) {
+        int base = section * stream.sectionSize;
+        int unit = getUnitSize(vb);
+        Buffer src = vb.getData();
+        int limit = src.limit();
+        src.position(0);
+        src.limit(endByte / unit);
+        src.position(startByte / unit);
+
+        if (stream.persistent) {
+            Buffer view = stream.view;
+            view.clear();
+            view.position((base + startByte) / unit);
+            if (view instanceof FloatBuffer) {
+                ((FloatBuffer) view).put((FloatBuffer) src);
+            } else if (view instanceof IntBuffer) {
+                ((IntBuffer) view).put((IntBuffer) src);
+            } else if (view instanceof ShortBuffer) {
+                ((ShortBuffer) view).put((ShortBuffer) src);
+            } else {
+                ((ByteBuffer) view).put((ByteBuffer) src);
+            }
+        } else {
+            bind(stream.target, stream.id);
+            long offset = base + startByte;
+            if (src instanceof FloatBuffer) {
+                gl.glBufferSubData(stream.target, offset, (FloatBuffer) src);
+            } else if (src instanceof IntBuffer) {
+                glext.glBufferSubData(stream.target, offset, (IntBuffer) src);
+            } else if (src instanceof ShortBuffer) {
+                gl.glBufferSubData(stream.target, offset, (ShortBuffer) src);
+            } else {
+                gl.glBufferSubData(stream.target, offset, (ByteBuffer) src);
+            }
+        }
+
+        src.clear();
+        src.limit(limit);
+    }
+
+    private void waitForFrame(long waitFrame) {
+        if (waitFrame <= completedFrame) {
+            return;
+        }
+        if (waitFrame >= frame) {
+            // written twice in this frame and the ring wrapped around
+            Object sync = glext.glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+            clientWait(sync);
+            glext.glDeleteSync(sync);
+            waitFrame = frame - 1;
+        }
+        for (long f = completedFrame + 1; f <= waitFrame; f++) {
+            int slot = (int) (f % MAX_FRAMES);
+            if (fences[slot] != null) {
+                clientWait(fences[slot]);
+                glext.glDeleteSync(fences[slot]);
+                fences[slot] = null;
+            }
+        }
+        completedFrame = waitFrame;
+    }
+
+    private void clientWait(Object sync) {
+        while (true) {
+            int result = glext.glClientWaitSync(sync, GLExt.GL_SYNC_FLUSH_COMMANDS_BIT, 1000000);
+            if (result == GLExt.GL_WAIT_FAILED) {
+                throw new RendererException("Waiting for a fence failed");
+            } else if (result != GLExt.GL_TIMEOUT_EXPIRED) {
+                return;
+            }
+        }
+    }
+
+    private void bind(int target, int id) {
+        if (target == GL.GL_ELEMENT_ARRAY_BUFFER) {
+            if (context.boundElementArrayVBO != id) {
+                gl.glBindBuffer(target, id);
+                context.boundElementArrayVBO = id;
+            }
+        } else if (context.boundArrayVBO != id) {
+            gl.glBindBuffer(target, id);
+            context.boundArrayVBO = id;
+        }
+    }
+
+    private static Buffer createView(ByteBuffer mapped, VertexBuffer vb) {
+        Buffer data = vb.getData();
+        if (data instanceof FloatBuffer) {
+            return mapped.asFloatBuffer();
+        } else if (data instanceof IntBuffer) {
+            return mapped.asIntBuffer();
+        } else if (data instanceof ShortBuffer) {
+            return mapped.asShortBuffer();
+        } else {
+            return mapped.duplicate();
+        }
+    }
+
+    /**
+     * @return the size in bytes of one value in the data buffer.
+     */
+    private static int getUnitSize(VertexBuffer vb) {
+        Buffer data = vb.getData();
+        if (data instanceof ByteBuffer) {
+            return 1;
+        } else if (data instanceof ShortBuffer) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    private static int getElementSize(VertexBuffer vb) {
+        int size = vb.getNumComponents() * getUnitSize(vb);
+        return vb.getFormat() == VertexBuffer.Format.Half ? size * 2 : size;
+    }
+
+    private static int getDataSize(VertexBuffer vb) {
+        return vb.getData().limit() * getUnitSize(vb);
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
+import com.jme3.math.Vector4f;
+import com.jme3.shader.Uniform;
+import com.jme3.util.IntMap;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+/**
+ * Remembers the last value uploaded to each uniform location of each shader
+ * program, so that uploads of a value the program already holds can be
+ * skipped.
+ * <p>
+ * Uniform values are part of the program object state in OpenGL, so the
+ * value a program last received for a location stays valid until the
+ * program is re-linked or deleted, no matter which programs were bound in
+ * between. Values are compared bit by bit.
+ *
+ * @author jMonkeyEngine
+ */
+final class UniformShadowCache {
+
+    private final IntMap<IntMap<int[]>> programs = new IntMap<IntMap<int[]>>();
+
+    private int lastProgram = -1;
+    private IntMap<int[]> lastValues;
+
+    // state of the comparison in progress
+    private int[] cached;
+    private int index;
+    private boolean changed;
+
+    /**
+     * Checks if the given program already holds the value of the uniform
+     * at the given location. If it does not, the value is remembered as
+     * uploaded.
+     *
+     * @return true if the upload can be skipped
+     */
+    boolean isUpToDate(int program, int location, Uniform uniform) {
+        int count = getValueCount(uniform);
+        if (count < 0) {
+            return false;
+        }
+
+        IntMap<int[]> values = getValues(program);
+        cached = values.get(location);
+        if (cached == null || cached.length != count) {
+            cached = new int[count];
+            values.put(location, cached);
+            changed = true;
+        } else {
+            changed = false;
+        }
+
+        index = 0;
+        putValue(uniform);
+        cached = null;
+        return !changed;
+    }
+
+    /**
+     * Forgets the values of the given program, e.g. after it was re-linked
+     * or deleted.
+     */
+    void clearProgram(int program) {
+        programs.remove(program);
+        if (program == lastProgram) {
+            lastProgram = -1;
+            lastValues = null;
+        }
+    }
+
+    /**
+     * Forgets the values of all programs.
+     */
+    void clear() {
+        programs.clear();
+        lastProgram = -1;
+        lastValues = null;
+    }
+
+    private IntMap<int[]> getValues(int program) {
+        if (program != lastProgram) {
+            IntMap<int[]> values = programs.get(program);
+            if (values == null) {
+                values = new IntMap<int[]>();
+                programs.put(program, values);
+            }
+            lastProgram = program;
+            lastValues = values;
+        }
+        return lastValues;
+    }
+
+    /**
+     * @return the number of 32 bit words in the value of the uniform,
+     * or -1 if the uniform type is not cached.
+     */
+    private static int getValueCount(Uniform uniform) {
+        switch (uniform.getVarType()) {
+            case Float:
+            case Int:
+            case Boolean:
+                return 1;
+            case Vector2:
+                return 2;
+            case Vector3:
+                return 3;
+            case Vector4:
+                return 4;
+            case Matrix3:
+            case Matrix4:
+            case FloatArray:
+            case Vector2Array:
+            case Vector3Array:
+            case Vector4Array:
+            case Matrix4Array:
+                return uniform.getMultiData().remaining();
+            case IntArray:
+                return ((IntBuffer) uniform.getValue()).remaining();
+            default:
+                return -1;
+        }
+    }
+
+    private void putValue(Uniform uniform) {
+        switch (uniform.getVarType()) {
+            case Float:
+                put(((Float) uniform.getValue()).floatValue());
+                break;
+            case Int:
+                put(((Integer) uniform.getValue()).intValue());
+                break;
+            case Boolean:
+                put(((Boolean) uniform.getValue()).booleanValue() ? 1 : 0);
+                break;
+            case Vector2:
+                Vector2f v2 = (Vector2f) uniform.getValue();
+                put(v2.x);
+                put(v2.y);
+                break;
+            case Vector3:
+                Vector3f v3 = (Vector3f) uniform.getValue();
+                put(v3.x);
+                put(v3.y);
+                put(v3.z);
+                break;
+            case Vector4:
+                Object val = uniform.getValue();
+                if (val instanceof ColorRGBA) {
+                    ColorRGBA c = (ColorRGBA) val;
+                    put(c.r);
+                    put(c.g);
+                    put(c.b);
+                    put(c.a);
+                } else if (val instanceof Vector4f) {
+                    Vector4f v4 = (Vector4f) val;
+                    put(v4.x);
+                    put(v4.y);
+                    put(v4.z);
+                    put(v4.w);
+                } else {
+                    Quaternion q = (Quaternion) val;
+                    put(q.getX());
+                    put(q.getY());
+                    put(q.getZ());
+                    put(q.getW());
+                }
+                break;
+            case IntArray:
+                IntBuffer ib = (IntBuffer) uniform.getValue();
+                for (int i = ib.position(); i < ib.limit(); i++) {
+                    put(ib.get(i));
+                }
+                break;
+            default:
+                FloatBuffer fb = uniform.getMultiData();
+                for (int i = fb.position(); i < fb.limit(); i++) {
+                    put(fb.get(i));
+                }
+                break;
+        }
+    }
+
+    private void put(float value) {
+        put(Float.floatToRawIntBits(value));
+    }
+
+    private void put(int bits) {
+        if (cached[index] != bits) {
+            cached[index] = bits;
+            changed = true;
+        }
+        index++;
+    }
+}
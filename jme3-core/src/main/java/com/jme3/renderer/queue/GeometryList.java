@@ -37,6 +37,7 @@ import java.util.NoSuchElementException;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
 import com.jme3.util.ListSort;
+import com.jme3.util.RadixSort;
 
 /**
  * This class is a special purpose list of {@link Geometry} objects for render
@@ -54,6 +55,11 @@ public class GeometryList implements Iterable<Geometry>{
     private ListSort listSort;
     private int size;
     private GeometryComparator comparator;
+    private boolean radixSort = false;
+    private RadixSort radix;
+    private long[] sortKeys;
+    private int[] sortIndices;
+    private Geometry[] sortBuffer;
 
     /**
      * Initializes the GeometryList to use the given {@link GeometryComparator}
@@ -80,6 +86,38 @@ public class GeometryList implements Iterable<Geometry>{
         return comparator;
     }
 
+    /**
+     * Enables or disables radix sorting. When enabled and the comparator
+     * is a {@link GeometryKeyComparator}, {@link #sort() } computes one draw
+     * key per geometry and radix sorts the keys instead of comparing
+     * geometries pairwise. The resulting order is the same, but the cost
+     * grows linearly with the list size. The key buffers are kept with
+     * the list and reused, so sorting does not allocate once they have grown
+     * to the largest list size.
+     * <p>
+     * Comparators that do not provide keys are still sorted with
+     * the comparison sort.
+     *
+     * @param radixSort true to enable radix sorting, false by default.
+     */
+    public void setRadixSort(boolean radixSort) {
+        this.radixSort = radixSort;
+        if (!radixSort) {
+            radix = null;
+            sortKeys = null;
+            sortIndices = null;
+            sortBuffer = null;
+        }
+    }
+
+    /**
+     * @return true if radix sorting is enabled.
+     * @see #setRadixSort(boolean)
+     */
+    public boolean isRadixSort() {
+        return radixSort;
+    }
+
     /**
      * Set the camera that will be set on the geometry comparators
      * via {@link GeometryComparator#setCamera(com.jme3.renderer.Camera)}.
@@ -151,6 +189,10 @@ public class GeometryList implements Iterable<Geometry>{
      */
     public void sort() {
         if (size > 1) {
+            if (radixSort && comparator instanceof GeometryKeyComparator) {
+                sortByKeys((GeometryKeyComparator) comparator);
+                return;
+            }
             // sort the spatial list using the comparator
             if(listSort.getLength() != size){
                 listSort.allocateStack(size);
@@ -159,6 +201,31 @@ public class GeometryList implements Iterable<Geometry>{
         }
     }
 
+    private void sortByKeys(GeometryKeyComparator keyComparator) {
+        if (radix == null) {
+            radix = new RadixSort();
+        }
+        if (sortKeys == null || sortKeys.length < size) {
+            sortKeys = new long[geometries.length];
+            sortIndices = new int[geometries.length];
+            sortBuffer = new Geometry[geometries.length];
+        }
+
+        for (int i = 0; i < size; i++) {
+            sortKeys[i] = keyComparator.getSortKey(geometries[i]);
+            sortIndices[i] = i;
+        }
+        radix.sort(sortKeys, sortIndices, size);
+
+        for (int i = 0; i < size; i++) {
+            sortBuffer[i] = geometries[sortIndices[i]];
+        }
+        System.arraycopy(sortBuffer, 0, geometries, 0, size);
+        for (int i = 0; i < size; i++) {
+            sortBuffer[i] = null;
+        }
+    }
+
     public Iterator<Geometry> iterator() {
         return new Iterator<Geometry>() {
 
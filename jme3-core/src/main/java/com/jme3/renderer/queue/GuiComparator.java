@@ -33,6 +33,7 @@ package com.jme3.renderer.queue;
 
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.RadixSort;
 
 /**
  * <code>GuiComparator</code> sorts geometries back-to-front based
@@ -40,7 +41,7 @@ import com.jme3.scene.Geometry;
  *
  * @author Kirill Vainer
  */
-public class GuiComparator implements GeometryComparator {
+public class GuiComparator implements GeometryKeyComparator {
 
     public int compare(Geometry o1, Geometry o2) {
         float z1 = o1.getWorldTranslation().getZ();
@@ -53,6 +54,10 @@ public class GuiComparator implements GeometryComparator {
             return 0;
     }
 
+    public long getSortKey(Geometry g) {
+        return RadixSort.floatToSortableInt(g.getWorldTranslation().getZ());
+    }
+
     public void setCamera(Camera cam) {
     }
 
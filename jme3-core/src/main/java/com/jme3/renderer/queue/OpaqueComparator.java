@@ -35,8 +35,9 @@ import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.RadixSort;
 
-public class OpaqueComparator implements GeometryComparator {
+public class OpaqueComparator implements GeometryKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec  = new Vector3f();
@@ -92,4 +93,15 @@ public class OpaqueComparator implements GeometryComparator {
         }
     }
 
+    /**
+     * The material sort ID goes in the upper 32 bits and the distance
+     * to the camera in the lower 32 bits, matching {@link #compare}.
+     */
+    @Override
+    public long getSortKey(Geometry g) {
+        long sortId = g.getMaterial().getSortId();
+        long distance = RadixSort.floatToSortableInt(distanceToCam(g)) ^ 0x80000000;
+        return (sortId << 32) | (distance & 0xFFFFFFFFL);
+    }
+
 }
@@ -50,6 +50,7 @@ public class RenderQueue {
     private GeometryList transparentList;
     private GeometryList translucentList;
     private GeometryList skyList;
+    private boolean radixSort = false;
 
     /**
      * Creates a new RenderQueue, the default {@link GeometryComparator comparators}
@@ -186,24 +187,52 @@ public class RenderQueue {
         switch (bucket) {
             case Gui:
                 guiList = new GeometryList(c);
+                guiList.setRadixSort(radixSort);
                 break;
             case Opaque:
                 opaqueList = new GeometryList(c);
+                opaqueList.setRadixSort(radixSort);
                 break;
             case Sky:
                 skyList = new GeometryList(c);
+                skyList.setRadixSort(radixSort);
                 break;
             case Transparent:
                 transparentList = new GeometryList(c);
+                transparentList.setRadixSort(radixSort);
                 break;
             case Translucent:
                 translucentList = new GeometryList(c);
+                translucentList.setRadixSort(radixSort);
                 break;
             default:
                 throw new UnsupportedOperationException("Unknown bucket type: " + bucket);
         }
     }
 
+    /**
+     * Enables or disables radix sorting of all buckets.
+     *
+     * @param radixSort true to sort by draw keys, false by default.
+     * @see GeometryList#setRadixSort(boolean)
+     */
+    public void setRadixSort(boolean radixSort) {
+        this.radixSort = radixSort;
+        opaqueList.setRadixSort(radixSort);
+        guiList.setRadixSort(radixSort);
+        transparentList.setRadixSort(radixSort);
+        translucentList.setRadixSort(radixSort);
+        skyList.setRadixSort(radixSort);
+    }
+
+    /**
+     * @return true if the buckets are radix sorted.
+     * @see #setRadixSort(boolean)
+     */
+    public boolean isRadixSort() {
+        return radixSort;
+    }
+
     /**
      *  Returns the current GeometryComparator used by the specified bucket,
      *  one of Gui, Opaque, Sky, Transparent, or Translucent.
@@ -260,6 +289,7 @@ public class RenderQueue {
     private void renderGeometryList(GeometryList list, RenderManager rm, Camera cam, boolean clear) {
         list.setCamera(cam); // select camera for sorting
         list.sort();
+        rm.getRenderer().getStatistics().onGeometryListSorted(list.size());
         for (int i = 0; i < list.size(); i++) {
             Geometry obj = list.get(i);
             assert obj != null;
@@ -34,8 +34,9 @@ package com.jme3.renderer.queue;
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
 import com.jme3.scene.Geometry;
+import com.jme3.util.RadixSort;
 
-public class TransparentComparator implements GeometryComparator {
+public class TransparentComparator implements GeometryKeyComparator {
 
     private Camera cam;
     private final Vector3f tempVec = new Vector3f();
@@ -98,4 +99,9 @@ public class TransparentComparator implements GeometryComparator {
         else
             return -1;
     }
+
+    public long getSortKey(Geometry g) {
+        // inverted so that the farthest geometries come first
+        return ~RadixSort.floatToSortableInt(distanceToCam(g));
+    }
 }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the geometric state of a node's children on a {@link ForkJoinPool}.
+ * <p>
+ * Each child subtree is still updated by
+ * {@link Spatial#updateGeometricState()} and the parent combines the
+ * children's bounds only after all of them are done, so the results are the
+ * same as with the serial update, only the order in which sibling subtrees
+ * are visited changes. Siblings never read each other's state during the
+ * update.
+ * <p>
+ * Subtrees below a {@link GeometryGroupNode} are always updated on a single
+ * thread, since batching and instancing nodes keep shared state that is
+ * modified when the transform of one of their geometries changes.
+ *
+ * @see Node#setParallelUpdate(boolean)
+ * @author jMonkeyEngine
+ */
+final class GeometricStateUpdater {
+
+    /**
+     * Once a worker has more than this many tasks queued that nobody stole,
+     * it stops splitting and updates the remaining children itself.
+     */
+    private static final int MAX_SURPLUS_TASKS = 2;
+
+    private static volatile ForkJoinPool pool;
+
+    /**
+     * Per thread nesting of parallel updates and of group node updates.
+     */
+    private static final ThreadLocal<UpdateState> state = new ThreadLocal<UpdateState>() {
+        @Override
+        protected UpdateState initialValue() {
+            return new UpdateState();
+        }
+    };
+
+    private GeometricStateUpdater() {
+    }
+
+    static void setPool(ForkJoinPool forkJoinPool) {
+        pool = forkJoinPool;
+    }
+
+    static ForkJoinPool getPool() {
+        ForkJoinPool p = pool;
+        return p != null ? p : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Returns true if the children of the given node should be updated
+     * through {@link #updateChildren(com.jme3.scene.Node)}.
+     */
+    static boolean isParallel(Node node) {
+        if (node.getQuantity() < 2) {
+            return false;
+        }
+        UpdateState st = state.get();
+        if (st.tasks > 0) {
+            // already inside a parallel update
+            return st.groups == 0;
+        }
+        return node.isParallelUpdate() && !hasGroupAncestor(node);
+    }
+
+    private static boolean hasGroupAncestor(Spatial spatial) {
+        for (Node p = spatial.getParent(); p != null; p = p.getParent()) {
+            if (p instanceof GeometryGroupNode) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Updates the geometric state of all children of the node, in parallel
+     * when possible. Returns once every child is up to date.
+     */
+    static void updateChildren(Node node) {
+        Spatial[] children = node.children.getArray();
+        if (node instanceof GeometryGroupNode) {
+            UpdateState st = state.get();
+            st.groups++;
+            try {
+                updateRange(children, 0, children.length);
+            } finally {
+                st.groups--;
+            }
+            return;
+        }
+
+        UpdateTask task = new UpdateTask(children, 0, children.length);
+        if (state.get().tasks > 0) {
+            task.invoke();
+        } else {
+            getPool().invoke(task);
+        }
+    }
+
+    private static void updateRange(Spatial[] children, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Spatial child = children[i];
+            if (child == null) continue;
+            child.updateGeometricState();
+        }
+    }
+
+    private static final class UpdateState {
+        int tasks;
+        int groups;
+    }
+
+    private static final class UpdateTask extends RecursiveAction {
+
+        private final Spatial[] children;
+        private final int from, to;
+
+        UpdateTask(Spatial[] children, int from, int to) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from < 2 || getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS) {
+                UpdateState st = state.get();
+                st.tasks++;
+                try {
+                    updateRange(children, from, to);
+                } finally {
+                    st.tasks--;
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new UpdateTask(children, from, mid),
+                      new UpdateTask(children, mid, to));
+        }
+    }
+}
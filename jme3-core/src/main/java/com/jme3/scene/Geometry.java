@@ -453,12 +453,9 @@ public class Geometry extends Spatial {
         if (mesh != null && worldBound != null) {
             // NOTE: BIHTree in mesh already checks collision with the
             // mesh's bound
-            int prevSize = results.size();
+            int mark = results.getMark();
             int added = mesh.collideWith(other, cachedWorldMat, worldBound, results);
-            int newSize = results.size();
-            for (int i = prevSize; i < newSize; i++) {
-                results.getCollisionDirect(i).setGeometry(this);
-            }
+            results.setGeometrySince(mark, this);
             return added;
         }
         return 0;
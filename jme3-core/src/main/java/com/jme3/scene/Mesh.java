@@ -968,6 +968,46 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         collisionTree = tree;
     }
 
+    /**
+     * Generates a collision tree for the mesh, splitting its nodes with
+     * the given method.
+     *
+     * @param method the split method of the {@link BIHTree}
+     */
+    public void createCollisionData(BIHTree.SplitMethod method){
+        BIHTree tree = new BIHTree(this);
+        tree.construct(method);
+        collisionTree = tree;
+    }
+
+    /**
+     * Sets the collision data of the mesh, for example a prebuilt
+     * {@link com.jme3.collision.bih.CompactBIHTree}. The data is saved
+     * along with the mesh.
+     *
+     * @param collisionData the collision data, or null to generate a
+     * {@link BIHTree} on demand
+     */
+    public void setCollisionData(CollisionData collisionData) {
+        this.collisionTree = collisionData;
+    }
+
+    /**
+     * Returns the collision data of the mesh, generating it first if
+     * needed.
+     *
+     * @return the collision data used by {@link #collideWith(com.jme3.collision.Collidable,
+     * com.jme3.math.Matrix4f,
+     * com.jme3.bounding.BoundingVolume,
+     * com.jme3.collision.CollisionResults) }
+     */
+    public CollisionData getCollisionData() {
+        if (collisionTree == null){
+            createCollisionData();
+        }
+        return collisionTree;
+    }
+
     /**
      * Clears any previously generated collision data.  Use this if
      * the mesh has changed in some way that invalidates any previously
@@ -1480,7 +1520,7 @@ public class Mesh implements Savable, Cloneable, JmeCloneable {
         mode = in.readEnum("mode", Mode.class, Mode.Triangles);
         elementLengths = in.readIntArray("elementLengths", null);
         modeStart = in.readIntArray("modeStart", null);
-        collisionTree = (BIHTree) in.readSavable("collisionTree", null);
+        collisionTree = (CollisionData) in.readSavable("collisionTree", null);
         elementLengths = in.readIntArray("elementLengths", null);
         modeStart = in.readIntArray("modeStart", null);
         pointSize = in.readFloat("pointSize", 1f);
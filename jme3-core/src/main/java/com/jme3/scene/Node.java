@@ -45,6 +45,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -83,6 +84,22 @@ public class Node extends Spatial {
      */
     private boolean updateListValid = false;
 
+    /**
+     * True if the children of this node are updated in parallel by
+     * updateGeometricState().
+     */
+    private transient boolean parallelUpdate = false;
+
+    /**
+     * Packed local transforms of the children, null unless enabled.
+     */
+    private transient TransformStore transformStore = null;
+
+    /**
+     * Bounding volume hierarchy over the children, null unless enabled.
+     */
+    private transient SceneCollisionTree collisionTree = null;
+
     /**
      * Serialization only. Do not use.
      */
@@ -177,6 +194,10 @@ public class Node extends Spatial {
             }
         }
         this.worldBound = resultBound;
+
+        if (collisionTree != null) {
+            collisionTree.update();
+        }
     }
 
     @Override
@@ -260,6 +281,9 @@ public class Node extends Spatial {
             // This branch has no geometric state that requires updates.
             return;
         }
+        if (transformStore != null) {
+            transformStore.apply();
+        }
         if ((refreshFlags & RF_LIGHTLIST) != 0){
             updateWorldLightList();
         }
@@ -279,10 +303,14 @@ public class Node extends Spatial {
             // a round-trip later on.
             // NOTE 9/19/09
             // Although it does save a round trip,
-            for(int i=0;i<children.size();i++){
-                Spatial child = children.get(i);
-                if( child == null ) continue;
-                child.updateGeometricState();
+            if (GeometricStateUpdater.isParallel(this)) {
+                GeometricStateUpdater.updateChildren(this);
+            } else {
+                for(int i=0;i<children.size();i++){
+                    Spatial child = children.get(i);
+                    if( child == null ) continue;
+                    child.updateGeometricState();
+                }
             }
         }
 
@@ -293,6 +321,109 @@ public class Node extends Spatial {
         assert refreshFlags == 0;
     }
 
+    /**
+     * Enables or disables parallel updates of this node's subtree.
+     * <p>
+     * When enabled, {@link #updateGeometricState()} splits the children of
+     * this node, and of every node below it, across the threads of a
+     * {@link ForkJoinPool}. World transforms, bounds, light lists and
+     * material parameter overrides are computed exactly as with the serial
+     * update; only sibling subtrees are visited concurrently. Subtrees of
+     * a {@link GeometryGroupNode} are always updated on a single thread.
+     * <p>
+     * This pays off for scenes with many thousands of spatials. Controls
+     * and other code must not modify the scene graph while it is updated.
+     * Disabled by default.
+     *
+     * @param parallelUpdate true to update children in parallel
+     * @see #setParallelUpdatePool(java.util.concurrent.ForkJoinPool)
+     */
+    public void setParallelUpdate(boolean parallelUpdate) {
+        this.parallelUpdate = parallelUpdate;
+    }
+
+    /**
+     * @return true if the children of this node are updated in parallel
+     * @see #setParallelUpdate(boolean)
+     */
+    public boolean isParallelUpdate() {
+        return parallelUpdate;
+    }
+
+    /**
+     * Sets the pool used for parallel geometric state updates.
+     * If null (the default), {@link ForkJoinPool#commonPool()} is used.
+     *
+     * @param pool the pool to use, or null
+     * @see #setParallelUpdate(boolean)
+     */
+    public static void setParallelUpdatePool(ForkJoinPool pool) {
+        GeometricStateUpdater.setPool(pool);
+    }
+
+    /**
+     * Enables or disables the {@link TransformStore} of this node.
+     * <p>
+     * When enabled, the local transforms of the children are also kept in
+     * packed float arrays that can be modified in bulk, see
+     * {@link TransformStore}. The store is initialized from the current
+     * local transforms of the children. When disabled, pending
+     * modifications are applied to the children first.
+     *
+     * @param enabled true to enable the store
+     */
+    public void setTransformStoreEnabled(boolean enabled) {
+        if (enabled && transformStore == null) {
+            transformStore = new TransformStore(this);
+        } else if (!enabled && transformStore != null) {
+            transformStore.apply();
+            transformStore = null;
+        }
+    }
+
+    /**
+     * Returns the packed transform store of this node's children or null
+     * if it is not enabled.
+     *
+     * @return the transform store, or null
+     * @see #setTransformStoreEnabled(boolean)
+     */
+    public TransformStore getTransformStore() {
+        return transformStore;
+    }
+
+    /**
+     * Enables or disables the {@link SceneCollisionTree} of this node.
+     * <p>
+     * When enabled, {@link #collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) }
+     * finds the children hit by a {@link com.jme3.math.Ray}, a
+     * {@link com.jme3.bounding.BoundingBox} or a
+     * {@link com.jme3.bounding.BoundingSphere} through a bounding volume
+     * hierarchy instead of testing every child. This pays off for nodes
+     * with many, mostly static, children. The tree is refit whenever the
+     * world bound of this node is updated. Disabled by default.
+     *
+     * @param enabled true to enable the tree
+     */
+    public void setCollisionTreeEnabled(boolean enabled) {
+        if (enabled && collisionTree == null) {
+            collisionTree = new SceneCollisionTree(this);
+        } else if (!enabled) {
+            collisionTree = null;
+        }
+    }
+
+    /**
+     * Returns the collision tree of this node's children or null if it is
+     * not enabled.
+     *
+     * @return the collision tree, or null
+     * @see #setCollisionTreeEnabled(boolean)
+     */
+    public SceneCollisionTree getCollisionTree() {
+        return collisionTree;
+    }
+
     /**
      * <code>getTriangleCount</code> returns the number of triangles contained
      * in all sub-branches of this node that contain geometry.
@@ -365,9 +496,15 @@ public class Node extends Spatial {
                 child.getParent().detachChild(child);
             }
             child.setParent(this);
+            if (transformStore != null) {
+                transformStore.apply();
+            }
             if( index == -1 ) {
                 children.add(child);
             } else children.add(index, child);
+            if (transformStore != null) {
+                transformStore.childAttached(index == -1 ? children.size() - 1 : index);
+            }
             // XXX: Not entirely correct? Forces bound update up the
             // tree stemming from the attached child. Also forces
             // transform update down the tree-
@@ -439,7 +576,13 @@ public class Node extends Spatial {
      * @return the child at the supplied index.
      */
     public Spatial detachChildAt(int index) {
+        if (transformStore != null) {
+            transformStore.apply();
+        }
         Spatial child =  children.remove(index);
+        if (transformStore != null) {
+            transformStore.childDetached(index);
+        }
         if ( child != null ) {
             child.setParent( null );
             logger.log(Level.FINE, "{0}: Child removed.", this.toString());
@@ -496,11 +639,17 @@ public class Node extends Spatial {
      * @param index2 The index of the second child to swap
      */
     public void swapChildren(int index1, int index2) {
+        if (transformStore != null) {
+            transformStore.apply();
+        }
         Spatial c2 =  children.get(index2);
         Spatial c1 =  children.remove(index1);
         children.add(index1, c2);
         children.remove(index2);
         children.add(index2, c1);
+        if (transformStore != null) {
+            transformStore.childrenSwapped(index1, index2);
+        }
     }
 
     /**
@@ -593,6 +742,11 @@ public class Node extends Spatial {
     }
 
     public int collideWith(Collidable other, CollisionResults results){
+        if (collisionTree != null && collisionTree.supports(other)) {
+            // the tree is refit along with the world bound
+            checkDoBoundUpdate();
+            return collisionTree.collideWith(other, results);
+        }
         int total = 0;
         // optimization: try collideWith BoundingVolume to avoid possibly redundant tests on children
         // number 4 in condition is somewhat arbitrary. When there is only one child, the boundingVolume test is redundant at all.
@@ -633,6 +787,9 @@ public class Node extends Spatial {
             Spatial child = children.get(i);
             if( child == null ) continue;
             total += child.collideWith(other, results);
+            if (results.isDone()) {
+                break;
+            }
         }
         return total;
     }
@@ -748,6 +905,13 @@ public class Node extends Spatial {
 
         this.children = cloner.clone(children);
 
+        if (transformStore != null) {
+            this.transformStore = new TransformStore(this, transformStore);
+        }
+        if (collisionTree != null) {
+            this.collisionTree = new SceneCollisionTree(this);
+        }
+
         // Only the outer cloning thing knows whether this should be nulled
         // or not... after all, we might be cloning a root node in which case
         // cloning this list is fine.
@@ -0,0 +1,607 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * <code>SceneCollisionTree</code> is a bounding volume hierarchy over the
+ * world bounds of the children of a {@link Node}. With it,
+ * {@link Node#collideWith(com.jme3.collision.Collidable, com.jme3.collision.CollisionResults) }
+ * only visits the children whose bounds are hit by a {@link Ray} or
+ * overlap a {@link BoundingVolume}, instead of every child.
+ * <p>
+ * The tree is kept up to date whenever the node recomputes its world
+ * bound, i.e. when a child was attached, detached or its bound changed.
+ * Each child is stored with a slightly enlarged box, so small movements do
+ * not modify the tree. Children moving out of their box are reinserted,
+ * and the whole tree is rebuilt once many children were reinserted.
+ * <p>
+ * Children whose world bound is null, or neither a {@link BoundingBox}
+ * nor a {@link BoundingSphere}, are always tested. Queries may run on
+ * several threads at once, as long as the scene graph is not modified.
+ *
+ * @see Node#setCollisionTreeEnabled(boolean)
+ * @author jMonkeyEngine
+ */
+public final class SceneCollisionTree {
+
+    private static final int NULL = -1;
+
+    /**
+     * The boxes of the children are enlarged by this fraction of their
+     * size on each side.
+     */
+    private static final float MARGIN = 0.1f;
+
+    private static final int MIN_REBUILD_COUNT = 16;
+
+    private final Node node;
+
+    // per tree node: min x, y, z and max x, y, z
+    private float[] bounds;
+    private int[] parents;
+    private int[] lefts;
+    private int[] rights;
+    // the child of a leaf, null for internal nodes
+    private Spatial[] spatials;
+    private int[] stamps;
+    private int capacity;
+    private int freeList = NULL;
+    private int root = NULL;
+
+    private final IdentityHashMap<Spatial, Integer> leaves = new IdentityHashMap<Spatial, Integer>();
+    private final ArrayList<Spatial> unbounded = new ArrayList<Spatial>();
+    private final float[] box = new float[6];
+    private int stamp;
+    private int reinserted;
+    private boolean rebuild = true;
+    private boolean synced = false;
+
+    SceneCollisionTree(Node node) {
+        this.node = node;
+        allocateArrays(16);
+    }
+
+    /**
+     * @return the node whose children this tree holds
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * @return the number of children in the tree
+     */
+    public int getLeafCount() {
+        return leaves.size();
+    }
+
+    /**
+     * @return the number of levels of the tree, 0 if empty
+     */
+    public int getDepth() {
+        return getDepth(root);
+    }
+
+    private int getDepth(int index) {
+        if (index == NULL) {
+            return 0;
+        }
+        if (isLeaf(index)) {
+            return 1;
+        }
+        return 1 + Math.max(getDepth(lefts[index]), getDepth(rights[index]));
+    }
+
+    private void allocateArrays(int newCapacity) {
+        bounds = new float[newCapacity * 6];
+        parents = new int[newCapacity];
+        lefts = new int[newCapacity];
+        rights = new int[newCapacity];
+        spatials = new Spatial[newCapacity];
+        stamps = new int[newCapacity];
+        capacity = newCapacity;
+        freeList = NULL;
+        for (int i = capacity - 1; i >= 0; i--) {
+            parents[i] = freeList;
+            freeList = i;
+        }
+    }
+
+    private int allocate() {
+        if (freeList == NULL) {
+            int oldCapacity = capacity;
+            capacity *= 2;
+            float[] oldBounds = bounds;
+            bounds = new float[capacity * 6];
+            System.arraycopy(oldBounds, 0, bounds, 0, oldBounds.length);
+            int[] oldParents = parents;
+            parents = new int[capacity];
+            System.arraycopy(oldParents, 0, parents, 0, oldCapacity);
+            int[] oldLefts = lefts;
+            lefts = new int[capacity];
+            System.arraycopy(oldLefts, 0, lefts, 0, oldCapacity);
+            int[] oldRights = rights;
+            rights = new int[capacity];
+            System.arraycopy(oldRights, 0, rights, 0, oldCapacity);
+            Spatial[] oldSpatials = spatials;
+            spatials = new Spatial[capacity];
+            System.arraycopy(oldSpatials, 0, spatials, 0, oldCapacity);
+            int[] oldStamps = stamps;
+            stamps = new int[capacity];
+            System.arraycopy(oldStamps, 0, stamps, 0, oldCapacity);
+            for (int i = capacity - 1; i >= oldCapacity; i--) {
+                parents[i] = freeList;
+                freeList = i;
+            }
+        }
+        int index = freeList;
+        freeList = parents[index];
+        parents[index] = NULL;
+        lefts[index] = NULL;
+        rights[index] = NULL;
+        spatials[index] = null;
+        return index;
+    }
+
+    private void free(int index) {
+        spatials[index] = null;
+        parents[index] = freeList;
+        freeList = index;
+    }
+
+    private boolean isLeaf(int index) {
+        return lefts[index] == NULL;
+    }
+
+    /**
+     * Stores the box enclosing the bound in the given array.
+     *
+     * @return false if the type of bound is not supported
+     */
+    private static boolean getBox(BoundingVolume bound, float[] store) {
+        Vector3f c = bound.getCenter();
+        float ex, ey, ez;
+        if (bound instanceof BoundingBox) {
+            BoundingBox bb = (BoundingBox) bound;
+            ex = bb.getXExtent();
+            ey = bb.getYExtent();
+            ez = bb.getZExtent();
+        } else if (bound instanceof BoundingSphere) {
+            ex = ey = ez = ((BoundingSphere) bound).getRadius();
+        } else {
+            return false;
+        }
+        store[0] = c.x - ex;
+        store[1] = c.y - ey;
+        store[2] = c.z - ez;
+        store[3] = c.x + ex;
+        store[4] = c.y + ey;
+        store[5] = c.z + ez;
+        return true;
+    }
+
+    private boolean contains(int index, float[] box) {
+        int o = index * 6;
+        return bounds[o] <= box[0] && bounds[o + 1] <= box[1] && bounds[o + 2] <= box[2]
+                && bounds[o + 3] >= box[3] && bounds[o + 4] >= box[4] && bounds[o + 5] >= box[5];
+    }
+
+    private void setFatBox(int index, float[] box) {
+        int o = index * 6;
+        for (int i = 0; i < 3; i++) {
+            float margin = (box[i + 3] - box[i]) * MARGIN;
+            bounds[o + i] = box[i] - margin;
+            bounds[o + i + 3] = box[i + 3] + margin;
+        }
+    }
+
+    private void setUnion(int index, int a, int b) {
+        int o = index * 6, oa = a * 6, ob = b * 6;
+        for (int i = 0; i < 3; i++) {
+            bounds[o + i] = Math.min(bounds[oa + i], bounds[ob + i]);
+            bounds[o + i + 3] = Math.max(bounds[oa + i + 3], bounds[ob + i + 3]);
+        }
+    }
+
+    // half the surface area of the union of two nodes
+    private float getUnionArea(int a, int b) {
+        int oa = a * 6, ob = b * 6;
+        float dx = Math.max(bounds[oa + 3], bounds[ob + 3]) - Math.min(bounds[oa], bounds[ob]);
+        float dy = Math.max(bounds[oa + 4], bounds[ob + 4]) - Math.min(bounds[oa + 1], bounds[ob + 1]);
+        float dz = Math.max(bounds[oa + 5], bounds[ob + 5]) - Math.min(bounds[oa + 2], bounds[ob + 2]);
+        return dx * dy + dy * dz + dz * dx;
+    }
+
+    private float getArea(int index) {
+        return getUnionArea(index, index);
+    }
+
+    /**
+     * Synchronizes the tree with the children of the node and their
+     * current world bounds. Called when the node updates its world bound.
+     */
+    void update() {
+        stamp++;
+        unbounded.clear();
+        int visited = 0;
+        for (int i = 0, n = node.getQuantity(); i < n; i++) {
+            Spatial child = node.getChild(i);
+            if (child == null) {
+                continue;
+            }
+            BoundingVolume bound = child.getWorldBound();
+            if (bound == null || !getBox(bound, box)) {
+                unbounded.add(child);
+                continue;
+            }
+            Integer leaf = leaves.get(child);
+            if (leaf == null) {
+                int index = allocate();
+                spatials[index] = child;
+                setFatBox(index, box);
+                leaves.put(child, index);
+                if (!rebuild) {
+                    insertLeaf(index);
+                    reinserted++;
+                }
+                leaf = index;
+            } else if (!contains(leaf, box)) {
+                setFatBox(leaf, box);
+                if (!rebuild) {
+                    removeLeaf(leaf);
+                    insertLeaf(leaf);
+                    reinserted++;
+                }
+            }
+            stamps[leaf] = stamp;
+            visited++;
+        }
+
+        if (visited < leaves.size()) {
+            // remove the children that were detached or lost their bound
+            Iterator<Map.Entry<Spatial, Integer>> it = leaves.entrySet().iterator();
+            while (it.hasNext()) {
+                int leaf = it.next().getValue();
+                if (stamps[leaf] != stamp) {
+                    if (!rebuild) {
+                        removeLeaf(leaf);
+                    }
+                    free(leaf);
+                    it.remove();
+                }
+            }
+        }
+
+        if (rebuild || reinserted > Math.max(MIN_REBUILD_COUNT, leaves.size() / 2)) {
+            rebuild();
+        }
+        synced = true;
+    }
+
+    private void insertLeaf(int leaf) {
+        if (root == NULL) {
+            root = leaf;
+            parents[leaf] = NULL;
+            return;
+        }
+
+        // find the sibling that increases the surface area the least
+        int index = root;
+        while (!isLeaf(index)) {
+            int left = lefts[index];
+            int right = rights[index];
+            float area = getArea(index);
+            float combinedArea = getUnionArea(index, leaf);
+            float cost = 2 * combinedArea;
+            float inheritanceCost = 2 * (combinedArea - area);
+            float leftCost = getUnionArea(leaf, left) + inheritanceCost;
+            if (!isLeaf(left)) {
+                leftCost -= getArea(left);
+            }
+            float rightCost = getUnionArea(leaf, right) + inheritanceCost;
+            if (!isLeaf(right)) {
+                rightCost -= getArea(right);
+            }
+            if (cost < leftCost && cost < rightCost) {
+                break;
+            }
+            index = leftCost < rightCost ? left : right;
+        }
+
+        int sibling = index;
+        int oldParent = parents[sibling];
+        int newParent = allocate();
+        parents[newParent] = oldParent;
+        lefts[newParent] = sibling;
+        rights[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+        if (oldParent == NULL) {
+            root = newParent;
+        } else if (lefts[oldParent] == sibling) {
+            lefts[oldParent] = newParent;
+        } else {
+            rights[oldParent] = newParent;
+        }
+        refit(newParent);
+    }
+
+    private void removeLeaf(int leaf) {
+        if (leaf == root) {
+            root = NULL;
+            return;
+        }
+        int parent = parents[leaf];
+        int grandParent = parents[parent];
+        int sibling = lefts[parent] == leaf ? rights[parent] : lefts[parent];
+        if (grandParent == NULL) {
+            root = sibling;
+            parents[sibling] = NULL;
+        } else {
+            if (lefts[grandParent] == parent) {
+                lefts[grandParent] = sibling;
+            } else {
+                rights[grandParent] = sibling;
+            }
+            parents[sibling] = grandParent;
+            refit(grandParent);
+        }
+        free(parent);
+        parents[leaf] = NULL;
+    }
+
+    private void refit(int index) {
+        while (index != NULL) {
+            setUnion(index, lefts[index], rights[index]);
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Builds the tree from scratch, splitting the children at the median
+     * of the longest axis.
+     */
+    private void rebuild() {
+        int count = leaves.size();
+        Spatial[] children = new Spatial[count];
+        float[] boxes = new float[count * 6];
+        int i = 0;
+        for (Map.Entry<Spatial, Integer> entry : leaves.entrySet()) {
+            children[i] = entry.getKey();
+            System.arraycopy(bounds, entry.getValue() * 6, boxes, i * 6, 6);
+            i++;
+        }
+
+        allocateArrays(Math.max(16, count * 2));
+        leaves.clear();
+        int[] order = new int[count];
+        for (i = 0; i < count; i++) {
+            int leaf = allocate();
+            spatials[leaf] = children[i];
+            stamps[leaf] = stamp;
+            System.arraycopy(boxes, i * 6, bounds, leaf * 6, 6);
+            leaves.put(children[i], leaf);
+            order[i] = leaf;
+        }
+        root = count == 0 ? NULL : build(order, 0, count);
+        if (root != NULL) {
+            parents[root] = NULL;
+        }
+        reinserted = 0;
+        rebuild = false;
+    }
+
+    private int build(int[] order, int from, int to) {
+        if (to - from == 1) {
+            return order[from];
+        }
+        float[] min = {Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY};
+        float[] max = {Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY};
+        for (int i = from; i < to; i++) {
+            for (int axis = 0; axis < 3; axis++) {
+                float c = getCenter(order[i], axis);
+                min[axis] = Math.min(min[axis], c);
+                max[axis] = Math.max(max[axis], c);
+            }
+        }
+        int axis = 0;
+        for (int a = 1; a < 3; a++) {
+            if (max[a] - min[a] > max[axis] - min[axis]) {
+                axis = a;
+            }
+        }
+        int mid = (from + to) >>> 1;
+        select(order, from, to - 1, mid, axis);
+
+        int index = allocate();
+        int left = build(order, from, mid);
+        int right = build(order, mid, to);
+        lefts[index] = left;
+        rights[index] = right;
+        parents[left] = index;
+        parents[right] = index;
+        setUnion(index, left, right);
+        return index;
+    }
+
+    private float getCenter(int index, int axis) {
+        return bounds[index * 6 + axis] + bounds[index * 6 + axis + 3];
+    }
+
+    // partially sorts order[lo..hi] so that order[k] is at its sorted position
+    private void select(int[] order, int lo, int hi, int k, int axis) {
+        while (hi > lo) {
+            float pivot = getCenter(order[(lo + hi) >>> 1], axis);
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (getCenter(order[i], axis) < pivot) {
+                    i++;
+                }
+                while (getCenter(order[j], axis) > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int tmp = order[i];
+                    order[i] = order[j];
+                    order[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                hi = j;
+            } else if (k >= i) {
+                lo = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return true if queries with the collidable can use the tree
+     */
+    boolean supports(Collidable other) {
+        return other instanceof Ray || other instanceof BoundingBox || other instanceof BoundingSphere;
+    }
+
+    /**
+     * Collides the children whose boxes are hit by the collidable.
+     */
+    int collideWith(Collidable other, CollisionResults results) {
+        if (!synced) {
+            update();
+        }
+        int total = 0;
+        for (int i = 0; i < unbounded.size(); i++) {
+            total += unbounded.get(i).collideWith(other, results);
+            if (results.isDone()) {
+                return total;
+            }
+        }
+        if (root == NULL) {
+            return total;
+        }
+
+        // the ray origin, direction and parametric limit, or the query box
+        float[] query;
+        boolean ray = other instanceof Ray;
+        if (ray) {
+            Ray r = (Ray) other;
+            Vector3f origin = r.getOrigin();
+            Vector3f direction = r.getDirection();
+            float length = direction.length();
+            query = new float[]{origin.x, origin.y, origin.z, direction.x, direction.y, direction.z,
+                                length > 0 ? r.getLimit() / length : r.getLimit()};
+        } else {
+            query = new float[6];
+            getBox((BoundingVolume) other, query);
+        }
+
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = root;
+        while (top > 0) {
+            int index = stack[--top];
+            boolean hit = ray ? intersects(index, query) : overlaps(index, query);
+            if (!hit) {
+                continue;
+            }
+            if (isLeaf(index)) {
+                total += spatials[index].collideWith(other, results);
+                if (results.isDone()) {
+                    break;
+                }
+            } else {
+                if (top + 2 > stack.length) {
+                    int[] newStack = new int[stack.length * 2];
+                    System.arraycopy(stack, 0, newStack, 0, top);
+                    stack = newStack;
+                }
+                stack[top++] = rights[index];
+                stack[top++] = lefts[index];
+            }
+        }
+        return total;
+    }
+
+    private boolean overlaps(int index, float[] query) {
+        int o = index * 6;
+        return bounds[o] <= query[3] && bounds[o + 3] >= query[0]
+                && bounds[o + 1] <= query[4] && bounds[o + 4] >= query[1]
+                && bounds[o + 2] <= query[5] && bounds[o + 5] >= query[2];
+    }
+
+    private boolean intersects(int index, float[] ray) {
+        int o = index * 6;
+        float tMin = 0;
+        float tMax = ray[6];
+        for (int axis = 0; axis < 3; axis++) {
+            float orig = ray[axis];
+            float dir = ray[axis + 3];
+            float min = bounds[o + axis];
+            float max = bounds[o + axis + 3];
+            if (dir == 0) {
+                if (orig < min || orig > max) {
+                    return false;
+                }
+                continue;
+            }
+            float inv = 1f / dir;
+            float t1 = (min - orig) * inv;
+            float t2 = (max - orig) * inv;
+            if (t1 > t2) {
+                float tmp = t1;
+                t1 = t2;
+                t2 = tmp;
+            }
+            tMin = Math.max(tMin, t1);
+            tMax = Math.min(tMax, t2);
+            if (tMin > tMax) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
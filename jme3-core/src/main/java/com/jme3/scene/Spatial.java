@@ -716,6 +716,10 @@ public abstract class Spatial implements Savable, Cloneable, Collidable, Cloneab
         // Go to children recursively and update their bound
         if (this instanceof Node) {
             Node node = (Node) this;
+            TransformStore store = node.getTransformStore();
+            if (store != null) {
+                store.apply();
+            }
             int len = node.getQuantity();
             for (int i = 0; i < len; i++) {
                 Spatial child = node.getChild(i);
@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+
+/**
+ * <code>TransformStore</code> keeps the local transforms of the children of
+ * a {@link Node} packed in flat float arrays, one array per component
+ * (structure of arrays).
+ * <p>
+ * Entry <code>i</code> belongs to the child at index <code>i</code> of the
+ * node: its translation is at <code>[i * 3, i * 3 + 3)</code> of
+ * {@link #getTranslations()}, its rotation (x, y, z, w) at
+ * <code>[i * 4, i * 4 + 4)</code> of {@link #getRotations()} and its scale
+ * at <code>[i * 3, i * 3 + 3)</code> of {@link #getScales()}.
+ * <p>
+ * Large groups of children (e.g. a crowd) can be moved by writing to the
+ * arrays, with the bulk setters or directly followed by
+ * {@link #markDirty(int, int)}, without going through
+ * {@link Spatial#setLocalTranslation(com.jme3.math.Vector3f)} and friends
+ * for every child. Modified entries are copied into the children in a
+ * single pass on the next {@link Node#updateGeometricState()} (or
+ * {@link #apply()}); until then the children still report their previous
+ * local transform.
+ * <p>
+ * While a store is enabled it is the authority on the children's local
+ * transforms. If a child's transform is changed directly, call
+ * {@link #pull(int)} so the store does not overwrite it with stale data
+ * later on.
+ *
+ * @see Node#setTransformStoreEnabled(boolean)
+ * @author jMonkeyEngine
+ */
+public final class TransformStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final Node node;
+    private float[] translations;
+    private float[] rotations;
+    private float[] scales;
+    private int size;
+
+    /**
+     * Range of entries that have to be copied to the children,
+     * empty if dirtyStart >= dirtyEnd.
+     */
+    private int dirtyStart, dirtyEnd;
+
+    TransformStore(Node node) {
+        this.node = node;
+        int capacity = Math.max(DEFAULT_CAPACITY, node.getQuantity());
+        translations = new float[capacity * 3];
+        rotations = new float[capacity * 4];
+        scales = new float[capacity * 3];
+        size = node.getQuantity();
+        pullAll();
+    }
+
+    TransformStore(Node node, TransformStore original) {
+        this.node = node;
+        translations = original.translations.clone();
+        rotations = original.rotations.clone();
+        scales = original.scales.clone();
+        size = original.size;
+        dirtyStart = original.dirtyStart;
+        dirtyEnd = original.dirtyEnd;
+    }
+
+    /**
+     * @return the node whose children this store holds
+     */
+    public Node getNode() {
+        return node;
+    }
+
+    /**
+     * @return the number of entries, equal to the number of children
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the translations array, three floats per entry. The array
+     * may be larger than needed and is replaced when children are added.
+     * Call {@link #markDirty(int, int)} after writing to it.
+     */
+    public float[] getTranslations() {
+        return translations;
+    }
+
+    /**
+     * Returns the rotations array, four floats (x, y, z, w) per entry.
+     * Call {@link #markDirty(int, int)} after writing to it.
+     */
+    public float[] getRotations() {
+        return rotations;
+    }
+
+    /**
+     * Returns the scales array, three floats per entry.
+     * Call {@link #markDirty(int, int)} after writing to it.
+     */
+    public float[] getScales() {
+        return scales;
+    }
+
+    public Vector3f getTranslation(int index, Vector3f store) {
+        checkIndex(index);
+        if (store == null) {
+            store = new Vector3f();
+        }
+        int i = index * 3;
+        return store.set(translations[i], translations[i + 1], translations[i + 2]);
+    }
+
+    public Quaternion getRotation(int index, Quaternion store) {
+        checkIndex(index);
+        if (store == null) {
+            store = new Quaternion();
+        }
+        int i = index * 4;
+        return store.set(rotations[i], rotations[i + 1], rotations[i + 2], rotations[i + 3]);
+    }
+
+    public Vector3f getScale(int index, Vector3f store) {
+        checkIndex(index);
+        if (store == null) {
+            store = new Vector3f();
+        }
+        int i = index * 3;
+        return store.set(scales[i], scales[i + 1], scales[i + 2]);
+    }
+
+    public void setTranslation(int index, float x, float y, float z) {
+        checkIndex(index);
+        int i = index * 3;
+        translations[i] = x;
+        translations[i + 1] = y;
+        translations[i + 2] = z;
+        markDirty(index, index + 1);
+    }
+
+    public void setRotation(int index, float x, float y, float z, float w) {
+        checkIndex(index);
+        int i = index * 4;
+        rotations[i] = x;
+        rotations[i + 1] = y;
+        rotations[i + 2] = z;
+        rotations[i + 3] = w;
+        markDirty(index, index + 1);
+    }
+
+    public void setScale(int index, float x, float y, float z) {
+        checkIndex(index);
+        int i = index * 3;
+        scales[i] = x;
+        scales[i + 1] = y;
+        scales[i + 2] = z;
+        markDirty(index, index + 1);
+    }
+
+    /**
+     * Copies <code>count</code> translations (three floats each) from
+     * <code>src</code>, starting at <code>srcOffset</code>, into the entries
+     * starting at <code>index</code>.
+     */
+    public void setTranslations(int index, float[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        System.arraycopy(src, srcOffset, translations, index * 3, count * 3);
+        markDirty(index, index + count);
+    }
+
+    /**
+     * Copies <code>count</code> rotations (four floats each, x, y, z, w)
+     * from <code>src</code>, starting at <code>srcOffset</code>, into the
+     * entries starting at <code>index</code>.
+     */
+    public void setRotations(int index, float[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        System.arraycopy(src, srcOffset, rotations, index * 4, count * 4);
+        markDirty(index, index + count);
+    }
+
+    /**
+     * Copies <code>count</code> scales (three floats each) from
+     * <code>src</code>, starting at <code>srcOffset</code>, into the entries
+     * starting at <code>index</code>.
+     */
+    public void setScales(int index, float[] src, int srcOffset, int count) {
+        checkRange(index, count);
+        System.arraycopy(src, srcOffset, scales, index * 3, count * 3);
+        markDirty(index, index + count);
+    }
+
+    /**
+     * Adds the given offset to the translation of <code>count</code>
+     * entries starting at <code>index</code>.
+     */
+    public void translate(int index, int count, float x, float y, float z) {
+        checkRange(index, count);
+        int end = (index + count) * 3;
+        for (int i = index * 3; i < end; i += 3) {
+            translations[i] += x;
+            translations[i + 1] += y;
+            translations[i + 2] += z;
+        }
+        markDirty(index, index + count);
+    }
+
+    /**
+     * Adds the per entry offsets in <code>deltas</code> (three floats each,
+     * starting at <code>deltaOffset</code>) to the translation of
+     * <code>count</code> entries starting at <code>index</code>.
+     */
+    public void translate(int index, int count, float[] deltas, int deltaOffset) {
+        checkRange(index, count);
+        int end = (index + count) * 3;
+        for (int i = index * 3, j = deltaOffset; i < end; i++, j++) {
+            translations[i] += deltas[j];
+        }
+        markDirty(index, index + count);
+    }
+
+    /**
+     * Flags the entries in <code>[start, end)</code> as modified after
+     * writing to the arrays directly.
+     */
+    public void markDirty(int start, int end) {
+        if (start < 0 || end > size || start > end) {
+            throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ") for size " + size);
+        }
+        if (start == end) {
+            return;
+        }
+        if (dirtyStart >= dirtyEnd) {
+            dirtyStart = start;
+            dirtyEnd = end;
+        } else {
+            dirtyStart = Math.min(dirtyStart, start);
+            dirtyEnd = Math.max(dirtyEnd, end);
+        }
+        // make sure the next updateGeometricState() visits the node
+        node.setBoundRefresh();
+    }
+
+    /**
+     * Flags all entries as modified.
+     */
+    public void markAllDirty() {
+        markDirty(0, size);
+    }
+
+    /**
+     * @return true if some entries were modified but not yet applied
+     */
+    public boolean isDirty() {
+        return dirtyStart < dirtyEnd;
+    }
+
+    /**
+     * Copies the modified entries into the local transforms of the
+     * children. Called by the node at the beginning of
+     * {@link Node#updateGeometricState()}.
+     */
+    public void apply() {
+        if (dirtyStart >= dirtyEnd) {
+            return;
+        }
+        Spatial[] children = node.children.getArray();
+        for (int index = dirtyStart; index < dirtyEnd; index++) {
+            Spatial child = children[index];
+            Transform t = child.localTransform;
+            int i3 = index * 3;
+            int i4 = index * 4;
+            t.setTranslation(translations[i3], translations[i3 + 1], translations[i3 + 2]);
+            t.getRotation().set(rotations[i4], rotations[i4 + 1], rotations[i4 + 2], rotations[i4 + 3]);
+            t.setScale(scales[i3], scales[i3 + 1], scales[i3 + 2]);
+            child.setTransformRefresh();
+        }
+        dirtyStart = dirtyEnd = 0;
+    }
+
+    /**
+     * Reads the current local transform of the child at the given index
+     * into the store, discarding any value written to the store for it.
+     */
+    public void pull(int index) {
+        checkIndex(index);
+        read(index, node.children.get(index).localTransform);
+    }
+
+    /**
+     * Reads the current local transforms of all children into the store,
+     * discarding all pending modifications.
+     */
+    public void pullAll() {
+        Spatial[] children = node.children.getArray();
+        for (int i = 0; i < size; i++) {
+            read(i, children[i].localTransform);
+        }
+        dirtyStart = dirtyEnd = 0;
+    }
+
+    private void read(int index, Transform t) {
+        Vector3f trans = t.getTranslation();
+        Quaternion rot = t.getRotation();
+        Vector3f scale = t.getScale();
+        int i3 = index * 3;
+        int i4 = index * 4;
+        translations[i3] = trans.x;
+        translations[i3 + 1] = trans.y;
+        translations[i3 + 2] = trans.z;
+        rotations[i4] = rot.getX();
+        rotations[i4 + 1] = rot.getY();
+        rotations[i4 + 2] = rot.getZ();
+        rotations[i4 + 3] = rot.getW();
+        scales[i3] = scale.x;
+        scales[i3 + 1] = scale.y;
+        scales[i3 + 2] = scale.z;
+    }
+
+    /**
+     * Called by the node after a child was inserted at the given index.
+     * Pending modifications must have been applied before the insertion.
+     */
+    void childAttached(int index) {
+        if ((size + 1) * 3 > translations.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, size * 2);
+            translations = grow(translations, capacity * 3);
+            rotations = grow(rotations, capacity * 4);
+            scales = grow(scales, capacity * 3);
+        }
+        shift(translations, 3, index, 1);
+        shift(rotations, 4, index, 1);
+        shift(scales, 3, index, 1);
+        size++;
+        pull(index);
+    }
+
+    /**
+     * Called by the node after the child at the given index was removed.
+     * Pending modifications must have been applied before the removal.
+     */
+    void childDetached(int index) {
+        shift(translations, 3, index + 1, -1);
+        shift(rotations, 4, index + 1, -1);
+        shift(scales, 3, index + 1, -1);
+        size--;
+    }
+
+    /**
+     * Called by the node after the children at the given indices were
+     * swapped. Pending modifications must have been applied before the swap.
+     */
+    void childrenSwapped(int index1, int index2) {
+        swap(translations, 3, index1, index2);
+        swap(rotations, 4, index1, index2);
+        swap(scales, 3, index1, index2);
+    }
+
+    private static void swap(float[] array, int stride, int index1, int index2) {
+        for (int i = 0; i < stride; i++) {
+            float tmp = array[index1 * stride + i];
+            array[index1 * stride + i] = array[index2 * stride + i];
+            array[index2 * stride + i] = tmp;
+        }
+    }
+
+    private void shift(float[] array, int stride, int from, int offset) {
+        int length = (size - from) * stride;
+        if (length > 0) {
+            System.arraycopy(array, from * stride, array, (from + offset) * stride, length);
+        }
+    }
+
+    private static float[] grow(float[] array, int length) {
+        float[] result = new float[length];
+        System.arraycopy(array, 0, result, 0, array.length);
+        return result;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    private void checkRange(int index, int count) {
+        if (index < 0 || count < 0 || index + count > size) {
+            throw new IndexOutOfBoundsException("Range: " + index + " + " + count + ", Size: " + size);
+        }
+    }
+}
@@ -212,7 +212,16 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
          * Format should be {@link Format#Float} and number of components
          * should be 16.
          */
-        InstanceData
+        InstanceData,
+
+        /**
+         * Indirect draw commands, used by
+         * {@link com.jme3.scene.mesh.MultiDrawMesh}. Not a vertex attribute.
+         * 
+         * Format should be {@link Format#UnsignedInt} with 1 component,
+         * five elements per command.
+         */
+        DrawIndirect
     }
 
     /**
@@ -334,6 +343,9 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
     protected boolean normalized = false;
     protected int instanceSpan = 0;
     protected transient boolean dataSizeChanged = false;
+    protected transient int allocation = -1;
+    protected transient int dirtyStart = 0;
+    protected transient int dirtyEnd = Integer.MAX_VALUE;
 
     /**
      * Creates an empty, uninitialized buffer.
@@ -698,6 +710,25 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         setUpdateNeeded();
     }
 
+    /**
+     * Returns the handle of the renderer sub-allocation holding the data
+     * of this buffer, or -1 if the buffer has its own buffer object.
+     * Internal use only.
+     * @return the sub-allocation handle
+     */
+    public int getAllocation() {
+        return allocation;
+    }
+
+    /**
+     * Sets the handle of the renderer sub-allocation holding the data
+     * of this buffer. Internal use only.
+     * @param allocation the sub-allocation handle, or -1
+     */
+    public void setAllocation(int allocation) {
+        this.allocation = allocation;
+    }
+
     /**
      * Returns true if the data size of the VertexBuffer has changed.
      * Internal use only.
@@ -707,10 +738,67 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         return dataSizeChanged;
     }
 
+    /**
+     * Indicates that all of the data of this buffer must be sent to the
+     * GPU again.
+     */
+    @Override
+    public void setUpdateNeeded(){
+        super.setUpdateNeeded();
+        dirtyStart = 0;
+        dirtyEnd = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Indicates that the given range of elements was modified and must be
+     * sent to the GPU again. Ranges marked before the next upload are merged.
+     * <p>
+     * Renderers may use the range to send less data, e.g. when the buffer is
+     * {@link Usage#Stream streamed}. The size of the data must not change,
+     * use {@link #updateData(java.nio.Buffer) } for that.
+     * 
+     * @param startElement The first modified element
+     * @param numElements The number of modified elements
+     */
+    public void setUpdateNeeded(int startElement, int numElements){
+        if (startElement < 0 || numElements < 0)
+            throw new IllegalArgumentException("Range cannot be negative");
+
+        if (!isUpdateNeeded()) {
+            super.setUpdateNeeded();
+            dirtyStart = startElement;
+            dirtyEnd = startElement + numElements;
+        } else {
+            dirtyStart = Math.min(dirtyStart, startElement);
+            dirtyEnd = Math.max(dirtyEnd, startElement + numElements);
+        }
+    }
+
+    /**
+     * Returns the first element modified since the last upload.
+     * Internal use only.
+     * @return the first modified element
+     */
+    public int getDirtyStart() {
+        return dirtyStart;
+    }
+
+    /**
+     * Returns the element after the last one modified since the last
+     * upload, never larger than {@link #getNumElements() }.
+     * Internal use only.
+     * @return the end of the modified range, exclusive
+     */
+    public int getDirtyEnd() {
+        return Math.min(dirtyEnd, getNumElements());
+    }
+
     @Override
     public void clearUpdateNeeded(){
         super.clearUpdateNeeded();
         dataSizeChanged = false;
+        dirtyStart = Integer.MAX_VALUE;
+        dirtyEnd = 0;
     }
 
     /**
@@ -1016,6 +1104,7 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
         VertexBuffer vb = (VertexBuffer) super.clone();
         vb.handleRef = new Object();
         vb.id = -1;
+        vb.allocation = -1;
         if (data != null) {
             // Make sure to pass a read-only buffer to clone so that
             // the position information doesn't get clobbered by another
@@ -1072,6 +1161,7 @@ public class VertexBuffer extends NativeObject implements Savable, Cloneable {
     public void resetObject() {
 //        assert this.id != -1;
         this.id = -1;
+        this.allocation = -1;
         setUpdateNeeded();
     }
 
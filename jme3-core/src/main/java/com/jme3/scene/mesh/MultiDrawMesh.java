@@ -0,0 +1,597 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.mesh;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingVolume;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.renderer.Camera.FrustumIntersect;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import com.jme3.util.TempVars;
+import com.jme3.util.clone.Cloner;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+/**
+ * <code>MultiDrawMesh</code> packs many compatible meshes into shared
+ * vertex and index arenas and renders them with a single multi-draw call.
+ * <p>
+ * Unlike {@link com.jme3.scene.BatchNode}, every mesh added keeps its own
+ * index range (a "draw") that can be enabled, disabled or frustum culled
+ * individually without rebuilding the arenas. On hardware supporting
+ * {@link com.jme3.renderer.Caps#MultiDrawIndirect} all enabled draws are
+ * submitted with one <code>glMultiDrawElementsIndirect</code> call,
+ * otherwise the renderer loops over the draws.
+ * <p>
+ * Meshes are compatible when they have the same {@link Mesh.Mode mode}
+ * and the same set of vertex buffers with matching formats. Interleaved,
+ * instanced and hybrid mode meshes are not supported. Vertex data is
+ * transformed into the space of this mesh when added.
+ *
+ * @author jMonkeyEngine
+ */
+public class MultiDrawMesh extends Mesh {
+
+    /**
+     * Number of integers in one indirect draw command:
+     * count, instanceCount, firstIndex, baseVertex and baseInstance.
+     */
+    public static final int COMMAND_SIZE = 5;
+
+    private int numDraws;
+    private int[] firstIndices = new int[8];
+    private int[] indexCounts = new int[8];
+    private int[] firstVertices = new int[8];
+    private int[] vertexCounts = new int[8];
+    private boolean[] enabled = new boolean[8];
+    private boolean[] culled = new boolean[8];
+    private BoundingVolume[] drawBounds = new BoundingVolume[8];
+
+    private int usedVertices;
+    private int usedIndices;
+
+    private VertexBuffer commandBuffer;
+    private int numCommands;
+    private int commandInstances = -1;
+    private boolean commandsChanged = true;
+
+    /**
+     * Creates an empty <code>MultiDrawMesh</code> for
+     * {@link Mesh.Mode#Triangles triangles}.
+     */
+    public MultiDrawMesh() {
+    }
+
+    /**
+     * Creates an empty <code>MultiDrawMesh</code> with the given mode.
+     *
+     * @param mode The mode all added meshes must share
+     */
+    public MultiDrawMesh(Mode mode) {
+        if (mode == Mode.Hybrid) {
+            throw new IllegalArgumentException("Hybrid mode is not supported");
+        }
+        setMode(mode);
+    }
+
+    /**
+     * Appends the given mesh to the arenas.
+     *
+     * @param mesh The mesh to add
+     * @param transform The transform applied to the mesh vertices, or null
+     * to copy them unmodified
+     * @return The draw id of the added mesh
+     *
+     * @throws IllegalArgumentException If the mesh is not compatible with
+     * the meshes already added.
+     */
+    public int add(Mesh mesh, Transform transform) {
+        checkCompatible(mesh);
+
+        int vertCount = mesh.getVertexCount();
+        IndexBuffer srcIndices = mesh.getIndexBuffer();
+        int idxCount = srcIndices != null ? srcIndices.size() : vertCount;
+
+        for (VertexBuffer src : mesh.getBufferList().getArray()) {
+            if (src.getBufferType() == Type.Index) {
+                continue;
+            }
+            VertexBuffer dst = getBuffer(src.getBufferType());
+            if (dst == null) {
+                dst = new VertexBuffer(src.getBufferType());
+                dst.setupData(src.getUsage() == Usage.CpuOnly ? Usage.CpuOnly : Usage.Static,
+                        src.getNumComponents(), src.getFormat(),
+                        VertexBuffer.createBuffer(src.getFormat(), src.getNumComponents(), vertCount));
+                dst.setNormalized(src.isNormalized());
+                setBuffer(dst);
+            }
+            ensureCapacity(dst, usedVertices + vertCount);
+            src.copyElements(0, dst, usedVertices, vertCount);
+            if (transform != null) {
+                transformElements(dst, usedVertices, vertCount, transform);
+            }
+            setElementLimit(dst, usedVertices + vertCount);
+            dst.updateData(dst.getData());
+        }
+
+        VertexBuffer ib = getBuffer(Type.Index);
+        if (ib == null) {
+            ib = new VertexBuffer(Type.Index);
+            ib.setupData(Usage.Static, 1, Format.UnsignedInt, BufferUtils.createIntBuffer(idxCount));
+            setBuffer(ib);
+        }
+        ensureCapacity(ib, usedIndices + idxCount);
+        IntBuffer indices = (IntBuffer) ib.getData();
+        indices.clear();
+        indices.position(usedIndices);
+        for (int i = 0; i < idxCount; i++) {
+            int index = srcIndices != null ? srcIndices.get(i) : i;
+            indices.put(usedVertices + index);
+        }
+        setElementLimit(ib, usedIndices + idxCount);
+        ib.updateData(indices);
+
+        int draw = numDraws;
+        ensureDrawCapacity(draw + 1);
+        firstIndices[draw] = usedIndices;
+        indexCounts[draw] = idxCount;
+        firstVertices[draw] = usedVertices;
+        vertexCounts[draw] = vertCount;
+        enabled[draw] = true;
+        culled[draw] = false;
+        drawBounds[draw] = computeDrawBound(usedVertices, vertCount);
+        numDraws++;
+
+        usedVertices += vertCount;
+        usedIndices += idxCount;
+        commandsChanged = true;
+
+        updateCounts();
+        updateBound();
+        return draw;
+    }
+
+    /**
+     * Removes all draws and vertex data from this mesh.
+     */
+    public void clear() {
+        for (VertexBuffer vb : getBufferList().getArray()) {
+            clearBuffer(vb.getBufferType());
+        }
+        numDraws = 0;
+        usedVertices = 0;
+        usedIndices = 0;
+        commandsChanged = true;
+        updateCounts();
+    }
+
+    /**
+     * @return The number of draws added to this mesh.
+     */
+    public int getDrawCount() {
+        return numDraws;
+    }
+
+    /**
+     * Enables or disables rendering of the given draw.
+     *
+     * @param draw The draw id returned by {@link #add(com.jme3.scene.Mesh, com.jme3.math.Transform) }
+     * @param enabled True to render the draw
+     */
+    public void setDrawEnabled(int draw, boolean enabled) {
+        checkDraw(draw);
+        if (this.enabled[draw] != enabled) {
+            this.enabled[draw] = enabled;
+            commandsChanged = true;
+        }
+    }
+
+    /**
+     * @param draw The draw id
+     * @return True if the draw is enabled.
+     */
+    public boolean isDrawEnabled(int draw) {
+        checkDraw(draw);
+        return enabled[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return True if the draw is enabled and was not culled by the last
+     * call to {@link #cull(com.jme3.renderer.Camera, com.jme3.math.Transform) }.
+     */
+    public boolean isDrawVisible(int draw) {
+        checkDraw(draw);
+        return enabled[draw] && !culled[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return The offset of the draw's first index in the index arena.
+     */
+    public int getFirstIndex(int draw) {
+        checkDraw(draw);
+        return firstIndices[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return The number of indices of the draw.
+     */
+    public int getIndexCount(int draw) {
+        checkDraw(draw);
+        return indexCounts[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return The offset of the draw's first vertex in the vertex arenas.
+     */
+    public int getFirstVertex(int draw) {
+        checkDraw(draw);
+        return firstVertices[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return The number of vertices of the draw.
+     */
+    public int getDrawVertexCount(int draw) {
+        checkDraw(draw);
+        return vertexCounts[draw];
+    }
+
+    /**
+     * @param draw The draw id
+     * @return The bounds of the draw in the space of this mesh.
+     */
+    public BoundingVolume getDrawBound(int draw) {
+        checkDraw(draw);
+        return drawBounds[draw];
+    }
+
+    /**
+     * Culls the individual draws against the frustum of the given camera.
+     * Culled draws are skipped by the renderer until the next call.
+     *
+     * @param cam The camera to cull against
+     * @param worldTransform The world transform of the geometry using
+     * this mesh
+     * @return The number of visible draws
+     */
+    public int cull(Camera cam, Transform worldTransform) {
+        int visible = 0;
+        int planeState = cam.getPlaneState();
+        BoundingVolume store = null;
+        for (int i = 0; i < numDraws; i++) {
+            store = drawBounds[i].transform(worldTransform, store);
+            cam.setPlaneState(0);
+            boolean out = cam.contains(store) == FrustumIntersect.Outside;
+            if (culled[i] != out) {
+                culled[i] = out;
+                commandsChanged = true;
+            }
+            if (enabled[i] && !out) {
+                visible++;
+            }
+        }
+        cam.setPlaneState(planeState);
+        return visible;
+    }
+
+    /**
+     * Returns the indirect draw commands for all visible draws, rebuilding
+     * them if draws were added, toggled or culled. Used by the renderer.
+     *
+     * @param instanceCount The number of instances to render for each draw
+     * @return The command buffer, {@link #getCommandCount() } commands of
+     * {@link #COMMAND_SIZE} unsigned ints each
+     */
+    public VertexBuffer getCommandBuffer(int instanceCount) {
+        if (commandBuffer == null) {
+            commandBuffer = new VertexBuffer(Type.DrawIndirect);
+            commandBuffer.setupData(Usage.Stream, 1, Format.UnsignedInt,
+                    BufferUtils.createIntBuffer(Math.max(numDraws, 1) * COMMAND_SIZE));
+        }
+        if (!commandsChanged && commandInstances == instanceCount) {
+            return commandBuffer;
+        }
+
+        IntBuffer data = (IntBuffer) commandBuffer.getData();
+        if (data.capacity() < numDraws * COMMAND_SIZE) {
+            data = BufferUtils.createIntBuffer(numDraws * COMMAND_SIZE);
+        }
+        data.clear();
+        numCommands = 0;
+        for (int i = 0; i < numDraws; i++) {
+            if (!enabled[i] || culled[i]) {
+                continue;
+            }
+            data.put(indexCounts[i])
+                .put(instanceCount)
+                .put(firstIndices[i])
+                .put(0) // indices are already rebased
+                .put(0);
+            numCommands++;
+        }
+        data.flip();
+        commandBuffer.updateData(data);
+
+        commandInstances = instanceCount;
+        commandsChanged = false;
+        return commandBuffer;
+    }
+
+    /**
+     * @return The number of commands in the last buffer returned by
+     * {@link #getCommandBuffer(int) }.
+     */
+    public int getCommandCount() {
+        return numCommands;
+    }
+
+    @Override
+    public MultiDrawMesh deepClone() {
+        MultiDrawMesh clone = (MultiDrawMesh) super.deepClone();
+        clone.cloneDrawState();
+        return clone;
+    }
+
+    @Override
+    public void cloneFields(Cloner cloner, Object original) {
+        super.cloneFields(cloner, original);
+        cloneDrawState();
+    }
+
+    private void cloneDrawState() {
+        firstIndices = firstIndices.clone();
+        indexCounts = indexCounts.clone();
+        firstVertices = firstVertices.clone();
+        vertexCounts = vertexCounts.clone();
+        enabled = enabled.clone();
+        culled = culled.clone();
+        drawBounds = drawBounds.clone();
+        for (int i = 0; i < numDraws; i++) {
+            drawBounds[i] = drawBounds[i].clone();
+        }
+        commandBuffer = null;
+        commandsChanged = true;
+    }
+
+    @Override
+    public void write(JmeExporter ex) throws IOException {
+        super.write(ex);
+        OutputCapsule out = ex.getCapsule(this);
+        out.write(numDraws, "numDraws", 0);
+        out.write(copyOf(firstIndices, numDraws), "firstIndices", null);
+        out.write(copyOf(indexCounts, numDraws), "indexCounts", null);
+        out.write(copyOf(firstVertices, numDraws), "firstVertices", null);
+        out.write(copyOf(vertexCounts, numDraws), "vertexCounts", null);
+        boolean[] enabledDraws = new boolean[numDraws];
+        System.arraycopy(enabled, 0, enabledDraws, 0, numDraws);
+        out.write(enabledDraws, "enabled", null);
+    }
+
+    @Override
+    public void read(JmeImporter im) throws IOException {
+        super.read(im);
+        InputCapsule in = im.getCapsule(this);
+        numDraws = in.readInt("numDraws", 0);
+        ensureDrawCapacity(numDraws);
+        if (numDraws == 0) {
+            return;
+        }
+        System.arraycopy(in.readIntArray("firstIndices", null), 0, firstIndices, 0, numDraws);
+        System.arraycopy(in.readIntArray("indexCounts", null), 0, indexCounts, 0, numDraws);
+        System.arraycopy(in.readIntArray("firstVertices", null), 0, firstVertices, 0, numDraws);
+        System.arraycopy(in.readIntArray("vertexCounts", null), 0, vertexCounts, 0, numDraws);
+        System.arraycopy(in.readBooleanArray("enabled", null), 0, enabled, 0, numDraws);
+        usedVertices = getVertexCount();
+        usedIndices = getBuffer(Type.Index).getData().limit();
+        for (int i = 0; i < numDraws; i++) {
+            drawBounds[i] = computeDrawBound(firstVertices[i], vertexCounts[i]);
+        }
+        commandsChanged = true;
+    }
+
+    private void checkDraw(int draw) {
+        if (draw < 0 || draw >= numDraws) {
+            throw new IndexOutOfBoundsException("Draw " + draw + " does not exist");
+        }
+    }
+
+    private void checkCompatible(Mesh mesh) {
+        if (mesh.getMode() != getMode()) {
+            throw new IllegalArgumentException("Mesh mode " + mesh.getMode()
+                    + " does not match " + getMode());
+        }
+        if (mesh.getBuffer(Type.InterleavedData) != null) {
+            throw new IllegalArgumentException("Interleaved meshes are not supported");
+        }
+        if (mesh.getBuffer(Type.Position) == null) {
+            throw new IllegalArgumentException("Mesh has no position buffer");
+        }
+
+        ArrayList<Type> types = new ArrayList<Type>();
+        for (VertexBuffer src : mesh.getBufferList().getArray()) {
+            if (src.getBufferType() == Type.Index) {
+                continue;
+            }
+            if (src.isInstanced()) {
+                throw new IllegalArgumentException("Instanced buffers are not supported");
+            }
+            types.add(src.getBufferType());
+            if (numDraws == 0) {
+                continue;
+            }
+            VertexBuffer dst = getBuffer(src.getBufferType());
+            if (dst == null
+                    || dst.getFormat() != src.getFormat()
+                    || dst.getNumComponents() != src.getNumComponents()) {
+                throw new IllegalArgumentException("Buffer " + src.getBufferType()
+                        + " does not match the existing layout");
+            }
+        }
+        if (numDraws > 0) {
+            for (VertexBuffer dst : getBufferList().getArray()) {
+                if (dst.getBufferType() != Type.Index && !types.contains(dst.getBufferType())) {
+                    throw new IllegalArgumentException("Mesh is missing buffer " + dst.getBufferType());
+                }
+            }
+        }
+    }
+
+    private void ensureDrawCapacity(int size) {
+        if (size <= firstIndices.length) {
+            return;
+        }
+        int newSize = Math.max(size, firstIndices.length * 2);
+        firstIndices = copyOf(firstIndices, newSize);
+        indexCounts = copyOf(indexCounts, newSize);
+        firstVertices = copyOf(firstVertices, newSize);
+        vertexCounts = copyOf(vertexCounts, newSize);
+        boolean[] newEnabled = new boolean[newSize];
+        boolean[] newCulled = new boolean[newSize];
+        BoundingVolume[] newBounds = new BoundingVolume[newSize];
+        System.arraycopy(enabled, 0, newEnabled, 0, numDraws);
+        System.arraycopy(culled, 0, newCulled, 0, numDraws);
+        System.arraycopy(drawBounds, 0, newBounds, 0, numDraws);
+        enabled = newEnabled;
+        culled = newCulled;
+        drawBounds = newBounds;
+    }
+
+    private static int[] copyOf(int[] array, int size) {
+        int[] result = new int[size];
+        System.arraycopy(array, 0, result, 0, Math.min(array.length, size));
+        return result;
+    }
+
+    /**
+     * Grows the data of the given buffer so it can hold at least the given
+     * number of elements, keeping the existing contents.
+     */
+    private static void ensureCapacity(VertexBuffer vb, int numElements) {
+        int components = vb.getNumComponents();
+        int scale = vb.getFormat() == Format.Half ? 2 : 1;
+        Buffer data = vb.getData();
+        if (data.capacity() >= numElements * components * scale) {
+            return;
+        }
+
+        int newElements = Math.max(numElements, data.capacity() / components / scale * 2);
+        Buffer grown = VertexBuffer.createBuffer(vb.getFormat(), components, newElements);
+        data.rewind();
+        if (data instanceof FloatBuffer) {
+            ((FloatBuffer) grown).put((FloatBuffer) data);
+        } else if (data instanceof IntBuffer) {
+            ((IntBuffer) grown).put((IntBuffer) data);
+        } else if (data instanceof ShortBuffer) {
+            ((ShortBuffer) grown).put((ShortBuffer) data);
+        } else if (data instanceof ByteBuffer) {
+            ((ByteBuffer) grown).put((ByteBuffer) data);
+        } else if (data instanceof DoubleBuffer) {
+            ((DoubleBuffer) grown).put((DoubleBuffer) data);
+        }
+        grown.clear();
+        vb.updateData(grown);
+    }
+
+    private static void setElementLimit(VertexBuffer vb, int numElements) {
+        int scale = vb.getFormat() == Format.Half ? 2 : 1;
+        vb.getData().clear();
+        vb.getData().limit(numElements * vb.getNumComponents() * scale);
+    }
+
+    private static void transformElements(VertexBuffer vb, int start, int count, Transform transform) {
+        Type type = vb.getBufferType();
+        boolean position = type == Type.Position || type == Type.BindPosePosition;
+        boolean direction = type == Type.Normal || type == Type.BindPoseNormal
+                || type == Type.Tangent || type == Type.BindPoseTangent
+                || type == Type.Binormal;
+        if (!position && !direction) {
+            return;
+        }
+        if (vb.getFormat() != Format.Float || vb.getNumComponents() < 3) {
+            return;
+        }
+
+        FloatBuffer data = (FloatBuffer) vb.getData();
+        int components = vb.getNumComponents();
+        Quaternion rotation = transform.getRotation();
+        TempVars vars = TempVars.get();
+        Vector3f v = vars.vect1;
+        for (int i = start; i < start + count; i++) {
+            int offset = i * components;
+            v.set(data.get(offset), data.get(offset + 1), data.get(offset + 2));
+            if (position) {
+                transform.transformVector(v, v);
+            } else {
+                rotation.mult(v, v).normalizeLocal();
+            }
+            data.put(offset, v.x).put(offset + 1, v.y).put(offset + 2, v.z);
+        }
+        vars.release();
+    }
+
+    private BoundingVolume computeDrawBound(int start, int count) {
+        VertexBuffer pb = getBuffer(Type.Position);
+        FloatBuffer data = (FloatBuffer) pb.getData();
+        int components = pb.getNumComponents();
+        int limit = data.limit();
+        data.position(start * components);
+        data.limit((start + count) * components);
+        BoundingBox bound = new BoundingBox();
+        bound.computeFromPoints(data.slice());
+        data.clear();
+        data.limit(limit);
+        return bound;
+    }
+}
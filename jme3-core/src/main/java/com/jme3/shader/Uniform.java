@@ -423,6 +423,120 @@ public class Uniform extends ShaderVariable {
         updateNeeded = false;
     }
 
+    /**
+     * Makes this uniform a copy of the given one: name, location, type and
+     * current value. Value objects and buffers of this uniform are reused
+     * when possible, so a copy can be refreshed without allocating. Changes
+     * made to the given uniform afterwards do not affect the copy.
+     * <p>
+     * The value of an array uniform is copied into its
+     * {@link #getMultiData() multi data} buffer, which is also returned by
+     * {@link #getValue() }.
+     *
+     * @param other The uniform to copy
+     */
+    public void copyFrom(Uniform other) {
+        name = other.name;
+        location = other.location;
+        binding = other.binding;
+        varType = other.varType;
+        setByCurrentMaterial = other.setByCurrentMaterial;
+        updateNeeded = true;
+        if (varType == null) {
+            value = null;
+            return;
+        }
+
+        Object val = other.value;
+        switch (varType) {
+            case Float:
+            case Int:
+            case Boolean:
+                // immutable
+                value = val;
+                break;
+            case Vector2:
+                if (!(value instanceof Vector2f)) {
+                    value = new Vector2f();
+                }
+                ((Vector2f) value).set((Vector2f) val);
+                break;
+            case Vector3:
+                if (!(value instanceof Vector3f)) {
+                    value = new Vector3f();
+                }
+                ((Vector3f) value).set((Vector3f) val);
+                break;
+            case Vector4:
+                if (val instanceof ColorRGBA) {
+                    if (!(value instanceof ColorRGBA)) {
+                        value = new ColorRGBA();
+                    }
+                    ((ColorRGBA) value).set((ColorRGBA) val);
+                } else if (val instanceof Vector4f) {
+                    if (!(value instanceof Vector4f)) {
+                        value = new Vector4f();
+                    }
+                    ((Vector4f) value).set((Vector4f) val);
+                } else {
+                    if (!(value instanceof Quaternion)) {
+                        value = new Quaternion();
+                    }
+                    ((Quaternion) value).set((Quaternion) val);
+                }
+                break;
+            case Matrix3:
+                if (!(value instanceof Matrix3f)) {
+                    value = new Matrix3f();
+                }
+                ((Matrix3f) value).set((Matrix3f) val);
+                multiData = copyBuffer(other.multiData, multiData);
+                break;
+            case Matrix4:
+                if (!(value instanceof Matrix4f)) {
+                    value = new Matrix4f();
+                }
+                ((Matrix4f) value).set((Matrix4f) val);
+                multiData = copyBuffer(other.multiData, multiData);
+                break;
+            case IntArray: {
+                IntBuffer src = (IntBuffer) val;
+                IntBuffer dst = value instanceof IntBuffer ? (IntBuffer) value : null;
+                if (dst == null || dst.capacity() < src.limit()) {
+                    dst = BufferUtils.createIntBuffer(src.limit());
+                }
+                dst.clear();
+                for (int i = 0; i < src.limit(); i++) {
+                    dst.put(i, src.get(i));
+                }
+                dst.limit(src.limit());
+                dst.position(src.position());
+                value = dst;
+                break;
+            }
+            default:
+                multiData = copyBuffer(other.multiData, multiData);
+                value = multiData;
+                break;
+        }
+    }
+
+    private static FloatBuffer copyBuffer(FloatBuffer src, FloatBuffer store) {
+        if (src == null) {
+            return store;
+        }
+        if (store == null || store.capacity() < src.limit()) {
+            store = BufferUtils.createFloatBuffer(src.limit());
+        }
+        store.clear();
+        for (int i = 0; i < src.limit(); i++) {
+            store.put(i, src.get(i));
+        }
+        store.limit(src.limit());
+        store.position(src.position());
+        return store;
+    }
+
     public void reset(){
         setByCurrentMaterial = false;
         location = -2;
@@ -46,6 +46,7 @@ import com.jme3.scene.Mesh;
 import com.jme3.scene.VertexBuffer;
 import com.jme3.shader.Shader;
 import com.jme3.shader.Shader.ShaderSource;
+import com.jme3.shader.Uniform;
 import com.jme3.texture.FrameBuffer;
 import com.jme3.texture.Image;
 import com.jme3.texture.Texture;
@@ -115,6 +116,9 @@ public class NullRenderer implements Renderer {
     public void setShader(Shader shader) {
     }
 
+    public void setShader(Shader shader, Uniform[] uniforms, int offset, int count) {
+    }
+
     public void deleteShader(Shader shader) {
     }
 
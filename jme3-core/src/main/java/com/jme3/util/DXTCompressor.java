@@ -0,0 +1,370 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.image.ImageRaster;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * <code>DXTCompressor</code> compresses images into the DXT1 (BC1) and
+ * DXT5 (BC3) block formats, to reduce the video memory used by textures
+ * and the amount of data to upload.
+ * <p>
+ * Compression is too slow to run every time a texture is loaded, it is
+ * meant to produce textures offline or in the background. The compressed
+ * image can be saved with the binary exporter, or kept in a
+ * {@link com.jme3.asset.PersistentAssetCache}.
+ * <p>
+ * Each block is compressed by fitting the endpoints along the principal
+ * axis of its colors. All mipmap levels and data buffers of the image are
+ * compressed, spread over the fork/join pool.
+ *
+ * @see MipMapGenerator#createMipMaps(com.jme3.texture.Image, com.jme3.util.MipMapGenerator.Filter)
+ * @author jMonkeyEngine
+ */
+public final class DXTCompressor {
+
+    private static final int BLOCK_ROWS_PER_TASK = 4;
+
+    private DXTCompressor() {
+    }
+
+    /**
+     * Compresses the image and its mipmaps.
+     *
+     * @param image The image, must have an uncompressed color format.
+     * @param format {@link Format#DXT1}, which ignores the alpha channel,
+     * or {@link Format#DXT5}.
+     * @return The compressed image, with the same size and color space.
+     */
+    public static Image compress(final Image image, final Format format) {
+        if (format != Format.DXT1 && format != Format.DXT5) {
+            throw new IllegalArgumentException("Unsupported target format " + format);
+        }
+        Format sourceFormat = image.getFormat();
+        if (sourceFormat.isCompressed() || sourceFormat.isDepthFormat()) {
+            throw new IllegalArgumentException("Cannot compress images of format " + sourceFormat);
+        }
+
+        int[] sourceSizes = image.getMipMapSizes();
+        final int levels = sourceSizes != null ? sourceSizes.length : 1;
+        final int[] sourceOffsets = new int[levels];
+        final int[] mipMapSizes = new int[levels];
+        int totalSize = 0;
+        for (int i = 0; i < levels; i++) {
+            if (i > 0) {
+                sourceOffsets[i] = sourceOffsets[i - 1] + sourceSizes[i - 1];
+            }
+            mipMapSizes[i] = MipMapGenerator.getLevelSize(format,
+                    Math.max(1, image.getWidth() >> i), Math.max(1, image.getHeight() >> i));
+            totalSize += mipMapSizes[i];
+        }
+
+        int slices = image.getData().size();
+        ArrayList<ByteBuffer> data = new ArrayList<ByteBuffer>(slices);
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+        for (int i = 0; i < slices; i++) {
+            ByteBuffer target = BufferUtils.createByteBuffer(totalSize);
+            data.add(target);
+            int offset = 0;
+            for (int level = 0; level < levels; level++) {
+                Image source = MipMapGenerator.createView(image, image.getData(i), sourceOffsets[level],
+                        Math.max(1, image.getWidth() >> level), Math.max(1, image.getHeight() >> level));
+                tasks.add(createTask(source, target, offset, format == Format.DXT5));
+                offset += mipMapSizes[level];
+            }
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        return new Image(format, image.getWidth(), image.getHeight(), image.getDepth(), data,
+                         levels > 1 ? mipMapSizes : null, image.getColorSpace());
+    }
+
+    /**
+     * Compresses the image and its mipmaps in the background.
+     *
+     * @param image The image, must have an uncompressed color format.
+     * @param format {@link Format#DXT1} or {@link Format#DXT5}.
+     * @return The future compressed image.
+     * @see #compress(com.jme3.texture.Image, com.jme3.texture.Image.Format)
+     */
+    public static CompletableFuture<Image> compressAsync(final Image image, final Format format) {
+        return CompletableFuture.supplyAsync(new Supplier<Image>() {
+            @Override
+            public Image get() {
+                return compress(image, format);
+            }
+        });
+    }
+
+    private static RecursiveAction createTask(final Image source, final ByteBuffer target, final int offset,
+                                              final boolean alpha) {
+        final int width = source.getWidth();
+        final int height = source.getHeight();
+        final int blocksX = (width + 3) / 4;
+        final int blockSize = alpha ? 16 : 8;
+        final MipMapGenerator.Rows rows = new MipMapGenerator.Rows() {
+            public void process(int from, int to) {
+                ImageRaster raster = ImageRaster.create(MipMapGenerator.createView(source, source.getData(0), 0,
+                        width, height), 0, 0, false);
+                ColorRGBA color = new ColorRGBA();
+                int[] rgba = new int[16 * 4];
+                for (int by = from; by < to; by++) {
+                    for (int bx = 0; bx < blocksX; bx++) {
+                        for (int i = 0; i < 16; i++) {
+                            // pixels outside of the image repeat the edge
+                            int x = Math.min(bx * 4 + (i & 3), width - 1);
+                            int y = Math.min(by * 4 + (i >> 2), height - 1);
+                            raster.getPixel(x, y, color);
+                            rgba[i * 4] = toByte(color.r);
+                            rgba[i * 4 + 1] = toByte(color.g);
+                            rgba[i * 4 + 2] = toByte(color.b);
+                            rgba[i * 4 + 3] = toByte(color.a);
+                        }
+                        int position = offset + (by * blocksX + bx) * blockSize;
+                        if (alpha) {
+                            compressAlphaBlock(rgba, target, position);
+                            position += 8;
+                        }
+                        compressColorBlock(rgba, target, position);
+                    }
+                }
+            }
+        };
+        return new RecursiveAction() {
+            @Override
+            protected void compute() {
+                new MipMapGenerator.RowTask(rows, 0, (height + 3) / 4, BLOCK_ROWS_PER_TASK).invoke();
+            }
+        };
+    }
+
+    private static int toByte(float value) {
+        return Math.min(Math.max((int) (value * 255 + 0.5f), 0), 255);
+    }
+
+    private static int to565(float r, float g, float b) {
+        int r5 = Math.min(Math.max((int) (r * 31 / 255 + 0.5f), 0), 31);
+        int g6 = Math.min(Math.max((int) (g * 63 / 255 + 0.5f), 0), 63);
+        int b5 = Math.min(Math.max((int) (b * 31 / 255 + 0.5f), 0), 31);
+        return (r5 << 11) | (g6 << 5) | b5;
+    }
+
+    /**
+     * Expands a 565 color into the components of the palette.
+     */
+    private static void expand565(int color, int[] palette, int index) {
+        int r = (color >> 11) & 31;
+        int g = (color >> 5) & 63;
+        int b = color & 31;
+        palette[index * 3] = (r << 3) | (r >> 2);
+        palette[index * 3 + 1] = (g << 2) | (g >> 4);
+        palette[index * 3 + 2] = (b << 3) | (b >> 2);
+    }
+
+    /**
+     * Compresses the colors of a 4x4 block of RGBA pixels into the 8 byte
+     * DXT1 layout, always using the four color mode.
+     *
+     * @param rgba The 16 pixels, in rows, 4 components each.
+     * @param target The buffer to write to.
+     * @param position The position of the block in the buffer.
+     */
+    static void compressColorBlock(int[] rgba, ByteBuffer target, int position) {
+        // mean and covariance of the colors
+        float mr = 0, mg = 0, mb = 0;
+        for (int i = 0; i < 16; i++) {
+            mr += rgba[i * 4];
+            mg += rgba[i * 4 + 1];
+            mb += rgba[i * 4 + 2];
+        }
+        mr /= 16;
+        mg /= 16;
+        mb /= 16;
+        float crr = 0, crg = 0, crb = 0, cgg = 0, cgb = 0, cbb = 0;
+        for (int i = 0; i < 16; i++) {
+            float r = rgba[i * 4] - mr;
+            float g = rgba[i * 4 + 1] - mg;
+            float b = rgba[i * 4 + 2] - mb;
+            crr += r * r;
+            crg += r * g;
+            crb += r * b;
+            cgg += g * g;
+            cgb += g * b;
+            cbb += b * b;
+        }
+
+        // principal axis by power iteration, starting from the covariance
+        // of the channel with the largest variance
+        float ar, ag, ab;
+        if (crr >= cgg && crr >= cbb) {
+            ar = crr;
+            ag = crg;
+            ab = crb;
+        } else if (cgg >= cbb) {
+            ar = crg;
+            ag = cgg;
+            ab = cgb;
+        } else {
+            ar = crb;
+            ag = cgb;
+            ab = cbb;
+        }
+        for (int i = 0; i < 8; i++) {
+            float r = crr * ar + crg * ag + crb * ab;
+            float g = crg * ar + cgg * ag + cgb * ab;
+            float b = crb * ar + cgb * ag + cbb * ab;
+            float max = Math.max(Math.abs(r), Math.max(Math.abs(g), Math.abs(b)));
+            if (max == 0) {
+                break;
+            }
+            ar = r / max;
+            ag = g / max;
+            ab = b / max;
+        }
+
+        // the extreme colors along the axis
+        int min = 0, max = 0;
+        float minDot = Float.MAX_VALUE, maxDot = -Float.MAX_VALUE;
+        for (int i = 0; i < 16; i++) {
+            float dot = rgba[i * 4] * ar + rgba[i * 4 + 1] * ag + rgba[i * 4 + 2] * ab;
+            if (dot < minDot) {
+                minDot = dot;
+                min = i;
+            }
+            if (dot > maxDot) {
+                maxDot = dot;
+                max = i;
+            }
+        }
+
+        // inset the endpoints to reduce the error of the interpolated colors
+        float dr = (rgba[max * 4] - rgba[min * 4]) / 16f;
+        float dg = (rgba[max * 4 + 1] - rgba[min * 4 + 1]) / 16f;
+        float db = (rgba[max * 4 + 2] - rgba[min * 4 + 2]) / 16f;
+        int c0 = to565(rgba[max * 4] - dr, rgba[max * 4 + 1] - dg, rgba[max * 4 + 2] - db);
+        int c1 = to565(rgba[min * 4] + dr, rgba[min * 4 + 1] + dg, rgba[min * 4 + 2] + db);
+        if (c0 < c1) {
+            int tmp = c0;
+            c0 = c1;
+            c1 = tmp;
+        }
+
+        int indices = 0;
+        if (c0 != c1) {
+            int[] palette = new int[4 * 3];
+            expand565(c0, palette, 0);
+            expand565(c1, palette, 1);
+            for (int c = 0; c < 3; c++) {
+                palette[6 + c] = (2 * palette[c] + palette[3 + c]) / 3;
+                palette[9 + c] = (palette[c] + 2 * palette[3 + c]) / 3;
+            }
+            for (int i = 0; i < 16; i++) {
+                int best = 0;
+                int bestError = Integer.MAX_VALUE;
+                for (int p = 0; p < 4; p++) {
+                    int r = rgba[i * 4] - palette[p * 3];
+                    int g = rgba[i * 4 + 1] - palette[p * 3 + 1];
+                    int b = rgba[i * 4 + 2] - palette[p * 3 + 2];
+                    int error = r * r + g * g + b * b;
+                    if (error < bestError) {
+                        bestError = error;
+                        best = p;
+                    }
+                }
+                indices |= best << (i * 2);
+            }
+        }
+
+        target.put(position, (byte) c0);
+        target.put(position + 1, (byte) (c0 >> 8));
+        target.put(position + 2, (byte) c1);
+        target.put(position + 3, (byte) (c1 >> 8));
+        for (int i = 0; i < 4; i++) {
+            target.put(position + 4 + i, (byte) (indices >> (i * 8)));
+        }
+    }
+
+    /**
+     * Compresses the alpha values of a 4x4 block of RGBA pixels into the
+     * 8 byte DXT5 layout, using eight interpolated values.
+     *
+     * @param rgba The 16 pixels, in rows, 4 components each.
+     * @param target The buffer to write to.
+     * @param position The position of the block in the buffer.
+     */
+    static void compressAlphaBlock(int[] rgba, ByteBuffer target, int position) {
+        int a0 = 0, a1 = 255;
+        for (int i = 0; i < 16; i++) {
+            a0 = Math.max(a0, rgba[i * 4 + 3]);
+            a1 = Math.min(a1, rgba[i * 4 + 3]);
+        }
+
+        long indices = 0;
+        if (a0 != a1) {
+            int[] palette = new int[8];
+            palette[0] = a0;
+            palette[1] = a1;
+            for (int i = 2; i < 8; i++) {
+                palette[i] = ((8 - i) * a0 + (i - 1) * a1) / 7;
+            }
+            for (int i = 0; i < 16; i++) {
+                int a = rgba[i * 4 + 3];
+                int best = 0;
+                int bestError = Integer.MAX_VALUE;
+                for (int p = 0; p < 8; p++) {
+                    int error = Math.abs(a - palette[p]);
+                    if (error < bestError) {
+                        bestError = error;
+                        best = p;
+                    }
+                }
+                indices |= (long) best << (i * 3);
+            }
+        }
+
+        target.put(position, (byte) a0);
+        target.put(position + 1, (byte) a1);
+        for (int i = 0; i < 6; i++) {
+            target.put(position + 2 + i, (byte) (indices >> (i * 8)));
+        }
+    }
+}
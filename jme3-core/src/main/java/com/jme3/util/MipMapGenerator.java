@@ -38,6 +38,11 @@ import com.jme3.texture.Image.Format;
 import com.jme3.texture.image.ImageRaster;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
 
 public class MipMapGenerator {
 
@@ -137,4 +142,344 @@ public class MipMapGenerator {
         image.setData(0, combinedData);
         image.setMipMapSizes(mipSizes);
     }
+
+    /**
+     * The filters available to produce mipmaps, see
+     * {@link #generateMipMaps(com.jme3.texture.Image, com.jme3.util.MipMapGenerator.Filter) }.
+     */
+    public enum Filter {
+
+        /**
+         * Averages the pixels covered by each pixel of the smaller level.
+         * Fast, but produces slightly blurry mipmaps.
+         */
+        BOX,
+        /**
+         * A Kaiser windowed sinc filter, which keeps more detail in the
+         * smaller levels and reduces aliasing.
+         */
+        KAISER
+    }
+
+    private static final float KAISER_ALPHA = 4f;
+    // in pixels of the smaller level
+    private static final float KAISER_RADIUS = 2f;
+    private static final int ROWS_PER_TASK = 8;
+
+    /**
+     * Processes a range of rows, see {@link RowTask}.
+     */
+    interface Rows {
+
+        public void process(int from, int to);
+    }
+
+    /**
+     * Splits a range of rows into tasks that run in parallel on the
+     * fork/join pool of the calling thread, or the common pool.
+     */
+    static final class RowTask extends RecursiveAction {
+
+        private final Rows rows;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        RowTask(Rows rows, int from, int to, int grain) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.grain = Math.max(1, grain);
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                rows.process(from, to);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RowTask(rows, from, mid, grain), new RowTask(rows, mid, to, grain));
+            }
+        }
+    }
+
+    /**
+     * Returns the size of a mipmap level, in bytes.
+     */
+    static int getLevelSize(Format format, int width, int height) {
+        if (format.isCompressed()) {
+            int blockSize = format.getBitsPerPixel() * 2;
+            return ((width + 3) / 4) * ((height + 3) / 4) * blockSize;
+        }
+        return width * height * format.getBitsPerPixel() / 8;
+    }
+
+    /**
+     * Creates an image sharing a part of the given buffer. The view has
+     * its own buffer position, so that separate threads can access
+     * separate views of the same data.
+     */
+    static Image createView(Image image, ByteBuffer data, int offset, int width, int height) {
+        ByteBuffer view = data.duplicate();
+        view.limit(offset + getLevelSize(image.getFormat(), width, height));
+        view.position(offset);
+        return new Image(image.getFormat(), width, height, view.slice(), image.getColorSpace());
+    }
+
+    // one axis of the resampling filter
+    private static final class Kernel {
+
+        final int[] start;
+        final float[][] weights;
+        final int sourceSize;
+
+        Kernel(Filter filter, int sourceSize, int size) {
+            this.sourceSize = sourceSize;
+            start = new int[size];
+            weights = new float[size][];
+            float scale = (float) sourceSize / size;
+            float radius = filter == Filter.BOX ? scale / 2 : KAISER_RADIUS * scale;
+            for (int x = 0; x < size; x++) {
+                float center = (x + 0.5f) * scale;
+                int first = (int) Math.floor(center - radius);
+                int last = (int) Math.ceil(center + radius) - 1;
+                float[] w = new float[last - first + 1];
+                float sum = 0;
+                for (int i = first; i <= last; i++) {
+                    float weight;
+                    if (filter == Filter.BOX) {
+                        weight = Math.min(i + 1, center + radius) - Math.max(i, center - radius);
+                    } else {
+                        weight = kaiser((i + 0.5f - center) / scale);
+                    }
+                    w[i - first] = weight;
+                    sum += weight;
+                }
+                for (int i = 0; i < w.length; i++) {
+                    w[i] /= sum;
+                }
+                start[x] = first;
+                weights[x] = w;
+            }
+        }
+
+        int clamp(int i) {
+            return Math.min(Math.max(i, 0), sourceSize - 1);
+        }
+    }
+
+    private static float kaiser(float x) {
+        if (Math.abs(x) >= KAISER_RADIUS) {
+            return 0;
+        }
+        float sinc = x == 0 ? 1 : FastMath.sin(FastMath.PI * x) / (FastMath.PI * x);
+        float t = x / KAISER_RADIUS;
+        return sinc * (float) (bessel0(KAISER_ALPHA * Math.sqrt(1 - t * t)) / bessel0(KAISER_ALPHA));
+    }
+
+    private static double bessel0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 32 && term > sum * 1e-12; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+        }
+        return sum;
+    }
+
+    /**
+     * Generates the mipmaps of the image, replacing any existing ones.
+     * <p>
+     * The levels are produced from the CPU-side image data through
+     * {@link ImageRaster}, so the result can be uploaded without
+     * <code>glGenerateMipmap</code>, or be stored with the image.
+     * Colors of sRGB images are filtered in linear space.
+     * Each data buffer of the image, e.g. each face of a cube map, is
+     * filtered separately, and the work is spread over the fork/join pool.
+     *
+     * @param image The image, must have an uncompressed color format.
+     * @param filter The filter to use.
+     */
+    public static void generateMipMaps(Image image, Filter filter) {
+        Image result = createMipMaps(image, filter);
+        image.setData(new ArrayList<ByteBuffer>(result.getData()));
+        image.setMipMapSizes(result.getMipMapSizes());
+    }
+
+    /**
+     * Generates the mipmaps of the image in the background. The given
+     * image is not modified, the returned image holds a copy of its data
+     * with all mipmap levels and can replace it once complete, e.g. with
+     * {@link com.jme3.texture.Texture#setImage(com.jme3.texture.Image) }.
+     *
+     * @param image The image, must have an uncompressed color format.
+     * @param filter The filter to use.
+     * @return The future image with mipmaps.
+     */
+    public static CompletableFuture<Image> generateMipMapsAsync(final Image image, final Filter filter) {
+        return CompletableFuture.supplyAsync(new Supplier<Image>() {
+            @Override
+            public Image get() {
+                return createMipMaps(image, filter);
+            }
+        });
+    }
+
+    /**
+     * Creates a copy of the image with a full chain of mipmaps, down to
+     * 1x1 pixels.
+     *
+     * @param image The image, must have an uncompressed color format.
+     * @param filter The filter to use.
+     * @return The image with mipmaps.
+     * @see #generateMipMaps(com.jme3.texture.Image, com.jme3.util.MipMapGenerator.Filter)
+     */
+    public static Image createMipMaps(final Image image, final Filter filter) {
+        final Format format = image.getFormat();
+        if (format.isCompressed() || format.isDepthFormat()) {
+            throw new IllegalArgumentException("Cannot generate mipmaps for format " + format);
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int levels = 1;
+        while ((width >> levels) > 0 || (height >> levels) > 0) {
+            levels++;
+        }
+        final int[] mipMapSizes = new int[levels];
+        int totalSize = 0;
+        for (int i = 0; i < levels; i++) {
+            mipMapSizes[i] = getLevelSize(format, Math.max(1, width >> i), Math.max(1, height >> i));
+            totalSize += mipMapSizes[i];
+        }
+
+        int slices = image.getData().size();
+        final ArrayList<ByteBuffer> data = new ArrayList<ByteBuffer>(slices);
+        List<RecursiveAction> tasks = new ArrayList<RecursiveAction>(slices);
+        for (int i = 0; i < slices; i++) {
+            final ByteBuffer source = image.getData(i);
+            final ByteBuffer target = BufferUtils.createByteBuffer(totalSize);
+            data.add(target);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    generateLevels(image, source, target, mipMapSizes, filter);
+                }
+            });
+        }
+        ForkJoinTask.invokeAll(tasks);
+
+        return new Image(format, width, height, image.getDepth(), data, mipMapSizes, image.getColorSpace());
+    }
+
+    private static void generateLevels(final Image image, ByteBuffer source, final ByteBuffer target,
+                                       int[] mipMapSizes, Filter filter) {
+        ByteBuffer base = source.duplicate();
+        base.clear().limit(mipMapSizes[0]);
+        target.put(base);
+        target.clear();
+
+        final boolean clampToOne = !image.getFormat().isFloatingPont();
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+
+        float[] previous = null;
+        int offset = mipMapSizes[0];
+        for (int level = 1; level < mipMapSizes.length; level++) {
+            final int srcWidth = Math.max(1, width >> (level - 1));
+            final int srcHeight = Math.max(1, height >> (level - 1));
+            final int dstWidth = Math.max(1, width >> level);
+            final int dstHeight = Math.max(1, height >> level);
+            final Kernel kx = new Kernel(filter, srcWidth, dstWidth);
+            final Kernel ky = new Kernel(filter, srcHeight, dstHeight);
+            final float[] src = previous;
+            final float[] horizontal = new float[srcHeight * dstWidth * 4];
+            final float[] dst = new float[dstHeight * dstWidth * 4];
+            final int levelOffset = offset;
+
+            // filter the rows of the previous level
+            int grain = Math.max(1, ROWS_PER_TASK * 256 / srcWidth);
+            new RowTask(new Rows() {
+                public void process(int from, int to) {
+                    ImageRaster raster = src == null ? ImageRaster.create(createView(image, target, 0,
+                            srcWidth, srcHeight), 0, 0, true) : null;
+                    ColorRGBA color = new ColorRGBA();
+                    float[] row = new float[srcWidth * 4];
+                    for (int y = from; y < to; y++) {
+                        if (raster != null) {
+                            for (int x = 0; x < srcWidth; x++) {
+                                raster.getPixel(x, y, color);
+                                row[x * 4] = color.r;
+                                row[x * 4 + 1] = color.g;
+                                row[x * 4 + 2] = color.b;
+                                row[x * 4 + 3] = color.a;
+                            }
+                        } else {
+                            System.arraycopy(src, y * srcWidth * 4, row, 0, row.length);
+                        }
+                        int out = y * dstWidth * 4;
+                        for (int x = 0; x < dstWidth; x++, out += 4) {
+                            float[] w = kx.weights[x];
+                            float r = 0, g = 0, b = 0, a = 0;
+                            for (int i = 0; i < w.length; i++) {
+                                int in = kx.clamp(kx.start[x] + i) * 4;
+                                r += row[in] * w[i];
+                                g += row[in + 1] * w[i];
+                                b += row[in + 2] * w[i];
+                                a += row[in + 3] * w[i];
+                            }
+                            horizontal[out] = r;
+                            horizontal[out + 1] = g;
+                            horizontal[out + 2] = b;
+                            horizontal[out + 3] = a;
+                        }
+                    }
+                }
+            }, 0, srcHeight, grain).invoke();
+
+            // filter the columns and write the level
+            grain = Math.max(1, ROWS_PER_TASK * 256 / dstWidth);
+            new RowTask(new Rows() {
+                public void process(int from, int to) {
+                    ImageRaster raster = ImageRaster.create(createView(image, target, levelOffset,
+                            dstWidth, dstHeight), 0, 0, true);
+                    ColorRGBA color = new ColorRGBA();
+                    for (int y = from; y < to; y++) {
+                        float[] w = ky.weights[y];
+                        for (int x = 0; x < dstWidth; x++) {
+                            float r = 0, g = 0, b = 0, a = 0;
+                            for (int i = 0; i < w.length; i++) {
+                                int in = (ky.clamp(ky.start[y] + i) * dstWidth + x) * 4;
+                                r += horizontal[in] * w[i];
+                                g += horizontal[in + 1] * w[i];
+                                b += horizontal[in + 2] * w[i];
+                                a += horizontal[in + 3] * w[i];
+                            }
+                            // the Kaiser filter may overshoot
+                            r = Math.max(r, 0);
+                            g = Math.max(g, 0);
+                            b = Math.max(b, 0);
+                            a = Math.max(a, 0);
+                            if (clampToOne) {
+                                r = Math.min(r, 1);
+                                g = Math.min(g, 1);
+                                b = Math.min(b, 1);
+                                a = Math.min(a, 1);
+                            }
+                            int out = (y * dstWidth + x) * 4;
+                            dst[out] = r;
+                            dst[out + 1] = g;
+                            dst[out + 2] = b;
+                            dst[out + 3] = a;
+                            raster.setPixel(x, y, color.set(r, g, b, a));
+                        }
+                    }
+                }
+            }, 0, dstHeight, grain).invoke();
+
+            previous = dst;
+            offset += mipMapSizes[level];
+        }
+    }
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+/**
+ * Stable least-significant-digit radix sort of <code>long</code> keys, used
+ * to order geometries by a precomputed draw key instead of a comparator.
+ * <p>
+ * Keys are ordered as signed longs, and each key carries an <code>int</code>
+ * payload (typically the index of the item it was computed from) that is
+ * permuted along with it. The sort runs one byte per pass, computing all
+ * histograms in a single sweep over the keys and skipping passes where every
+ * key has the same byte, so in practice only the varying bytes cost anything.
+ * <p>
+ * Like {@link ListSort}, a RadixSort is meant to be kept with the list it
+ * sorts: its scratch buffers grow with the list and are reused from one sort
+ * to the next, so steady-state sorting does not allocate.
+ *
+ * @author jMonkeyEngine
+ */
+public class RadixSort {
+
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int PASSES = 64 / RADIX_BITS;
+
+    private final int[] histograms = new int[PASSES * RADIX];
+    private long[] tmpKeys = new long[0];
+    private int[] tmpValues = new int[0];
+
+    /**
+     * Maps a float to an int whose signed ordering matches the numeric
+     * ordering of the float, with <code>-0.0f</code> and <code>0.0f</code>
+     * mapping to the same value.
+     *
+     * @param f the float to map
+     * @return an int that sorts the same way as <code>f</code>
+     */
+    public static int floatToSortableInt(float f) {
+        int bits = Float.floatToIntBits(f + 0.0f);
+        return bits ^ ((bits >> 31) & 0x7FFFFFFF);
+    }
+
+    /**
+     * Sorts the first <code>size</code> keys in ascending signed order,
+     * applying the same permutation to <code>values</code>. The sort is
+     * stable.
+     *
+     * @param keys the keys to sort
+     * @param values the payload to permute with the keys
+     * @param size the number of entries to sort
+     */
+    public void sort(long[] keys, int[] values, int size) {
+        if (size < 2) {
+            return;
+        }
+        if (tmpKeys.length < size) {
+            tmpKeys = new long[keys.length];
+            tmpValues = new int[keys.length];
+        }
+
+        int[] hist = histograms;
+        for (int i = 0; i < hist.length; i++) {
+            hist[i] = 0;
+        }
+        for (int i = 0; i < size; i++) {
+            // flip the sign bit so that signed order becomes unsigned order
+            long k = keys[i] ^ Long.MIN_VALUE;
+            for (int p = 0; p < PASSES; p++) {
+                hist[p * RADIX + (int) ((k >>> (p * RADIX_BITS)) & (RADIX - 1))]++;
+            }
+        }
+
+        long[] srcKeys = keys;
+        int[] srcValues = values;
+        long[] dstKeys = tmpKeys;
+        int[] dstValues = tmpValues;
+        for (int p = 0; p < PASSES; p++) {
+            int base = p * RADIX;
+            int shift = p * RADIX_BITS;
+
+            // a pass where every key has the same byte would leave the order untouched
+            long first = srcKeys[0] ^ Long.MIN_VALUE;
+            if (hist[base + (int) ((first >>> shift) & (RADIX - 1))] == size) {
+                continue;
+            }
+
+            int offset = 0;
+            for (int b = base; b < base + RADIX; b++) {
+                int count = hist[b];
+                hist[b] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < size; i++) {
+                long k = srcKeys[i];
+                int b = base + (int) (((k ^ Long.MIN_VALUE) >>> shift) & (RADIX - 1));
+                int dst = hist[b]++;
+                dstKeys[dst] = k;
+                dstValues[dst] = srcValues[i];
+            }
+
+            long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            int[] swapValues = srcValues;
+            srcValues = dstValues;
+            dstValues = swapValues;
+        }
+
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, size);
+            System.arraycopy(srcValues, 0, values, 0, size);
+        }
+    }
+}
@@ -224,10 +224,15 @@ public class TempVars {
     /**
      * BIHTree
      */
-    public final CollisionResults collisionResults = new CollisionResults();
+    public final CollisionResults collisionResults = new CollisionResults(CollisionResults.Mode.All);
     public final float[] bihSwapTmp = new float[9];
     public final ArrayList<BIHStackData> bihStack = new ArrayList<>(), bihStackStored = new ArrayList<>();
     public final Ray ray = new Ray();
+    /**
+     * CompactBIHTree
+     */
+    public final int[] bihNodeStack = new int[128];
+    public final float[] bihMinStack = new float[128], bihMaxStack = new float[128];
     
     public void addStackData(BIHNode node, float min, float max) {
         if( bihStack.size() >= bihStackStored.size() ) {
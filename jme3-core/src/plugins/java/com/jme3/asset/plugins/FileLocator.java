@@ -77,6 +77,11 @@ public class FileLocator implements AssetLocator {
                 throw new AssetLoadException("Failed to open file: " + file, ex);
             }
         }
+
+        @Override
+        public File getFile() {
+            return file;
+        }
     }
 
     public AssetInfo locate(AssetManager manager, AssetKey key) {
@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.*;
+import com.jme3.util.ByteBufferInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * <code>MappedZipLocator</code> is a locator that looks up resources in a
+ * <code>.ZIP</code> file, like {@link ZipLocator}, but memory maps the
+ * archive instead of opening it with {@link java.util.zip.ZipFile}.
+ * <p>
+ * The central directory is read once per archive into a hash table that is
+ * shared by all threads, so locating an asset is a single lookup.
+ * The asset manager creates a locator instance per loading thread, they
+ * share the index of an archive while at least one of them uses it. Once no
+ * locator refers to the archive anymore, e.g. after
+ * {@link AssetManager#unregisterLocator(java.lang.String, java.lang.Class) },
+ * the index is dropped and the mapping is released when the buffers are
+ * garbage collected. Until then the file stays mapped, which prevents
+ * deleting or replacing it on Windows. An archive that was modified is
+ * indexed again when a locator is created for it, the old mapping stays in
+ * use by the locators created before.
+ * Entries stored without compression are returned as slices of the mapped
+ * archive by {@link AssetInfo#getBuffer() }, without copying. Compressed
+ * entries are inflated on the thread that opens them, which is one of the
+ * loading threads for assets loaded with
+ * {@link AssetManager#loadAssetAsync(com.jme3.asset.AssetKey) }.
+ * <p>
+ * Archives larger than 2 GB, ZIP64 archives and encrypted entries are not
+ * supported, use {@link ZipLocator} for those.
+ * <p>
+ * The root path must be a valid ZIP or ZIP-like {@link File file}, 
+ * for example, <br>
+ * <code>C:\My App\data.zip</code>
+ *
+ * @author jMonkeyEngine
+ */
+public class MappedZipLocator implements AssetLocator {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // archives in use by locators, by path
+    private static final ConcurrentHashMap<String, ArchiveReference> archives =
+            new ConcurrentHashMap<String, ArchiveReference>();
+    private static final ReferenceQueue<Archive> releasedArchives = new ReferenceQueue<Archive>();
+
+    private Archive archive;
+
+    private static final class Entry {
+
+        final String name;
+        final boolean deflate;
+        final int compSize;
+        final int length;
+        final int headerOffset;
+
+        Entry(String name, boolean deflate, int compSize, int length, int headerOffset) {
+            this.name = name;
+            this.deflate = deflate;
+            this.compSize = compSize;
+            this.length = length;
+            this.headerOffset = headerOffset;
+        }
+    }
+
+    /**
+     * A mapped archive and the index of its entries. Immutable once created.
+     */
+    private static final class Archive {
+
+        final File file;
+        final long lastModified;
+        final ByteBuffer data;
+        final HashMap<String, Entry> entries;
+
+        Archive(File file) throws IOException {
+            this.file = file;
+            this.lastModified = file.lastModified();
+            RandomAccessFile raf = new RandomAccessFile(file, "r");
+            try {
+                FileChannel channel = raf.getChannel();
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IOException("Archive larger than 2 GB: " + file);
+                }
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                              .order(ByteOrder.LITTLE_ENDIAN);
+            } finally {
+                raf.close();
+            }
+            entries = readCentralDirectory();
+        }
+
+        private int findEndHeader() throws IOException {
+            // the end header is followed by a comment of up to 65535 bytes
+            int last = data.limit() - ZipEntry.ENDHDR;
+            int first = Math.max(0, last - 0xFFFF);
+            for (int i = last; i >= first; i--) {
+                if (data.getInt(i) == (int) ZipEntry.ENDSIG) {
+                    return i;
+                }
+            }
+            throw new IOException("Cannot find Zip End Header in file " + file);
+        }
+
+        private HashMap<String, Entry> readCentralDirectory() throws IOException {
+            int end = findEndHeader();
+            int numEntries = data.getShort(end + ZipEntry.ENDTOT) & 0xFFFF;
+            int tableOffset = data.getInt(end + ZipEntry.ENDOFF);
+            if (numEntries == 0xFFFF || tableOffset == -1) {
+                throw new IOException("ZIP64 archives are not supported: " + file);
+            }
+
+            HashMap<String, Entry> map = new HashMap<String, Entry>(numEntries * 4 / 3 + 1);
+            int offset = tableOffset;
+            for (int i = 0; i < numEntries; i++) {
+                if (data.getInt(offset) != (int) ZipEntry.CENSIG) {
+                    throw new IOException("Central directory error, expected 'PK12' in " + file);
+                }
+                int flags = data.getShort(offset + ZipEntry.CENFLG) & 0xFFFF;
+                int method = data.getShort(offset + ZipEntry.CENHOW) & 0xFFFF;
+                int compSize = data.getInt(offset + ZipEntry.CENSIZ);
+                int length = data.getInt(offset + ZipEntry.CENLEN);
+                int nameLen = data.getShort(offset + ZipEntry.CENNAM) & 0xFFFF;
+                int extraLen = data.getShort(offset + ZipEntry.CENEXT) & 0xFFFF;
+                int commentLen = data.getShort(offset + ZipEntry.CENCOM) & 0xFFFF;
+                int headerOffset = data.getInt(offset + ZipEntry.CENOFF);
+
+                byte[] nameBytes = new byte[nameLen];
+                ByteBuffer name = data.duplicate();
+                name.position(offset + ZipEntry.CENHDR);
+                name.get(nameBytes);
+                String entryName = new String(nameBytes, UTF8);
+
+                offset += ZipEntry.CENHDR + nameLen + extraLen + commentLen;
+
+                if ((flags & 1) == 1) {
+                    // ignore this entry, it uses encryption
+                    continue;
+                }
+                if (method != ZipEntry.DEFLATED && method != ZipEntry.STORED) {
+                    // ignore this entry, it uses unknown compression method
+                    continue;
+                }
+                if (entryName.isEmpty() || entryName.endsWith("/")) {
+                    // ignore this entry, it is directory node
+                    continue;
+                }
+                map.put(entryName, new Entry(entryName, method == ZipEntry.DEFLATED,
+                                             compSize, length, headerOffset));
+            }
+            return map;
+        }
+
+        /**
+         * @return The raw, possibly compressed, data of the entry
+         */
+        ByteBuffer getData(Entry entry) throws IOException {
+            int header = entry.headerOffset;
+            if (data.getInt(header) != (int) ZipEntry.LOCSIG) {
+                throw new IOException("Local header error, expected 'PK34' for " + entry.name);
+            }
+            // the extra field of the local header can differ from the
+            // one in the central directory
+            int start = header + ZipEntry.LOCHDR
+                      + (data.getShort(header + ZipEntry.LOCNAM) & 0xFFFF)
+                      + (data.getShort(header + ZipEntry.LOCEXT) & 0xFFFF);
+            ByteBuffer slice = data.duplicate();
+            slice.limit(start + entry.compSize);
+            slice.position(start);
+            return slice.slice();
+        }
+    }
+
+    /**
+     * Refers to an archive as long as a locator uses it.
+     */
+    private static final class ArchiveReference extends WeakReference<Archive> {
+
+        final String path;
+
+        ArchiveReference(String path, Archive archive) {
+            super(archive, releasedArchives);
+            this.path = path;
+        }
+    }
+
+    /**
+     * Inflates raw deflate data. The inflater needs an extra dummy byte
+     * after the data, which is supplied once the source is exhausted.
+     */
+    private static final class EntryInflaterInputStream extends InflaterInputStream {
+
+        private boolean eof;
+        private boolean closed;
+
+        EntryInflaterInputStream(InputStream in, int length) {
+            super(in, new Inflater(true), Math.max(64, Math.min(length, 8192)));
+        }
+
+        @Override
+        protected void fill() throws IOException {
+            if (eof) {
+                throw new EOFException("Unexpected end of ZLIB input stream");
+            }
+            len = in.read(buf, 0, buf.length);
+            if (len == -1) {
+                buf[0] = 0;
+                len = 1;
+                eof = true;
+            }
+            inf.setInput(buf, 0, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!closed) {
+                closed = true;
+                inf.end();
+                super.close();
+            }
+        }
+    }
+
+    private class MappedAssetInfo extends AssetInfo {
+
+        private final Entry entry;
+
+        public MappedAssetInfo(AssetManager manager, AssetKey key, Entry entry) {
+            super(manager, key);
+            this.entry = entry;
+        }
+
+        @Override
+        public InputStream openStream() {
+            try {
+                InputStream in = new ByteBufferInputStream(archive.getData(entry));
+                if (entry.deflate) {
+                    return new EntryInflaterInputStream(in, entry.length);
+                }
+                return in;
+            } catch (IOException ex) {
+                throw new AssetLoadException("Failed to load zip entry: " + entry.name, ex);
+            }
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            if (entry.deflate) {
+                return null;
+            }
+            try {
+                return archive.getData(entry).asReadOnlyBuffer();
+            } catch (IOException ex) {
+                throw new AssetLoadException("Failed to load zip entry: " + entry.name, ex);
+            }
+        }
+    }
+
+    public void setRootPath(String rootPath) {
+        removeReleasedArchives();
+
+        File file = new File(rootPath);
+        String path = file.getAbsolutePath();
+        ArchiveReference ref = archives.get(path);
+        Archive cached = ref != null ? ref.get() : null;
+        if (cached == null || cached.lastModified != file.lastModified()) {
+            try {
+                cached = new Archive(file);
+            } catch (IOException ex) {
+                throw new AssetLoadException("Failed to open zip file: " + rootPath, ex);
+            }
+            // a modified archive replaces the old index
+            archives.put(path, new ArchiveReference(path, cached));
+        }
+        archive = cached;
+    }
+
+    private static void removeReleasedArchives() {
+        Reference<? extends Archive> ref;
+        while ((ref = releasedArchives.poll()) != null) {
+            ArchiveReference released = (ArchiveReference) ref;
+            archives.remove(released.path, released);
+        }
+    }
+
+    /**
+     * @return true if the index of the given archive is kept, for tests
+     */
+    static boolean isIndexed(File file) {
+        removeReleasedArchives();
+        return archives.containsKey(file.getAbsolutePath());
+    }
+
+    public AssetInfo locate(AssetManager manager, AssetKey key) {
+        String name = key.getName();
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        Entry entry = archive.entries.get(name);
+        if (entry == null) {
+            return null;
+        }
+        return new MappedAssetInfo(manager, key, entry);
+    }
+}
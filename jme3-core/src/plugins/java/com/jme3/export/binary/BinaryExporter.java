@@ -43,6 +43,7 @@ import java.util.HashMap;
 import java.util.IdentityHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 /**
  * Exports to the jME Binary Format. Format descriptor: (each numbered item
@@ -136,6 +137,17 @@ import java.util.logging.Logger;
  * 18. "field data" - 1...X bytes representing the field data. The data length
  * is dependent on the field type and contents.
  * </p>
+ * <p>
+ * CHUNKED LAYOUT: With a {@link #setChunkSize(int) chunk size} set, format
+ * version 3 is written. The object data section is split into chunks at
+ * object boundaries, each compressed on its own, so single objects can be
+ * read without reading the whole file. The location table is preceded by
+ * a chunk table of X blocks, where X is a four byte int value, each
+ * consisting of a one byte compression method, the four byte stored size
+ * and the four byte uncompressed size of the chunk. Each location table
+ * entry contains the four byte index of the chunk between 11 and 12, and
+ * 12 is the offset within the uncompressed chunk.
+ * </p>
  *
  * @author Joshua Slack
  */
@@ -161,10 +173,64 @@ public class BinaryExporter implements JmeExporter {
 
     public static boolean debug = false;
     public static boolean useFastBufs = true;
+
+    static final byte CHUNK_STORED = 0;
+    static final byte CHUNK_DEFLATE = 1;
+
+    private int chunkSize = 0;
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
       
     public BinaryExporter() {
     }
 
+    /**
+     * Sets the uncompressed size in bytes of the chunks the object data is
+     * split into. Objects are never split, so chunks holding large objects
+     * are larger. See {@link BinaryImporter#open(java.nio.ByteBuffer) } for
+     * loading single objects of chunked files.
+     * <p>
+     * 0, the default, writes files without chunks that can be loaded by
+     * older versions of the engine.
+     *
+     * @param chunkSize the chunk size in bytes, or 0 to disable chunks
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 0) {
+            throw new IllegalArgumentException("Chunk size cannot be negative");
+        }
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return the chunk size in bytes, 0 if chunks are disabled
+     * @see #setChunkSize(int)
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the {@link Deflater} compression level of chunks, defaults to
+     * {@link Deflater#DEFAULT_COMPRESSION}. Chunks that do not get smaller
+     * are stored uncompressed. Only used when chunks are enabled.
+     *
+     * @param level the compression level, from 0 (stored) to 9
+     */
+    public void setCompressionLevel(int level) {
+        if ((level < 0 || level > 9) && level != Deflater.DEFAULT_COMPRESSION) {
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        }
+        this.compressionLevel = level;
+    }
+
+    /**
+     * @return the compression level of chunks
+     * @see #setCompressionLevel(int)
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
     public static BinaryExporter getInstance() {
         return new BinaryExporter();
     }
@@ -205,7 +271,8 @@ public class BinaryExporter implements JmeExporter {
         
         // write signature and version
         os.write(ByteUtils.convertToBytes(FormatVersion.SIGNATURE));
-        os.write(ByteUtils.convertToBytes(FormatVersion.VERSION));
+        boolean chunked = chunkSize > 0;
+        os.write(ByteUtils.convertToBytes(chunked ? FormatVersion.CHUNKED_VERSION : FormatVersion.VERSION));
         
         int id = processBinarySavable(object);
 
@@ -257,6 +324,8 @@ public class BinaryExporter implements JmeExporter {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         // write out data to a seperate stream
         int location = 0;
+        // start of each chunk in the data
+        ArrayList<Integer> chunkStarts = new ArrayList<Integer>();
         // keep track of location for each piece
         HashMap<String, ArrayList<BinaryIdContentPair>> alreadySaved = new HashMap<String, ArrayList<BinaryIdContentPair>>(
                 contentTable.size());
@@ -272,6 +341,10 @@ public class BinaryExporter implements JmeExporter {
                 continue;
             }
 
+            if (chunked && (chunkStarts.isEmpty()
+                    || location - chunkStarts.get(chunkStarts.size() - 1) >= chunkSize)) {
+                chunkStarts.add(location);
+            }
             locationTable.put(pair.getId(), location);
             if (bucket == null) {
                 bucket = new ArrayList<BinaryIdContentPair>();
@@ -288,14 +361,27 @@ public class BinaryExporter implements JmeExporter {
             location += cap.bytes.length;
         }
 
+        ArrayList<byte[]> chunks = null;
+        if (chunked) {
+            chunks = writeChunks(os, out.toByteArray(), chunkStarts);
+            out = null;
+        }
+
         // write out location table
         // tag/location
         int numLocations = locationTable.keySet().size();
         os.write(ByteUtils.convertToBytes(numLocations));
         int locationTableSize = 0;
         for (Integer key : locationTable.keySet()) {
+            int loc = locationTable.get(key);
             os.write(ByteUtils.convertToBytes(key));
-            os.write(ByteUtils.convertToBytes(locationTable.get(key)));
+            if (chunked) {
+                int chunk = findChunk(chunkStarts, loc);
+                os.write(ByteUtils.convertToBytes(chunk));
+                loc -= chunkStarts.get(chunk);
+                locationTableSize += 4;
+            }
+            os.write(ByteUtils.convertToBytes(loc));
             locationTableSize += 8;
         }
 
@@ -306,7 +392,13 @@ public class BinaryExporter implements JmeExporter {
         os.write(ByteUtils.convertToBytes(id));
 
         // append stream to the output stream
-        out.writeTo(os);
+        if (chunked) {
+            for (byte[] chunk : chunks) {
+                os.write(chunk);
+            }
+        } else {
+            out.writeTo(os);
+        }
 
 
         out = null;
@@ -322,6 +414,67 @@ public class BinaryExporter implements JmeExporter {
         }
     }
 
+    /**
+     * Compresses the chunks of the object data and writes the chunk table.
+     *
+     * @return the stored data of each chunk
+     */
+    private ArrayList<byte[]> writeChunks(OutputStream os, byte[] data,
+            ArrayList<Integer> chunkStarts) throws IOException {
+        ArrayList<byte[]> chunks = new ArrayList<byte[]>(chunkStarts.size());
+        os.write(ByteUtils.convertToBytes(chunkStarts.size()));
+        Deflater deflater = new Deflater(compressionLevel);
+        byte[] buffer = new byte[4096];
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try {
+            for (int i = 0; i < chunkStarts.size(); i++) {
+                int start = chunkStarts.get(i);
+                int end = i + 1 < chunkStarts.size() ? chunkStarts.get(i + 1) : data.length;
+
+                compressed.reset();
+                if (compressionLevel != Deflater.NO_COMPRESSION) {
+                    deflater.reset();
+                    deflater.setInput(data, start, end - start);
+                    deflater.finish();
+                    while (!deflater.finished()) {
+                        int n = deflater.deflate(buffer);
+                        compressed.write(buffer, 0, n);
+                    }
+                }
+
+                byte[] chunk;
+                if (compressed.size() > 0 && compressed.size() < end - start) {
+                    os.write(CHUNK_DEFLATE);
+                    chunk = compressed.toByteArray();
+                } else {
+                    os.write(CHUNK_STORED);
+                    chunk = new byte[end - start];
+                    System.arraycopy(data, start, chunk, 0, chunk.length);
+                }
+                os.write(ByteUtils.convertToBytes(chunk.length));
+                os.write(ByteUtils.convertToBytes(end - start));
+                chunks.add(chunk);
+            }
+        } finally {
+            deflater.end();
+        }
+        return chunks;
+    }
+
+    private static int findChunk(ArrayList<Integer> chunkStarts, int location) {
+        int low = 0;
+        int high = chunkStarts.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (chunkStarts.get(mid) <= location) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
     protected String getChunk(BinaryIdContentPair pair) {
         return new String(pair.getContent().bytes, 0, Math.min(64, pair
                 .getContent().bytes.length));
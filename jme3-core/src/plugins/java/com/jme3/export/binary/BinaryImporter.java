@@ -35,13 +35,20 @@ import com.jme3.asset.AssetInfo;
 import com.jme3.asset.AssetManager;
 import com.jme3.export.*;
 import com.jme3.math.FastMath;
+import com.jme3.util.ByteBufferInputStream;
 import java.io.*;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 /**
  * @author Joshua Slack
@@ -65,12 +72,24 @@ public final class BinaryImporter implements JmeImporter {
     //Key - id, opject - location in the file
     private HashMap<Integer, Integer> locationTable
              = new HashMap<Integer, Integer>();
+    //Key - id, object - chunk containing the object, format version 3
+    private HashMap<Integer, Integer> chunkTable
+             = new HashMap<Integer, Integer>();
 
     public static boolean debug = false;
 
-    private byte[] dataArray;
+    private static boolean memoryMapping = false;
+
+    private ByteBuffer data;
     private int aliasWidth;
     private int formatVersion;
+    private int rootId;
+
+    // chunk table, format version 3
+    private byte[] chunkCompression;
+    private int[] chunkOffsets;
+    private int[] chunkSizes;
+    private ByteBuffer[] chunks;
 
     private static final boolean fastRead = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
     
@@ -85,6 +104,32 @@ public final class BinaryImporter implements JmeImporter {
         return fastRead;
     }
 
+    /**
+     * Enables loading J3O files through memory mapping, for all importers.
+     * <p>
+     * When enabled, files and file-backed assets (see
+     * {@link AssetInfo#getFile() }) are memory mapped instead of being read
+     * into the heap. Vertex and image buffers are copied straight from the
+     * mapped file into direct buffers. The mapping is released by the garbage
+     * collector some time after loading, until then the file cannot be
+     * deleted on Windows.
+     * <p>
+     * Disabled by default.
+     *
+     * @param enabled true to memory map J3O files
+     */
+    public static void setMemoryMapping(boolean enabled) {
+        memoryMapping = enabled;
+    }
+
+    /**
+     * @return true if J3O files are memory mapped
+     * @see #setMemoryMapping(boolean)
+     */
+    public static boolean isMemoryMapping() {
+        return memoryMapping;
+    }
+
     public static BinaryImporter getInstance() {
         return new BinaryImporter();
     }
@@ -103,6 +148,26 @@ public final class BinaryImporter implements JmeImporter {
 
         assetManager = info.getManager();
 
+        ByteBuffer buffer = info.getBuffer();
+        if (buffer != null) {
+            try {
+                return load(buffer);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "An error occured while loading jME binary object", ex);
+                return null;
+            }
+        }
+
+        File file = memoryMapping ? info.getFile() : null;
+        if (file != null) {
+            try {
+                return load(file);
+            } catch (IOException ex) {
+                logger.log(Level.SEVERE, "An error occured while loading jME binary object", ex);
+                return null;
+            }
+        }
+
         InputStream is = null;
         try {
             is = info.openStream();
@@ -132,7 +197,122 @@ public final class BinaryImporter implements JmeImporter {
     public Savable load(InputStream is, ReadListener listener, ByteArrayOutputStream baos) throws IOException {
         contentTable.clear();
         BufferedInputStream bis = new BufferedInputStream(is);
-        
+
+        readHeader(bis, listener);
+
+        if (baos == null) {
+                baos = new ByteArrayOutputStream(4096);
+        } else {
+                baos.reset();
+        }
+        int size = -1;
+        byte[] cache = new byte[4096];
+        while((size = bis.read(cache)) != -1) {
+            baos.write(cache, 0, size);
+            if (listener != null) listener.readBytes(size);
+        }
+        bis = null;
+
+        data = ByteBuffer.wrap(baos.toByteArray());
+        baos = null;
+
+        return readRoot();
+    }
+
+    /**
+     * Loads the object graph from the given buffer, starting at its current
+     * position. The buffer is not modified.
+     *
+     * @param buffer the J3O data
+     * @param listener notified of the bytes read, may be null
+     * @return the root object
+     * @throws IOException if the data is not valid J3O data
+     */
+    public Savable load(ByteBuffer buffer, ReadListener listener) throws IOException {
+        open(buffer, listener);
+        return readRoot();
+    }
+
+    public Savable load(ByteBuffer buffer) throws IOException {
+        return load(buffer, null);
+    }
+
+    /**
+     * Reads the header of the given J3O data without loading any objects.
+     * Objects can then be loaded individually with {@link #readObject(int) },
+     * along with the objects they reference, until {@link #close() } is
+     * called.
+     * <p>
+     * With the chunked layout of format version 3 (see
+     * {@link BinaryExporter#setChunkSize(int) }) only the chunks containing
+     * the requested objects are read and decompressed. An importer is not
+     * thread safe, but any number of importers can open the same buffer to
+     * load different subtrees in parallel. Objects referenced from several
+     * of these subtrees are then loaded once per importer.
+     *
+     * @param buffer the J3O data, starting at its current position. The
+     * buffer is not modified.
+     * @param listener notified of the bytes read, may be null
+     * @throws IOException if the data is not valid J3O data
+     */
+    public void open(ByteBuffer buffer, ReadListener listener) throws IOException {
+        contentTable.clear();
+        ByteBuffer content = buffer.duplicate();
+
+        readHeader(new ByteBufferInputStream(content), listener);
+        if (listener != null) listener.readBytes(content.remaining());
+
+        data = content.slice().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    public void open(ByteBuffer buffer) throws IOException {
+        open(buffer, null);
+    }
+
+    /**
+     * Releases the data given to {@link #open(java.nio.ByteBuffer) }.
+     */
+    public void close() {
+        data = null;
+        chunks = null;
+        capsuleTable.clear();
+    }
+
+    /**
+     * @return the id of the root object of the opened data
+     */
+    public int getRootId() {
+        return rootId;
+    }
+
+    /**
+     * @return the ids of all objects in the opened data
+     */
+    public Set<Integer> getObjectIds() {
+        return Collections.unmodifiableSet(locationTable.keySet());
+    }
+
+    /**
+     * Returns the class of an object in the opened data without loading it.
+     *
+     * @param id the id of the object
+     * @return the fully qualified class name, or null if there is no object
+     * with the given id
+     * @throws IOException if the data of the object cannot be read
+     */
+    public String getObjectClassName(int id) throws IOException {
+        Integer loc = locationTable.get(id);
+        if (loc == null) {
+            return null;
+        }
+        BinaryClassObject bco = classes.get(readString(getObjectData(id), aliasWidth, loc));
+        return bco != null ? bco.className : null;
+    }
+
+    /**
+     * Reads the class and location tables.
+     */
+    private void readHeader(InputStream bis, ReadListener listener) throws IOException {
         int numClasses;
         
         // Try to read signature
@@ -143,9 +323,9 @@ public final class BinaryImporter implements JmeImporter {
             numClasses = ByteUtils.readInt(bis);
             
             // check if this binary is from the future
-            if (formatVersion > FormatVersion.VERSION){
+            if (formatVersion > FormatVersion.CHUNKED_VERSION){
                 throw new IOException("The binary file is of newer version than expected! " + 
-                                      formatVersion + " > " + FormatVersion.VERSION);
+                                      formatVersion + " > " + FormatVersion.CHUNKED_VERSION);
             }
         }else{
             // this is an old version J3O file
@@ -205,13 +385,40 @@ public final class BinaryImporter implements JmeImporter {
         }
         if (listener != null) listener.readBytes(bytes);
 
+        bytes = 0;
+        boolean chunked = formatVersion >= FormatVersion.CHUNKED_VERSION;
+        if (chunked) {
+            int numChunks = ByteUtils.readInt(bis);
+            bytes += 4;
+            chunkCompression = new byte[numChunks];
+            chunkOffsets = new int[numChunks + 1];
+            chunkSizes = new int[numChunks];
+            chunks = new ByteBuffer[numChunks];
+            for (int i = 0; i < numChunks; i++) {
+                chunkCompression[i] = (byte) bis.read();
+                chunkOffsets[i + 1] = chunkOffsets[i] + ByteUtils.readInt(bis);
+                chunkSizes[i] = ByteUtils.readInt(bis);
+                bytes += 9;
+            }
+        } else {
+            chunkCompression = null;
+            chunkOffsets = null;
+            chunkSizes = null;
+            chunks = null;
+        }
+
         int numLocs = ByteUtils.readInt(bis);
-        bytes = 4;
+        bytes += 4;
 
         capsuleTable.clear();
         locationTable.clear();
+        chunkTable.clear();
         for(int i = 0; i < numLocs; i++) {
             int id = ByteUtils.readInt(bis);
+            if (chunked) {
+                chunkTable.put(id, ByteUtils.readInt(bis));
+                bytes += 4;
+            }
             int loc = ByteUtils.readInt(bis);
             locationTable.put(id, loc);
             bytes += 8;
@@ -219,35 +426,69 @@ public final class BinaryImporter implements JmeImporter {
 
         @SuppressWarnings("unused")
         int numbIDs = ByteUtils.readInt(bis); // XXX: NOT CURRENTLY USED
-        int id = ByteUtils.readInt(bis);
+        rootId = ByteUtils.readInt(bis);
         bytes += 8;
         if (listener != null) listener.readBytes(bytes);
 
-        if (baos == null) {
-                baos = new ByteArrayOutputStream(bytes);
-        } else {
-                baos.reset();
-        }
-        int size = -1;
-        byte[] cache = new byte[4096];
-        while((size = bis.read(cache)) != -1) {
-            baos.write(cache, 0, size);
-            if (listener != null) listener.readBytes(size);
-        }
-        bis = null;
-
-        dataArray = baos.toByteArray();
-        baos = null;
-
-        Savable rVal = readObject(id);
         if (debug) {
             logger.fine("Importer Stats: ");
             logger.log(Level.FINE, "Tags: {0}", numClasses);
             logger.log(Level.FINE, "Objects: {0}", numLocs);
-            logger.log(Level.FINE, "Data Size: {0}", dataArray.length);
         }
-        dataArray = null;
-        return rVal;
+    }
+
+    private Savable readRoot() {
+        try {
+            Savable rVal = readObject(rootId);
+            if (debug) {
+                logger.log(Level.FINE, "Data Size: {0}", data.limit());
+            }
+            return rVal;
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * @return the buffer holding the data of the given object
+     */
+    private ByteBuffer getObjectData(int id) throws IOException {
+        if (chunks == null) {
+            return data;
+        }
+        int chunk = chunkTable.get(id);
+        if (chunks[chunk] == null) {
+            chunks[chunk] = readChunk(chunk);
+        }
+        return chunks[chunk];
+    }
+
+    private ByteBuffer readChunk(int chunk) throws IOException {
+        ByteBuffer stored = data.duplicate();
+        stored.limit(chunkOffsets[chunk + 1]).position(chunkOffsets[chunk]);
+        switch (chunkCompression[chunk]) {
+            case BinaryExporter.CHUNK_STORED:
+                return stored.slice();
+            case BinaryExporter.CHUNK_DEFLATE:
+                byte[] compressed = new byte[stored.remaining()];
+                stored.get(compressed);
+                byte[] uncompressed = new byte[chunkSizes[chunk]];
+                Inflater inflater = new Inflater();
+                try {
+                    inflater.setInput(compressed);
+                    if (inflater.inflate(uncompressed) != uncompressed.length) {
+                        throw new IOException("Chunk " + chunk + " is truncated");
+                    }
+                } catch (DataFormatException ex) {
+                    throw new IOException("Chunk " + chunk + " is corrupt", ex);
+                } finally {
+                    inflater.end();
+                }
+                return ByteBuffer.wrap(uncompressed);
+            default:
+                throw new IOException("Unknown compression of chunk " + chunk
+                                      + ": " + chunkCompression[chunk]);
+        }
     }
 
     public Savable load(URL f) throws IOException {
@@ -268,6 +509,14 @@ public final class BinaryImporter implements JmeImporter {
     public Savable load(File f, ReadListener listener) throws IOException {
         FileInputStream fis = new FileInputStream(f);
         try {
+            if (memoryMapping) {
+                FileChannel channel = fis.getChannel();
+                long size = channel.size();
+                if (size <= Integer.MAX_VALUE) {
+                    // the mapping stays valid after the channel is closed
+                    return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), listener);
+                }
+            }
             return load(fis, listener);
         } finally {
             fis.close();
@@ -295,13 +544,13 @@ public final class BinaryImporter implements JmeImporter {
         return new String(data);
     }
 
-    protected String readString(int length, int offset) throws IOException {
-        byte[] data = new byte[length];
+    protected String readString(ByteBuffer content, int length, int offset) throws IOException {
+        byte[] bytes = new byte[length];
         for(int j = 0; j < length; j++) {
-            data[j] = dataArray[j+offset];
+            bytes[j] = content.get(j+offset);
         }
 
-        return new String(data);
+        return new String(bytes);
     }
 
     public Savable readObject(int id) {
@@ -312,8 +561,9 @@ public final class BinaryImporter implements JmeImporter {
 
         try {
             int loc = locationTable.get(id);
+            ByteBuffer content = getObjectData(id);
 
-            String alias = readString(aliasWidth, loc);
+            String alias = readString(content, aliasWidth, loc);
             loc+=aliasWidth;
 
             BinaryClassObject bco = classes.get(alias);
@@ -323,7 +573,7 @@ public final class BinaryImporter implements JmeImporter {
                 return null;
             }
 
-            int dataLength = ByteUtils.convertIntFromBytes(dataArray, loc);
+            int dataLength = content.getInt(loc);
             loc+=4;
 
             Savable out = null;
@@ -334,7 +584,7 @@ public final class BinaryImporter implements JmeImporter {
             }
 
             BinaryInputCapsule cap = new BinaryInputCapsule(this, out, bco);
-            cap.setContent(dataArray, loc, loc+dataLength);
+            cap.setContent(content, loc, loc+dataLength);
 
             capsuleTable.put(out, cap);
             contentTable.put(id, out);
@@ -62,7 +62,9 @@ final class BinaryInputCapsule implements InputCapsule {
     protected Savable savable;
     protected HashMap<Byte, Object> fieldData;
 
+    protected ByteBuffer content;
     protected int index = 0;
+    protected int limit = 0;
 
     public BinaryInputCapsule(BinaryImporter importer, Savable savable, BinaryClassObject bco) {
         this.importer = importer;
@@ -70,10 +72,24 @@ final class BinaryInputCapsule implements InputCapsule {
         this.savable = savable;
     }
 
-    public void setContent(byte[] content, int start, int limit) {
+    public void setContent(ByteBuffer content, int start, int limit) {
+        this.content = content;
+        this.index = start;
+        this.limit = limit;
         fieldData = new HashMap<Byte, Object>();
-        for (index = start; index < limit;) {
-            byte alias = content[index];
+    }
+
+    /**
+     * Fields are decoded on first access. Savables usually read their fields
+     * in the order they were written, so the content is decoded sequentially
+     * up to the requested field, fields that are never read are never decoded.
+     */
+    private boolean hasField(byte fieldAlias) {
+        if (fieldData.containsKey(fieldAlias)) {
+            return true;
+        }
+        while (index < limit) {
+            byte alias = content.get(index);
 
             index++;
 
@@ -249,12 +265,16 @@ final class BinaryInputCapsule implements InputCapsule {
                 }
 
                 fieldData.put(alias, value);
+                if (alias == fieldAlias) {
+                    return true;
+                }
 
             } catch (IOException e) {
                 logger.logp(Level.SEVERE, this.getClass().toString(),
-                        "setContent(byte[] content)", "Exception", e);
+                        "hasField(byte fieldAlias)", "Exception", e);
             }
         }
+        return false;
     }
     
     public int getSavableVersion(Class<? extends Savable> desiredClass){
@@ -264,14 +284,14 @@ final class BinaryInputCapsule implements InputCapsule {
 
     public BitSet readBitSet(String name, BitSet defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (BitSet) fieldData.get(field.alias);
     }
 
     public boolean readBoolean(String name, boolean defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Boolean) fieldData.get(field.alias)).booleanValue();
     }
@@ -279,7 +299,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public boolean[] readBooleanArray(String name, boolean[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (boolean[]) fieldData.get(field.alias);
     }
@@ -287,21 +307,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public boolean[][] readBooleanArray2D(String name, boolean[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (boolean[][]) fieldData.get(field.alias);
     }
 
     public byte readByte(String name, byte defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Byte) fieldData.get(field.alias)).byteValue();
     }
 
     public byte[] readByteArray(String name, byte[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (byte[]) fieldData.get(field.alias);
     }
@@ -309,7 +329,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public byte[][] readByteArray2D(String name, byte[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (byte[][]) fieldData.get(field.alias);
     }
@@ -317,7 +337,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ByteBuffer readByteBuffer(String name, ByteBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (ByteBuffer) fieldData.get(field.alias);
     }
@@ -326,14 +346,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList<ByteBuffer> readByteBufferArrayList(String name,
             ArrayList<ByteBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (ArrayList<ByteBuffer>) fieldData.get(field.alias);
     }
 
     public double readDouble(String name, double defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Double) fieldData.get(field.alias)).doubleValue();
     }
@@ -341,7 +361,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public double[] readDoubleArray(String name, double[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (double[]) fieldData.get(field.alias);
     }
@@ -349,14 +369,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public double[][] readDoubleArray2D(String name, double[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (double[][]) fieldData.get(field.alias);
     }
 
     public float readFloat(String name, float defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Float) fieldData.get(field.alias)).floatValue();
     }
@@ -364,7 +384,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public float[] readFloatArray(String name, float[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (float[]) fieldData.get(field.alias);
     }
@@ -372,7 +392,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public float[][] readFloatArray2D(String name, float[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (float[][]) fieldData.get(field.alias);
     }
@@ -380,7 +400,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public FloatBuffer readFloatBuffer(String name, FloatBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (FloatBuffer) fieldData.get(field.alias);
     }
@@ -389,21 +409,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList<FloatBuffer> readFloatBufferArrayList(String name,
             ArrayList<FloatBuffer> defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (ArrayList<FloatBuffer>) fieldData.get(field.alias);
     }
 
     public int readInt(String name, int defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Integer) fieldData.get(field.alias)).intValue();
     }
 
     public int[] readIntArray(String name, int[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (int[]) fieldData.get(field.alias);
     }
@@ -411,7 +431,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public int[][] readIntArray2D(String name, int[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (int[][]) fieldData.get(field.alias);
     }
@@ -419,21 +439,21 @@ final class BinaryInputCapsule implements InputCapsule {
     public IntBuffer readIntBuffer(String name, IntBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (IntBuffer) fieldData.get(field.alias);
     }
 
     public long readLong(String name, long defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Long) fieldData.get(field.alias)).longValue();
     }
 
     public long[] readLongArray(String name, long[] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (long[]) fieldData.get(field.alias);
     }
@@ -441,14 +461,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public long[][] readLongArray2D(String name, long[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (long[][]) fieldData.get(field.alias);
     }
 
     public Savable readSavable(String name, Savable defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value == null)
@@ -464,7 +484,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[] readSavableArray(String name, Savable[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object[] values = (Object[]) fieldData.get(field.alias);
         if (values instanceof ID[]) {
@@ -491,7 +511,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][] readSavableArray2D(String name, Savable[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null ||!fieldData.containsKey(field.alias))
+        if (field == null ||!hasField(field.alias))
             return defVal;
         Object[][] values = (Object[][]) fieldData.get(field.alias);
         if (values instanceof ID[][]) {
@@ -510,7 +530,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Savable[][][] readSavableArray3D(String name, Savable[][][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object[][][] values = (Object[][][]) fieldData.get(field.alias);
         if (values instanceof ID[][][]) {
@@ -579,7 +599,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList readSavableArrayList(String name, ArrayList defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[]) {
@@ -594,7 +614,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[] readSavableArrayListArray(String name, ArrayList[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][]) {
@@ -616,7 +636,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public ArrayList[][] readSavableArrayListArray2D(String name,
             ArrayList[][] defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][][]) {
@@ -642,7 +662,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<? extends Savable, ? extends Savable> readSavableMap(String name, Map<? extends Savable, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof ID[][]) {
@@ -658,7 +678,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public Map<String, ? extends Savable> readStringSavableMap(String name, Map<String, ? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof StringIDMap) {
@@ -675,7 +695,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public IntMap<? extends Savable> readIntSavableMap(String name, IntMap<? extends Savable> defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         Object value = fieldData.get(field.alias);
         if (value instanceof IntIDMap) {
@@ -690,7 +710,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     public short readShort(String name, short defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return ((Short) fieldData.get(field.alias)).shortValue();
     }
@@ -698,7 +718,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public short[] readShortArray(String name, short[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (short[]) fieldData.get(field.alias);
     }
@@ -706,7 +726,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public short[][] readShortArray2D(String name, short[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (short[][]) fieldData.get(field.alias);
     }
@@ -714,14 +734,14 @@ final class BinaryInputCapsule implements InputCapsule {
     public ShortBuffer readShortBuffer(String name, ShortBuffer defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (ShortBuffer) fieldData.get(field.alias);
     }
 
     public String readString(String name, String defVal) throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (String) fieldData.get(field.alias);
     }
@@ -729,7 +749,7 @@ final class BinaryInputCapsule implements InputCapsule {
     public String[] readStringArray(String name, String[] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (String[]) fieldData.get(field.alias);
     }
@@ -737,26 +757,26 @@ final class BinaryInputCapsule implements InputCapsule {
     public String[][] readStringArray2D(String name, String[][] defVal)
             throws IOException {
         BinaryClassField field = cObj.nameFields.get(name);
-        if (field == null || !fieldData.containsKey(field.alias))
+        if (field == null || !hasField(field.alias))
             return defVal;
         return (String[][]) fieldData.get(field.alias);
     }
 
     // byte primitive
 
-    protected byte readByte(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByte(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte readByteForBuffer(byte[] content) throws IOException {
-        byte value = content[index];
+    protected byte readByteForBuffer(ByteBuffer content) throws IOException {
+        byte value = content.get(index);
         index++;
         return value;
     }
 
-    protected byte[] readByteArray(byte[] content) throws IOException {
+    protected byte[] readByteArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -766,7 +786,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected byte[][] readByteArray2D(byte[] content) throws IOException {
+    protected byte[][] readByteArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -778,16 +798,16 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int primitive
 
-    protected int readIntForBuffer(byte[] content){
-        int number = ((content[index+3] & 0xFF) << 24)
-                   + ((content[index+2] & 0xFF) << 16)
-                   + ((content[index+1] & 0xFF) << 8)
-                   +  (content[index]   & 0xFF);
+    protected int readIntForBuffer(ByteBuffer content){
+        int number = ((content.get(index+3) & 0xFF) << 24)
+                   + ((content.get(index+2) & 0xFF) << 16)
+                   + ((content.get(index+1) & 0xFF) << 8)
+                   +  (content.get(index)   & 0xFF);
         index += 4;
         return number;
     }
 
-    protected int readInt(byte[] content) throws IOException {
+    protected int readInt(ByteBuffer content) throws IOException {
         byte[] bytes = inflateFrom(content, index);
         index += 1 + bytes.length;
         bytes = ByteUtils.rightAlignBytes(bytes, 4);
@@ -798,7 +818,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[] readIntArray(byte[] content) throws IOException {
+    protected int[] readIntArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -808,7 +828,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected int[][] readIntArray2D(byte[] content) throws IOException {
+    protected int[][] readIntArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -820,28 +840,30 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // float primitive
 
-    protected float readFloat(byte[] content) throws IOException {
-        float value = ByteUtils.convertFloatFromBytes(content, index);
+    protected float readFloat(ByteBuffer content) throws IOException {
+        float value = content.getFloat(index);
         index += 4;
         return value;
     }
 
-    protected float readFloatForBuffer(byte[] content) throws IOException {
+    protected float readFloatForBuffer(ByteBuffer content) throws IOException {
         int number = readIntForBuffer(content);
         return Float.intBitsToFloat(number);
     }
 
-    protected float[] readFloatArray(byte[] content) throws IOException {
+    protected float[] readFloatArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
         float[] value = new float[length];
-        for (int x = 0; x < length; x++)
-            value[x] = readFloat(content);
+        ByteBuffer data = content.duplicate();
+        data.position(index);
+        data.asFloatBuffer().get(value);
+        index += length * 4;
         return value;
     }
 
-    protected float[][] readFloatArray2D(byte[] content) throws IOException {
+    protected float[][] readFloatArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -853,23 +875,25 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // double primitive
 
-    protected double readDouble(byte[] content) throws IOException {
-        double value = ByteUtils.convertDoubleFromBytes(content, index);
+    protected double readDouble(ByteBuffer content) throws IOException {
+        double value = content.getDouble(index);
         index += 8;
         return value;
     }
 
-    protected double[] readDoubleArray(byte[] content) throws IOException {
+    protected double[] readDoubleArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
         double[] value = new double[length];
-        for (int x = 0; x < length; x++)
-            value[x] = readDouble(content);
+        ByteBuffer data = content.duplicate();
+        data.position(index);
+        data.asDoubleBuffer().get(value);
+        index += length * 8;
         return value;
     }
 
-    protected double[][] readDoubleArray2D(byte[] content) throws IOException {
+    protected double[][] readDoubleArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -881,7 +905,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // long primitive
 
-    protected long readLong(byte[] content) throws IOException {
+    protected long readLong(ByteBuffer content) throws IOException {
         byte[] bytes = inflateFrom(content, index);
         index += 1 + bytes.length;
         bytes = ByteUtils.rightAlignBytes(bytes, 8);
@@ -889,7 +913,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[] readLongArray(byte[] content) throws IOException {
+    protected long[] readLongArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -899,7 +923,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected long[][] readLongArray2D(byte[] content) throws IOException {
+    protected long[][] readLongArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -911,30 +935,32 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short primitive
 
-    protected short readShort(byte[] content) throws IOException {
-        short value = ByteUtils.convertShortFromBytes(content, index);
+    protected short readShort(ByteBuffer content) throws IOException {
+        short value = content.getShort(index);
         index += 2;
         return value;
     }
 
-    protected short readShortForBuffer(byte[] content) throws IOException {
-        short number = (short) ((content[index+0] & 0xFF)
-                             + ((content[index+1] & 0xFF) << 8));
+    protected short readShortForBuffer(ByteBuffer content) throws IOException {
+        short number = (short) ((content.get(index) & 0xFF)
+                             + ((content.get(index+1) & 0xFF) << 8));
         index += 2;
         return number;
     }
 
-    protected short[] readShortArray(byte[] content) throws IOException {
+    protected short[] readShortArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
         short[] value = new short[length];
-        for (int x = 0; x < length; x++)
-            value[x] = readShort(content);
+        ByteBuffer data = content.duplicate();
+        data.position(index);
+        data.asShortBuffer().get(value);
+        index += length * 2;
         return value;
     }
 
-    protected short[][] readShortArray2D(byte[] content) throws IOException {
+    protected short[][] readShortArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -946,13 +972,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // boolean primitive
 
-    protected boolean readBoolean(byte[] content) throws IOException {
-        boolean value = ByteUtils.convertBooleanFromBytes(content, index);
+    protected boolean readBoolean(ByteBuffer content) throws IOException {
+        boolean value = content.get(index) != 0;
         index += 1;
         return value;
     }
 
-    protected boolean[] readBooleanArray(byte[] content) throws IOException {
+    protected boolean[] readBooleanArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -962,7 +988,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected boolean[][] readBooleanArray2D(byte[] content) throws IOException {
+    protected boolean[][] readBooleanArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -995,7 +1021,7 @@ final class BinaryInputCapsule implements InputCapsule {
     private final static int UTF8_ILLEGAL = 10; // not an UTF8 string
 
     // String
-    protected String readString(byte[] content) throws IOException {
+    protected String readString(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1035,7 +1061,7 @@ final class BinaryInputCapsule implements InputCapsule {
         int utf8State = UTF8_START;
         int b;
         for (int x = 0; x < length; x++) {
-            bytes[x] =  content[index++];
+            bytes[x] =  content.get(index++);
             b = (int) bytes[x] & 0xFF; // unsign our byte
 
             switch (utf8State) {
@@ -1097,7 +1123,7 @@ final class BinaryInputCapsule implements InputCapsule {
         }
     }
 
-    protected String[] readStringArray(byte[] content) throws IOException {
+    protected String[] readStringArray(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1107,7 +1133,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return value;
     }
 
-    protected String[][] readStringArray2D(byte[] content) throws IOException {
+    protected String[][] readStringArray2D(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1119,7 +1145,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BitSet
 
-    protected BitSet readBitSet(byte[] content) throws IOException {
+    protected BitSet readBitSet(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1131,8 +1157,8 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // INFLATOR for int and long
 
-    protected static byte[] inflateFrom(byte[] contents, int index) {
-        byte firstByte = contents[index];
+    protected static byte[] inflateFrom(ByteBuffer contents, int index) {
+        byte firstByte = contents.get(index);
         if (firstByte == BinaryOutputCapsule.NULL_OBJECT)
             return ByteUtils.convertToBytes(BinaryOutputCapsule.NULL_OBJECT);
         else if (firstByte == BinaryOutputCapsule.DEFAULT_OBJECT)
@@ -1142,14 +1168,14 @@ final class BinaryInputCapsule implements InputCapsule {
         else {
             byte[] rVal = new byte[firstByte];
             for (int x = 0; x < rVal.length; x++)
-                rVal[x] = contents[x + 1 + index];
+                rVal[x] = contents.get(x + 1 + index);
             return rVal;
         }
     }
 
     // BinarySavable
 
-    protected ID readSavable(byte[] content) throws IOException {
+    protected ID readSavable(ByteBuffer content) throws IOException {
         int id = readInt(content);
         if (id == BinaryOutputCapsule.NULL_OBJECT) {
             return null;
@@ -1160,7 +1186,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable array
 
-    protected ID[] readSavableArray(byte[] content) throws IOException {
+    protected ID[] readSavableArray(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1171,7 +1197,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][] readSavableArray2D(byte[] content) throws IOException {
+    protected ID[][] readSavableArray2D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1182,7 +1208,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected ID[][][] readSavableArray3D(byte[] content) throws IOException {
+    protected ID[][][] readSavableArray3D(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1195,7 +1221,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // BinarySavable map
 
-    protected ID[][] readSavableMap(byte[] content) throws IOException {
+    protected ID[][] readSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1206,7 +1232,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected StringIDMap readStringSavableMap(byte[] content) throws IOException {
+    protected StringIDMap readStringSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1218,7 +1244,7 @@ final class BinaryInputCapsule implements InputCapsule {
         return rVal;
     }
 
-    protected IntIDMap readIntSavableMap(byte[] content) throws IOException {
+    protected IntIDMap readIntSavableMap(ByteBuffer content) throws IOException {
         int elements = readInt(content);
         if (elements == BinaryOutputCapsule.NULL_OBJECT)
             return null;
@@ -1233,7 +1259,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<FloatBuffer>
 
-    protected ArrayList<FloatBuffer> readFloatBufferArrayList(byte[] content)
+    protected ArrayList<FloatBuffer> readFloatBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1248,7 +1274,7 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // ArrayList<ByteBuffer>
 
-    protected ArrayList<ByteBuffer> readByteBufferArrayList(byte[] content)
+    protected ArrayList<ByteBuffer> readByteBufferArrayList(ByteBuffer content)
             throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT) {
@@ -1262,18 +1288,29 @@ final class BinaryInputCapsule implements InputCapsule {
     }
 
     // NIO BUFFERS
+
+    /**
+     * Copies the data of a buffer written in native order into a new direct
+     * buffer.
+     */
+    protected ByteBuffer readBufferData(ByteBuffer content, int bytes) {
+        ByteBuffer data = content.duplicate();
+        data.limit(index + bytes).position(index);
+        index += bytes;
+        ByteBuffer value = BufferUtils.createByteBuffer(bytes);
+        value.put(data).rewind();
+        return value;
+    }
+
     // float buffer
 
-    protected FloatBuffer readFloatBuffer(byte[] content) throws IOException {
+    protected FloatBuffer readFloatBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asFloatBuffer();
+            return readBufferData(content, length * 4).asFloatBuffer();
         }else{
             FloatBuffer value = BufferUtils.createFloatBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1286,16 +1323,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // int buffer
 
-    protected IntBuffer readIntBuffer(byte[] content) throws IOException {
+    protected IntBuffer readIntBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 4);
-            value.put(content, index, length * 4).rewind();
-            index += length * 4;
-            return value.asIntBuffer();
+            return readBufferData(content, length * 4).asIntBuffer();
         }else{
             IntBuffer value = BufferUtils.createIntBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1308,16 +1342,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // byte buffer
 
-    protected ByteBuffer readByteBuffer(byte[] content) throws IOException {
+    protected ByteBuffer readByteBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length);
-            value.put(content, index, length).rewind();
-            index += length;
-            return value;
+            return readBufferData(content, length);
         }else{
             ByteBuffer value = BufferUtils.createByteBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -1330,16 +1361,13 @@ final class BinaryInputCapsule implements InputCapsule {
 
     // short buffer
 
-    protected ShortBuffer readShortBuffer(byte[] content) throws IOException {
+    protected ShortBuffer readShortBuffer(ByteBuffer content) throws IOException {
         int length = readInt(content);
         if (length == BinaryOutputCapsule.NULL_OBJECT)
             return null;
 
         if (BinaryImporter.canUseFastBuffers()){
-            ByteBuffer value = BufferUtils.createByteBuffer(length * 2);
-            value.put(content, index, length * 2).rewind();
-            index += length * 2;
-            return value.asShortBuffer();
+            return readBufferData(content, length * 2).asShortBuffer();
         }else{
             ShortBuffer value = BufferUtils.createShortBuffer(length);
             for (int x = 0; x < length; x++) {
@@ -57,7 +57,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -78,6 +81,8 @@ public class J3MLoader implements AssetLoader {
     private TechniqueDef technique;
     private RenderState renderState;
     private ArrayList<String> presetDefines = new ArrayList<String>();
+    // textures requested ahead of time, see readExtendingMaterialParams
+    private HashMap<TextureKey, CompletableFuture<Texture>> pendingTextures = new HashMap<TextureKey, CompletableFuture<Texture>>();
 
     private EnumMap<Shader.ShaderType, String> shaderLanguages;
     private EnumMap<Shader.ShaderType, String> shaderNames;
@@ -205,10 +210,9 @@ public class J3MLoader implements AssetLoader {
         return false;
     }
 
-    private Texture parseTextureType(final VarType type, final String value) {
-        final List<String> textureValues = tokenizeTextureValue(value);
-        final List<TextureOptionValue> textureOptionValues = parseTextureOptions(textureValues);
-
+    private TextureKey parseTextureKey(final VarType type, final String value,
+                                       final List<String> textureValues,
+                                       final List<TextureOptionValue> textureOptionValues) {
         TextureKey textureKey = null;
 
         // If there is only one token on the value, it must be the path to the texture.
@@ -269,11 +273,30 @@ public class J3MLoader implements AssetLoader {
         }
 
         textureKey.setGenerateMips(true);
+        return textureKey;
+    }
+
+    private Texture parseTextureType(final VarType type, final String value) {
+        final List<String> textureValues = tokenizeTextureValue(value);
+        final List<TextureOptionValue> textureOptionValues = parseTextureOptions(textureValues);
+        final TextureKey textureKey = parseTextureKey(type, value, textureValues, textureOptionValues);
 
         Texture texture;
 
         try {
-            texture = assetManager.loadTexture(textureKey);
+            CompletableFuture<Texture> pending = pendingTextures.remove(textureKey);
+            if (pending != null) {
+                try {
+                    texture = pending.join();
+                } catch (CompletionException ex) {
+                    if (ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) ex.getCause();
+                    }
+                    throw ex;
+                }
+            } else {
+                texture = assetManager.loadTexture(textureKey);
+            }
         } catch (AssetNotFoundException ex){
             logger.log(Level.WARNING, "Cannot locate {0} for material {1}", new Object[]{textureKey, key});
             texture = null;
@@ -433,11 +456,38 @@ public class J3MLoader implements AssetLoader {
     }
 
     private void readExtendingMaterialParams(List<Statement> paramsList) throws IOException{
+        if (ThreadingManager.isLoadingThread()) {
+            requestTextures(paramsList);
+        }
         for (Statement statement : paramsList){
             readValueParam(statement.getLine());
         }
     }
 
+    /**
+     * Starts loading the textures of the given material parameters on the
+     * loading threads, so that they are loaded in parallel instead of one
+     * after the other as the parameters are read.
+     */
+    private void requestTextures(List<Statement> paramsList) {
+        for (Statement statement : paramsList){
+            String[] split = statement.getLine().split(":", 2);
+            if (split.length != 2){
+                continue;
+            }
+            MatParam p = material.getMaterialDef().getMaterialParam(split[0].trim());
+            if (p == null || !p.getVarType().isTextureType()){
+                continue;
+            }
+            List<String> textureValues = tokenizeTextureValue(split[1]);
+            TextureKey textureKey = parseTextureKey(p.getVarType(), split[1], textureValues,
+                                                    parseTextureOptions(textureValues));
+            if (!pendingTextures.containsKey(textureKey)) {
+                pendingTextures.put(textureKey, assetManager.loadAssetAsync(textureKey));
+            }
+        }
+    }
+
     private void readWorldParams(List<Statement> worldParams) throws IOException{
         for (Statement statement : worldParams){
             technique.addWorldParam(statement.getLine());
@@ -771,6 +821,7 @@ public class J3MLoader implements AssetLoader {
             }
             loadFromRoot(BlockLanguageParser.parse(in));
         } finally {
+            pendingTextures.clear();
             if (in != null){
                 in.close();
             }
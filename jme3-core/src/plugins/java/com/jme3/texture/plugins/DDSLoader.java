@@ -113,6 +113,7 @@ public class DDSLoader implements AssetLoader {
     private int[] sizes;
     private int redMask, greenMask, blueMask, alphaMask;
     private DataInput in;
+    private ImageDataReader reader;
 
     public DDSLoader() {
     }
@@ -125,7 +126,9 @@ public class DDSLoader implements AssetLoader {
         InputStream stream = null;
         try {
             stream = info.openStream();
-            in = new LittleEndien(stream);
+            LittleEndien le = new LittleEndien(stream);
+            in = le;
+            reader = new ImageDataReader(le);
             loadHeader();
             if (texture3D) {
                 ((TextureKey) info.getKey()).setTextureTypeHint(Texture.Type.ThreeDimensional);
@@ -142,7 +145,9 @@ public class DDSLoader implements AssetLoader {
     }
 
     public Image load(InputStream stream) throws IOException {
-        in = new LittleEndien(stream);
+        LittleEndien le = new LittleEndien(stream);
+        in = le;
+        reader = new ImageDataReader(le);
         loadHeader();
         ArrayList<ByteBuffer> data = readData(false);
         return new Image(pixelFormat, width, height, depth, data, sizes, ColorSpace.sRGB);
@@ -436,36 +441,67 @@ public class DDSLoader implements AssetLoader {
     }
 
     /**
-     * Reads a grayscale image with mipmaps from the InputStream
-     * @param flip Flip the loaded image by Y axis
-     * @param totalSize Total size of the image in bytes including the mipmaps
-     * @return A ByteBuffer containing the grayscale image data with mips.
-     * @throws java.io.IOException If an error occured while reading from InputStream
+     * Reads the mipmaps of one grayscale image into the buffer at its
+     * current position and flips them in place.
      */
-    public ByteBuffer readGrayscale2D(boolean flip, int totalSize) throws IOException {
-        ByteBuffer buffer = BufferUtils.createByteBuffer(totalSize);
+    private void readGrayscale(ByteBuffer buffer, boolean flip) throws IOException {
+        int mipWidth = width;
+        int mipHeight = height;
 
-        if (bpp == 8) {
-            logger.finest("Source image format: R8");
-        }
+        for (int mip = 0; mip < mipMapCount; mip++) {
+            int start = buffer.position();
+            reader.readFully(buffer, sizes[mip]);
+            if (flip) {
+                ByteBuffer mipData = buffer.duplicate();
+                mipData.position(start);
+                ImageFlipper.flipInPlace(mipData, mipWidth * bpp / 8, mipHeight);
+            }
 
-        assert bpp == pixelFormat.getBitsPerPixel();
+            mipWidth = Math.max(mipWidth / 2, 1);
+            mipHeight = Math.max(mipHeight / 2, 1);
+        }
+    }
 
+    /**
+     * Reads the mipmaps of one DXT compressed image into the buffer at its
+     * current position and flips them in place.
+     */
+    private void readDXT(ByteBuffer buffer, boolean flip) throws IOException {
         int mipWidth = width;
         int mipHeight = height;
 
         for (int mip = 0; mip < mipMapCount; mip++) {
-            byte[] data = new byte[sizes[mip]];
-            in.readFully(data);
+            int start = buffer.position();
+            reader.readFully(buffer, sizes[mip]);
             if (flip) {
-                data = flipData(data, mipWidth * bpp / 8, mipHeight);
+                ByteBuffer mipData = buffer.duplicate();
+                mipData.position(start);
+                DXTFlipper.flipDXTInPlace(mipData, mipWidth, mipHeight, pixelFormat);
             }
-            buffer.put(data);
 
             mipWidth = Math.max(mipWidth / 2, 1);
             mipHeight = Math.max(mipHeight / 2, 1);
         }
+    }
+
+    /**
+     * Reads a grayscale image with mipmaps from the InputStream
+     * @param flip Flip the loaded image by Y axis
+     * @param totalSize Total size of the image in bytes including the mipmaps
+     * @return A ByteBuffer containing the grayscale image data with mips.
+     * @throws java.io.IOException If an error occured while reading from InputStream
+     */
+    public ByteBuffer readGrayscale2D(boolean flip, int totalSize) throws IOException {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(totalSize);
 
+        if (bpp == 8) {
+            logger.finest("Source image format: R8");
+        }
+
+        assert bpp == pixelFormat.getBitsPerPixel();
+
+        readGrayscale(buffer, flip);
+        buffer.rewind();
         return buffer;
     }
 
@@ -500,13 +536,13 @@ public class DDSLoader implements AssetLoader {
         int mipHeight = height;
 
         int offset = 0;
-        byte[] b = new byte[sourcebytesPP];
+        // one scanline of the source image
+        byte[] row = new byte[width * sourcebytesPP];
         for (int mip = 0; mip < mipMapCount; mip++) {
             for (int y = 0; y < mipHeight; y++) {
+                in.readFully(row, 0, mipWidth * sourcebytesPP);
                 for (int x = 0; x < mipWidth; x++) {
-                    in.readFully(b);
-
-                    int i = byte2int(b);
+                    int i = byte2int(row, x * sourcebytesPP, sourcebytesPP);
 
                     byte red = (byte) (((i & redMask) >> redCount));
                     byte green = (byte) (((i & greenMask) >> greenCount));
@@ -548,26 +584,7 @@ public class DDSLoader implements AssetLoader {
 
         ByteBuffer buffer = BufferUtils.createByteBuffer(totalSize);
 
-        int mipWidth = width;
-        int mipHeight = height;
-
-        for (int mip = 0; mip < mipMapCount; mip++) {
-            if (flip) {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
-                ByteBuffer wrapped = ByteBuffer.wrap(data);
-                wrapped.rewind();
-                ByteBuffer flipped = DXTFlipper.flipDXT(wrapped, mipWidth, mipHeight, pixelFormat);
-                buffer.put(flipped);
-            } else {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
-                buffer.put(data);
-            }
-
-            mipWidth = Math.max(mipWidth / 2, 1);
-            mipHeight = Math.max(mipHeight / 2, 1);
-        }
+        readDXT(buffer, flip);
         buffer.rewind();
 
         return buffer;
@@ -591,20 +608,7 @@ public class DDSLoader implements AssetLoader {
 
 
         for (int i = 0; i < depth; i++) {
-            int mipWidth = width;
-            int mipHeight = height;
-
-            for (int mip = 0; mip < mipMapCount; mip++) {
-                byte[] data = new byte[sizes[mip]];
-                in.readFully(data);
-                if (flip) {
-                    data = flipData(data, mipWidth * bpp / 8, mipHeight);
-                }
-                buffer.put(data);
-
-                mipWidth = Math.max(mipWidth / 2, 1);
-                mipHeight = Math.max(mipHeight / 2, 1);
-            }
+            readGrayscale(buffer, flip);
         }
         buffer.rewind();
         return buffer;
@@ -636,19 +640,19 @@ public class DDSLoader implements AssetLoader {
         int targetBytesPP = pixelFormat.getBitsPerPixel() / 8;
 
         ByteBuffer dataBuffer = BufferUtils.createByteBuffer(totalSize * depth);
+        // one scanline of the source image
+        byte[] row = new byte[width * sourcebytesPP];
 
         for (int k = 0; k < depth; k++) {
             //   ByteBuffer dataBuffer = BufferUtils.createByteBuffer(totalSize);
             int mipWidth = width;
             int mipHeight = height;
             int offset = k * totalSize;
-            byte[] b = new byte[sourcebytesPP];
             for (int mip = 0; mip < mipMapCount; mip++) {
                 for (int y = 0; y < mipHeight; y++) {
+                    in.readFully(row, 0, mipWidth * sourcebytesPP);
                     for (int x = 0; x < mipWidth; x++) {
-                        in.readFully(b);
-
-                        int i = byte2int(b);
+                        int i = byte2int(row, x * sourcebytesPP, sourcebytesPP);
 
                         byte red = (byte) (((i & redMask) >> redCount));
                         byte green = (byte) (((i & greenMask) >> greenCount));
@@ -692,30 +696,9 @@ public class DDSLoader implements AssetLoader {
         ByteBuffer bufferAll = BufferUtils.createByteBuffer(totalSize * depth);
 
         for (int i = 0; i < depth; i++) {
-            ByteBuffer buffer = BufferUtils.createByteBuffer(totalSize);
-            int mipWidth = width;
-            int mipHeight = height;
-            for (int mip = 0; mip < mipMapCount; mip++) {
-                if (flip) {
-                    byte[] data = new byte[sizes[mip]];
-                    in.readFully(data);
-                    ByteBuffer wrapped = ByteBuffer.wrap(data);
-                    wrapped.rewind();
-                    ByteBuffer flipped = DXTFlipper.flipDXT(wrapped, mipWidth, mipHeight, pixelFormat);
-                    flipped.rewind();
-                    buffer.put(flipped);
-                } else {
-                    byte[] data = new byte[sizes[mip]];
-                    in.readFully(data);
-                    buffer.put(data);
-                }
-
-                mipWidth = Math.max(mipWidth / 2, 1);
-                mipHeight = Math.max(mipHeight / 2, 1);
-            }
-            buffer.rewind();
-            bufferAll.put(buffer);
+            readDXT(bufferAll, flip);
         }
+        bufferAll.rewind();
 
         return bufferAll;
     }
@@ -803,17 +786,17 @@ public class DDSLoader implements AssetLoader {
     }
 
     /**
-     * Converts a 1 to 4 sized byte array to an integer
+     * Converts 1 to 4 little endian bytes of an array to an integer
      */
-    private static int byte2int(byte[] b) {
-        if (b.length == 1) {
-            return b[0] & 0xFF;
-        } else if (b.length == 2) {
-            return (b[0] & 0xFF) | ((b[1] & 0xFF) << 8);
-        } else if (b.length == 3) {
-            return (b[0] & 0xFF) | ((b[1] & 0xFF) << 8) | ((b[2] & 0xFF) << 16);
-        } else if (b.length == 4) {
-            return (b[0] & 0xFF) | ((b[1] & 0xFF) << 8) | ((b[2] & 0xFF) << 16) | ((b[3] & 0xFF) << 24);
+    private static int byte2int(byte[] b, int off, int length) {
+        if (length == 1) {
+            return b[off] & 0xFF;
+        } else if (length == 2) {
+            return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8);
+        } else if (length == 3) {
+            return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8) | ((b[off + 2] & 0xFF) << 16);
+        } else if (length == 4) {
+            return (b[off] & 0xFF) | ((b[off + 1] & 0xFF) << 8) | ((b[off + 2] & 0xFF) << 16) | ((b[off + 3] & 0xFF) << 24);
         } else {
             return 0;
         }
@@ -31,289 +31,163 @@
  */
 package com.jme3.texture.plugins;
 
-import com.jme3.math.FastMath;
 import com.jme3.texture.Image.Format;
 import com.jme3.util.BufferUtils;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 
 /**
  * DXTFlipper is a utility class used to flip along Y axis DXT compressed textures.
+ * <p>
+ * The data is flipped in place, one 4x4 block at a time: the rows of
+ * blocks are swapped and the pixel rows inside each block are reversed.
  * 
  * @author Kirill Vainer
  */
 public class DXTFlipper {
 
-    private static final ByteBuffer bb = ByteBuffer.allocate(8);
-
-    static {
-        bb.order(ByteOrder.LITTLE_ENDIAN);
-    }
-
-    private static long readCode5(long data, int x, int y){
-        long shift =   (4 * y + x) * 3;
-        long mask = 0x7;
-        mask <<= shift;
-        long code = data & mask;
-        code >>= shift;
-        return code;
-    }
-
-    private static long writeCode5(long data, int x, int y, long code){
-        long shift =  (4 * y + x) * 3;
-        long mask = 0x7;
-        code = (code & mask) << shift;
-        mask <<= shift;
-        mask = ~mask;
-        data &= mask;
-        data |= code; // write new code
-        return data;
-    }
-
-    private static void flipDXT5Block(byte[] block, int h){
-        if (h == 1)
-            return;
-
-        byte c0 = block[0];
-        byte c1 = block[1];
+    /**
+     * Reverses the first <code>rows</code> rows of 3 bit codes of a
+     * DXT5 alpha block, stored in 6 bytes at the given index.
+     */
+    private static void flipDXT5Block(ByteBuffer img, int index, int rows){
+        long l = 0;
+        for (int i = 0; i < 6; i++){
+            l |= (img.get(index + i) & 0xFFL) << (8 * i);
+        }
 
-        bb.clear();
-        bb.put(block, 2, 6).flip();
-        bb.clear();
-        long l = bb.getLong();
+        // each row of 4 pixels takes 12 bits
         long n = l;
-
-        if (h == 2){
-            n = writeCode5(n, 0, 0, readCode5(l, 0, 1));
-            n = writeCode5(n, 1, 0, readCode5(l, 1, 1));
-            n = writeCode5(n, 2, 0, readCode5(l, 2, 1));
-            n = writeCode5(n, 3, 0, readCode5(l, 3, 1));
-
-            n = writeCode5(n, 0, 1, readCode5(l, 0, 0));
-            n = writeCode5(n, 1, 1, readCode5(l, 1, 0));
-            n = writeCode5(n, 2, 1, readCode5(l, 2, 0));
-            n = writeCode5(n, 3, 1, readCode5(l, 3, 0));
-        }else{
-            n = writeCode5(n, 0, 0, readCode5(l, 0, 3));
-            n = writeCode5(n, 1, 0, readCode5(l, 1, 3));
-            n = writeCode5(n, 2, 0, readCode5(l, 2, 3));
-            n = writeCode5(n, 3, 0, readCode5(l, 3, 3));
-
-            n = writeCode5(n, 0, 1, readCode5(l, 0, 2));
-            n = writeCode5(n, 1, 1, readCode5(l, 1, 2));
-            n = writeCode5(n, 2, 1, readCode5(l, 2, 2));
-            n = writeCode5(n, 3, 1, readCode5(l, 3, 2));
-
-            n = writeCode5(n, 0, 2, readCode5(l, 0, 1));
-            n = writeCode5(n, 1, 2, readCode5(l, 1, 1));
-            n = writeCode5(n, 2, 2, readCode5(l, 2, 1));
-            n = writeCode5(n, 3, 2, readCode5(l, 3, 1));
-
-            n = writeCode5(n, 0, 3, readCode5(l, 0, 0));
-            n = writeCode5(n, 1, 3, readCode5(l, 1, 0));
-            n = writeCode5(n, 2, 3, readCode5(l, 2, 0));
-            n = writeCode5(n, 3, 3, readCode5(l, 3, 0));
+        for (int y = 0; y < rows; y++){
+            long row = (l >>> (12 * (rows - y - 1))) & 0xFFF;
+            n &= ~(0xFFFL << (12 * y));
+            n |= row << (12 * y);
         }
-            
-        bb.clear();
-        bb.putLong(n);
-        bb.clear();
-        bb.get(block, 2, 6).flip();
 
-        assert c0 == block[0] && c1 == block[1];
+        for (int i = 0; i < 6; i++){
+            img.put(index + i, (byte) (n >>> (8 * i)));
+        }
     }
 
-    private static void flipDXT3Block(byte[] block, int h){
-        if (h == 1)
-            return;
-
-        // first row
-        byte tmp0 = block[0];
-        byte tmp1 = block[1];
-
-        if (h == 2){
-            block[0] = block[2];
-            block[1] = block[3];
-
-            block[2] = tmp0;
-            block[3] = tmp1;
-        }else{
-            // write last row to first row
-            block[0] = block[6];
-            block[1] = block[7];
-
-            // write first row to last row
-            block[6] = tmp0;
-            block[7] = tmp1;
-
-            // 2nd row
-            tmp0 = block[2];
-            tmp1 = block[3];
-
-            // write 3rd row to 2nd
-            block[2] = block[4];
-            block[3] = block[5];
-
-            // write 2nd row to 3rd
-            block[4] = tmp0;
-            block[5] = tmp1;
+    /**
+     * Reverses the first <code>rows</code> rows of a DXT3 alpha block,
+     * 2 bytes per row.
+     */
+    private static void flipDXT3Block(ByteBuffer img, int index, int rows){
+        for (int y = 0; y < rows / 2; y++){
+            int a = index + y * 2;
+            int b = index + (rows - y - 1) * 2;
+            short tmp = img.getShort(a);
+            img.putShort(a, img.getShort(b));
+            img.putShort(b, tmp);
         }
     }
 
     /**
-     * Flips a DXT color block or a DXT3 alpha block
-     * @param block
-     * @param h
+     * Reverses the first <code>rows</code> rows of a DXT color block,
+     * keeping the header with the two colors intact.
      */
-    private static void flipDXT1orDXTA3Block(byte[] block, int h){
-        byte tmp;
-        switch (h){
-            case 1:
-                return;
-            case 2:
-                // keep header intact (the two colors)
-                // header takes 4 bytes
-
-                // flip only two top rows
-                tmp = block[4+1];
-                block[4+1] = block[4+0];
-                block[4+0] = tmp;
-                return;
-            default:
-                // keep header intact (the two colors)
-                // header takes 4 bytes
-
-                // flip first & fourth row
-                tmp = block[4+3];
-                block[4+3] = block[4+0];
-                block[4+0] = tmp;
-
-                // flip second and third row
-                tmp = block[4+2];
-                block[4+2] = block[4+1];
-                block[4+1] = tmp;
-                return;
+    private static void flipDXT1Block(ByteBuffer img, int index, int rows){
+        // header takes 4 bytes, then one byte per row
+        for (int y = 0; y < rows / 2; y++){
+            int a = index + 4 + y;
+            int b = index + 4 + rows - y - 1;
+            byte tmp = img.get(a);
+            img.put(a, img.get(b));
+            img.put(b, tmp);
         }
     }
 
-    public static ByteBuffer flipDXT(ByteBuffer img, int w, int h, Format format){
-        int originalLimit = img.limit();
-        int blocksX = (int) FastMath.ceil((float)w / 4f);
-        int blocksY = (int) FastMath.ceil((float)h / 4f);
-
-        int type;
+    private static int getBytesPerBlock(Format format){
         switch (format){
             case DXT1:
             case DXT1A:
-                type = 1;
-                break;
+                return 8;
             case DXT3:
-                type = 2;
-                break;
             case DXT5:
-                type = 3;
-                break;
-            /*
-            case LATC:
-                type = 4;
-                break;
-            case LTC:
-                type = 5;
-                break;
-            */
+                return 16;
             default:
                 throw new IllegalArgumentException();
         }
+    }
 
-        // DXT1 uses 8 bytes per block,
-        // DXT3, DXT5, LATC use 16 bytes per block
-        int bpb = type == 1 || type == 5 ? 8 : 16;
-
-        ByteBuffer retImg = BufferUtils.createByteBuffer(blocksX * blocksY * bpb);
+    /**
+     * Flips a DXT compressed image along the Y axis, in place.
+     * 
+     * @param img The image data, starting at the current position. The
+     * position and limit are not modified.
+     * @param w The width of the image in pixels
+     * @param h The height of the image in pixels
+     * @param format The compression format, one of DXT1, DXT1A, DXT3, DXT5
+     */
+    public static void flipDXTInPlace(ByteBuffer img, int w, int h, Format format){
+        int bpb = getBytesPerBlock(format);
         if (h == 1){
-            retImg.put(img);
-            retImg.rewind();
-        }else if (h == 2){
-            byte[] colorBlock = new byte[8];
-            byte[] alphaBlock = type != 1 && type != 5 ? new byte[8] : null;
-            for (int x = 0; x < blocksX; x++){
-                // prepeare for block reading
-                int blockByteOffset = x * bpb;
-                img.position(blockByteOffset);
-                img.limit(blockByteOffset + bpb);
-
-                if (alphaBlock != null){
-                    img.get(alphaBlock);
-                    switch (type){
-                        case 2:
-                            flipDXT3Block(alphaBlock, h); 
-                            break;
-                        case 3:
-                        case 4: 
-                            flipDXT5Block(alphaBlock, h);
-                            break;
-                    }
-                    retImg.put(alphaBlock);
-                }
-                
-                img.get(colorBlock);
-                if (type == 4 || type == 5)
-                    flipDXT5Block(colorBlock, h);
-                else
-                    flipDXT1orDXTA3Block(colorBlock, h);
+            return;
+        }
 
-                // write block (no need to flip block indexes, only pixels
-                // inside block
-                retImg.put(colorBlock);
+        int start = img.position();
+        int blocksX = (w + 3) / 4;
+        int blocksY = (h + 3) / 4;
+        // images smaller than a block only use the first rows
+        int rows = Math.min(h, 4);
+
+        int blockCount = blocksX * blocksY;
+        for (int i = 0; i < blockCount; i++){
+            int index = start + i * bpb;
+            switch (format){
+                case DXT3:
+                    flipDXT3Block(img, index, rows);
+                    flipDXT1Block(img, index + 8, rows);
+                    break;
+                case DXT5:
+                    flipDXT5Block(img, index + 2, rows);
+                    flipDXT1Block(img, index + 8, rows);
+                    break;
+                default:
+                    flipDXT1Block(img, index, rows);
+                    break;
             }
-            retImg.rewind();
-        }else if (h >= 4){
-            byte[] colorBlock = new byte[8];
-            byte[] alphaBlock = type != 1 && type != 5 ? new byte[8] : null;
-            for (int y = 0; y < blocksY; y++){
-                for (int x = 0; x < blocksX; x++){
-                    // prepeare for block reading
-                    int blockIdx = y * blocksX + x;
-                    int blockByteOffset = blockIdx * bpb;
-
-                    img.position(blockByteOffset);
-                    img.limit(blockByteOffset + bpb);
-
-                    blockIdx = (blocksY - y - 1) * blocksX + x;
-                    blockByteOffset = blockIdx * bpb;
-
-                    retImg.position(blockByteOffset);
-                    retImg.limit(blockByteOffset + bpb);
-
-                    if (alphaBlock != null){
-                        img.get(alphaBlock);
-                        switch (type){
-                            case 2:
-                                flipDXT3Block(alphaBlock, h);
-                                break;
-                            case 3:
-                            case 4:
-                                flipDXT5Block(alphaBlock, h);
-                                break;
-                        }
-                        retImg.put(alphaBlock);
-                    }
+        }
 
-                    img.get(colorBlock);
-                    if (type == 4 || type == 5)
-                        flipDXT5Block(colorBlock, h);
-                    else
-                        flipDXT1orDXTA3Block(colorBlock, h);
-                    
-                    retImg.put(colorBlock);
-                }
-            }
-            retImg.limit(retImg.capacity());
-            retImg.position(0);
-        } else {
-            return null;
+        // swap the rows of blocks
+        int rowSize = blocksX * bpb;
+        byte[] rowA = new byte[rowSize];
+        byte[] rowB = new byte[rowSize];
+        ByteBuffer view = img.duplicate();
+        for (int y = 0; y < blocksY / 2; y++){
+            int a = start + y * rowSize;
+            int b = start + (blocksY - y - 1) * rowSize;
+            view.clear();
+            view.position(a);
+            view.get(rowA);
+            view.position(b);
+            view.get(rowB);
+            view.position(a);
+            view.put(rowB);
+            view.position(b);
+            view.put(rowA);
         }
-        img.limit(originalLimit); // make sure to restore original limit.
+    }
+
+    /**
+     * Flips a DXT compressed image along the Y axis.
+     * 
+     * @param img The image data, starting at the current position
+     * @param w The width of the image in pixels
+     * @param h The height of the image in pixels
+     * @param format The compression format, one of DXT1, DXT1A, DXT3, DXT5
+     * @return A new buffer containing the flipped image
+     * @see #flipDXTInPlace(java.nio.ByteBuffer, int, int, com.jme3.texture.Image.Format) 
+     */
+    public static ByteBuffer flipDXT(ByteBuffer img, int w, int h, Format format){
+        int size = ((w + 3) / 4) * ((h + 3) / 4) * getBytesPerBlock(format);
+        ByteBuffer src = img.duplicate();
+        src.limit(src.position() + size);
+
+        ByteBuffer retImg = BufferUtils.createByteBuffer(size);
+        retImg.put(src);
+        retImg.rewind();
+        flipDXTInPlace(retImg, w, h, format);
         return retImg;
     }
 
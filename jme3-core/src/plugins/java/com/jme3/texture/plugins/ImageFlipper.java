@@ -32,7 +32,6 @@
 package com.jme3.texture.plugins;
 
 import com.jme3.texture.Image;
-import com.jme3.util.BufferUtils;
 import java.nio.ByteBuffer;
 
 /**
@@ -49,27 +48,38 @@ public class ImageFlipper {
             throw new UnsupportedOperationException("Flipping compressed " +
                                                     "images is unsupported.");
 
-        int w = img.getWidth();
-        int h = img.getHeight();
-        int halfH = h / 2;
-
         // bytes per pixel
         int bpp = img.getFormat().getBitsPerPixel() / 8;
-        int scanline = w * bpp;
-
-        ByteBuffer data = img.getData(index);
-        ByteBuffer temp = BufferUtils.createByteBuffer(scanline);
-        
-        data.rewind();
-        for (int y = 0; y < halfH; y++){
-            int oppY = h - y - 1;
-            // read in scanline
-            data.position(y * scanline);
-            data.limit(data.position() + scanline);
-
-            temp.rewind();
-            temp.put(data);
+        ByteBuffer data = img.getData(index).duplicate();
+        data.clear();
+        flipInPlace(data, img.getWidth() * bpp, img.getHeight());
+    }
 
+    /**
+     * Flips image data across the Y axis by swapping its scanlines.
+     * 
+     * @param data The image data, starting at the current position. The
+     * position and limit are not modified.
+     * @param scanline The size of a scanline in bytes
+     * @param height The number of scanlines
+     */
+    public static void flipInPlace(ByteBuffer data, int scanline, int height){
+        int start = data.position();
+        byte[] rowA = new byte[scanline];
+        byte[] rowB = new byte[scanline];
+        ByteBuffer view = data.duplicate();
+        view.clear();
+        for (int y = 0; y < height / 2; y++){
+            int a = start + y * scanline;
+            int b = start + (height - y - 1) * scanline;
+            view.position(a);
+            view.get(rowA);
+            view.position(b);
+            view.get(rowB);
+            view.position(a);
+            view.put(rowB);
+            view.position(b);
+            view.put(rowA);
         }
     }
 
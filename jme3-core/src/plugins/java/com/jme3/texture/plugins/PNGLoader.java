@@ -0,0 +1,664 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.texture.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetLoader;
+import com.jme3.asset.TextureKey;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * <code>PNGLoader</code> decodes PNG images without AWT, so it can be used
+ * on headless JVMs, and on any number of threads at the same time.
+ * <p>
+ * Scanlines are unfiltered and converted straight into the buffer of the
+ * resulting image. All color types, bit depths and interlacing are
+ * supported. The output formats match those of the AWT based loader:
+ * grayscale images without transparency are {@link Format#Luminance8},
+ * other images are {@link Format#RGB8}, or {@link Format#RGBA8} if they
+ * have an alpha channel or a transparent color. 16 bit samples are reduced
+ * to 8 bits, ancillary chunks such as gamma and color profiles are ignored.
+ * <p>
+ * The compressed data of a PNG file is a single deflate stream, even if it
+ * is split into several IDAT chunks, so it cannot be inflated in parallel.
+ * For large images, the stream is inflated on a separate thread while the
+ * loading thread unfilters the scanlines.
+ *
+ * @author jMonkeyEngine
+ */
+public class PNGLoader implements AssetLoader {
+
+    private static final long SIGNATURE = 0x89504E470D0A1A0AL;
+
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504C5445;
+    private static final int TRNS = 0x74524E53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454E44;
+
+    private static final int COLOR_GRAY = 0;
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_PALETTE = 3;
+    private static final int COLOR_GRAY_ALPHA = 4;
+    private static final int COLOR_RGBA = 6;
+
+    // Adam7 passes: x start, y start, x step, y step
+    private static final int[][] ADAM7 = {
+        {0, 0, 8, 8}, {4, 0, 8, 8}, {0, 4, 4, 8}, {2, 0, 4, 4},
+        {0, 2, 2, 4}, {1, 0, 2, 2}, {0, 1, 1, 2}
+    };
+
+    /**
+     * Images with more inflated data than this are inflated on a separate
+     * thread.
+     */
+    private static final int PIPELINE_THRESHOLD = 1 << 20;
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private static final ExecutorService inflaters = Executors.newCachedThreadPool(new ThreadFactory() {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "jME3-png-inflater-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    private static final class Header {
+
+        int width;
+        int height;
+        int bitDepth;
+        int colorType;
+        boolean interlaced;
+        byte[] palette;
+        byte[] paletteAlpha;
+        int[] transparent;
+
+        int getChannels() {
+            switch (colorType) {
+                case COLOR_RGB:
+                    return 3;
+                case COLOR_GRAY_ALPHA:
+                    return 2;
+                case COLOR_RGBA:
+                    return 4;
+                default:
+                    return 1;
+            }
+        }
+
+        Format getFormat() {
+            switch (colorType) {
+                case COLOR_GRAY:
+                    return transparent != null ? Format.RGBA8 : Format.Luminance8;
+                case COLOR_RGB:
+                    return transparent != null ? Format.RGBA8 : Format.RGB8;
+                case COLOR_PALETTE:
+                    return paletteAlpha != null ? Format.RGBA8 : Format.RGB8;
+                default:
+                    return Format.RGBA8;
+            }
+        }
+
+        /**
+         * @return The size of a scanline of the given number of pixels,
+         * without the filter byte
+         */
+        int getRowBytes(int pixels) {
+            return (pixels * getChannels() * bitDepth + 7) / 8;
+        }
+    }
+
+    public Object load(AssetInfo info) throws IOException {
+        boolean flip = info.getKey() instanceof TextureKey && ((TextureKey) info.getKey()).isFlipY();
+        InputStream in = null;
+        try {
+            in = info.openStream();
+            return load(in, flip);
+        } finally {
+            if (in != null) {
+                in.close();
+            }
+        }
+    }
+
+    /**
+     * Decodes a PNG image.
+     *
+     * @param stream The PNG data
+     * @param flipY True to flip the image along the Y axis
+     * @return The decoded image
+     * @throws IOException If the data is not a valid PNG image
+     */
+    public Image load(InputStream stream, boolean flipY) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readLong() != SIGNATURE) {
+            throw new IOException("Not a PNG file");
+        }
+
+        Header header = null;
+        while (true) {
+            int length = in.readInt();
+            int type = in.readInt();
+            if (type == IDAT) {
+                if (header == null) {
+                    throw new IOException("PNG image data before header");
+                }
+                return decode(header, new IdatInputStream(in, length), flipY);
+            } else if (type == IHDR) {
+                header = readHeader(in);
+            } else if (type == PLTE && header != null) {
+                header.palette = new byte[length];
+                in.readFully(header.palette);
+            } else if (type == TRNS && header != null) {
+                readTransparency(header, in, length);
+            } else if (type == IEND) {
+                throw new IOException("PNG file contains no image data");
+            } else {
+                skipFully(in, length);
+            }
+            // CRC
+            skipFully(in, 4);
+        }
+    }
+
+    private static Header readHeader(DataInputStream in) throws IOException {
+        Header header = new Header();
+        header.width = in.readInt();
+        header.height = in.readInt();
+        header.bitDepth = in.readUnsignedByte();
+        header.colorType = in.readUnsignedByte();
+        int compression = in.readUnsignedByte();
+        int filter = in.readUnsignedByte();
+        header.interlaced = in.readUnsignedByte() == 1;
+
+        if (header.width <= 0 || header.height <= 0) {
+            throw new IOException("Invalid PNG image size " + header.width + "x" + header.height);
+        }
+        if (compression != 0 || filter != 0) {
+            throw new IOException("Unsupported PNG compression or filter method");
+        }
+        switch (header.colorType) {
+            case COLOR_GRAY:
+            case COLOR_PALETTE:
+                break;
+            case COLOR_RGB:
+            case COLOR_GRAY_ALPHA:
+            case COLOR_RGBA:
+                if (header.bitDepth < 8) {
+                    throw new IOException("Invalid PNG bit depth " + header.bitDepth);
+                }
+                break;
+            default:
+                throw new IOException("Unsupported PNG color type " + header.colorType);
+        }
+        if (Integer.bitCount(header.bitDepth) != 1 || header.bitDepth > 16
+                || (header.colorType == COLOR_PALETTE && header.bitDepth > 8)) {
+            throw new IOException("Invalid PNG bit depth " + header.bitDepth);
+        }
+        return header;
+    }
+
+    private static void readTransparency(Header header, DataInputStream in, int length) throws IOException {
+        switch (header.colorType) {
+            case COLOR_PALETTE:
+                header.paletteAlpha = new byte[length];
+                in.readFully(header.paletteAlpha);
+                break;
+            case COLOR_GRAY:
+            case COLOR_RGB:
+                header.transparent = new int[length / 2];
+                for (int i = 0; i < header.transparent.length; i++) {
+                    header.transparent[i] = in.readUnsignedShort();
+                }
+                break;
+            default:
+                skipFully(in, length);
+                break;
+        }
+    }
+
+    private static void skipFully(DataInputStream in, int length) throws IOException {
+        if (in.skipBytes(length) != length) {
+            throw new EOFException("Unexpected end of PNG file");
+        }
+    }
+
+    private Image decode(Header header, IdatInputStream idat, boolean flipY) throws IOException {
+        Format format = header.getFormat();
+        int outBpp = format.getBitsPerPixel() / 8;
+        ByteBuffer data = BufferUtils.createByteBuffer(header.width * header.height * outBpp);
+
+        long inflatedSize = (long) header.height * (header.getRowBytes(header.width) + 1);
+        InputStream inflated;
+        if (inflatedSize > PIPELINE_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1) {
+            inflated = new PipelinedInflaterInputStream(idat);
+        } else {
+            inflated = new InflaterInputStream(idat, new Inflater(), BLOCK_SIZE);
+        }
+
+        try {
+            if (header.interlaced) {
+                for (int[] pass : ADAM7) {
+                    int passWidth = (header.width - pass[0] + pass[2] - 1) / pass[2];
+                    int passHeight = (header.height - pass[1] + pass[3] - 1) / pass[3];
+                    if (passWidth > 0 && passHeight > 0) {
+                        decodePass(header, inflated, data, flipY, pass[0], pass[1], pass[2], pass[3],
+                                   passWidth, passHeight);
+                    }
+                }
+            } else {
+                decodePass(header, inflated, data, flipY, 0, 0, 1, 1, header.width, header.height);
+            }
+        } finally {
+            inflated.close();
+        }
+
+        data.clear();
+        return new Image(format, header.width, header.height, data, null, ColorSpace.sRGB);
+    }
+
+    private void decodePass(Header header, InputStream inflated, ByteBuffer data, boolean flipY,
+                            int x0, int y0, int dx, int dy, int passWidth, int passHeight) throws IOException {
+        int rowBytes = header.getRowBytes(passWidth);
+        // distance between the bytes a filter refers to
+        int filterStride = Math.max(1, header.getChannels() * header.bitDepth / 8);
+        int outBpp = header.getFormat().getBitsPerPixel() / 8;
+
+        byte[] previous = new byte[rowBytes];
+        byte[] current = new byte[rowBytes];
+        for (int y = 0; y < passHeight; y++) {
+            int filter = inflated.read();
+            if (filter < 0) {
+                throw new EOFException("Unexpected end of PNG image data");
+            }
+            readFully(inflated, current, rowBytes);
+            unfilter(filter, current, previous, rowBytes, filterStride);
+
+            int imageY = y0 + y * dy;
+            int outY = flipY ? header.height - imageY - 1 : imageY;
+            int outOffset = (outY * header.width + x0) * outBpp;
+            convertRow(header, current, passWidth, data, outOffset, dx * outBpp);
+
+            byte[] tmp = previous;
+            previous = current;
+            current = tmp;
+        }
+    }
+
+    private static void readFully(InputStream in, byte[] b, int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            int read = in.read(b, total, length - total);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG image data");
+            }
+            total += read;
+        }
+    }
+
+    private static void unfilter(int filter, byte[] cur, byte[] prev, int length, int bpp) throws IOException {
+        switch (filter) {
+            case 0:
+                break;
+            case 1:
+                for (int i = bpp; i < length; i++) {
+                    cur[i] += cur[i - bpp];
+                }
+                break;
+            case 2:
+                for (int i = 0; i < length; i++) {
+                    cur[i] += prev[i];
+                }
+                break;
+            case 3:
+                for (int i = 0; i < bpp; i++) {
+                    cur[i] += (prev[i] & 0xFF) >>> 1;
+                }
+                for (int i = bpp; i < length; i++) {
+                    cur[i] += ((cur[i - bpp] & 0xFF) + (prev[i] & 0xFF)) >>> 1;
+                }
+                break;
+            case 4:
+                for (int i = 0; i < bpp; i++) {
+                    cur[i] += prev[i];
+                }
+                for (int i = bpp; i < length; i++) {
+                    int a = cur[i - bpp] & 0xFF;
+                    int b = prev[i] & 0xFF;
+                    int c = prev[i - bpp] & 0xFF;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    if (pa <= pb && pa <= pc) {
+                        cur[i] += a;
+                    } else if (pb <= pc) {
+                        cur[i] += b;
+                    } else {
+                        cur[i] += c;
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + filter);
+        }
+    }
+
+    /**
+     * Returns the sample of the given index in a scanline, at its original
+     * bit depth.
+     */
+    private static int getSample(byte[] row, int index, int bitDepth) {
+        switch (bitDepth) {
+            case 8:
+                return row[index] & 0xFF;
+            case 16:
+                return ((row[index * 2] & 0xFF) << 8) | (row[index * 2 + 1] & 0xFF);
+            default:
+                int bit = index * bitDepth;
+                int shift = 8 - bitDepth - (bit & 7);
+                return (row[bit >> 3] >> shift) & ((1 << bitDepth) - 1);
+        }
+    }
+
+    /**
+     * Scales a sample to 8 bits.
+     */
+    private static byte toByte(int sample, int bitDepth) {
+        switch (bitDepth) {
+            case 8:
+                return (byte) sample;
+            case 16:
+                return (byte) (sample >> 8);
+            default:
+                return (byte) (sample * 255 / ((1 << bitDepth) - 1));
+        }
+    }
+
+    private static void convertRow(Header header, byte[] row, int pixels, ByteBuffer data,
+                                   int offset, int stride) {
+        int bitDepth = header.bitDepth;
+        int[] trns = header.transparent;
+
+        if (bitDepth == 8 && stride == header.getChannels() && trns == null
+                && header.colorType != COLOR_PALETTE && header.colorType != COLOR_GRAY_ALPHA) {
+            // the scanline is already in the output format
+            ByteBuffer out = data.duplicate();
+            out.position(offset);
+            out.put(row, 0, pixels * stride);
+            return;
+        }
+
+        int pos = offset;
+        switch (header.colorType) {
+            case COLOR_GRAY:
+                for (int x = 0; x < pixels; x++, pos += stride) {
+                    int sample = getSample(row, x, bitDepth);
+                    byte gray = toByte(sample, bitDepth);
+                    data.put(pos, gray);
+                    if (trns != null) {
+                        data.put(pos + 1, gray);
+                        data.put(pos + 2, gray);
+                        data.put(pos + 3, sample == trns[0] ? (byte) 0 : (byte) 0xFF);
+                    }
+                }
+                break;
+            case COLOR_GRAY_ALPHA:
+                for (int x = 0; x < pixels; x++, pos += stride) {
+                    byte gray = toByte(getSample(row, x * 2, bitDepth), bitDepth);
+                    data.put(pos, gray);
+                    data.put(pos + 1, gray);
+                    data.put(pos + 2, gray);
+                    data.put(pos + 3, toByte(getSample(row, x * 2 + 1, bitDepth), bitDepth));
+                }
+                break;
+            case COLOR_RGB:
+                for (int x = 0; x < pixels; x++, pos += stride) {
+                    int r = getSample(row, x * 3, bitDepth);
+                    int g = getSample(row, x * 3 + 1, bitDepth);
+                    int b = getSample(row, x * 3 + 2, bitDepth);
+                    data.put(pos, toByte(r, bitDepth));
+                    data.put(pos + 1, toByte(g, bitDepth));
+                    data.put(pos + 2, toByte(b, bitDepth));
+                    if (trns != null) {
+                        boolean transparent = trns.length >= 3 && r == trns[0] && g == trns[1] && b == trns[2];
+                        data.put(pos + 3, transparent ? (byte) 0 : (byte) 0xFF);
+                    }
+                }
+                break;
+            case COLOR_PALETTE:
+                byte[] palette = header.palette;
+                byte[] alpha = header.paletteAlpha;
+                for (int x = 0; x < pixels; x++, pos += stride) {
+                    int index = getSample(row, x, bitDepth);
+                    if (palette != null && index * 3 + 2 < palette.length) {
+                        data.put(pos, palette[index * 3]);
+                        data.put(pos + 1, palette[index * 3 + 1]);
+                        data.put(pos + 2, palette[index * 3 + 2]);
+                    }
+                    if (alpha != null) {
+                        data.put(pos + 3, index < alpha.length ? alpha[index] : (byte) 0xFF);
+                    }
+                }
+                break;
+            default:
+                for (int x = 0; x < pixels; x++, pos += stride) {
+                    for (int c = 0; c < 4; c++) {
+                        data.put(pos + c, toByte(getSample(row, x * 4 + c, bitDepth), bitDepth));
+                    }
+                }
+                break;
+        }
+    }
+
+    /**
+     * Reads the data of consecutive IDAT chunks, skipping the chunk headers.
+     */
+    private static final class IdatInputStream extends InputStream {
+
+        private final DataInputStream in;
+        private int remaining;
+        private boolean done;
+
+        IdatInputStream(DataInputStream in, int length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (remaining == 0 && !done) {
+                // CRC of the previous chunk
+                skipFully(in, 4);
+                int length = in.readInt();
+                int type = in.readInt();
+                if (type != IDAT) {
+                    // the image data ends here, the rest of the file is not needed
+                    done = true;
+                } else {
+                    remaining = length;
+                }
+            }
+            return !done;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            remaining--;
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!nextChunk()) {
+                return -1;
+            }
+            int read = in.read(b, off, Math.min(len, remaining));
+            if (read < 0) {
+                throw new EOFException("Unexpected end of PNG file");
+            }
+            remaining -= read;
+            return read;
+        }
+    }
+
+    /**
+     * Inflates the image data on another thread, handing over blocks of
+     * inflated data through a bounded queue.
+     */
+    private static final class PipelinedInflaterInputStream extends InputStream implements Runnable {
+
+        private static final ByteBuffer END = ByteBuffer.allocate(0);
+
+        private final InputStream source;
+        private final ArrayBlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<ByteBuffer>(8);
+        private volatile boolean closed;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Throwable error;
+        private ByteBuffer block;
+
+        PipelinedInflaterInputStream(InputStream source) {
+            this.source = source;
+            inflaters.execute(this);
+        }
+
+        public void run() {
+            Inflater inflater = new Inflater();
+            byte[] input = new byte[BLOCK_SIZE];
+            try {
+                while (!closed && !inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        int read = source.read(input, 0, input.length);
+                        if (read < 0) {
+                            throw new EOFException("Unexpected end of PNG image data");
+                        }
+                        inflater.setInput(input, 0, read);
+                    }
+                    byte[] output = new byte[BLOCK_SIZE];
+                    int length = inflater.inflate(output);
+                    if (length > 0) {
+                        hand(ByteBuffer.wrap(output, 0, length));
+                    } else if (inflater.needsDictionary()) {
+                        throw new DataFormatException("PNG image data needs a dictionary");
+                    }
+                }
+            } catch (Throwable t) {
+                error = t;
+            } finally {
+                inflater.end();
+                try {
+                    hand(END);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    finished.countDown();
+                }
+            }
+        }
+
+        private void hand(ByteBuffer buffer) throws InterruptedException {
+            // the reader may stop taking blocks, e.g. after an error
+            while (!closed && !queue.offer(buffer, 100, TimeUnit.MILLISECONDS)) {
+            }
+        }
+
+        private boolean nextBlock() throws IOException {
+            while (block == null || !block.hasRemaining()) {
+                if (block == END) {
+                    return false;
+                }
+                try {
+                    block = queue.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while decoding PNG image", ex);
+                }
+                if (block == END && error != null) {
+                    throw new IOException("Failed to inflate PNG image data", error);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return nextBlock() ? block.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!nextBlock()) {
+                return -1;
+            }
+            len = Math.min(len, block.remaining());
+            block.get(b, off, len);
+            return len;
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            queue.clear();
+            // the source must not be used anymore once the image is loaded
+            try {
+                finished.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while decoding PNG image", ex);
+            }
+        }
+    }
+}
@@ -194,15 +194,15 @@ public final class TGALoader implements AssetLoader {
         }
 
 
-        // Allocate image data array
+        // Allocate the image data, it is written directly to the final buffer
         Format format;
-        byte[] rawData = null;
+        ByteBuffer rawData;
         int dl;
         if (pixelDepth == 32) {
-            rawData = new byte[width * height * 4];
+            rawData = BufferUtils.createByteBuffer(width * height * 4);
             dl = 4;
         } else {
-            rawData = new byte[width * height * 3];
+            rawData = BufferUtils.createByteBuffer(width * height * 3);
             dl = 3;
         }
         int rawDataIndex = 0;
@@ -225,22 +225,23 @@ public final class TGALoader implements AssetLoader {
                     for (int j = 0; j < width; j++) {
                         data[1] = dis.readByte();
                         data[0] = dis.readByte();
-                        rawData[rawDataIndex++] = (byte) (int) (getBitsAsByte(data, 1, 5) * scalar);
-                        rawData[rawDataIndex++] = (byte) (int) (getBitsAsByte(data, 6, 5) * scalar);
-                        rawData[rawDataIndex++] = (byte) (int) (getBitsAsByte(data, 11, 5) * scalar);
+                        rawData.put(rawDataIndex++, (byte) (int) (getBitsAsByte(data, 1, 5) * scalar));
+                        rawData.put(rawDataIndex++, (byte) (int) (getBitsAsByte(data, 6, 5) * scalar));
+                        rawData.put(rawDataIndex++, (byte) (int) (getBitsAsByte(data, 11, 5) * scalar));
                         if (dl == 4) {
                             // create an alpha channel
                             alpha = getBitsAsByte(data, 0, 1);
                             if (alpha == 1) {
                                 alpha = (byte) 255;
                             }
-                            rawData[rawDataIndex++] = alpha;
+                            rawData.put(rawDataIndex++, alpha);
                         }
                     }
                 }
 
                 format = dl == 4 ? Format.RGBA8 : Format.RGB8;
             } else if (pixelDepth == 24) {
+                byte[] scanline = new byte[width * dl];
                 for (int y = 0; y < height; y++) {
                     if (!flip) {
                         rawDataIndex = (height - 1 - y) * width * dl;
@@ -248,15 +249,17 @@ public final class TGALoader implements AssetLoader {
                         rawDataIndex = y * width * dl;
                     }
 
-                    dis.readFully(rawData, rawDataIndex, width * dl);
+                    dis.readFully(scanline);
+                    rawData.position(rawDataIndex);
+                    rawData.put(scanline);
 //                    for (int x = 0; x < width; x++) {
                     //read scanline
 //                        blue = dis.readByte();
 //                        green = dis.readByte();
 //                        red = dis.readByte();
-//                        rawData[rawDataIndex++] = red;
-//                        rawData[rawDataIndex++] = green;
-//                        rawData[rawDataIndex++] = blue;
+//                        rawData.put(rawDataIndex++, red);
+//                        rawData.put(rawDataIndex++, green);
+//                        rawData.put(rawDataIndex++, blue);
 //                    }
                 }
                 format = Format.BGR8;
@@ -271,10 +274,10 @@ public final class TGALoader implements AssetLoader {
                         green = dis.readByte();
                         red = dis.readByte();
                         alpha = dis.readByte();
-                        rawData[rawDataIndex++] = red;
-                        rawData[rawDataIndex++] = green;
-                        rawData[rawDataIndex++] = blue;
-                        rawData[rawDataIndex++] = alpha;
+                        rawData.put(rawDataIndex++, red);
+                        rawData.put(rawDataIndex++, green);
+                        rawData.put(rawDataIndex++, blue);
+                        rawData.put(rawDataIndex++, alpha);
                     }
                 }
                 format = Format.RGBA8;
@@ -306,10 +309,10 @@ public final class TGALoader implements AssetLoader {
                             red = dis.readByte();
                             alpha = dis.readByte();
                             while (count-- >= 0) {
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
-                                rawData[rawDataIndex++] = alpha;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
+                                rawData.put(rawDataIndex++, alpha);
                             }
                         } else {
                             // Its not RLE packed, but the next <count> pixels are raw.
@@ -319,10 +322,10 @@ public final class TGALoader implements AssetLoader {
                                 green = dis.readByte();
                                 red = dis.readByte();
                                 alpha = dis.readByte();
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
-                                rawData[rawDataIndex++] = alpha;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
+                                rawData.put(rawDataIndex++, alpha);
                             }
                         }
                     }
@@ -344,9 +347,9 @@ public final class TGALoader implements AssetLoader {
                             green = dis.readByte();
                             red = dis.readByte();
                             while (count-- >= 0) {
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
                             }
                         } else {
                             // Its not RLE packed, but the next <count> pixels are raw.
@@ -355,9 +358,9 @@ public final class TGALoader implements AssetLoader {
                                 blue = dis.readByte();
                                 green = dis.readByte();
                                 red = dis.readByte();
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
                             }
                         }
                     }
@@ -383,9 +386,9 @@ public final class TGALoader implements AssetLoader {
                             green = (byte) (int) (getBitsAsByte(data, 6, 5) * scalar);
                             red = (byte) (int) (getBitsAsByte(data, 11, 5) * scalar);
                             while (count-- >= 0) {
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
                             }
                         } else {
                             // Its not RLE packed, but the next <count> pixels are raw.
@@ -396,9 +399,9 @@ public final class TGALoader implements AssetLoader {
                                 blue = (byte) (int) (getBitsAsByte(data, 1, 5) * scalar);
                                 green = (byte) (int) (getBitsAsByte(data, 6, 5) * scalar);
                                 red = (byte) (int) (getBitsAsByte(data, 11, 5) * scalar);
-                                rawData[rawDataIndex++] = red;
-                                rawData[rawDataIndex++] = green;
-                                rawData[rawDataIndex++] = blue;
+                                rawData.put(rawDataIndex++, red);
+                                rawData.put(rawDataIndex++, green);
+                                rawData.put(rawDataIndex++, blue);
                             }
                         }
                     }
@@ -423,11 +426,11 @@ public final class TGALoader implements AssetLoader {
                         }
 
                         ColorMapEntry entry = cMapEntries[index];
-                        rawData[rawDataIndex++] = entry.blue;
-                        rawData[rawDataIndex++] = entry.green;
-                        rawData[rawDataIndex++] = entry.red;
+                        rawData.put(rawDataIndex++, entry.blue);
+                        rawData.put(rawDataIndex++, entry.green);
+                        rawData.put(rawDataIndex++, entry.red);
                         if (dl == 4) {
-                            rawData[rawDataIndex++] = entry.alpha;
+                            rawData.put(rawDataIndex++, entry.alpha);
                         }
 
                     }
@@ -444,11 +447,11 @@ public final class TGALoader implements AssetLoader {
                         }
 
                         ColorMapEntry entry = cMapEntries[index];
-                        rawData[rawDataIndex++] = entry.blue;
-                        rawData[rawDataIndex++] = entry.green;
-                        rawData[rawDataIndex++] = entry.red;
+                        rawData.put(rawDataIndex++, entry.blue);
+                        rawData.put(rawDataIndex++, entry.green);
+                        rawData.put(rawDataIndex++, entry.red);
                         if (dl == 4) {
-                            rawData[rawDataIndex++] = entry.alpha;
+                            rawData.put(rawDataIndex++, entry.alpha);
                         }
                     }
                 }
@@ -463,17 +466,13 @@ public final class TGALoader implements AssetLoader {
 
 
         in.close();
-        // Get a pointer to the image memory
-        ByteBuffer scratch = BufferUtils.createByteBuffer(rawData.length);
-        scratch.clear();
-        scratch.put(rawData);
-        scratch.rewind();
+        rawData.clear();
         // Create the Image object
         Image textureImage = new Image();
         textureImage.setFormat(format);
         textureImage.setWidth(width);
         textureImage.setHeight(height);
-        textureImage.setData(scratch);
+        textureImage.setData(rawData);
         return textureImage;
     }
 
@@ -44,17 +44,17 @@ public class SrTdRiPixelReader implements PixelReader {
 
     @Override
     public int readPixels(int pixelWidth, int pixelHeight, byte[] pixelData, ByteBuffer buffer, DataInput in) throws IOException {
-        int pixelRead = 0;
+        // rows are stored top down, read one scanline at a time
+        // and write it to the flipped row
+        byte[] scanline = new byte[pixelWidth * pixelData.length];
+        int start = buffer.position();
         for (int row = pixelHeight - 1; row >= 0; row--) {
-            for (int pixel = 0; pixel < pixelWidth; pixel++) {
-                in.readFully(pixelData);
-                for (int i = 0; i < pixelData.length; i++) {
-                    buffer.put((row * pixelWidth + pixel) * pixelData.length + i, pixelData[i]);
-                }
-                pixelRead += pixelData.length;
-            }
+            in.readFully(scanline);
+            buffer.position(start + row * scanline.length);
+            buffer.put(scanline);
         }
-        return pixelRead;
+        buffer.position(start + scanline.length * pixelHeight);
+        return scanline.length * pixelHeight;
     }
 
 }
@@ -44,15 +44,13 @@ public class SrTuRoPixelReader implements PixelReader {
 
     @Override
     public int readPixels(int pixelWidth, int pixelHeight, byte[] pixelData, ByteBuffer buffer, DataInput in) throws IOException {
-        int pixelRead = 0;
+        // rows are stored in the same order, read one scanline at a time
+        byte[] scanline = new byte[pixelWidth * pixelData.length];
         for (int row = 0; row < pixelHeight; row++) {
-            for (int pixel = 0; pixel < pixelWidth; pixel++) {
-                in.readFully(pixelData);
-                buffer.put(pixelData);
-                pixelRead += pixelData.length;
-            }
+            in.readFully(scanline);
+            buffer.put(scanline);
         }
-        return pixelRead;
+        return scanline.length * pixelHeight;
     }
 
 }
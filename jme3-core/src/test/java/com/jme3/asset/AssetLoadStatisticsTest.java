@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the measurements reported to {@link AssetLoadTimingListener}s
+ * and their aggregation by {@link AssetLoadStatistics}.
+ *
+ * @author jMonkeyEngine
+ */
+public class AssetLoadStatisticsTest {
+
+    private static final int SIZE = 1000;
+
+    public static class DataLocator implements AssetLocator {
+
+        public void setRootPath(String rootPath) {
+        }
+
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(new byte[SIZE]);
+                }
+            };
+        }
+    }
+
+    public static class ReadingLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            InputStream in = assetInfo.openStream();
+            byte[] buffer = new byte[100];
+            int total = 0;
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                total += read;
+            }
+            in.close();
+            return total;
+        }
+    }
+
+    private static class RecordingListener extends AssetLoadStatistics {
+
+        final List<AssetLoadEvent> events = new ArrayList<AssetLoadEvent>();
+
+        @Override
+        public void assetLoadTimed(AssetLoadEvent event) {
+            super.assetLoadTimed(event);
+            events.add(event);
+        }
+    }
+
+    private AssetManager assetManager;
+    private RecordingListener stats;
+
+    @Before
+    public void setUp() {
+        assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, DataLocator.class);
+        assetManager.registerLoader(ReadingLoader.class, "bin");
+        stats = new RecordingListener();
+        assetManager.addAssetEventListener(stats);
+    }
+
+    @Test
+    public void testLoadAndCacheHit() {
+        AssetKey<Integer> key = new AssetKey<Integer>("data.bin");
+        assertEquals(Integer.valueOf(SIZE), assetManager.loadAsset(key));
+        assetManager.loadAsset(key);
+
+        assertEquals(2, stats.events.size());
+        AssetLoadEvent load = stats.events.get(0);
+        assertEquals(key, load.getKey());
+        assertFalse(load.isCacheHit());
+        assertEquals(ReadingLoader.class, load.getLoaderClass());
+        assertEquals(SIZE, load.getBytesRead());
+        assertTrue(load.getLoadNanos() > 0);
+        assertEquals(Thread.currentThread().getName(), load.getThreadName());
+
+        AssetLoadEvent hit = stats.events.get(1);
+        assertTrue(hit.isCacheHit());
+        assertNull(hit.getLoaderClass());
+        assertEquals(0, hit.getBytesRead());
+
+        assertEquals(2, stats.getRequestCount());
+        assertEquals(1, stats.getCacheHitCount());
+        assertEquals(1, stats.getCacheMissCount());
+        assertEquals(SIZE, stats.getBytesRead());
+        assertArrayEquals(new String[]{AssetLoadStatistics.CACHE, ReadingLoader.class.getName()},
+                stats.getLoaderNames());
+
+        AssetLoadStatistics.LoaderStatistics loader = stats.getLoaderStatistics(ReadingLoader.class.getName());
+        assertEquals(1, loader.getCount());
+        assertEquals(load.getTotalNanos(), loader.getTotalNanos());
+        assertEquals(load.getTotalNanos(), loader.getMaxNanos());
+        assertTrue(loader.getPercentileNanos(50) >= load.getTotalNanos());
+    }
+
+    @Test
+    public void testNoTimingWithoutTimingListener() {
+        assetManager.removeAssetEventListener(stats);
+        assetManager.loadAsset(new AssetKey<Integer>("data.bin"));
+        assertTrue(stats.events.isEmpty());
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, AssetLoadStatistics.getBucket(0));
+        assertEquals(0, AssetLoadStatistics.getBucket(1999));
+        assertEquals(1, AssetLoadStatistics.getBucket(2000));
+        assertEquals(1, AssetLoadStatistics.getBucket(3999));
+        assertEquals(2, AssetLoadStatistics.getBucket(4000));
+        assertEquals(AssetLoadStatistics.BUCKET_COUNT - 1, AssetLoadStatistics.getBucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testRegisterMBean() throws Exception {
+        assetManager.loadAsset(new AssetKey<Integer>("data.bin"));
+        assertTrue(stats.register("test"));
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("com.jme3.asset:type=AssetLoadStatistics,name=\"test\"");
+            assertEquals(1L, server.getAttribute(name, "CacheMissCount"));
+            String[] report = (String[]) server.getAttribute(name, "LoaderReport");
+            assertEquals(1, report.length);
+            assertTrue(report[0].startsWith(ReadingLoader.class.getName()));
+
+            server.invoke(name, "reset", null, null);
+            assertEquals(0, stats.getRequestCount());
+        } finally {
+            stats.unregister();
+        }
+    }
+}
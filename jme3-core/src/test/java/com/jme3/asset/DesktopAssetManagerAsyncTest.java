@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.asset.cache.AssetCache;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies {@link DesktopAssetManager#loadAssetAsync(com.jme3.asset.AssetKey)}.
+ *
+ * @author jMonkeyEngine
+ */
+public class DesktopAssetManagerAsyncTest {
+
+    private static final AtomicInteger loadCount = new AtomicInteger();
+
+    public static class SlowLocator implements AssetLocator {
+
+        public void setRootPath(String rootPath) {
+        }
+
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            if (key.getName().startsWith("missing")) {
+                return null;
+            }
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    return new ByteArrayInputStream(new byte[0]);
+                }
+            };
+        }
+    }
+
+    public static class SlowLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            return new Object();
+        }
+    }
+
+    private static class UncachedKey extends AssetKey<Object> {
+
+        public UncachedKey(String name) {
+            super(name);
+        }
+
+        @Override
+        public Class<? extends AssetCache> getCacheType() {
+            return null;
+        }
+    }
+
+    private AssetManager assetManager;
+
+    @Before
+    public void setUp() {
+        loadCount.set(0);
+        assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, SlowLocator.class);
+        assetManager.registerLoader(SlowLoader.class, "slow");
+    }
+
+    @Test
+    public void testConcurrentRequestsLoadOnce() {
+        AssetKey<Object> key = new AssetKey<Object>("asset.slow");
+        List<CompletableFuture<Object>> futures = new ArrayList<CompletableFuture<Object>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(assetManager.loadAssetAsync(key));
+        }
+        Object first = futures.get(0).join();
+        for (CompletableFuture<Object> future : futures) {
+            assertSame(first, future.join());
+        }
+        assertEquals(1, loadCount.get());
+        assertSame(first, assetManager.loadAsset(key));
+    }
+
+    @Test
+    public void testUncachedRequestsLoadEachTime() {
+        CompletableFuture<Object> a = assetManager.loadAssetAsync(new UncachedKey("asset.slow"));
+        CompletableFuture<Object> b = assetManager.loadAssetAsync(new UncachedKey("asset.slow"));
+        assertNotSame(a.join(), b.join());
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void testFailureIsPropagated() {
+        CompletableFuture<Object> future = assetManager.loadAssetAsync(new AssetKey<Object>("missing.slow"));
+        try {
+            future.join();
+            fail("Expected AssetNotFoundException");
+        } catch (CompletionException ex) {
+            assertTrue(ex.getCause() instanceof AssetNotFoundException);
+        }
+
+        // a failed load must not be remembered
+        assertTrue(assetManager.loadAssetAsync(new AssetKey<Object>("asset.slow")).join() != null);
+        assertEquals(1, loadCount.get());
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset;
+
+import com.jme3.audio.AudioBuffer;
+import com.jme3.audio.AudioKey;
+import com.jme3.scene.Node;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.BufferedReader;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link PersistentAssetCache} survives asset manager
+ * instances and detects changed sources.
+ *
+ * @author jMonkeyEngine
+ */
+public class PersistentAssetCacheTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Map<String, String> files = new ConcurrentHashMap<String, String>();
+    private static final AtomicInteger loadCount = new AtomicInteger();
+    private static final AtomicInteger openCount = new AtomicInteger();
+
+    public static class MemoryLocator implements AssetLocator {
+
+        public void setRootPath(String rootPath) {
+        }
+
+        public AssetInfo locate(AssetManager manager, AssetKey key) {
+            final String content = files.get(key.getName());
+            if (content == null) {
+                return null;
+            }
+            return new AssetInfo(manager, key) {
+                @Override
+                public InputStream openStream() {
+                    openCount.incrementAndGet();
+                    return new ByteArrayInputStream(content.getBytes(UTF8));
+                }
+            };
+        }
+    }
+
+    /**
+     * Returns the text of the asset, with lines of the form "include name"
+     * replaced by the text of that asset.
+     */
+    public static class TextLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(assetInfo.openStream(), UTF8));
+            StringBuilder sb = new StringBuilder();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("include ")) {
+                    try {
+                        sb.append(assetInfo.getManager().loadAsset(new AssetKey<String>(line.substring(8))));
+                    } catch (AssetNotFoundException ex) {
+                        sb.append("missing");
+                    }
+                } else {
+                    sb.append(line);
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    public static class NodeLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            return new Node(assetInfo.getKey().getName());
+        }
+    }
+
+    /**
+     * Returns an asset that cannot be stored, without reading the source.
+     */
+    public static class AudioLoader implements AssetLoader {
+
+        public Object load(AssetInfo assetInfo) throws IOException {
+            loadCount.incrementAndGet();
+            return new AudioBuffer();
+        }
+    }
+
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        files.clear();
+        loadCount.set(0);
+        openCount.set(0);
+        directory = File.createTempFile("jme3", "cache");
+        directory.delete();
+    }
+
+    @After
+    public void tearDown() {
+        new PersistentAssetCache(directory).clear();
+        directory.delete();
+    }
+
+    private DesktopAssetManager createAssetManager(long maxSize) {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(null, MemoryLocator.class);
+        assetManager.registerLoader(TextLoader.class, "txt");
+        assetManager.registerLoader(NodeLoader.class, "node");
+        assetManager.registerLoader(AudioLoader.class, "snd");
+        assetManager.setPersistentCache(new PersistentAssetCache(directory, maxSize));
+        return assetManager;
+    }
+
+    private String load(String name) {
+        return createAssetManager(PersistentAssetCache.DEFAULT_MAX_SIZE).loadAsset(new AssetKey<String>(name));
+    }
+
+    @Test
+    public void testWarmStart() {
+        files.put("a.txt", "hello");
+        assertEquals("hello", load("a.txt"));
+        assertEquals("hello", load("a.txt"));
+        assertEquals(1, loadCount.get());
+
+        files.put("a.txt", "changed");
+        assertEquals("changed", load("a.txt"));
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void testSavable() {
+        files.put("a.node", "");
+        createAssetManager(PersistentAssetCache.DEFAULT_MAX_SIZE).loadModel("a.node");
+        Node node = (Node) createAssetManager(PersistentAssetCache.DEFAULT_MAX_SIZE).loadModel("a.node");
+        assertEquals("a.node", node.getName());
+        assertEquals(1, loadCount.get());
+    }
+
+    @Test
+    public void testDependencies() {
+        files.put("main.txt", "include lib.txt");
+        files.put("lib.txt", "v1");
+        assertEquals("v1", load("main.txt"));
+        assertEquals("v1", load("main.txt"));
+        assertEquals(2, loadCount.get());
+
+        files.put("lib.txt", "v2");
+        assertEquals("v2", load("main.txt"));
+    }
+
+    @Test
+    public void testCachedDependencyOfDependency() {
+        files.put("top.txt", "include mid.txt");
+        files.put("mid.txt", "include leaf.txt");
+        files.put("leaf.txt", "v1");
+        // mid.txt is served from the cache while top.txt is created
+        assertEquals("v1", load("mid.txt"));
+        assertEquals("v1", load("top.txt"));
+        assertEquals("v1", load("top.txt"));
+        assertEquals(3, loadCount.get());
+
+        files.put("leaf.txt", "v2");
+        assertEquals("v2", load("top.txt"));
+    }
+
+    @Test
+    public void testMissingDependencyIsNotCached() {
+        files.put("main.txt", "include lib.txt");
+        assertEquals("missing", load("main.txt"));
+        files.put("lib.txt", "found");
+        assertEquals("found", load("main.txt"));
+    }
+
+    @Test
+    public void testCorruptEntry() throws IOException {
+        files.put("a.txt", "hello");
+        load("a.txt");
+        for (File file : directory.listFiles()) {
+            java.io.FileOutputStream out = new java.io.FileOutputStream(file);
+            out.write(new byte[]{1, 2, 3});
+            out.close();
+        }
+        assertEquals("hello", load("a.txt"));
+        assertEquals(2, loadCount.get());
+    }
+
+    @Test
+    public void testUncacheableIsNotRead() {
+        files.put("a.snd", "samples");
+        DesktopAssetManager assetManager = createAssetManager(PersistentAssetCache.DEFAULT_MAX_SIZE);
+        assetManager.loadAudio(new AudioKey("a.snd", true));
+        assetManager.loadAudio(new AudioKey("a.snd", false));
+        assertEquals(2, loadCount.get());
+        assertEquals(0, openCount.get());
+
+        // the first load finds out that the output of the loader is not stored
+        assetManager.loadAsset(new AssetKey<Object>("a.snd"));
+        assertEquals(1, openCount.get());
+        assetManager.clearCache();
+        assetManager.loadAsset(new AssetKey<Object>("a.snd"));
+        assertEquals(4, loadCount.get());
+        assertEquals(1, openCount.get());
+        assertEquals(0, assetManager.getPersistentCache().getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        DesktopAssetManager assetManager = createAssetManager(200);
+        for (int i = 0; i < 10; i++) {
+            files.put(i + ".txt", "content of asset " + i);
+            assetManager.loadAsset(new AssetKey<String>(i + ".txt"));
+        }
+        PersistentAssetCache cache = assetManager.getPersistentCache();
+        assertTrue(cache.getSize() <= 200);
+        assertTrue(cache.getSize() > 0);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.cache;
+
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.cache.BoundedAssetCache.EvictionPolicy;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.util.BufferUtils;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link BoundedAssetCache} stays within its budget.
+ *
+ * @author jMonkeyEngine
+ */
+public class BoundedAssetCacheTest {
+
+    private static Texture2D createTexture(int size) {
+        Image image = new Image(Image.Format.Luminance8, size, 1,
+                BufferUtils.createByteBuffer(size), ColorSpace.Linear);
+        return new Texture2D(image);
+    }
+
+    @Test
+    public void testEstimateSize() {
+        BoundedAssetCache cache = new BoundedAssetCache();
+        assertEquals(1000, cache.estimateSize(createTexture(1000)));
+
+        Box box = new Box(1, 1, 1);
+        long meshSize = cache.estimateSize(box);
+        assertTrue(meshSize > 0);
+
+        // a shared mesh is counted once
+        Node node = new Node("node");
+        node.attachChild(new Geometry("a", box));
+        node.attachChild(new Geometry("b", box));
+        assertEquals(meshSize, cache.estimateSize(node));
+
+        assertEquals(BoundedAssetCache.DEFAULT_ASSET_SIZE, cache.estimateSize(new Object()));
+    }
+
+    @Test
+    public void testLRUEviction() {
+        BoundedAssetCache cache = new BoundedAssetCache(3000, EvictionPolicy.LRU);
+        AssetKey<Texture2D> a = new AssetKey<Texture2D>("a.png");
+        AssetKey<Texture2D> b = new AssetKey<Texture2D>("b.png");
+        AssetKey<Texture2D> c = new AssetKey<Texture2D>("c.png");
+        AssetKey<Texture2D> d = new AssetKey<Texture2D>("d.png");
+
+        cache.addToCache(a, createTexture(1000));
+        cache.addToCache(b, createTexture(1000));
+        cache.addToCache(c, createTexture(1000));
+        assertEquals(3000, cache.getSize());
+
+        assertNotNull(cache.getFromCache(a));
+        cache.addToCache(d, createTexture(1000));
+
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(a));
+        assertNotNull(cache.getFromCache(c));
+        assertNotNull(cache.getFromCache(d));
+        assertEquals(3000, cache.getSize());
+        assertEquals(3, cache.getAssetCount());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void testLFUEviction() {
+        BoundedAssetCache cache = new BoundedAssetCache(2000, EvictionPolicy.LFU);
+        AssetKey<Texture2D> a = new AssetKey<Texture2D>("a.png");
+        AssetKey<Texture2D> b = new AssetKey<Texture2D>("b.png");
+        AssetKey<Texture2D> c = new AssetKey<Texture2D>("c.png");
+
+        cache.addToCache(a, createTexture(1000));
+        cache.addToCache(b, createTexture(1000));
+        cache.getFromCache(a);
+        cache.getFromCache(a);
+        cache.getFromCache(b);
+        // a is older but used more often
+        cache.addToCache(c, createTexture(1000));
+
+        assertNotNull(cache.getFromCache(a));
+        assertNull(cache.getFromCache(b));
+        assertNotNull(cache.getFromCache(c));
+    }
+
+    @Test
+    public void testOversizedAndShrink() {
+        BoundedAssetCache cache = new BoundedAssetCache(3000, EvictionPolicy.LRU);
+        AssetKey<Texture2D> big = new AssetKey<Texture2D>("big.png");
+        cache.addToCache(big, createTexture(4000));
+        assertNull(cache.getFromCache(big));
+        assertEquals(0, cache.getSize());
+
+        for (int i = 0; i < 3; i++) {
+            cache.addToCache(new AssetKey<Texture2D>(i + ".png"), createTexture(1000));
+        }
+        cache.setMaxSize(1000);
+        assertEquals(1000, cache.getSize());
+        assertNotNull(cache.getFromCache(new AssetKey<Texture2D>("2.png")));
+
+        assertTrue(cache.deleteFromCache(new AssetKey<Texture2D>("2.png")));
+        assertEquals(0, cache.getSize());
+        cache.addToCache(big, createTexture(500));
+        cache.clearCache();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getAssetCount());
+    }
+}
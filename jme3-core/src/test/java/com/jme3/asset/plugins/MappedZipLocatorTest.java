@@ -0,0 +1,185 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.asset.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.AssetKey;
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.asset.ModelKey;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.export.binary.BinaryImporter;
+import com.jme3.scene.Node;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link MappedZipLocator} returns the same data as the
+ * archive contains.
+ *
+ * @author jMonkeyEngine
+ */
+public class MappedZipLocatorTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private File file;
+    private byte[] large;
+    private byte[] model;
+
+    private static void addEntry(ZipOutputStream zip, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[100];
+        int read;
+        while ((read = in.read(buf)) != -1) {
+            out.write(buf, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        large = new byte[100000];
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) (i % 251);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter.getInstance().save(new Node("zipped"), out);
+        model = out.toByteArray();
+
+        file = File.createTempFile("jme3", ".zip");
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        zip.setComment("archive comment");
+        zip.putNextEntry(new ZipEntry("Textures/"));
+        zip.closeEntry();
+        addEntry(zip, "Textures/stored.txt", "stored text".getBytes(UTF8), true);
+        addEntry(zip, "Textures/deflated.txt", "deflated text".getBytes(UTF8), false);
+        addEntry(zip, "large.bin", large, false);
+        addEntry(zip, "Models/node.j3o", model, true);
+        zip.close();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private MappedZipLocator createLocator() {
+        MappedZipLocator locator = new MappedZipLocator();
+        locator.setRootPath(file.getAbsolutePath());
+        return locator;
+    }
+
+    @Test
+    public void testLocate() throws IOException {
+        MappedZipLocator locator = createLocator();
+        assertNull(locator.locate(null, new AssetKey("missing.txt")));
+        assertNull(locator.locate(null, new AssetKey("Textures/")));
+
+        AssetInfo stored = locator.locate(null, new AssetKey("/Textures/stored.txt"));
+        assertEquals("stored text", new String(readFully(stored.openStream()), UTF8));
+        ByteBuffer buffer = stored.getBuffer();
+        assertTrue(buffer.isReadOnly());
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        assertEquals("stored text", new String(bytes, UTF8));
+
+        AssetInfo deflated = locator.locate(null, new AssetKey("Textures/deflated.txt"));
+        assertNull(deflated.getBuffer());
+        assertEquals("deflated text", new String(readFully(deflated.openStream()), UTF8));
+
+        assertArrayEquals(large, readFully(locator.locate(null, new AssetKey("large.bin")).openStream()));
+    }
+
+    @Test
+    public void testModifiedArchive() throws IOException {
+        MappedZipLocator old = createLocator();
+        ZipOutputStream zip = new ZipOutputStream(new FileOutputStream(file));
+        addEntry(zip, "Textures/stored.txt", "replaced".getBytes(UTF8), true);
+        zip.close();
+        file.setLastModified(file.lastModified() + 2000);
+
+        MappedZipLocator locator = createLocator();
+        AssetInfo info = locator.locate(null, new AssetKey("Textures/stored.txt"));
+        assertEquals("replaced", new String(readFully(info.openStream()), UTF8));
+        assertNull(locator.locate(null, new AssetKey("large.bin")));
+        assertNotNull(old.locate(null, new AssetKey("large.bin")));
+    }
+
+    @Test
+    public void testIndexReleasedWithLocators() throws InterruptedException {
+        MappedZipLocator locator = createLocator();
+        assertTrue(MappedZipLocator.isIndexed(file));
+        locator = null;
+        for (int i = 0; i < 100 && MappedZipLocator.isIndexed(file); i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertFalse(MappedZipLocator.isIndexed(file));
+    }
+
+    @Test
+    public void testLoadFromArchive() {
+        DesktopAssetManager assetManager = new DesktopAssetManager();
+        assetManager.registerLocator(file.getAbsolutePath(), MappedZipLocator.class);
+        assetManager.registerLoader(BinaryImporter.class, "j3o");
+        Node node = (Node) assetManager.loadAsset(new ModelKey("Models/node.j3o"));
+        assertEquals("zipped", node.getName());
+    }
+}
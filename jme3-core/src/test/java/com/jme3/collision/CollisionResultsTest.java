@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link CollisionResults} with primitive storage against the
+ * default object storage.
+ *
+ * @author jMonkeyEngine
+ */
+public class CollisionResultsTest {
+
+    private static Node createScene() {
+        Node scene = new Node("scene");
+        Random random = new Random(1);
+        for (int i = 0; i < 30; i++) {
+            Geometry geom = new Geometry("geom" + i, i % 2 == 0 ? new Sphere(12, 12, 2f) : new Box(1f, 2f, 1f));
+            geom.setLocalTranslation(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10,
+                                     random.nextFloat() * 20 - 10);
+            scene.attachChild(geom);
+        }
+        scene.updateGeometricState();
+        return scene;
+    }
+
+    private static Ray createRay(Random random) {
+        Vector3f origin = new Vector3f(random.nextFloat() * 60 - 30, random.nextFloat() * 60 - 30, -40);
+        Vector3f target = new Vector3f(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, 0);
+        return new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+    }
+
+    private static void assertSameResult(CollisionResult expected, CollisionResult actual) {
+        assertEquals(expected.getDistance(), actual.getDistance(), 0f);
+        assertEquals(expected.getContactPoint(), actual.getContactPoint());
+        assertEquals(expected.getContactNormal(), actual.getContactNormal());
+        assertEquals(expected.getTriangleIndex(), actual.getTriangleIndex());
+        assertSame(expected.getGeometry(), actual.getGeometry());
+    }
+
+    @Test
+    public void testSameResultsAsObjectStorage() {
+        Node scene = createScene();
+        Random random = new Random(2);
+        CollisionResults expected = new CollisionResults();
+        CollisionResults actual = new CollisionResults(CollisionResults.Mode.All);
+        int hits = 0;
+        for (int i = 0; i < 200; i++) {
+            Ray ray = createRay(random);
+            expected.clear();
+            actual.clear();
+            assertEquals(scene.collideWith(ray, expected), scene.collideWith(ray, actual));
+            assertEquals(expected.size(), actual.size());
+            hits += actual.size();
+
+            int index = 0;
+            for (CollisionResult result : actual) {
+                assertSameResult(expected.getCollision(index), result);
+                assertEquals(expected.getCollision(index).getDistance(), actual.getDistance(index), 0f);
+                assertEquals(expected.getCollision(index).getTriangleIndex(), actual.getTriangleIndex(index));
+                assertSame(expected.getCollision(index).getGeometry(), actual.getGeometry(index));
+                assertEquals(expected.getCollision(index).getContactPoint(),
+                             actual.getContactPoint(index, new Vector3f()));
+                index++;
+            }
+            assertEquals(actual.size(), index);
+            if (actual.size() > 0) {
+                assertSameResult(expected.getClosestCollision(), actual.getClosestCollision());
+                assertSameResult(expected.getFarthestCollision(), actual.getFarthestCollision());
+            }
+        }
+        assertTrue(hits > 100);
+    }
+
+    @Test
+    public void testManyBoundHits() {
+        // every triangle of the sphere is a hit, each one sets its geometry and triangle index
+        Geometry geom = new Geometry("sphere", new Sphere(200, 200, 2f));
+        geom.updateGeometricState();
+        BoundingBox box = new BoundingBox(new Vector3f(), 3f, 3f, 3f);
+        CollisionResults expected = new CollisionResults();
+        CollisionResults actual = new CollisionResults(CollisionResults.Mode.All);
+        assertEquals(geom.collideWith(box, expected), geom.collideWith(box, actual));
+        assertEquals(expected.size(), actual.size());
+        assertTrue(actual.size() > 50000);
+        for (int i = 0; i < actual.size(); i++) {
+            assertEquals(expected.getCollision(i).getTriangleIndex(), actual.getTriangleIndex(i));
+            assertSame(geom, actual.getGeometry(i));
+        }
+    }
+
+    @Test
+    public void testClosestAndAny() {
+        Node scene = createScene();
+        Random random = new Random(3);
+        CollisionResults all = new CollisionResults(CollisionResults.Mode.All);
+        CollisionResults closest = new CollisionResults(CollisionResults.Mode.Closest);
+        CollisionResults any = new CollisionResults(CollisionResults.Mode.Any);
+        for (int i = 0; i < 200; i++) {
+            Ray ray = createRay(random);
+            all.clear();
+            closest.clear();
+            any.clear();
+            scene.collideWith(ray, all);
+            scene.collideWith(ray, closest);
+            scene.collideWith(ray, any);
+            assertFalse(closest.isDone());
+            if (all.size() == 0) {
+                assertEquals(0, closest.size());
+                assertEquals(0, any.size());
+                assertFalse(any.isDone());
+                continue;
+            }
+            assertEquals(1, closest.size());
+            assertSameResult(all.getClosestCollision(), closest.getClosestCollision());
+            assertEquals(1, any.size());
+            assertTrue(any.isDone());
+            assertNotNull(any.getGeometry(0));
+        }
+    }
+
+    @Test
+    public void testPrimitiveSort() {
+        Random random = new Random(4);
+        CollisionResults expected = new CollisionResults();
+        CollisionResults actual = new CollisionResults(CollisionResults.Mode.All);
+        float[] values = {3f, -1f, 0f, -0f, 2.5f, Float.POSITIVE_INFINITY, 1e-20f, -7f};
+        for (int i = 0; i < 500; i++) {
+            // many ties, the triangle index tells which one was added first
+            float distance = values[random.nextInt(values.length)];
+            Vector3f point = new Vector3f(i, 0, 0);
+            CollisionResult result = new CollisionResult(point, distance);
+            result.setTriangleIndex(i);
+            expected.addCollision(result);
+            actual.addCollision(point, null, distance, i);
+        }
+        for (int i = 0; i < 500; i++) {
+            assertSameResult(expected.getCollision(i), actual.getCollision(i));
+        }
+        assertEquals(-7f, actual.getClosestCollision().getDistance(), 0f);
+        assertEquals(Float.POSITIVE_INFINITY, actual.getFarthestCollision().getDistance(), 0f);
+    }
+
+    @Test
+    public void testReuse() {
+        CollisionResults results = new CollisionResults(CollisionResults.Mode.All);
+        for (int i = 0; i < 10; i++) {
+            results.addReusedCollision(i, 0, 0, 10 - i);
+        }
+        CollisionResult closest = results.getClosestCollision();
+        assertEquals(1f, closest.getDistance(), 0f);
+        assertEquals(new Vector3f(9, 0, 0), closest.getContactPoint());
+        assertNull(closest.getContactNormal());
+        assertNull(results.getContactNormal(0, new Vector3f()));
+
+        results.clear();
+        assertEquals(0, results.size());
+        assertNull(results.getClosestCollision());
+        results.addCollision(new Vector3f(1, 2, 3), Vector3f.UNIT_Y, 5f, 7);
+        // views are reused between queries
+        assertSame(closest, results.getClosestCollision());
+        assertEquals(Vector3f.UNIT_Y, closest.getContactNormal());
+        assertEquals(7, closest.getTriangleIndex());
+        assertEquals("CollisionResults[" + closest + "]", results.toString());
+
+        try {
+            results.getCollision(1);
+            fail();
+        } catch (IndexOutOfBoundsException ex) {
+        }
+    }
+}
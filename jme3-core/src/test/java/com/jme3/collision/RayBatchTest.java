@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision;
+
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link RayBatch} finds the same nearest hits as colliding
+ * each ray on its own.
+ *
+ * @author jMonkeyEngine
+ */
+public class RayBatchTest {
+
+    private static Node createScene() {
+        Node scene = new Node("scene");
+        Random random = new Random(1);
+        for (int i = 0; i < 40; i++) {
+            Geometry geom = new Geometry("geom" + i, i % 2 == 0 ? new Sphere(24, 24, 3f) : new Box(2f, 1f, 3f));
+            geom.setLocalTranslation(random.nextFloat() * 30 - 15, random.nextFloat() * 30 - 15,
+                                     random.nextFloat() * 30 - 15);
+            geom.setLocalRotation(new Quaternion().fromAngles(random.nextFloat(), random.nextFloat(), 0));
+            Node parent = new Node("parent" + i);
+            parent.attachChild(geom);
+            parent.move(1, 0, -2);
+            scene.attachChild(parent);
+        }
+        return scene;
+    }
+
+    /**
+     * A fan of rays from each of a few eye points, sorted by angle so that
+     * packets are coherent.
+     */
+    private static float[][] createRays(int count) {
+        Random random = new Random(2);
+        float[] origins = new float[count * 3];
+        float[] directions = new float[count * 3];
+        Vector3f eye = new Vector3f();
+        Vector3f dir = new Vector3f();
+        for (int i = 0; i < count; i++) {
+            if (i % 64 == 0) {
+                eye.set(random.nextFloat() * 80 - 40, random.nextFloat() * 80 - 40, random.nextFloat() * 80 - 40);
+            }
+            float yaw = FastMath.TWO_PI * (i % 64) / 64f;
+            float pitch = random.nextFloat() - 0.5f;
+            dir.set(FastMath.cos(yaw), pitch, FastMath.sin(yaw)).normalizeLocal();
+            if (i % 128 >= 64) {
+                // aim at the middle of the scene instead
+                dir.set(random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10, random.nextFloat() * 20 - 10)
+                   .subtractLocal(eye).normalizeLocal();
+            }
+            origins[i * 3] = eye.x;
+            origins[i * 3 + 1] = eye.y;
+            origins[i * 3 + 2] = eye.z;
+            directions[i * 3] = dir.x;
+            directions[i * 3 + 1] = dir.y;
+            directions[i * 3 + 2] = dir.z;
+        }
+        return new float[][]{origins, directions};
+    }
+
+    @Test
+    public void testSameHitsAsSingleRays() {
+        Node scene = createScene();
+        int count = 1000;
+        float[][] rays = createRays(count);
+        float[] distances = new float[count];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        for (int i = 0; i < count; i += 5) {
+            distances[i] = 30f;
+        }
+        float[] limits = distances.clone();
+        int[] triangles = new int[count];
+        Geometry[] geometries = new Geometry[count];
+
+        int hits = new RayBatch().collideWith(scene, rays[0], rays[1], count, distances, triangles, geometries);
+        assertTrue(hits > count / 4);
+
+        int expectedHits = 0;
+        CollisionResults results = new CollisionResults();
+        for (int i = 0; i < count; i++) {
+            Ray ray = new Ray(new Vector3f(rays[0][i * 3], rays[0][i * 3 + 1], rays[0][i * 3 + 2]),
+                              new Vector3f(rays[1][i * 3], rays[1][i * 3 + 1], rays[1][i * 3 + 2]));
+            ray.setLimit(limits[i]);
+            results.clear();
+            scene.collideWith(ray, results);
+            CollisionResult closest = results.size() > 0 ? results.getClosestCollision() : null;
+            if (closest == null || closest.getDistance() >= limits[i]) {
+                assertNull(geometries[i]);
+                assertEquals(-1, triangles[i]);
+                assertEquals(limits[i], distances[i], 0f);
+                continue;
+            }
+            expectedHits++;
+            assertSame(closest.getGeometry(), geometries[i]);
+            assertEquals(closest.getTriangleIndex(), triangles[i]);
+            assertEquals(closest.getDistance(), distances[i], 1e-3f);
+        }
+        assertEquals(expectedHits, hits);
+    }
+
+    @Test
+    public void testScaledGeometry() {
+        Geometry geom = new Geometry("sphere", new Sphere(24, 24, 3f));
+        geom.setLocalScale(2f);
+        geom.setLocalTranslation(0, 0, 5);
+        Node scene = new Node("scene");
+        scene.attachChild(geom);
+
+        float[] distances = {Float.POSITIVE_INFINITY};
+        int[] triangles = new int[1];
+        Geometry[] geometries = new Geometry[1];
+        assertEquals(1, new RayBatch().collideWith(scene, new float[]{0, 0, -20}, new float[]{0, 0, 1}, 1,
+                                                   distances, triangles, geometries));
+        assertSame(geom, geometries[0]);
+        assertEquals(19f, distances[0], 1e-3f);
+    }
+
+    @Test
+    public void testFloatBuffers() {
+        Node scene = createScene();
+        int count = 200;
+        float[][] rays = createRays(count);
+        float[] distances = new float[count];
+        Arrays.fill(distances, Float.POSITIVE_INFINITY);
+        int[] triangles = new int[count];
+        Geometry[] geometries = new Geometry[count];
+        RayBatch batch = new RayBatch();
+        int hits = batch.collideWith(scene, rays[0], rays[1], count, distances, triangles, geometries);
+
+        FloatBuffer origins = BufferUtils.createFloatBuffer(count * 3 + 3);
+        FloatBuffer directions = BufferUtils.createFloatBuffer(count * 3 + 3);
+        origins.put(new float[3]).put(rays[0]).position(3);
+        directions.put(new float[3]).put(rays[1]).position(3);
+        float[] bufferDistances = new float[count];
+        Arrays.fill(bufferDistances, Float.POSITIVE_INFINITY);
+        int[] bufferTriangles = new int[count];
+        Geometry[] bufferGeometries = new Geometry[count];
+        assertEquals(hits, batch.collideWith(scene, origins, directions, count,
+                                             bufferDistances, bufferTriangles, bufferGeometries));
+        assertEquals(3, origins.position());
+        assertArrayEquals(distances, bufferDistances, 0f);
+        assertArrayEquals(triangles, bufferTriangles);
+        assertArrayEquals(geometries, bufferGeometries);
+    }
+
+    @Test
+    public void testMissingRays() {
+        Node scene = createScene();
+        float[] origins = {100, 100, 100, 0, 0, 0};
+        float[] directions = {1, 0, 0, 0, 1, 0};
+        float[] distances = {Float.POSITIVE_INFINITY, 1e-3f};
+        int[] triangles = {5, 5};
+        Geometry[] geometries = {new Geometry(), new Geometry()};
+        assertEquals(0, new RayBatch().collideWith(scene, origins, directions, 2, distances, triangles, geometries));
+        assertArrayEquals(new int[]{-1, -1}, triangles);
+        assertArrayEquals(new Geometry[2], geometries);
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.BufferUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a {@link BIHTree} built with the surface area heuristic finds
+ * the same collisions as one built with center splits.
+ *
+ * @author jMonkeyEngine
+ */
+public class BIHTreeTest {
+
+    /**
+     * Random triangles in a 100 unit cube, enough of them to build
+     * subtrees in parallel.
+     */
+    private static Mesh createTriangleSoup(int count, long seed) {
+        Random random = new Random(seed);
+        float[] positions = new float[count * 9];
+        for (int i = 0; i < count; i++) {
+            float x = random.nextFloat() * 100 - 50;
+            float y = random.nextFloat() * 100 - 50;
+            float z = random.nextFloat() * 100 - 50;
+            for (int v = 0; v < 3; v++) {
+                positions[i * 9 + v * 3] = x + random.nextFloat() * 4 - 2;
+                positions[i * 9 + v * 3 + 1] = y + random.nextFloat() * 4 - 2;
+                positions[i * 9 + v * 3 + 2] = z + random.nextFloat() * 4 - 2;
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(positions));
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Geometry createGeometry(Mesh mesh, BIHTree.SplitMethod method) {
+        mesh.createCollisionData(method);
+        Geometry geom = new Geometry("geom", mesh);
+        geom.setLocalTranslation(3, -2, 1);
+        geom.setLocalRotation(new Quaternion().fromAngles(0.3f, FastMath.QUARTER_PI, 0));
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    private static List<String> collide(Geometry geom, Collidable other) {
+        CollisionResults results = new CollisionResults();
+        int count = geom.collideWith(other, results);
+        assertEquals(results.size(), count);
+        List<String> list = new ArrayList<String>();
+        for (CollisionResult result : results) {
+            list.add(result.getTriangleIndex() + " " + result.getContactPoint() + " " + result.getDistance());
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    private static void assertSameCollisions(Geometry expected, Geometry actual, float size, long seed) {
+        Random random = new Random(seed);
+        int hits = 0;
+        for (int i = 0; i < 300; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1,
+                                           random.nextFloat() * 2 - 1).normalizeLocal().multLocal(size * 2);
+            Vector3f target = new Vector3f(random.nextFloat() * size - size / 2, random.nextFloat() * size - size / 2,
+                                           random.nextFloat() * size - size / 2);
+            Ray ray = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+            if (i % 4 == 0) {
+                ray.setLimit(size * 2);
+            }
+            List<String> list = collide(expected, ray);
+            hits += list.size();
+            assertEquals(list, collide(actual, ray));
+        }
+        for (int i = 0; i < 50; i++) {
+            Vector3f center = new Vector3f(random.nextFloat() * size - size / 2, random.nextFloat() * size - size / 2,
+                                           random.nextFloat() * size - size / 2);
+            Collidable volume = i % 2 == 0 ? new BoundingBox(center, size / 20, size / 20, size / 20)
+                                           : new BoundingSphere(size / 20, center);
+            List<String> list = collide(expected, volume);
+            hits += list.size();
+            assertEquals(list, collide(actual, volume));
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testSameCollisionsOnSphere() {
+        Geometry center = createGeometry(new Sphere(48, 48, 10f), BIHTree.SplitMethod.Center);
+        Geometry sah = createGeometry(new Sphere(48, 48, 10f), BIHTree.SplitMethod.SAH);
+        assertSameCollisions(center, sah, 20f, 1);
+    }
+
+    @Test
+    public void testSameCollisionsOnLargeMesh() {
+        Geometry center = createGeometry(createTriangleSoup(20000, 2), BIHTree.SplitMethod.Center);
+        Geometry sah = createGeometry(createTriangleSoup(20000, 2), BIHTree.SplitMethod.SAH);
+        assertSameCollisions(center, sah, 100f, 3);
+    }
+
+    @Test
+    public void testTriangleDataFollowsIndices() {
+        Mesh mesh = createTriangleSoup(SAHBuilder.PARALLEL_THRESHOLD * 2, 4);
+        BIHTree reference = new BIHTree(mesh);
+        BIHTree tree = new BIHTree(mesh);
+        tree.construct(BIHTree.SplitMethod.SAH);
+
+        int count = mesh.getTriangleCount();
+        boolean[] seen = new boolean[count];
+        Vector3f[] expected = {new Vector3f(), new Vector3f(), new Vector3f()};
+        Vector3f[] actual = {new Vector3f(), new Vector3f(), new Vector3f()};
+        for (int i = 0; i < count; i++) {
+            int index = tree.getTriangleIndex(i);
+            assertFalse(seen[index]);
+            seen[index] = true;
+            reference.getTriangle(index, expected[0], expected[1], expected[2]);
+            tree.getTriangle(i, actual[0], actual[1], actual[2]);
+            assertArrayEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void testCoincidentTriangles() {
+        // identical triangles cannot be separated by their centroids
+        Mesh mesh = new Mesh();
+        float[] positions = new float[100 * 9];
+        for (int i = 0; i < 100; i++) {
+            System.arraycopy(new float[]{0, 0, 0, 1, 0, 0, 0, 1, 0}, 0, positions, i * 9, 9);
+        }
+        mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(positions));
+        mesh.updateBound();
+        mesh.createCollisionData(BIHTree.SplitMethod.SAH);
+        Geometry geom = new Geometry("geom", mesh);
+        geom.updateGeometricState();
+
+        CollisionResults results = new CollisionResults();
+        geom.collideWith(new Ray(new Vector3f(0.25f, 0.25f, 5), new Vector3f(0, 0, -1)), results);
+        assertEquals(100, results.size());
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.collision.bih;
+
+import com.jme3.asset.DesktopAssetManager;
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.math.FastMath;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Quad;
+import com.jme3.scene.shape.Sphere;
+import com.jme3.util.BufferUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that a {@link CompactBIHTree} finds the same collisions as a
+ * {@link BIHTree}.
+ *
+ * @author jMonkeyEngine
+ */
+public class CompactBIHTreeTest {
+
+    private static Mesh createTriangleSoup(int count, long seed) {
+        Random random = new Random(seed);
+        float[] positions = new float[count * 9];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = random.nextFloat() * 100 - 50;
+            if (i % 9 >= 3) {
+                // keep the triangles small
+                positions[i] = positions[i - 3] + random.nextFloat() * 4 - 2;
+            }
+        }
+        Mesh mesh = new Mesh();
+        mesh.setBuffer(Type.Position, 3, BufferUtils.createFloatBuffer(positions));
+        mesh.updateBound();
+        return mesh;
+    }
+
+    private static Geometry createGeometry(Mesh mesh) {
+        Geometry geom = new Geometry("geom", mesh);
+        geom.setLocalTranslation(3, -2, 1);
+        geom.setLocalRotation(new Quaternion().fromAngles(0.3f, FastMath.QUARTER_PI, 0));
+        geom.updateGeometricState();
+        return geom;
+    }
+
+    private static List<String> collide(Geometry geom, Collidable other) {
+        CollisionResults results = new CollisionResults();
+        int count = geom.collideWith(other, results);
+        assertEquals(results.size(), count);
+        List<String> list = new ArrayList<String>();
+        for (CollisionResult result : results) {
+            list.add(result.getTriangleIndex() + " " + result.getContactPoint() + " "
+                    + result.getContactNormal() + " " + result.getDistance());
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    private static void assertSameCollisions(Geometry expected, Geometry actual, float size, long seed) {
+        Random random = new Random(seed);
+        int hits = 0;
+        for (int i = 0; i < 300; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() * 2 - 1, random.nextFloat() * 2 - 1,
+                                           random.nextFloat() * 2 - 1).normalizeLocal().multLocal(size * 2);
+            Vector3f target = new Vector3f(random.nextFloat() * size - size / 2, random.nextFloat() * size - size / 2,
+                                           random.nextFloat() * size - size / 2);
+            Ray ray = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+            if (i % 4 == 0) {
+                ray.setLimit(size * 2);
+            }
+            List<String> list = collide(expected, ray);
+            hits += list.size();
+            assertEquals(list, collide(actual, ray));
+        }
+        for (int i = 0; i < 50; i++) {
+            Vector3f center = new Vector3f(random.nextFloat() * size - size / 2, random.nextFloat() * size - size / 2,
+                                           random.nextFloat() * size - size / 2);
+            Collidable volume = i % 2 == 0 ? new BoundingBox(center, size / 20, size / 20, size / 20)
+                                           : new BoundingSphere(size / 20, center);
+            List<String> list = collide(expected, volume);
+            hits += list.size();
+            assertEquals(list, collide(actual, volume));
+        }
+        assertTrue(hits > 0);
+    }
+
+    private static void assertSameCollisions(Mesh expected, Mesh actual, float size, long seed) {
+        expected.createCollisionData();
+        actual.setCollisionData(new CompactBIHTree(actual));
+        assertSameCollisions(createGeometry(expected), createGeometry(actual), size, seed);
+    }
+
+    @Test
+    public void testSameCollisionsOnSphere() {
+        assertSameCollisions(new Sphere(48, 48, 10f), new Sphere(48, 48, 10f), 20f, 1);
+    }
+
+    @Test
+    public void testSameCollisionsOnTriangleSoup() {
+        assertSameCollisions(createTriangleSoup(5000, 2), createTriangleSoup(5000, 2), 100f, 3);
+    }
+
+    @Test
+    public void testFlatMesh() {
+        // no extent on the z axis to quantize against
+        CompactBIHTree tree = new CompactBIHTree(new Quad(2, 2));
+        Mesh mesh = new Quad(2, 2);
+        mesh.setCollisionData(tree);
+        Geometry geom = new Geometry("geom", mesh);
+        geom.updateGeometricState();
+
+        CollisionResults results = new CollisionResults();
+        geom.collideWith(new Ray(new Vector3f(1.5f, 0.5f, 5), new Vector3f(0, 0, -1)), results);
+        assertEquals(1, results.size());
+        assertEquals(5f, results.getClosestCollision().getDistance(), FastMath.ZERO_TOLERANCE);
+        assertEquals(new Vector3f(1.5f, 0.5f, 0), results.getClosestCollision().getContactPoint());
+    }
+
+    @Test
+    public void testSaveAndLoad() {
+        Mesh mesh = new Sphere(32, 32, 10f);
+        mesh.setCollisionData(new CompactBIHTree(mesh));
+        Mesh loaded = BinaryExporter.saveAndLoad(new DesktopAssetManager(), mesh);
+
+        assertTrue(loaded.getCollisionData() instanceof CompactBIHTree);
+        CompactBIHTree tree = (CompactBIHTree) loaded.getCollisionData();
+        assertEquals(((CompactBIHTree) mesh.getCollisionData()).getNodeCount(), tree.getNodeCount());
+
+        assertSameCollisions(createGeometry(mesh), createGeometry(loaded), 20f, 5);
+    }
+}
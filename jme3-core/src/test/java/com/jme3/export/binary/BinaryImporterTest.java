@@ -0,0 +1,334 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.export.binary;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.export.FormatVersion;
+import com.jme3.export.InputCapsule;
+import com.jme3.export.JmeExporter;
+import com.jme3.export.JmeImporter;
+import com.jme3.export.OutputCapsule;
+import com.jme3.export.Savable;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Box;
+import com.jme3.util.BufferUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests loading J3O data from streams, buffers and memory mapped files, and
+ * random access to chunked J3O data.
+ *
+ * @author jMonkeyEngine
+ */
+public class BinaryImporterTest {
+
+    public static class Fields implements Savable {
+
+        float[] values;
+        FloatBuffer buffer;
+        String name;
+        int count;
+
+        @Override
+        public void write(JmeExporter ex) throws IOException {
+            OutputCapsule oc = ex.getCapsule(this);
+            oc.write(values, "values", null);
+            oc.write(buffer, "buffer", null);
+            oc.write(name, "name", null);
+            oc.write(count, "count", 0);
+        }
+
+        @Override
+        public void read(JmeImporter im) throws IOException {
+            InputCapsule ic = im.getCapsule(this);
+            // out of order and missing fields
+            count = ic.readInt("count", 0);
+            name = ic.readString("name", null);
+            values = ic.readFloatArray("values", null);
+            buffer = ic.readFloatBuffer("buffer", null);
+            assertEquals(-1, ic.readInt("missing", -1));
+        }
+    }
+
+    private File file;
+
+    @After
+    public void tearDown() {
+        BinaryImporter.setMemoryMapping(false);
+        if (file != null) {
+            file.delete();
+        }
+    }
+
+    private static byte[] save(Savable savable) throws IOException {
+        return save(savable, 0);
+    }
+
+    private static byte[] save(Savable savable, int chunkSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setChunkSize(chunkSize);
+        exporter.save(savable, out);
+        return out.toByteArray();
+    }
+
+    private static int getVersion(byte[] data) {
+        return ByteBuffer.wrap(data).getInt(4);
+    }
+
+    private static Node createScene() {
+        Node root = new Node("Root");
+        Mesh box = new Box(1, 2, 3);
+        for (int i = 0; i < 3; i++) {
+            Geometry geom = new Geometry("Box" + i, box);
+            geom.setLocalTranslation(i, 0, 0);
+            root.attachChild(geom);
+        }
+        return root;
+    }
+
+    private static void assertScene(Savable savable) {
+        Node root = (Node) savable;
+        assertEquals(3, root.getQuantity());
+        Mesh expected = new Box(1, 2, 3);
+        FloatBuffer expectedPos = expected.getFloatBuffer(Type.Position);
+        expectedPos.rewind();
+        for (int i = 0; i < 3; i++) {
+            Geometry geom = (Geometry) root.getChild(i);
+            assertEquals("Box" + i, geom.getName());
+            assertEquals(i, geom.getLocalTranslation().x, 0f);
+            FloatBuffer pos = geom.getMesh().getFloatBuffer(Type.Position);
+            assertTrue(pos.isDirect());
+            assertEquals(expectedPos, pos);
+        }
+        // the shared mesh is still shared
+        assertSame(((Geometry) root.getChild(0)).getMesh(), ((Geometry) root.getChild(2)).getMesh());
+    }
+
+    private File writeFile(byte[] data) throws IOException {
+        file = File.createTempFile("BinaryImporterTest", ".j3o");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    @Test
+    public void testLoadStream() throws IOException {
+        byte[] data = save(createScene());
+        assertScene(new BinaryImporter().load(new ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void testLoadBuffer() throws IOException {
+        byte[] data = save(createScene());
+        ByteBuffer buffer = BufferUtils.createByteBuffer(data.length + 3);
+        buffer.put(new byte[3]).put(data).flip().position(3);
+        assertScene(new BinaryImporter().load(buffer));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void testLoadMappedFile() throws IOException {
+        writeFile(save(createScene()));
+        BinaryImporter.setMemoryMapping(true);
+        assertScene(new BinaryImporter().load(file));
+    }
+
+    @Test
+    public void testLoadMappedAsset() throws IOException {
+        writeFile(save(createScene()));
+        BinaryImporter.setMemoryMapping(true);
+        AssetInfo info = new AssetInfo(null, null) {
+            @Override
+            public InputStream openStream() {
+                throw new AssertionError("file-backed assets are mapped");
+            }
+
+            @Override
+            public File getFile() {
+                return file;
+            }
+        };
+        assertScene((Savable) new BinaryImporter().load(info));
+    }
+
+    @Test
+    public void testLazyFields() throws IOException {
+        Fields fields = new Fields();
+        fields.values = new float[]{1, 2.5f, -3};
+        fields.buffer = BufferUtils.createFloatBuffer(4f, 5f, 6f);
+        fields.name = "fields";
+        fields.count = 42;
+        byte[] data = save(fields);
+
+        BinaryImporter.setMemoryMapping(true);
+        writeFile(data);
+        Savable[] loaded = {
+            new BinaryImporter().load(data),
+            new BinaryImporter().load(file)
+        };
+        for (Savable savable : loaded) {
+            Fields read = (Fields) savable;
+            assertEquals(42, read.count);
+            assertEquals("fields", read.name);
+            assertArrayEquals(fields.values, read.values, 0f);
+            fields.buffer.rewind();
+            assertEquals(fields.buffer, read.buffer);
+        }
+    }
+
+    @Test
+    public void testChunkedFormat() throws IOException {
+        Node scene = createScene();
+        byte[] plain = save(scene);
+        byte[] chunked = save(scene, 64);
+        assertEquals(2, getVersion(plain));
+        assertEquals(FormatVersion.CHUNKED_VERSION, getVersion(chunked));
+        assertTrue(chunked.length < plain.length);
+
+        assertScene(new BinaryImporter().load(chunked));
+        assertScene(new BinaryImporter().load(new ByteArrayInputStream(chunked)));
+
+        BinaryExporter exporter = new BinaryExporter();
+        exporter.setChunkSize(64);
+        exporter.setCompressionLevel(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.save(scene, out);
+        assertTrue(out.size() > plain.length);
+        assertScene(new BinaryImporter().load(out.toByteArray()));
+    }
+
+    @Test
+    public void testRandomAccess() throws IOException {
+        Node scene = createScene();
+        Node other = new Node("Other");
+        other.attachChild(new Geometry("Single", new Box(1, 1, 1)));
+        scene.attachChild(other);
+
+        for (int chunkSize : new int[]{0, 1, 1 << 20}) {
+            BinaryImporter importer = new BinaryImporter();
+            importer.open(ByteBuffer.wrap(save(scene, chunkSize)));
+            assertEquals(Node.class.getName(), importer.getObjectClassName(importer.getRootId()));
+
+            int otherId = -1;
+            int geometries = 0;
+            for (int id : importer.getObjectIds()) {
+                String className = importer.getObjectClassName(id);
+                if (Geometry.class.getName().equals(className)) {
+                    geometries++;
+                } else if (Node.class.getName().equals(className) && id != importer.getRootId()) {
+                    otherId = id;
+                }
+            }
+            assertEquals(4, geometries);
+
+            // loads the subtree only
+            Node loaded = (Node) importer.readObject(otherId);
+            assertEquals("Other", loaded.getName());
+            assertNull(loaded.getParent());
+            assertEquals("Single", loaded.getChild(0).getName());
+            importer.close();
+        }
+    }
+
+    @Test
+    public void testParallelSubtrees() throws Exception {
+        Node scene = new Node("Root");
+        for (int i = 0; i < 8; i++) {
+            Node child = createScene();
+            child.setName("Child" + i);
+            scene.attachChild(child);
+        }
+        final ByteBuffer data = ByteBuffer.wrap(save(scene, 256));
+
+        BinaryImporter index = new BinaryImporter();
+        index.open(data);
+        List<Integer> childIds = new ArrayList<Integer>();
+        for (int id : index.getObjectIds()) {
+            if (Node.class.getName().equals(index.getObjectClassName(id)) && id != index.getRootId()) {
+                childIds.add(id);
+            }
+        }
+        index.close();
+        assertEquals(8, childIds.size());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Savable>> futures = new ArrayList<Future<Savable>>();
+            for (final int id : childIds) {
+                futures.add(executor.submit(new Callable<Savable>() {
+                    @Override
+                    public Savable call() throws Exception {
+                        BinaryImporter importer = new BinaryImporter();
+                        importer.open(data);
+                        try {
+                            return importer.readObject(id);
+                        } finally {
+                            importer.close();
+                        }
+                    }
+                }));
+            }
+            for (Future<Savable> future : futures) {
+                Node child = (Node) future.get();
+                assertTrue(child.getName().startsWith("Child"));
+                assertScene(child);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
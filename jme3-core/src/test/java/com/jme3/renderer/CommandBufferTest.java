@@ -0,0 +1,318 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.asset.AssetManager;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.shape.Box;
+import com.jme3.shader.Shader;
+import com.jme3.shader.Uniform;
+import com.jme3.shader.VarType;
+import com.jme3.system.NullRenderer;
+import com.jme3.system.TestUtil;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.ListMap;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests recording and replaying renderer calls with {@link CommandBuffer}.
+ *
+ * @author jMonkeyEngine
+ */
+public class CommandBufferTest {
+
+    /**
+     * Logs the calls it receives, including the uniform values
+     * a shader is set with.
+     */
+    private static class LoggingRenderer extends NullRenderer {
+
+        final List<String> calls = new ArrayList<String>();
+
+        @Override
+        public void setShader(Shader shader) {
+            StringBuilder sb = new StringBuilder("setShader");
+            ListMap<String, Uniform> uniforms = shader.getUniformMap();
+            for (int i = 0; i < uniforms.size(); i++) {
+                Uniform uniform = uniforms.getValue(i);
+                if (uniform.isUpdateNeeded() && uniform.getVarType() != null) {
+                    append(sb, uniform);
+                    uniform.clearUpdateNeeded();
+                }
+            }
+            calls.add(sb.toString());
+        }
+
+        @Override
+        public void setShader(Shader shader, Uniform[] uniforms, int offset, int count) {
+            StringBuilder sb = new StringBuilder("setShader");
+            for (int i = offset; i < offset + count; i++) {
+                append(sb, uniforms[i]);
+            }
+            calls.add(sb.toString());
+        }
+
+        private static void append(StringBuilder sb, Uniform uniform) {
+            Object value = uniform.getVarType() == VarType.FloatArray
+                    ? uniform.getMultiData().get(0) + "," + uniform.getMultiData().get(1)
+                    : uniform.getValue();
+            sb.append(' ').append(uniform.getName()).append('=').append(value);
+        }
+
+        @Override
+        public void applyRenderState(RenderState state) {
+            calls.add("applyRenderState " + state.getBlendMode() + " " + state.isDepthTest());
+        }
+
+        @Override
+        public void setBackgroundColor(ColorRGBA color) {
+            calls.add("setBackgroundColor " + color);
+        }
+
+        @Override
+        public void setViewPort(int x, int y, int width, int height) {
+            calls.add("setViewPort " + x + " " + y + " " + width + " " + height);
+        }
+
+        @Override
+        public void setTexture(int unit, Texture tex) {
+            calls.add("setTexture " + unit + " " + tex);
+        }
+
+        @Override
+        public void renderMesh(Mesh mesh, int lod, int count, VertexBuffer[] instanceData) {
+            calls.add("renderMesh " + System.identityHashCode(mesh) + " " + lod + " " + count);
+        }
+    }
+
+    private static void issueCommands(Renderer renderer, Shader shader, Mesh mesh, Texture tex) {
+        RenderState state = new RenderState();
+        ColorRGBA color = new ColorRGBA(0.25f, 0.5f, 0.75f, 1f);
+        Matrix4f matrix = new Matrix4f();
+
+        renderer.setViewPort(0, 0, 640, 480);
+        renderer.setBackgroundColor(color);
+
+        for (int i = 0; i < 3; i++) {
+            // everything passed in is modified again after each call
+            state.setBlendMode(i == 1 ? RenderState.BlendMode.Alpha : RenderState.BlendMode.Off);
+            state.setDepthTest(i != 2);
+            renderer.applyRenderState(state);
+            renderer.setTexture(i, tex);
+
+            color.set(i, 0, 0, 1);
+            matrix.setTranslation(i, 2 * i, 0);
+            shader.getUniform("m_Color").setValue(VarType.Vector4, color);
+            shader.getUniform("g_WorldMatrix").setValue(VarType.Matrix4, matrix);
+            shader.getUniform("m_Scale").setValue(VarType.Float, i * 0.5f);
+            shader.getUniform("m_Weights").setValue(VarType.FloatArray, new float[] { i, -i });
+            if (i == 1) {
+                shader.getUniform("m_Position").setValue(VarType.Vector3, new Vector3f(1, 2, 3));
+            }
+            renderer.setShader(shader);
+            renderer.renderMesh(mesh, 0, 1, null);
+        }
+    }
+
+    @Test
+    public void testReplayMatchesDirectCalls() {
+        Mesh mesh = new Box(1, 1, 1);
+        Texture tex = new Texture2D(4, 4, com.jme3.texture.Image.Format.RGBA8);
+
+        LoggingRenderer direct = new LoggingRenderer();
+        issueCommands(direct, new Shader(), mesh, tex);
+
+        CommandBuffer buffer = new CommandBuffer();
+        NullRenderer target = new NullRenderer();
+        RecordingRenderer recording = new RecordingRenderer(target, buffer);
+        issueCommands(recording, new Shader(), mesh, tex);
+        assertEquals(14, buffer.getCommandCount());
+        assertNotSame(target.getStatistics(), recording.getStatistics());
+
+        LoggingRenderer replayed = new LoggingRenderer();
+        buffer.replay(replayed);
+        assertEquals(direct.calls, replayed.calls);
+
+        // replaying again uploads the recorded values once more
+        replayed.calls.clear();
+        buffer.replay(replayed);
+        assertEquals(direct.calls, replayed.calls);
+    }
+
+    @Test
+    public void testReplayLeavesShaderUniforms() {
+        Mesh mesh = new Box(1, 1, 1);
+        Texture tex = new Texture2D(4, 4, com.jme3.texture.Image.Format.RGBA8);
+        Shader shader = new Shader();
+
+        CommandBuffer buffer = new CommandBuffer();
+        issueCommands(new RecordingRenderer(new NullRenderer(), buffer), shader, mesh, tex);
+
+        // the next frame is recorded while the first one is replayed
+        shader.getUniform("m_Scale").setValue(VarType.Float, 42f);
+        LoggingRenderer replayed = new LoggingRenderer();
+        buffer.replay(replayed);
+
+        assertEquals(42f, shader.getUniform("m_Scale").getValue());
+        assertTrue(shader.getUniform("m_Scale").isUpdateNeeded());
+        assertEquals(new ColorRGBA(2, 0, 0, 1), shader.getUniform("m_Color").getValue());
+        assertTrue(shader.getUniform("m_Color").isUpdateNeeded());
+
+        LoggingRenderer direct = new LoggingRenderer();
+        issueCommands(direct, new Shader(), mesh, tex);
+        assertEquals(direct.calls, replayed.calls);
+    }
+
+    @Test
+    public void testDiscardedRecordingKeepsUpdates() {
+        Mesh mesh = new Box(1, 1, 1);
+        Texture tex = new Texture2D(4, 4, com.jme3.texture.Image.Format.RGBA8);
+        Shader shader = new Shader();
+
+        CommandBuffer buffer = new CommandBuffer();
+        issueCommands(new RecordingRenderer(new NullRenderer(), buffer), shader, mesh, tex);
+        buffer.clear();
+
+        // the renderer never saw the recorded values, it still uploads them
+        shader.getUniform("m_Scale").setValue(VarType.Float, 1f);
+        LoggingRenderer direct = new LoggingRenderer();
+        direct.setShader(shader);
+        assertTrue(direct.calls.get(0).contains("m_Color=" + new ColorRGBA(2, 0, 0, 1)));
+        assertTrue(direct.calls.get(0).contains("m_Scale=1.0"));
+        assertFalse(shader.getUniform("m_Color").isUpdateNeeded());
+    }
+
+    @Test
+    public void testCopiedUniformsAreIndependent() {
+        Uniform uniform = new Uniform();
+        uniform.setName("m_Weights");
+        uniform.setValue(VarType.FloatArray, new float[] { 1, 2, 3 });
+        Uniform copy = new Uniform();
+        copy.copyFrom(uniform);
+        uniform.setValue(VarType.FloatArray, new float[] { 4, 5, 6 });
+
+        assertEquals("m_Weights", copy.getName());
+        assertEquals(VarType.FloatArray, copy.getVarType());
+        assertEquals(3, copy.getMultiData().remaining());
+        assertEquals(2f, copy.getMultiData().get(1), 0f);
+        assertEquals(5f, uniform.getMultiData().get(1), 0f);
+    }
+
+    @Test
+    public void testClearAndReuse() {
+        CommandBuffer buffer = new CommandBuffer();
+        RecordingRenderer recording = new RecordingRenderer(new NullRenderer(), buffer);
+        for (int frame = 0; frame < 3; frame++) {
+            buffer.clear();
+            assertTrue(buffer.isEmpty());
+            for (int i = 0; i < 1000; i++) {
+                recording.setViewPort(i, i, 10, 10);
+            }
+            assertEquals(1000, buffer.getCommandCount());
+        }
+        String dump = buffer.toString();
+        assertTrue(dump.startsWith("setViewPort 0 0 10 10\n"));
+    }
+
+    @Test
+    public void testRecordViewPort() {
+        AssetManager assetManager = TestUtil.createAssetManager();
+        RenderManager renderManager = TestUtil.createRenderManager();
+
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 0.1f, 100f);
+        cam.setLocation(new Vector3f(0, 0, 20));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        ViewPort vp = new ViewPort("test", cam);
+
+        Node scene = new Node("scene");
+        Mesh mesh = new Box(1, 1, 1);
+        for (int i = 0; i < 10; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            Material mat = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+            mat.setColor("Color", new ColorRGBA(i / 10f, 0, 0, 1));
+            geom.setMaterial(mat);
+            geom.setLocalTranslation(i - 5, 0, 0);
+            scene.attachChild(geom);
+        }
+        scene.updateGeometricState();
+        vp.attachScene(scene);
+
+        CommandBuffer buffer = new CommandBuffer();
+        renderManager.renderViewPort(vp, 0f, buffer);
+        assertSame(NullRenderer.class, renderManager.getRenderer().getClass());
+        assertNull(renderManager.getCurrentCamera());
+
+        LoggingRenderer replayed = new LoggingRenderer();
+        buffer.replay(replayed);
+        int meshes = 0;
+        int colors = 0;
+        for (String call : replayed.calls) {
+            if (call.startsWith("renderMesh")) {
+                meshes++;
+            }
+            if (call.contains("m_Color=")) {
+                colors++;
+            }
+        }
+        assertEquals(10, meshes);
+        assertEquals(10, colors);
+        assertTrue(replayed.calls.contains("setViewPort 0 0 640 480"));
+
+        // recording again gives the same commands
+        int count = buffer.getCommandCount();
+        buffer.clear();
+        renderManager.renderViewPort(vp, 0f, buffer);
+        assertEquals(count, buffer.getCommandCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRecordViewPortWithProcessors() {
+        RenderManager renderManager = TestUtil.createRenderManager();
+        ViewPort vp = new ViewPort("test", new Camera(640, 480));
+        vp.addProcessor(new com.jme3.post.FilterPostProcessor(TestUtil.createAssetManager()));
+        renderManager.renderViewPort(vp, 0f, new CommandBuffer());
+    }
+}
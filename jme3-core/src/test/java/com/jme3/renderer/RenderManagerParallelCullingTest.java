@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.queue.RenderQueue;
+import com.jme3.renderer.queue.RenderQueue.Bucket;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
+import com.jme3.scene.control.AbstractControl;
+import com.jme3.scene.shape.Box;
+import com.jme3.system.TestUtil;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that parallel culling fills the render queue exactly like
+ * serial culling.
+ *
+ * @author jMonkeyEngine
+ */
+public class RenderManagerParallelCullingTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Material material = new Material();
+    private RenderManager renderManager;
+    private RecordingViewPort viewPort;
+    private RenderControl renderControl;
+
+    private static class RecordingQueue extends RenderQueue {
+
+        final List<Geometry> geometries = new ArrayList<Geometry>();
+        final List<Bucket> buckets = new ArrayList<Bucket>();
+
+        @Override
+        public void addToQueue(Geometry g, Bucket bucket) {
+            geometries.add(g);
+            buckets.add(bucket);
+        }
+    }
+
+    private static class RecordingViewPort extends ViewPort {
+
+        RecordingQueue queue = new RecordingQueue();
+
+        RecordingViewPort(Camera cam) {
+            super("test", cam);
+        }
+
+        @Override
+        public RenderQueue getQueue() {
+            return queue;
+        }
+    }
+
+    private static class RenderControl extends AbstractControl {
+
+        int renders;
+
+        @Override
+        protected void controlUpdate(float tpf) {
+        }
+
+        @Override
+        protected void controlRender(RenderManager rm, ViewPort vp) {
+            renders++;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        renderManager = TestUtil.createRenderManager();
+        Camera cam = new Camera(640, 480);
+        cam.setFrustumPerspective(45f, 640f / 480f, 0.1f, 100f);
+        cam.setLocation(new Vector3f(0, 0, 30));
+        cam.lookAt(Vector3f.ZERO, Vector3f.UNIT_Y);
+        viewPort = new RecordingViewPort(cam);
+        renderControl = new RenderControl();
+    }
+
+    private void populate(Node node, Random random, int depth) {
+        for (int i = 0; i < 6; i++) {
+            Spatial child;
+            if (depth > 0 && random.nextInt(3) == 0) {
+                Node n = new Node("node" + depth + "_" + i);
+                populate(n, random, depth - 1);
+                child = n;
+            } else {
+                Geometry geom = new Geometry("geom" + depth + "_" + i, mesh);
+                geom.setMaterial(material);
+                child = geom;
+            }
+            child.setLocalTranslation((random.nextFloat() - 0.5f) * 80f,
+                                      (random.nextFloat() - 0.5f) * 60f,
+                                      (random.nextFloat() - 0.5f) * 40f);
+            switch (random.nextInt(12)) {
+                case 0:
+                    child.setCullHint(Spatial.CullHint.Always);
+                    break;
+                case 1:
+                    child.setCullHint(Spatial.CullHint.Never);
+                    break;
+                case 2:
+                    child.setQueueBucket(Bucket.Transparent);
+                    break;
+                case 3:
+                    child.addControl(renderControl.cloneForSpatial(child));
+                    break;
+                default:
+                    break;
+            }
+            node.attachChild(child);
+        }
+    }
+
+    private Node createScene() {
+        Random random = new Random(7);
+        Node root = new Node("root");
+        for (int i = 0; i < 40; i++) {
+            Node child = new Node("child" + i);
+            populate(child, random, 3);
+            child.setLocalTranslation((random.nextFloat() - 0.5f) * 40f, 0, 0);
+            root.attachChild(child);
+        }
+        root.updateGeometricState();
+        return root;
+    }
+
+    private static int countControlRenders(Spatial spatial) {
+        int count = 0;
+        RenderControl control = spatial.getControl(RenderControl.class);
+        if (control != null) {
+            count += control.renders;
+        }
+        if (spatial instanceof Node) {
+            for (Spatial child : ((Node) spatial).getChildren()) {
+                count += countControlRenders(child);
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testSameQueueAsSerial() {
+        Node scene = createScene();
+
+        renderManager.renderScene(scene, viewPort);
+        List<Geometry> expected = new ArrayList<Geometry>(viewPort.queue.geometries);
+        List<Bucket> expectedBuckets = new ArrayList<Bucket>(viewPort.queue.buckets);
+        int expectedRenders = countControlRenders(scene);
+        assertFalse(expected.isEmpty());
+
+        renderManager.setParallelCulling(true);
+        for (int frame = 0; frame < 3; frame++) {
+            viewPort.queue = new RecordingQueue();
+            renderManager.renderScene(scene, viewPort);
+            assertEquals(expected, viewPort.queue.geometries);
+            assertEquals(expectedBuckets, viewPort.queue.buckets);
+            assertEquals(expectedRenders * (frame + 2), countControlRenders(scene));
+        }
+    }
+
+    @Test
+    public void testCulledRoot() {
+        Node scene = createScene();
+        scene.setCullHint(Spatial.CullHint.Always);
+        renderManager.setParallelCulling(true);
+        renderManager.renderScene(scene, viewPort);
+        assertTrue(viewPort.queue.geometries.isEmpty());
+    }
+}
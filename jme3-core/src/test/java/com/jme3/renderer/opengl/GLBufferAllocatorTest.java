@@ -0,0 +1,292 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.renderer.RenderContext;
+import com.jme3.renderer.Statistics;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link GLBufferAllocator} against a mock GL.
+ *
+ * @author jMonkeyEngine
+ */
+public class GLBufferAllocatorTest {
+
+    private GL gl;
+    private GLExt glext;
+    private RenderContext context;
+    private Statistics statistics;
+
+    @Before
+    public void setUp() {
+        gl = mock(GL3.class, withSettings().extraInterfaces(GL2.class));
+        glext = mock(GLExt.class);
+        context = new RenderContext();
+        statistics = new Statistics();
+        statistics.setEnabled(true);
+        doAnswer(new Answer<Void>() {
+            private int nextId = 1;
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                IntBuffer ids = (IntBuffer) invocation.getArguments()[0];
+                while (ids.hasRemaining()) {
+                    ids.put(nextId++);
+                }
+                ids.rewind();
+                return null;
+            }
+        }).when(gl).glGenBuffers(any(IntBuffer.class));
+    }
+
+    private static VertexBuffer createBuffer(int floats) {
+        VertexBuffer vb = new VertexBuffer(Type.Position);
+        vb.setupData(Usage.Static, 1, Format.Float, BufferUtils.createFloatBuffer(floats));
+        return vb;
+    }
+
+    private int[] getStats() {
+        int[] data = new int[statistics.getLabels().length];
+        statistics.getData(data);
+        return data;
+    }
+
+    @Test
+    public void testSharedArena() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics);
+        VertexBuffer a = createBuffer(3);
+        VertexBuffer b = createBuffer(8);
+        VertexBuffer c = createBuffer(1);
+        assertTrue(allocator.upload(a));
+        assertTrue(allocator.upload(b));
+        assertTrue(allocator.upload(c));
+
+        assertEquals(1, allocator.getArenaCount());
+        assertEquals(3, allocator.getAllocationCount());
+        assertEquals(a.getId(), b.getId());
+        assertEquals(a.getId(), c.getId());
+        assertEquals(0, allocator.getOffset(a));
+        assertEquals(16, allocator.getOffset(b));
+        assertEquals(48, allocator.getOffset(c));
+        assertEquals(64, allocator.getUsedBytes());
+
+        verify(gl, times(1)).glGenBuffers(any(IntBuffer.class));
+        verify(gl).glBufferData(GL.GL_ARRAY_BUFFER, GLBufferAllocator.DEFAULT_ARENA_SIZE, GL.GL_DYNAMIC_DRAW);
+        verify(gl).glBufferSubData(eq(GL.GL_ARRAY_BUFFER), eq(16L), same((FloatBuffer) b.getData()));
+        verify(gl, times(1)).glBindBuffer(GL.GL_ARRAY_BUFFER, a.getId());
+        assertEquals(a.getId(), context.boundArrayVBO);
+
+        int[] stats = getStats();
+        assertEquals(1, stats[15]);
+        assertEquals(3, stats[16]);
+    }
+
+    @Test
+    public void testIndexBuffersUseSeparateArena() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics);
+        VertexBuffer pos = createBuffer(12);
+        VertexBuffer index = new VertexBuffer(Type.Index);
+        index.setupData(Usage.Static, 1, Format.UnsignedInt, BufferUtils.createIntBuffer(6));
+        allocator.upload(pos);
+        allocator.upload(index);
+
+        assertEquals(2, allocator.getArenaCount());
+        assertNotEquals(pos.getId(), index.getId());
+        assertEquals(0, allocator.getOffset(index));
+        assertEquals(index.getId(), context.boundElementArrayVBO);
+        verify(glext).glBufferSubData(eq(GL.GL_ELEMENT_ARRAY_BUFFER), eq(0L), any(IntBuffer.class));
+    }
+
+    @Test
+    public void testFreeCoalesces() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics, 256, 128);
+        VertexBuffer a = createBuffer(16);
+        VertexBuffer b = createBuffer(16);
+        VertexBuffer c = createBuffer(16);
+        allocator.upload(a);
+        allocator.upload(b);
+        allocator.upload(c);
+        assertEquals(128, allocator.getOffset(c));
+
+        assertTrue(allocator.free(a));
+        assertTrue(allocator.free(b));
+        assertFalse(allocator.free(createBuffer(1)));
+
+        // the two freed neighbours form one range large enough
+        VertexBuffer d = createBuffer(32);
+        allocator.upload(d);
+        assertEquals(1, allocator.getArenaCount());
+        assertEquals(0, allocator.getOffset(d));
+        assertEquals(192, allocator.getUsedBytes());
+    }
+
+    @Test
+    public void testNewArenaWhenFull() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics, 256, 128);
+        VertexBuffer a = createBuffer(32);
+        VertexBuffer b = createBuffer(32);
+        VertexBuffer c = createBuffer(32);
+        allocator.upload(a);
+        allocator.upload(b);
+        allocator.upload(c);
+
+        assertEquals(2, allocator.getArenaCount());
+        assertEquals(a.getId(), b.getId());
+        assertNotEquals(a.getId(), c.getId());
+        assertEquals(0, allocator.getOffset(c));
+    }
+
+    @Test
+    public void testUnsuitableBuffers() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics, 256, 128);
+        VertexBuffer large = createBuffer(64);
+        VertexBuffer stream = createBuffer(4);
+        stream.setUsage(Usage.Stream);
+        assertFalse(allocator.canAllocate(large));
+        assertFalse(allocator.canAllocate(stream));
+        assertFalse(allocator.upload(large));
+        assertEquals(-1, large.getAllocation());
+        assertEquals(0, allocator.getArenaCount());
+    }
+
+    @Test
+    public void testGrowingBufferMoves() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics, 256, 128);
+        VertexBuffer a = createBuffer(4);
+        VertexBuffer b = createBuffer(4);
+        allocator.upload(a);
+        allocator.upload(b);
+
+        // shrinking keeps the range
+        a.updateData(BufferUtils.createFloatBuffer(2));
+        allocator.upload(a);
+        assertEquals(0, allocator.getOffset(a));
+
+        a.updateData(BufferUtils.createFloatBuffer(8));
+        allocator.upload(a);
+        assertEquals(32, allocator.getOffset(a));
+        assertEquals(2, allocator.getAllocationCount());
+
+        // grown beyond the maximum allocation size, leaves the arena
+        a.updateData(BufferUtils.createFloatBuffer(64));
+        assertFalse(allocator.upload(a));
+        assertEquals(-1, a.getAllocation());
+        assertEquals(-1, a.getId());
+        assertEquals(1, allocator.getAllocationCount());
+    }
+
+    @Test
+    public void testDefragment() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics, 256, 128);
+        VertexBuffer[] buffers = new VertexBuffer[6];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = createBuffer(32);
+            allocator.upload(buffers[i]);
+        }
+        assertEquals(3, allocator.getArenaCount());
+        allocator.free(buffers[0]);
+        allocator.free(buffers[2]);
+        allocator.free(buffers[4]);
+
+        reset(gl);
+        allocator.defragment();
+
+        assertEquals(2, allocator.getArenaCount());
+        assertEquals(0, allocator.getOffset(buffers[1]));
+        assertEquals(128, allocator.getOffset(buffers[3]));
+        assertEquals(0, allocator.getOffset(buffers[5]));
+        assertEquals(buffers[1].getId(), buffers[3].getId());
+        assertNotEquals(buffers[1].getId(), buffers[5].getId());
+        // arenas are orphaned before being written again
+        verify(gl, times(3)).glBufferData(GL.GL_ARRAY_BUFFER, 256L, GL.GL_DYNAMIC_DRAW);
+        verify(gl, times(3)).glBufferSubData(eq(GL.GL_ARRAY_BUFFER), anyLong(), any(FloatBuffer.class));
+        verify(gl, times(1)).glDeleteBuffers(any(IntBuffer.class));
+        assertEquals(2, getStats()[15]);
+        assertEquals(3, getStats()[16]);
+    }
+
+    @Test
+    public void testResetAll() {
+        GLBufferAllocator allocator = new GLBufferAllocator(gl, glext, context, statistics);
+        VertexBuffer a = createBuffer(4);
+        allocator.upload(a);
+        a.clearUpdateNeeded();
+
+        allocator.resetAll();
+        assertEquals(-1, a.getId());
+        assertEquals(-1, a.getAllocation());
+        assertTrue(a.isUpdateNeeded());
+        assertEquals(0, allocator.getArenaCount());
+        verify(gl, never()).glDeleteBuffers(any(IntBuffer.class));
+    }
+
+    @Test
+    public void testRendererSubAllocation() {
+        GLRenderer renderer = new GLRenderer(gl, glext, null);
+        VertexBuffer a = createBuffer(4);
+        VertexBuffer b = createBuffer(4);
+
+        renderer.updateBufferData(a);
+        assertEquals(-1, a.getAllocation());
+        verify(gl).glBufferData(eq(GL.GL_ARRAY_BUFFER), any(FloatBuffer.class), eq(GL.GL_STATIC_DRAW));
+
+        renderer.setBufferSubAllocation(true);
+        renderer.updateBufferData(b);
+        assertNotEquals(-1, b.getAllocation());
+        assertFalse(b.isUpdateNeeded());
+
+        // buffers uploaded before keep their own buffer object
+        a.setUpdateNeeded();
+        renderer.updateBufferData(a);
+        assertEquals(-1, a.getAllocation());
+
+        reset(gl);
+        renderer.deleteBuffer(b);
+        assertEquals(-1, b.getId());
+        verify(gl, never()).glDeleteBuffers(any(IntBuffer.class));
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.renderer.RenderContext;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests {@link GLStreamingBuffers} against a mock GL.
+ *
+ * @author jMonkeyEngine
+ */
+public class GLStreamingBuffersTest {
+
+    private GL4 gl;
+    private GLExt glext;
+    private RenderContext context;
+    private ByteBuffer mapped;
+    private final ArrayList<long[]> subDataCalls = new ArrayList<long[]>();
+
+    @Before
+    public void setUp() {
+        gl = mock(GL4.class, withSettings().extraInterfaces(GL2.class));
+        glext = mock(GLExt.class);
+        context = new RenderContext();
+        doAnswer(new Answer<Void>() {
+            private int nextId = 1;
+
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                IntBuffer ids = (IntBuffer) invocation.getArguments()[0];
+                ids.put(0, nextId++);
+                return null;
+            }
+        }).when(gl).glGenBuffers(any(IntBuffer.class));
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                FloatBuffer data = (FloatBuffer) invocation.getArguments()[2];
+                subDataCalls.add(new long[]{(Long) invocation.getArguments()[1], data.position(), data.remaining()});
+                return null;
+            }
+        }).when(gl).glBufferSubData(anyInt(), anyLong(), any(FloatBuffer.class));
+        when(gl.glMapBufferRange(anyInt(), anyLong(), anyLong(), anyInt())).thenAnswer(new Answer<ByteBuffer>() {
+            @Override
+            public ByteBuffer answer(InvocationOnMock invocation) {
+                mapped = ByteBuffer.allocate((int) (long) (Long) invocation.getArguments()[2]);
+                return mapped;
+            }
+        });
+        when(glext.glFenceSync(anyInt(), anyInt())).thenAnswer(new Answer<Object>() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                return new Object();
+            }
+        });
+        when(glext.glClientWaitSync(any(), anyInt(), anyLong())).thenReturn(GLExt.GL_ALREADY_SIGNALED);
+    }
+
+    private static VertexBuffer createBuffer(int vertices) {
+        VertexBuffer vb = new VertexBuffer(Type.Position);
+        FloatBuffer data = BufferUtils.createFloatBuffer(vertices * 3);
+        for (int i = 0; i < data.limit(); i++) {
+            data.put(i, i);
+        }
+        vb.setupData(Usage.Stream, 3, Format.Float, data);
+        return vb;
+    }
+
+    @Test
+    public void testDirtyRange() {
+        VertexBuffer vb = createBuffer(10);
+        assertEquals(0, vb.getDirtyStart());
+        assertEquals(10, vb.getDirtyEnd());
+
+        vb.clearUpdateNeeded();
+        vb.setUpdateNeeded(4, 2);
+        vb.setUpdateNeeded(1, 1);
+        assertTrue(vb.isUpdateNeeded());
+        assertEquals(1, vb.getDirtyStart());
+        assertEquals(6, vb.getDirtyEnd());
+
+        vb.setUpdateNeeded();
+        assertEquals(0, vb.getDirtyStart());
+        assertEquals(10, vb.getDirtyEnd());
+    }
+
+    @Test
+    public void testSectionsRotate() {
+        GLStreamingBuffers streams = new GLStreamingBuffers(gl, glext, context);
+        VertexBuffer vb = createBuffer(10);
+        assertTrue(streams.canStream(vb));
+
+        long[] offsets = new long[4];
+        for (int i = 0; i < 4; i++) {
+            vb.setUpdateNeeded();
+            streams.upload(vb);
+            vb.clearUpdateNeeded();
+            offsets[i] = streams.getOffset(vb);
+            streams.endFrame();
+        }
+
+        assertTrue(streams.owns(vb));
+        assertArrayEquals(new long[]{0, 256, 512, 0}, offsets);
+        verify(gl, times(1)).glGenBuffers(any(IntBuffer.class));
+        verify(gl).glBufferData(GL.GL_ARRAY_BUFFER, 256L * 3, GL.GL_STREAM_DRAW);
+        assertEquals(4, subDataCalls.size());
+        // not persistent, no fences needed
+        verify(glext, never()).glFenceSync(anyInt(), anyInt());
+    }
+
+    @Test
+    public void testOnlyDirtyRangesAreCopied() {
+        GLStreamingBuffers streams = new GLStreamingBuffers(gl, glext, context);
+        VertexBuffer vb = createBuffer(10);
+        for (int i = 0; i < 3; i++) {
+            streams.upload(vb);
+            vb.clearUpdateNeeded();
+        }
+        assertEquals(30, subDataCalls.get(2)[2]);
+
+        vb.setUpdateNeeded(5, 1);
+        streams.upload(vb);
+        vb.clearUpdateNeeded();
+        // nothing changed since the first upload into section 0
+        assertEquals(5 * 12, subDataCalls.get(3)[0]);
+        assertEquals(3, subDataCalls.get(3)[2]);
+
+        vb.setUpdateNeeded(6, 1);
+        streams.upload(vb);
+        vb.clearUpdateNeeded();
+        vb.setUpdateNeeded(6, 2);
+        streams.upload(vb);
+        vb.clearUpdateNeeded();
+        vb.setUpdateNeeded(7, 1);
+        streams.upload(vb);
+
+        // union of the last three updates: [6, 8)
+        long[] last = subDataCalls.get(6);
+        assertEquals(0 + 6 * 12, last[0]);
+        assertEquals(18, last[1]);
+        assertEquals(6, last[2]);
+        // the data buffer is restored afterwards
+        assertEquals(0, vb.getData().position());
+        assertEquals(30, vb.getData().limit());
+    }
+
+    @Test
+    public void testPersistentMapping() {
+        GLStreamingBuffers streams = new GLStreamingBuffers(gl, glext, context);
+        streams.setPersistent(true);
+        VertexBuffer vb = createBuffer(4);
+
+        for (int i = 0; i < 3; i++) {
+            streams.upload(vb);
+            vb.clearUpdateNeeded();
+            streams.endFrame();
+        }
+        verify(gl).glBufferStorage(GL.GL_ARRAY_BUFFER, 256L * 3,
+                GL4.GL_MAP_WRITE_BIT | GL4.GL_MAP_PERSISTENT_BIT | GL4.GL_MAP_COHERENT_BIT);
+        verify(gl, never()).glBufferSubData(anyInt(), anyLong(), any(FloatBuffer.class));
+        verify(glext, times(3)).glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        verify(glext, never()).glClientWaitSync(any(), anyInt(), anyLong());
+
+        mapped.order(ByteOrder.nativeOrder());
+        assertEquals(5f, mapped.getFloat(512 + 5 * 4), 0f);
+
+        // the fourth upload reuses section 0 after waiting for frame 0
+        ((FloatBuffer) vb.getData()).put(1, 42f);
+        vb.setUpdateNeeded(0, 1);
+        streams.upload(vb);
+        verify(glext, times(1)).glClientWaitSync(any(), eq(GLExt.GL_SYNC_FLUSH_COMMANDS_BIT), anyLong());
+        verify(glext, times(1)).glDeleteSync(any());
+        assertEquals(42f, mapped.getFloat(4), 0f);
+        assertEquals(0, streams.getOffset(vb));
+    }
+
+    @Test
+    public void testWrapInOneFrameWaits() {
+        GLStreamingBuffers streams = new GLStreamingBuffers(gl, glext, context);
+        streams.setPersistent(true);
+        VertexBuffer vb = createBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            vb.setUpdateNeeded();
+            streams.upload(vb);
+            vb.clearUpdateNeeded();
+        }
+        // nothing was fenced yet, so a fence is inserted and waited for
+        verify(glext, times(1)).glFenceSync(GLExt.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        verify(glext, times(1)).glClientWaitSync(any(), anyInt(), anyLong());
+    }
+
+    @Test
+    public void testGrowRecreatesBuffer() {
+        GLStreamingBuffers streams = new GLStreamingBuffers(gl, glext, context);
+        streams.setPersistent(true);
+        VertexBuffer vb = createBuffer(4);
+        streams.upload(vb);
+        int firstId = vb.getId();
+
+        vb.updateData(BufferUtils.createFloatBuffer(300));
+        streams.upload(vb);
+        assertNotEquals(firstId, vb.getId());
+        assertEquals(1, streams.getStreamCount());
+        verify(gl).glUnmapBuffer(GL.GL_ARRAY_BUFFER);
+        verify(gl).glDeleteBuffers(any(IntBuffer.class));
+        verify(gl).glBufferStorage(GL.GL_ARRAY_BUFFER, 2048L * 3,
+                GL4.GL_MAP_WRITE_BIT | GL4.GL_MAP_PERSISTENT_BIT | GL4.GL_MAP_COHERENT_BIT);
+    }
+
+    @Test
+    public void testRendererStreaming() {
+        GLRenderer renderer = new GLRenderer(gl, glext, null);
+        renderer.setBufferStreaming(true);
+        VertexBuffer stream = createBuffer(4);
+        VertexBuffer fixed = createBuffer(4);
+        fixed.setUsage(Usage.Static);
+
+        renderer.updateBufferData(stream);
+        renderer.updateBufferData(fixed);
+        assertNotEquals(-1, stream.getAllocation());
+        assertEquals(-1, fixed.getAllocation());
+        assertFalse(stream.isUpdateNeeded());
+        verify(gl).glBufferData(eq(GL.GL_ARRAY_BUFFER), any(FloatBuffer.class), eq(GL.GL_STATIC_DRAW));
+
+        renderer.deleteBuffer(stream);
+        assertEquals(-1, stream.getId());
+        assertEquals(-1, stream.getAllocation());
+        verify(gl, times(1)).glDeleteBuffers(any(IntBuffer.class));
+    }
+}
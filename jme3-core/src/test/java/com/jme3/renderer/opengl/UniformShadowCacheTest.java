@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.opengl;
+
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.shader.Uniform;
+import com.jme3.shader.VarType;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link UniformShadowCache}.
+ *
+ * @author jMonkeyEngine
+ */
+public class UniformShadowCacheTest {
+
+    private final UniformShadowCache cache = new UniformShadowCache();
+
+    private static Uniform createUniform(VarType type, Object value) {
+        Uniform uniform = new Uniform();
+        uniform.setName("m_Test");
+        uniform.setValue(type, value);
+        return uniform;
+    }
+
+    @Test
+    public void testSkipsSameValue() {
+        Uniform uniform = createUniform(VarType.Vector3, new Vector3f(1, 2, 3));
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertTrue(cache.isUpToDate(1, 0, uniform));
+
+        uniform.setValue(VarType.Vector3, new Vector3f(1, 2, 4));
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertTrue(cache.isUpToDate(1, 0, uniform));
+    }
+
+    @Test
+    public void testKeyedByProgramAndLocation() {
+        Uniform uniform = createUniform(VarType.Float, 0.5f);
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertFalse(cache.isUpToDate(1, 1, uniform));
+        assertFalse(cache.isUpToDate(2, 0, uniform));
+        assertTrue(cache.isUpToDate(1, 0, uniform));
+        assertTrue(cache.isUpToDate(2, 0, uniform));
+
+        // a value set for another program does not affect this one
+        Uniform other = createUniform(VarType.Float, 1.5f);
+        assertFalse(cache.isUpToDate(2, 0, other));
+        assertTrue(cache.isUpToDate(1, 0, uniform));
+    }
+
+    @Test
+    public void testClearValueIsUploaded() {
+        Uniform uniform = createUniform(VarType.Vector4, new ColorRGBA(1, 1, 1, 1));
+        assertFalse(cache.isUpToDate(1, 3, uniform));
+        uniform.clearValue();
+        assertFalse(cache.isUpToDate(1, 3, uniform));
+        assertTrue(cache.isUpToDate(1, 3, uniform));
+    }
+
+    @Test
+    public void testArrays() {
+        Uniform uniform = createUniform(VarType.Matrix4Array, new Matrix4f[] { new Matrix4f(), new Matrix4f() });
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertTrue(cache.isUpToDate(1, 0, uniform));
+
+        Matrix4f moved = new Matrix4f();
+        moved.setTranslation(1, 0, 0);
+        uniform.setValue(VarType.Matrix4Array, new Matrix4f[] { new Matrix4f(), moved });
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+
+        Uniform ints = createUniform(VarType.IntArray, new int[] { 1, 2, 3 });
+        assertFalse(cache.isUpToDate(1, 1, ints));
+        assertTrue(cache.isUpToDate(1, 1, ints));
+    }
+
+    @Test
+    public void testClearProgram() {
+        Uniform uniform = createUniform(VarType.Int, 4);
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertFalse(cache.isUpToDate(2, 0, uniform));
+        cache.clearProgram(1);
+        assertFalse(cache.isUpToDate(1, 0, uniform));
+        assertTrue(cache.isUpToDate(2, 0, uniform));
+        cache.clear();
+        assertFalse(cache.isUpToDate(2, 0, uniform));
+    }
+}
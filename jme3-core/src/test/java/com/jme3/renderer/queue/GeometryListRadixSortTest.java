@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.renderer.queue;
+
+import com.jme3.material.Material;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that radix sorting a {@link GeometryList} by draw keys gives
+ * exactly the same order as sorting it with the comparator.
+ *
+ * @author jMonkeyEngine
+ */
+public class GeometryListRadixSortTest {
+
+    private final Mesh mesh = new Box(1, 1, 1);
+    private final Camera cam = new Camera(1, 1);
+    private final Random random = new Random(42);
+
+    @Before
+    public void setUp() {
+        cam.setLocation(new Vector3f(random.nextFloat() * 10, 0, 5));
+    }
+
+    private static Material createMaterial(final int sortId) {
+        return new Material() {
+            @Override
+            public int getSortId() {
+                return sortId;
+            }
+        };
+    }
+
+    private Geometry[] createGeometries(int count) {
+        Material[] materials = new Material[] {
+            createMaterial(Integer.MIN_VALUE),
+            createMaterial(-1),
+            createMaterial(0),
+            createMaterial(3 << 16 | 0x1234),
+            createMaterial(Integer.MAX_VALUE)
+        };
+        Geometry[] geoms = new Geometry[count];
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setMaterial(materials[random.nextInt(materials.length)]);
+            // coarse positions so that plenty of keys are equal
+            geom.setLocalTranslation(random.nextInt(9) - 4, random.nextInt(3) * 0.5f, -random.nextInt(7));
+            if (i % 7 == 0) {
+                geom.setLocalTranslation(0, 0, -0.0f);
+            }
+            geom.updateGeometricState();
+            geoms[i] = geom;
+        }
+        return geoms;
+    }
+
+    private void checkSameOrder(GeometryComparator comparator, int count) {
+        Geometry[] geoms = createGeometries(count);
+        GeometryList expected = new GeometryList(comparator);
+        GeometryList actual = new GeometryList(comparator);
+        actual.setRadixSort(true);
+        for (Geometry geom : geoms) {
+            expected.add(geom);
+            actual.add(geom);
+        }
+
+        expected.setCamera(cam);
+        expected.sort();
+        for (Geometry geom : geoms) {
+            geom.queueDistance = Float.NEGATIVE_INFINITY;
+        }
+        actual.setCamera(cam);
+        actual.sort();
+
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSame("index " + i, expected.get(i), actual.get(i));
+        }
+    }
+
+    @Test
+    public void testOpaqueOrder() {
+        checkSameOrder(new OpaqueComparator(), 1000);
+    }
+
+    @Test
+    public void testTransparentOrder() {
+        checkSameOrder(new TransparentComparator(), 1000);
+    }
+
+    @Test
+    public void testGuiOrder() {
+        checkSameOrder(new GuiComparator(), 1000);
+    }
+
+    @Test
+    public void testResortReusesList() {
+        GeometryList list = new GeometryList(new GuiComparator());
+        list.setRadixSort(true);
+        for (int size : new int[] { 10, 300, 50 }) {
+            list.clear();
+            for (Geometry geom : createGeometries(size)) {
+                list.add(geom);
+            }
+            list.sort();
+            assertEquals(size, list.size());
+            for (int i = 1; i < list.size(); i++) {
+                assertTrue(list.get(i - 1).getWorldTranslation().z <= list.get(i).getWorldTranslation().z);
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.light.LightList;
+import com.jme3.light.PointLight;
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Verifies that {@link Node#setParallelUpdate(boolean) parallel updates}
+ * produce the same geometric state as the serial update.
+ *
+ * @author jMonkeyEngine
+ */
+public class NodeParallelUpdateTest {
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @After
+    public void tearDown() {
+        Node.setParallelUpdatePool(null);
+        pool.shutdown();
+    }
+
+    private static Node createScene(long seed) {
+        Random random = new Random(seed);
+        Mesh mesh = new Box(1, 1, 1);
+        Node root = new Node("root");
+        for (int i = 0; i < 4; i++) {
+            root.addLight(new PointLight(new Vector3f(i * 10, 0, i * -5), 50f));
+        }
+        populate(root, 4, 6, mesh, random);
+        return root;
+    }
+
+    private static void populate(Node node, int depth, int width, Mesh mesh, Random random) {
+        for (int i = 0; i < width; i++) {
+            Spatial child;
+            if (depth > 1) {
+                Node n = new Node(node.getName() + "/" + i);
+                populate(n, depth - 1, width, mesh, random);
+                child = n;
+            } else {
+                child = new Geometry(node.getName() + "/" + i, mesh);
+            }
+            child.setLocalTranslation(random.nextFloat() * 10f, random.nextFloat() * 10f, random.nextFloat() * 10f);
+            child.setLocalRotation(new Quaternion().fromAngles(random.nextFloat(), random.nextFloat(), random.nextFloat()));
+            child.setLocalScale(0.5f + random.nextFloat());
+            node.attachChild(child);
+        }
+    }
+
+    private static void assertSameState(Spatial expected, Spatial actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getWorldTransform(), actual.getWorldTransform());
+        BoundingBox expectedBound = (BoundingBox) expected.getWorldBound();
+        BoundingBox actualBound = (BoundingBox) actual.getWorldBound();
+        assertEquals(expectedBound.getCenter(), actualBound.getCenter());
+        assertEquals(expectedBound.getExtent(null), actualBound.getExtent(null));
+
+        LightList expectedLights = expected.getWorldLightList();
+        LightList actualLights = actual.getWorldLightList();
+        assertEquals(expectedLights.size(), actualLights.size());
+        for (int i = 0; i < expectedLights.size(); i++) {
+            assertEquals(expectedLights.get(i).getName(), actualLights.get(i).getName());
+        }
+
+        if (expected instanceof Node) {
+            Node expectedNode = (Node) expected;
+            Node actualNode = (Node) actual;
+            assertEquals(expectedNode.getQuantity(), actualNode.getQuantity());
+            for (int i = 0; i < expectedNode.getQuantity(); i++) {
+                assertSameState(expectedNode.getChild(i), actualNode.getChild(i));
+            }
+        }
+    }
+
+    private static void nameLights(Node root) {
+        LightList lights = root.getLocalLightList();
+        for (int i = 0; i < lights.size(); i++) {
+            lights.get(i).setName("light" + i);
+        }
+    }
+
+    @Test
+    public void testSameResultAsSerial() {
+        Node.setParallelUpdatePool(pool);
+
+        Node serial = createScene(42);
+        Node parallel = createScene(42);
+        nameLights(serial);
+        nameLights(parallel);
+        parallel.setParallelUpdate(true);
+
+        serial.updateGeometricState();
+        parallel.updateGeometricState();
+        assertSameState(serial, parallel);
+
+        // move a whole branch and a single leaf
+        Node serialBranch = (Node) serial.getChild(2);
+        Node parallelBranch = (Node) parallel.getChild(2);
+        serialBranch.move(3, -2, 1);
+        parallelBranch.move(3, -2, 1);
+        ((Node) serialBranch.getChild(1)).getChild(4).rotate(0.3f, 0.1f, 0f);
+        ((Node) parallelBranch.getChild(1)).getChild(4).rotate(0.3f, 0.1f, 0f);
+
+        serial.updateGeometricState();
+        parallel.updateGeometricState();
+        assertSameState(serial, parallel);
+    }
+
+    @Test
+    public void testGroupNodeSubtree() {
+        Node.setParallelUpdatePool(pool);
+
+        Node root = createScene(7);
+        BatchNode batch = new BatchNode("batch");
+        Node sub = (Node) root.getChild(0);
+        root.detachChild(sub);
+        batch.attachChild(sub);
+        root.attachChild(batch);
+        root.setParallelUpdate(true);
+
+        Node reference = createScene(7);
+        Node refSub = (Node) reference.getChild(0);
+        reference.detachChild(refSub);
+        Node refBatch = new Node("batch");
+        refBatch.attachChild(refSub);
+        reference.attachChild(refBatch);
+
+        root.updateGeometricState();
+        reference.updateGeometricState();
+        assertSameState(reference, root);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.bounding.BoundingSphere;
+import com.jme3.collision.Collidable;
+import com.jme3.collision.CollisionResult;
+import com.jme3.collision.CollisionResults;
+import com.jme3.math.Ray;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that {@link SceneCollisionTree} finds the same collisions as
+ * testing every child of a node.
+ *
+ * @author jMonkeyEngine
+ */
+public class SceneCollisionTreeTest {
+
+    private static final Mesh MESH = new Box(0.5f, 0.5f, 0.5f);
+
+    private static Geometry createGeometry(String name, Random random) {
+        Geometry geom = new Geometry(name, MESH);
+        geom.setLocalTranslation(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50,
+                                 random.nextFloat() * 100 - 50);
+        if (random.nextInt(4) == 0) {
+            geom.setModelBound(new BoundingSphere());
+            geom.updateModelBound();
+        }
+        return geom;
+    }
+
+    private static Node createScene(int count, long seed) {
+        Random random = new Random(seed);
+        Node node = new Node("scene");
+        for (int i = 0; i < count; i++) {
+            node.attachChild(createGeometry("geom" + i, random));
+        }
+        // a child without bound is always tested
+        node.attachChild(new Node("empty"));
+        return node;
+    }
+
+    private static List<String> collide(Node node, Collidable other) {
+        CollisionResults results = new CollisionResults();
+        int count = node.collideWith(other, results);
+        assertEquals(results.size(), count);
+        List<String> list = new ArrayList<String>();
+        for (CollisionResult result : results) {
+            list.add(result.getGeometry().getName() + " " + result.getContactPoint()
+                     + " " + result.getTriangleIndex());
+        }
+        Collections.sort(list);
+        return list;
+    }
+
+    private static void assertSameCollisions(Node expected, Node actual, long seed) {
+        Random random = new Random(seed);
+        int hits = 0;
+        for (int i = 0; i < 200; i++) {
+            Vector3f origin = new Vector3f(random.nextFloat() * 120 - 60, random.nextFloat() * 120 - 60, -70);
+            Vector3f target = new Vector3f(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50, 70);
+            Ray ray = new Ray(origin, target.subtractLocal(origin).normalizeLocal());
+            if (i % 3 == 0) {
+                ray.setLimit(80f);
+            }
+            List<String> list = collide(expected, ray);
+            hits += list.size();
+            assertEquals(list, collide(actual, ray));
+        }
+        for (int i = 0; i < 50; i++) {
+            Vector3f center = new Vector3f(random.nextFloat() * 100 - 50, random.nextFloat() * 100 - 50,
+                                           random.nextFloat() * 100 - 50);
+            BoundingBox box = new BoundingBox(center, 5, 5, 5);
+            List<String> list = collide(expected, box);
+            hits += list.size();
+            assertEquals(list, collide(actual, box));
+        }
+        assertTrue(hits > 0);
+    }
+
+    @Test
+    public void testSameCollisionsAsLinearSearch() {
+        Node reference = createScene(500, 1);
+        Node node = createScene(500, 1);
+        node.setCollisionTreeEnabled(true);
+        reference.updateGeometricState();
+        node.updateGeometricState();
+
+        SceneCollisionTree tree = node.getCollisionTree();
+        assertEquals(500, tree.getLeafCount());
+        assertTrue(tree.getDepth() < 20);
+        assertSameCollisions(reference, node, 2);
+    }
+
+    @Test
+    public void testRefitAfterChanges() {
+        Node reference = createScene(300, 3);
+        Node node = createScene(300, 3);
+        node.setCollisionTreeEnabled(true);
+        node.updateGeometricState();
+        assertSameCollisions(reference, node, 4);
+
+        // move, detach and attach children, without updating the scene
+        for (Node n : new Node[]{reference, node}) {
+            Random r = new Random(6);
+            for (int i = 0; i < 40; i++) {
+                n.getChild(i).move(r.nextFloat() * 20 - 10, r.nextFloat() * 20 - 10, r.nextFloat() * 20 - 10);
+            }
+            for (int i = 0; i < 20; i++) {
+                n.detachChildAt(r.nextInt(n.getQuantity() - 1));
+            }
+            for (int i = 0; i < 30; i++) {
+                n.attachChild(createGeometry("new" + i, r));
+            }
+        }
+        assertSameCollisions(reference, node, 7);
+        assertEquals(310, node.getCollisionTree().getLeafCount());
+
+        // many moves force a rebuild
+        for (Node n : new Node[]{reference, node}) {
+            for (int i = 0; i < 300; i++) {
+                n.getChild(i).move(0, 30, 0);
+            }
+        }
+        reference.updateGeometricState();
+        node.updateGeometricState();
+        assertSameCollisions(reference, node, 8);
+    }
+
+    @Test
+    public void testCloneAndDisable() {
+        Node node = createScene(50, 9);
+        node.setCollisionTreeEnabled(true);
+        Node clone = node.clone(false);
+        assertNotNull(clone.getCollisionTree());
+        assertNotSame(node.getCollisionTree(), clone.getCollisionTree());
+        assertSame(clone, clone.getCollisionTree().getNode());
+        assertSameCollisions(node, clone, 10);
+
+        node.setCollisionTreeEnabled(false);
+        assertNull(node.getCollisionTree());
+        assertSameCollisions(clone, node, 11);
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene;
+
+import com.jme3.math.Quaternion;
+import com.jme3.math.Vector3f;
+import com.jme3.scene.shape.Box;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link TransformStore}.
+ *
+ * @author jMonkeyEngine
+ */
+public class TransformStoreTest {
+
+    private static Node createNode(int count) {
+        Mesh mesh = new Box(1, 1, 1);
+        Node node = new Node("node");
+        for (int i = 0; i < count; i++) {
+            Geometry geom = new Geometry("geom" + i, mesh);
+            geom.setLocalTranslation(i, 0, 0);
+            node.attachChild(geom);
+        }
+        return node;
+    }
+
+    @Test
+    public void testInitializedFromChildren() {
+        Node node = createNode(5);
+        node.getChild(3).setLocalScale(2f);
+        node.setTransformStoreEnabled(true);
+
+        TransformStore store = node.getTransformStore();
+        assertEquals(5, store.size());
+        assertEquals(new Vector3f(4, 0, 0), store.getTranslation(4, null));
+        assertEquals(new Vector3f(2, 2, 2), store.getScale(3, null));
+        assertEquals(Quaternion.IDENTITY, store.getRotation(0, null));
+        assertFalse(store.isDirty());
+    }
+
+    @Test
+    public void testBulkUpdate() {
+        Node node = createNode(100);
+        Node reference = createNode(100);
+        node.setTransformStoreEnabled(true);
+        node.updateGeometricState();
+        reference.updateGeometricState();
+
+        TransformStore store = node.getTransformStore();
+        store.translate(0, store.size(), 1f, 2f, 3f);
+        float[] rotations = store.getRotations();
+        Quaternion rot = new Quaternion().fromAngles(0.1f, 0.2f, 0.3f);
+        rotations[10 * 4] = rot.getX();
+        rotations[10 * 4 + 1] = rot.getY();
+        rotations[10 * 4 + 2] = rot.getZ();
+        rotations[10 * 4 + 3] = rot.getW();
+        store.markDirty(10, 11);
+
+        for (Spatial child : reference.getChildren()) {
+            child.move(1f, 2f, 3f);
+        }
+        reference.getChild(10).setLocalRotation(rot);
+
+        // nothing is applied before the update
+        assertEquals(new Vector3f(7, 0, 0), node.getChild(7).getLocalTranslation());
+
+        node.updateGeometricState();
+        reference.updateGeometricState();
+        for (int i = 0; i < 100; i++) {
+            assertEquals(reference.getChild(i).getWorldTransform(), node.getChild(i).getWorldTransform());
+        }
+        assertEquals(reference.getWorldBound().getCenter(), node.getWorldBound().getCenter());
+    }
+
+    @Test
+    public void testWorldBoundAppliesStore() {
+        Node node = createNode(3);
+        node.setTransformStoreEnabled(true);
+        node.updateGeometricState();
+
+        node.getTransformStore().translate(0, 3, 0f, 10f, 0f);
+        assertEquals(10f, node.getWorldBound().getCenter().y, 0f);
+        assertEquals(new Vector3f(2, 10, 0), node.getChild(2).getLocalTranslation());
+    }
+
+    @Test
+    public void testAttachDetach() {
+        Node node = createNode(4);
+        node.setTransformStoreEnabled(true);
+        TransformStore store = node.getTransformStore();
+
+        store.setTranslation(1, 0, 5, 0);
+        Geometry extra = new Geometry("extra", new Box(1, 1, 1));
+        extra.setLocalTranslation(0, 0, 42);
+        node.attachChildAt(extra, 0);
+
+        assertEquals(5, store.size());
+        assertEquals(new Vector3f(0, 0, 42), store.getTranslation(0, null));
+        assertEquals(new Vector3f(0, 5, 0), store.getTranslation(2, null));
+        assertEquals(new Vector3f(0, 5, 0), node.getChild(2).getLocalTranslation());
+
+        node.detachChildAt(0);
+        assertEquals(4, store.size());
+        assertEquals(new Vector3f(3, 0, 0), store.getTranslation(3, null));
+
+        // grow past the initial capacity
+        for (int i = 0; i < 40; i++) {
+            node.attachChild(new Geometry("more" + i, new Box(1, 1, 1)));
+        }
+        assertEquals(44, store.size());
+        assertEquals(new Vector3f(3, 0, 0), store.getTranslation(3, null));
+    }
+
+    @Test
+    public void testSwapChildren() {
+        Node node = createNode(4);
+        node.getChild(3).setLocalScale(2f);
+        node.setTransformStoreEnabled(true);
+        TransformStore store = node.getTransformStore();
+        store.setTranslation(1, 0, 5, 0);
+
+        node.swapChildren(1, 3);
+        assertEquals("geom3", node.getChild(1).getName());
+        assertEquals(new Vector3f(0, 5, 0), node.getChild(3).getLocalTranslation());
+        assertEquals(new Vector3f(0, 5, 0), store.getTranslation(3, null));
+        assertEquals(new Vector3f(3, 0, 0), store.getTranslation(1, null));
+        assertEquals(new Vector3f(2, 2, 2), store.getScale(1, null));
+
+        // a later update must not move the transforms back
+        store.markAllDirty();
+        node.updateGeometricState();
+        assertEquals(new Vector3f(3, 0, 0), node.getChild(1).getLocalTranslation());
+        assertEquals(new Vector3f(2, 2, 2), node.getChild(1).getLocalScale());
+        assertEquals(new Vector3f(0, 5, 0), node.getChild(3).getLocalTranslation());
+        assertEquals(new Vector3f(1, 1, 1), node.getChild(3).getLocalScale());
+    }
+
+    @Test
+    public void testClone() {
+        Node node = createNode(3);
+        node.setTransformStoreEnabled(true);
+        node.getTransformStore().setTranslation(2, 9, 9, 9);
+
+        Node clone = node.clone(false);
+        assertNotSame(node.getTransformStore(), clone.getTransformStore());
+        assertSame(clone, clone.getTransformStore().getNode());
+        clone.updateGeometricState();
+        assertEquals(new Vector3f(9, 9, 9), clone.getChild(2).getLocalTranslation());
+        assertEquals(new Vector3f(2, 0, 0), node.getChild(2).getLocalTranslation());
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.scene.mesh;
+
+import com.jme3.bounding.BoundingBox;
+import com.jme3.export.binary.BinaryExporter;
+import com.jme3.math.Transform;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.Camera;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.shape.Box;
+import com.jme3.scene.shape.Quad;
+import com.jme3.asset.DesktopAssetManager;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests {@link MultiDrawMesh}.
+ *
+ * @author jMonkeyEngine
+ */
+public class MultiDrawMeshTest {
+
+    private static MultiDrawMesh createRow(int count) {
+        MultiDrawMesh mesh = new MultiDrawMesh();
+        Box box = new Box(1, 1, 1);
+        for (int i = 0; i < count; i++) {
+            mesh.add(box, new Transform(new Vector3f(i * 10, 0, 0)));
+        }
+        return mesh;
+    }
+
+    @Test
+    public void testPacking() {
+        Box box = new Box(1, 1, 1);
+        MultiDrawMesh mesh = createRow(20);
+
+        assertEquals(20, mesh.getDrawCount());
+        assertEquals(20 * box.getVertexCount(), mesh.getVertexCount());
+        assertEquals(20 * box.getTriangleCount(), mesh.getTriangleCount());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * box.getVertexCount(), mesh.getFirstVertex(i));
+            assertEquals(i * 36, mesh.getFirstIndex(i));
+            assertEquals(36, mesh.getIndexCount(i));
+        }
+
+        // indices of a draw are rebased onto its vertex range
+        IntBuffer indices = (IntBuffer) mesh.getBuffer(Type.Index).getData();
+        int first = mesh.getFirstVertex(7);
+        for (int i = 0; i < 36; i++) {
+            int index = indices.get(mesh.getFirstIndex(7) + i);
+            assertEquals(first + box.getIndexBuffer().get(i), index);
+        }
+
+        // positions are transformed, other buffers are copied
+        FloatBuffer pos = (FloatBuffer) mesh.getBuffer(Type.Position).getData();
+        FloatBuffer boxPos = (FloatBuffer) box.getBuffer(Type.Position).getData();
+        assertEquals(boxPos.get(0) + 70, pos.get(first * 3), 0f);
+        FloatBuffer tex = (FloatBuffer) mesh.getBuffer(Type.TexCoord).getData();
+        FloatBuffer boxTex = (FloatBuffer) box.getBuffer(Type.TexCoord).getData();
+        assertEquals(boxTex.get(5), tex.get(first * 2 + 5), 0f);
+
+        BoundingBox bound = (BoundingBox) mesh.getBound();
+        assertEquals(new Vector3f(-1, -1, -1), bound.getMin(null));
+        assertEquals(new Vector3f(191, 1, 1), bound.getMax(null));
+        assertEquals(new Vector3f(70, 0, 0), mesh.getDrawBound(7).getCenter());
+    }
+
+    @Test
+    public void testCommands() {
+        MultiDrawMesh mesh = createRow(5);
+        mesh.setDrawEnabled(1, false);
+        mesh.setDrawEnabled(3, false);
+
+        VertexBuffer commands = mesh.getCommandBuffer(1);
+        assertEquals(3, mesh.getCommandCount());
+        IntBuffer data = (IntBuffer) commands.getData();
+        assertEquals(3 * MultiDrawMesh.COMMAND_SIZE, data.limit());
+        int[] expected = {0, 2, 4};
+        for (int i = 0; i < 3; i++) {
+            int base = i * MultiDrawMesh.COMMAND_SIZE;
+            assertEquals(36, data.get(base));
+            assertEquals(1, data.get(base + 1));
+            assertEquals(expected[i] * 36, data.get(base + 2));
+            assertEquals(0, data.get(base + 3));
+            assertEquals(0, data.get(base + 4));
+        }
+
+        // unchanged state keeps the same commands
+        commands.clearUpdateNeeded();
+        assertSame(commands, mesh.getCommandBuffer(1));
+        assertFalse(commands.isUpdateNeeded());
+
+        mesh.setDrawEnabled(3, true);
+        mesh.getCommandBuffer(4);
+        assertEquals(4, mesh.getCommandCount());
+        assertEquals(4, data.get(1));
+        assertTrue(commands.isUpdateNeeded());
+    }
+
+    @Test
+    public void testCull() {
+        MultiDrawMesh mesh = createRow(10);
+        Camera cam = new Camera(100, 100);
+        cam.setFrustumPerspective(30, 1, 1, 1000);
+        cam.setLocation(new Vector3f(0, 0, 20));
+        cam.lookAt(new Vector3f(0, 0, 0), Vector3f.UNIT_Y);
+        cam.update();
+
+        int visible = mesh.cull(cam, Transform.IDENTITY);
+        assertTrue(visible > 0 && visible < 10);
+        assertTrue(mesh.isDrawVisible(0));
+        assertFalse(mesh.isDrawVisible(9));
+
+        mesh.getCommandBuffer(1);
+        assertEquals(visible, mesh.getCommandCount());
+
+        // moving the geometry brings the last draw into view
+        mesh.cull(cam, new Transform(new Vector3f(-90, 0, 0)));
+        assertTrue(mesh.isDrawVisible(9));
+        assertFalse(mesh.isDrawVisible(0));
+    }
+
+    @Test
+    public void testIncompatibleMesh() {
+        MultiDrawMesh mesh = createRow(1);
+        Mesh points = new Box(1, 1, 1);
+        points.setMode(Mesh.Mode.Points);
+        try {
+            mesh.add(points, null);
+            fail("Expected mode mismatch");
+        } catch (IllegalArgumentException ex) {
+        }
+
+        Mesh box = new Box(1, 1, 1);
+        box.clearBuffer(Type.TexCoord);
+        try {
+            mesh.add(box, null);
+            fail("Expected layout mismatch");
+        } catch (IllegalArgumentException ex) {
+        }
+        assertEquals(1, mesh.getDrawCount());
+
+        // a compatible mesh of another shape is fine
+        assertEquals(1, mesh.add(new Quad(1, 1), null));
+    }
+
+    @Test
+    public void testCloneAndSave() {
+        MultiDrawMesh mesh = createRow(4);
+        mesh.setDrawEnabled(2, false);
+
+        MultiDrawMesh copy = (MultiDrawMesh) mesh.deepClone();
+        copy.setDrawEnabled(0, false);
+        assertTrue(mesh.isDrawEnabled(0));
+
+        MultiDrawMesh loaded = BinaryExporter.saveAndLoad(new DesktopAssetManager(), mesh);
+        assertEquals(4, loaded.getDrawCount());
+        assertFalse(loaded.isDrawEnabled(2));
+        assertEquals(mesh.getFirstIndex(3), loaded.getFirstIndex(3));
+        assertEquals(mesh.getDrawBound(3).getCenter(), loaded.getDrawBound(3).getCenter());
+
+        int draw = loaded.add(new Box(1, 1, 1), null);
+        assertEquals(4, draw);
+        assertEquals(mesh.getVertexCount(), loaded.getFirstVertex(4));
+    }
+}
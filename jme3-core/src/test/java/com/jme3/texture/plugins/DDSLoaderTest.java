@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.texture.plugins;
+
+import com.jme3.asset.AssetInfo;
+import com.jme3.asset.TextureKey;
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link DDSLoader} reads and flips image data.
+ *
+ * @author jMonkeyEngine
+ */
+public class DDSLoaderTest {
+
+    private static byte[] createDDS(int width, int height, int mipMapCount,
+                                    int pfFlags, int fourcc, int bpp, byte[] data) {
+        ByteBuffer dds = ByteBuffer.allocate(128 + data.length).order(ByteOrder.LITTLE_ENDIAN);
+        dds.putInt(0x20534444).putInt(124);
+        dds.putInt(0x1007 | (mipMapCount > 1 ? 0x20000 : 0));
+        dds.putInt(height).putInt(width).putInt(0).putInt(0).putInt(mipMapCount);
+        dds.position(dds.position() + 44);
+        // pixel format
+        dds.putInt(32).putInt(pfFlags).putInt(fourcc).putInt(bpp);
+        dds.putInt(0xFF).putInt(0).putInt(0).putInt(0);
+        // caps
+        dds.putInt(0x1000 | (mipMapCount > 1 ? 0x400008 : 0)).putInt(0);
+        dds.position(dds.position() + 12);
+        dds.put(data);
+        return dds.array();
+    }
+
+    private static Image load(final byte[] file, boolean flip) throws IOException {
+        TextureKey key = new TextureKey("test.dds", flip);
+        AssetInfo info = new AssetInfo(null, key) {
+            @Override
+            public InputStream openStream() {
+                return new ByteArrayInputStream(file);
+            }
+        };
+        return (Image) new DDSLoader().load(info);
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.limit()];
+        ByteBuffer copy = buffer.duplicate();
+        copy.clear();
+        copy.get(data);
+        return data;
+    }
+
+    @Test
+    public void testGrayscaleFlip() throws IOException {
+        byte[] data = {1, 2, 3, 4, 5, 6, 7, 8};
+        // DDPF_GRAYSCALE
+        byte[] file = createDDS(4, 2, 1, 0x20000, 0, 8, data);
+
+        Image image = load(file, false);
+        assertEquals(Format.Luminance8, image.getFormat());
+        assertArrayEquals(data, toArray(image.getData(0)));
+
+        image = load(file, true);
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 1, 2, 3, 4}, toArray(image.getData(0)));
+    }
+
+    @Test
+    public void testDXTFlipWithMipMaps() throws IOException {
+        // 8x8 DXT5: 4 blocks, then 1 block for each of the 4x4, 2x2 and 1x1 levels
+        byte[] data = new byte[(4 + 1 + 1 + 1) * 16];
+        new Random(3).nextBytes(data);
+        // DDPF_FOURCC
+        byte[] file = createDDS(8, 8, 4, 0x4, 0x35545844, 0, data);
+
+        Image image = load(file, false);
+        assertEquals(Format.DXT5, image.getFormat());
+        assertArrayEquals(data, toArray(image.getData(0)));
+
+        ByteBuffer expected = ByteBuffer.wrap(data.clone());
+        int[] heights = {8, 4, 2, 1};
+        int[] sizes = {64, 16, 16, 16};
+        int offset = 0;
+        for (int mip = 0; mip < 4; mip++) {
+            expected.position(offset);
+            DXTFlipper.flipDXTInPlace(expected, heights[mip], heights[mip], Format.DXT5);
+            offset += sizes[mip];
+        }
+
+        image = load(file, true);
+        assertArrayEquals(expected.array(), toArray(image.getData(0)));
+        assertArrayEquals(sizes, image.getMipMapSizes());
+    }
+}
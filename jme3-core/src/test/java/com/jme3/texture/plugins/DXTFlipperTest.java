@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.texture.plugins;
+
+import com.jme3.texture.Image.Format;
+import com.jme3.util.BufferUtils;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies the in place flipping of DXT compressed images.
+ *
+ * @author jMonkeyEngine
+ */
+public class DXTFlipperTest {
+
+    private static ByteBuffer createBuffer(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return createBuffer(data);
+    }
+
+    private static ByteBuffer createBuffer(byte[] data) {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(data.length);
+        buffer.put(data).rewind();
+        return buffer;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+
+    @Test
+    public void testDXT1Block() {
+        ByteBuffer img = createBuffer(1, 2, 3, 4, 10, 11, 12, 13);
+        DXTFlipper.flipDXTInPlace(img, 4, 4, Format.DXT1);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 13, 12, 11, 10}, toArray(img));
+
+        img = createBuffer(1, 2, 3, 4, 10, 11, 12, 13);
+        DXTFlipper.flipDXTInPlace(img, 4, 2, Format.DXT1);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 11, 10, 12, 13}, toArray(img));
+
+        img = createBuffer(1, 2, 3, 4, 10, 11, 12, 13);
+        DXTFlipper.flipDXTInPlace(img, 4, 1, Format.DXT1);
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 10, 11, 12, 13}, toArray(img));
+    }
+
+    @Test
+    public void testDXT5AlphaBlock() {
+        // the 3 bit alpha codes of row y are all y
+        long codes = 0;
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                codes |= (long) y << (3 * (4 * y + x));
+            }
+        }
+        byte[] block = new byte[16];
+        block[0] = 7;
+        block[1] = 9;
+        for (int i = 0; i < 6; i++) {
+            block[2 + i] = (byte) (codes >>> (8 * i));
+        }
+        ByteBuffer img = createBuffer(block);
+        DXTFlipper.flipDXTInPlace(img, 4, 4, Format.DXT5);
+
+        assertEquals(7, img.get(0));
+        assertEquals(9, img.get(1));
+        long flipped = 0;
+        for (int i = 0; i < 6; i++) {
+            flipped |= (img.get(2 + i) & 0xFFL) << (8 * i);
+        }
+        for (int y = 0; y < 4; y++) {
+            for (int x = 0; x < 4; x++) {
+                assertEquals(3 - y, (flipped >>> (3 * (4 * y + x))) & 0x7);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockRows() {
+        // 4x8 image, two blocks on top of each other
+        ByteBuffer img = createBuffer(1, 1, 1, 1, 0, 0, 0, 0,
+                                      2, 2, 2, 2, 0, 0, 0, 0);
+        DXTFlipper.flipDXTInPlace(img, 4, 8, Format.DXT1);
+        assertEquals(2, img.get(0));
+        assertEquals(1, img.get(8));
+    }
+
+    @Test
+    public void testFlipTwice() {
+        Random random = new Random(1);
+        Format[] formats = {Format.DXT1, Format.DXT1A, Format.DXT3, Format.DXT5};
+        int[] sizes = {1, 2, 3, 4, 8, 12};
+        for (Format format : formats) {
+            for (int h : sizes) {
+                int bpb = format == Format.DXT3 || format == Format.DXT5 ? 16 : 8;
+                byte[] data = new byte[3 * ((h + 3) / 4) * bpb];
+                random.nextBytes(data);
+                ByteBuffer img = createBuffer(data);
+
+                ByteBuffer copy = DXTFlipper.flipDXT(img, 12, h, format);
+                assertArrayEquals(data, toArray(img));
+
+                DXTFlipper.flipDXTInPlace(img, 12, h, format);
+                assertArrayEquals(toArray(copy), toArray(img));
+
+                DXTFlipper.flipDXTInPlace(img, 12, h, format);
+                assertArrayEquals(data, toArray(img));
+            }
+        }
+    }
+}
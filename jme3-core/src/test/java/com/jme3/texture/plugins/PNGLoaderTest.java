@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.texture.plugins;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies that {@link PNGLoader} decodes the different kinds of PNG images.
+ *
+ * @author jMonkeyEngine
+ */
+public class PNGLoaderTest {
+
+    private static final int[][] ADAM7 = {
+        {0, 0, 8, 8}, {4, 0, 8, 8}, {0, 4, 4, 8}, {2, 0, 4, 4},
+        {0, 2, 2, 4}, {1, 0, 2, 2}, {0, 1, 1, 2}
+    };
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * Encodes an image, cycling through all filter types. The samples of
+     * each pixel are given at the bit depth of the image.
+     */
+    private static byte[] createPNG(int width, int height, int bitDepth, int colorType, int channels,
+                                    boolean interlaced, int[][] pixels, byte[] palette, byte[] trns) throws IOException {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(raw);
+        int bpp = Math.max(1, channels * bitDepth / 8);
+        int[][] passes = interlaced ? ADAM7 : new int[][]{{0, 0, 1, 1}};
+        int row = 0;
+        for (int[] pass : passes) {
+            int passWidth = (width - pass[0] + pass[2] - 1) / pass[2];
+            int passHeight = (height - pass[1] + pass[3] - 1) / pass[3];
+            if (passWidth <= 0 || passHeight <= 0) {
+                continue;
+            }
+            int rowBytes = (passWidth * channels * bitDepth + 7) / 8;
+            byte[] prev = new byte[rowBytes];
+            for (int y = 0; y < passHeight; y++) {
+                byte[] cur = new byte[rowBytes];
+                int bit = 0;
+                for (int x = 0; x < passWidth; x++) {
+                    int[] pixel = pixels[(pass[1] + y * pass[3]) * width + pass[0] + x * pass[2]];
+                    for (int c = 0; c < channels; c++, bit += bitDepth) {
+                        if (bitDepth == 16) {
+                            cur[bit / 8] = (byte) (pixel[c] >> 8);
+                            cur[bit / 8 + 1] = (byte) pixel[c];
+                        } else {
+                            cur[bit / 8] |= pixel[c] << (8 - bitDepth - bit % 8);
+                        }
+                    }
+                }
+                int filter = row++ % 5;
+                deflater.write(filter);
+                deflater.write(filter(filter, cur, prev, bpp));
+                prev = cur;
+            }
+        }
+        deflater.close();
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(png);
+        out.writeLong(0x89504E470D0A1A0AL);
+        ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(ihdr);
+        header.writeInt(width);
+        header.writeInt(height);
+        header.writeByte(bitDepth);
+        header.writeByte(colorType);
+        header.writeByte(0);
+        header.writeByte(0);
+        header.writeByte(interlaced ? 1 : 0);
+        writeChunk(out, "IHDR", ihdr.toByteArray());
+        writeChunk(out, "tEXt", "Comment\0test".getBytes("US-ASCII"));
+        if (palette != null) {
+            writeChunk(out, "PLTE", palette);
+        }
+        if (trns != null) {
+            writeChunk(out, "tRNS", trns);
+        }
+        // split the image data over several chunks
+        byte[] data = raw.toByteArray();
+        int chunkSize = Math.max(1, data.length / 3);
+        for (int offset = 0; offset < data.length; offset += chunkSize) {
+            byte[] chunk = new byte[Math.min(chunkSize, data.length - offset)];
+            System.arraycopy(data, offset, chunk, 0, chunk.length);
+            writeChunk(out, "IDAT", chunk);
+        }
+        writeChunk(out, "IEND", new byte[0]);
+        return png.toByteArray();
+    }
+
+    private static byte[] filter(int type, byte[] cur, byte[] prev, int bpp) {
+        byte[] out = new byte[cur.length];
+        for (int i = 0; i < cur.length; i++) {
+            int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+            int b = prev[i] & 0xFF;
+            int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+            int predictor;
+            switch (type) {
+                case 1:
+                    predictor = a;
+                    break;
+                case 2:
+                    predictor = b;
+                    break;
+                case 3:
+                    predictor = (a + b) >>> 1;
+                    break;
+                case 4:
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    predictor = pa <= pb && pa <= pc ? a : pb <= pc ? b : c;
+                    break;
+                default:
+                    predictor = 0;
+                    break;
+            }
+            out[i] = (byte) (cur[i] - predictor);
+        }
+        return out;
+    }
+
+    private static int[][] randomPixels(int count, int channels, int bitDepth, long seed) {
+        Random random = new Random(seed);
+        int[][] pixels = new int[count][channels];
+        for (int[] pixel : pixels) {
+            for (int c = 0; c < channels; c++) {
+                pixel[c] = random.nextInt(1 << bitDepth);
+            }
+        }
+        return pixels;
+    }
+
+    private static Image load(byte[] png, boolean flip) throws IOException {
+        return new PNGLoader().load(new ByteArrayInputStream(png), flip);
+    }
+
+    private static void assertPixels(Image image, int[][] expected, int outBpp, boolean flip) {
+        ByteBuffer data = image.getData(0);
+        int width = image.getWidth();
+        int height = image.getHeight();
+        assertEquals(width * height * outBpp, data.limit());
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int[] pixel = expected[y * width + x];
+                int offset = ((flip ? height - y - 1 : y) * width + x) * outBpp;
+                for (int c = 0; c < outBpp; c++) {
+                    assertEquals("pixel " + x + "," + y, pixel[c], data.get(offset + c) & 0xFF);
+                }
+            }
+        }
+    }
+
+    private void checkRGB(int width, int height, boolean interlaced) throws IOException {
+        int[][] pixels = randomPixels(width * height, 3, 8, width * 31 + height);
+        byte[] png = createPNG(width, height, 8, 2, 3, interlaced, pixels, null, null);
+
+        Image image = load(png, false);
+        assertEquals(Format.RGB8, image.getFormat());
+        assertPixels(image, pixels, 3, false);
+
+        assertPixels(load(png, true), pixels, 3, true);
+    }
+
+    @Test
+    public void testRGB() throws IOException {
+        checkRGB(13, 7, false);
+    }
+
+    @Test
+    public void testInterlaced() throws IOException {
+        checkRGB(13, 7, true);
+        checkRGB(1, 1, true);
+        checkRGB(3, 9, true);
+    }
+
+    @Test
+    public void testLargeImage() throws IOException {
+        // large enough to be inflated on another thread
+        checkRGB(700, 600, false);
+    }
+
+    @Test
+    public void testRGBA() throws IOException {
+        int[][] pixels = randomPixels(10 * 6, 4, 8, 1);
+        Image image = load(createPNG(10, 6, 8, 6, 4, false, pixels, null, null), false);
+        assertEquals(Format.RGBA8, image.getFormat());
+        assertPixels(image, pixels, 4, false);
+    }
+
+    @Test
+    public void testPaletteWithTransparency() throws IOException {
+        byte[] palette = {10, 20, 30, 40, 50, 60, 70, 80, 90, (byte) 200, (byte) 210, (byte) 220};
+        byte[] trns = {0, (byte) 128};
+        int[][] indices = randomPixels(9 * 5, 1, 2, 2);
+        for (int[] index : indices) {
+            index[0] %= 4;
+        }
+        Image image = load(createPNG(9, 5, 2, 3, 1, false, indices, palette, trns), false);
+        assertEquals(Format.RGBA8, image.getFormat());
+
+        int[][] expected = new int[indices.length][];
+        for (int i = 0; i < indices.length; i++) {
+            int index = indices[i][0];
+            expected[i] = new int[]{
+                palette[index * 3] & 0xFF, palette[index * 3 + 1] & 0xFF, palette[index * 3 + 2] & 0xFF,
+                index < trns.length ? trns[index] & 0xFF : 255
+            };
+        }
+        assertPixels(image, expected, 4, false);
+    }
+
+    @Test
+    public void testGrayscale1Bit() throws IOException {
+        int[][] pixels = randomPixels(11 * 3, 1, 1, 3);
+        Image image = load(createPNG(11, 3, 1, 0, 1, true, pixels, null, null), false);
+        assertEquals(Format.Luminance8, image.getFormat());
+
+        int[][] expected = new int[pixels.length][];
+        for (int i = 0; i < pixels.length; i++) {
+            expected[i] = new int[]{pixels[i][0] * 255};
+        }
+        assertPixels(image, expected, 1, false);
+    }
+
+    @Test
+    public void testGrayscaleAlpha16Bit() throws IOException {
+        int[][] pixels = randomPixels(5 * 4, 2, 16, 4);
+        Image image = load(createPNG(5, 4, 16, 4, 2, false, pixels, null, null), false);
+        assertEquals(Format.RGBA8, image.getFormat());
+
+        int[][] expected = new int[pixels.length][];
+        for (int i = 0; i < pixels.length; i++) {
+            int gray = pixels[i][0] >> 8;
+            expected[i] = new int[]{gray, gray, gray, pixels[i][1] >> 8};
+        }
+        assertPixels(image, expected, 4, false);
+    }
+
+    @Test
+    public void testRGB16BitWithTransparentColor() throws IOException {
+        int[][] pixels = randomPixels(4 * 4, 3, 16, 5);
+        pixels[5] = new int[]{0x1234, 0x5678, 0x9ABC};
+        byte[] trns = {0x12, 0x34, 0x56, 0x78, (byte) 0x9A, (byte) 0xBC};
+        Image image = load(createPNG(4, 4, 16, 2, 3, false, pixels, null, trns), false);
+        assertEquals(Format.RGBA8, image.getFormat());
+
+        int[][] expected = new int[pixels.length][];
+        for (int i = 0; i < pixels.length; i++) {
+            int[] p = pixels[i];
+            expected[i] = new int[]{p[0] >> 8, p[1] >> 8, p[2] >> 8, i == 5 ? 0 : 255};
+        }
+        assertPixels(image, expected, 4, false);
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidSignature() throws IOException {
+        load(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9}, false);
+    }
+}
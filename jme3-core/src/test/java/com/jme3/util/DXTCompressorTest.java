@@ -0,0 +1,166 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.image.ColorSpace;
+import java.nio.ByteBuffer;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies the block compression of {@link DXTCompressor} by decoding
+ * the compressed blocks.
+ *
+ * @author jMonkeyEngine
+ */
+public class DXTCompressorTest {
+
+    private static Image createImage(int width, int height, byte[] rgba) {
+        ByteBuffer buffer = BufferUtils.createByteBuffer(rgba.length);
+        buffer.put(rgba).flip();
+        return new Image(Format.RGBA8, width, height, buffer, ColorSpace.Linear);
+    }
+
+    private static int[] decodeColors(ByteBuffer data, int position) {
+        int c0 = (data.get(position) & 0xFF) | (data.get(position + 1) & 0xFF) << 8;
+        int c1 = (data.get(position + 2) & 0xFF) | (data.get(position + 3) & 0xFF) << 8;
+        int[] palette = new int[12];
+        int[] endpoints = {c0, c1};
+        for (int e = 0; e < 2; e++) {
+            int r = (endpoints[e] >> 11) & 31;
+            int g = (endpoints[e] >> 5) & 63;
+            int b = endpoints[e] & 31;
+            palette[e * 3] = (r << 3) | (r >> 2);
+            palette[e * 3 + 1] = (g << 2) | (g >> 4);
+            palette[e * 3 + 2] = (b << 3) | (b >> 2);
+        }
+        for (int c = 0; c < 3; c++) {
+            palette[6 + c] = (2 * palette[c] + palette[3 + c]) / 3;
+            palette[9 + c] = (palette[c] + 2 * palette[3 + c]) / 3;
+        }
+        int[] rgb = new int[16 * 3];
+        for (int i = 0; i < 16; i++) {
+            int index = (data.get(position + 4 + i / 4) >> ((i % 4) * 2)) & 3;
+            System.arraycopy(palette, index * 3, rgb, i * 3, 3);
+        }
+        return rgb;
+    }
+
+    private static int[] decodeAlpha(ByteBuffer data, int position) {
+        int a0 = data.get(position) & 0xFF;
+        int a1 = data.get(position + 1) & 0xFF;
+        long bits = 0;
+        for (int i = 0; i < 6; i++) {
+            bits |= (long) (data.get(position + 2 + i) & 0xFF) << (i * 8);
+        }
+        int[] alpha = new int[16];
+        for (int i = 0; i < 16; i++) {
+            int index = (int) (bits >> (i * 3)) & 7;
+            alpha[i] = index == 0 ? a0 : index == 1 ? a1 : ((8 - index) * a0 + (index - 1) * a1) / 7;
+        }
+        return alpha;
+    }
+
+    @Test
+    public void testGradientDXT5() {
+        int width = 8;
+        int height = 8;
+        byte[] rgba = new byte[width * height * 4];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = (y * width + x) * 4;
+                // the colors of each block lie on a line
+                rgba[i] = (byte) ((x + y) * 15);
+                rgba[i + 1] = (byte) (255 - (x + y) * 15);
+                rgba[i + 2] = (byte) 100;
+                rgba[i + 3] = (byte) (x < 4 ? 0 : 255);
+            }
+        }
+        Image compressed = DXTCompressor.compress(createImage(width, height, rgba), Format.DXT5);
+        assertEquals(Format.DXT5, compressed.getFormat());
+        ByteBuffer data = compressed.getData(0);
+        assertEquals(4 * 16, data.limit());
+
+        for (int block = 0; block < 4; block++) {
+            int[] rgb = decodeColors(data, block * 16 + 8);
+            int[] alpha = decodeAlpha(data, block * 16);
+            for (int i = 0; i < 16; i++) {
+                int x = (block % 2) * 4 + i % 4;
+                int y = (block / 2) * 4 + i / 4;
+                int src = (y * width + x) * 4;
+                for (int c = 0; c < 3; c++) {
+                    assertEquals("block " + block + " pixel " + i, rgba[src + c] & 0xFF, rgb[i * 3 + c], 16);
+                }
+                assertEquals(rgba[src + 3] & 0xFF, alpha[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testSolidColorAndPartialBlocks() {
+        // 6x5 needs 2x2 blocks
+        byte[] rgba = new byte[6 * 5 * 4];
+        for (int i = 0; i < rgba.length; i += 4) {
+            rgba[i] = (byte) 255;
+            rgba[i + 3] = (byte) 255;
+        }
+        Image compressed = DXTCompressor.compress(createImage(6, 5, rgba), Format.DXT1);
+        ByteBuffer data = compressed.getData(0);
+        assertEquals(4 * 8, data.limit());
+        for (int block = 0; block < 4; block++) {
+            int[] rgb = decodeColors(data, block * 8);
+            for (int i = 0; i < 16; i++) {
+                assertEquals(255, rgb[i * 3]);
+                assertEquals(0, rgb[i * 3 + 1]);
+                assertEquals(0, rgb[i * 3 + 2]);
+            }
+        }
+    }
+
+    @Test
+    public void testMipMapsAreCompressed() {
+        byte[] rgba = new byte[16 * 16 * 4];
+        Image image = createImage(16, 16, rgba);
+        MipMapGenerator.generateMipMaps(image, MipMapGenerator.Filter.BOX);
+
+        Image compressed = DXTCompressor.compress(image, Format.DXT1);
+        assertArrayEquals(new int[]{128, 32, 8, 8, 8}, compressed.getMipMapSizes());
+        assertEquals(128 + 32 + 8 + 8 + 8, compressed.getData(0).limit());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedFormat() {
+        DXTCompressor.compress(createImage(4, 4, new byte[64]), Format.DXT3);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2009-2016 jMonkeyEngine
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are
+ * met:
+ *
+ * * Redistributions of source code must retain the above copyright
+ *   notice, this list of conditions and the following disclaimer.
+ *
+ * * Redistributions in binary form must reproduce the above copyright
+ *   notice, this list of conditions and the following disclaimer in the
+ *   documentation and/or other materials provided with the distribution.
+ *
+ * * Neither the name of 'jMonkeyEngine' nor the names of its contributors
+ *   may be used to endorse or promote products derived from this software
+ *   without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED
+ * TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+ * PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.jme3.util;
+
+import com.jme3.texture.Image;
+import com.jme3.texture.Image.Format;
+import com.jme3.texture.image.ColorSpace;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Verifies the filtered mipmap generation of {@link MipMapGenerator}.
+ *
+ * @author jMonkeyEngine
+ */
+public class MipMapGeneratorTest {
+
+    private static Image createImage(Format format, int width, int height, ColorSpace colorSpace, byte[]... slices) {
+        ArrayList<ByteBuffer> data = new ArrayList<ByteBuffer>();
+        for (byte[] slice : slices) {
+            ByteBuffer buffer = BufferUtils.createByteBuffer(slice.length);
+            buffer.put(slice).flip();
+            data.add(buffer);
+        }
+        return new Image(format, width, height, 0, data, null, colorSpace);
+    }
+
+    private static int get(Image image, int slice, int index) {
+        return image.getData(slice).get(index) & 0xFF;
+    }
+
+    @Test
+    public void testBoxFilterLevels() {
+        byte[] pixels = new byte[4 * 2];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 20);
+        }
+        Image image = createImage(Format.Luminance8, 4, 2, ColorSpace.Linear, pixels);
+        Image result = MipMapGenerator.createMipMaps(image, MipMapGenerator.Filter.BOX);
+
+        assertArrayEquals(new int[]{8, 2, 1}, result.getMipMapSizes());
+        assertEquals(11, result.getData(0).limit());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(i * 20, get(result, 0, i));
+        }
+        // 2x1: averages of 2x2 blocks
+        assertEquals((0 + 20 + 80 + 100) / 4, get(result, 0, 8));
+        assertEquals((40 + 60 + 120 + 140) / 4, get(result, 0, 9));
+        // 1x1
+        assertEquals(70, get(result, 0, 10));
+        // the source is not modified
+        assertNull(image.getMipMapSizes());
+    }
+
+    @Test
+    public void testSrgbIsFilteredInLinearSpace() {
+        byte[] pixels = {0, 0, 0, (byte) 255, (byte) 255, (byte) 255};
+        Image image = createImage(Format.RGB8, 2, 1, ColorSpace.sRGB, pixels);
+        MipMapGenerator.generateMipMaps(image, MipMapGenerator.Filter.BOX);
+
+        assertArrayEquals(new int[]{6, 3}, image.getMipMapSizes());
+        // half intensity in linear space is brighter than 128 in sRGB
+        int value = get(image, 0, 6);
+        assertTrue("value " + value, value > 170 && value < 200);
+    }
+
+    @Test
+    public void testKaiserKeepsConstantImages() {
+        byte[] pixels = new byte[8 * 8 * 4];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i % 4 * 60);
+        }
+        Image image = createImage(Format.RGBA8, 8, 8, ColorSpace.Linear, pixels, pixels);
+        Image result = MipMapGenerator.createMipMaps(image, MipMapGenerator.Filter.KAISER);
+
+        assertEquals(4, result.getMipMapSizes().length);
+        for (int slice = 0; slice < 2; slice++) {
+            ByteBuffer data = result.getData(slice);
+            assertEquals((64 + 16 + 4 + 1) * 4, data.limit());
+            for (int i = 0; i < data.limit(); i++) {
+                assertEquals(i % 4 * 60, data.get(i) & 0xFF, 1);
+            }
+        }
+    }
+
+    @Test
+    public void testAsyncMatchesSync() throws Exception {
+        byte[] pixels = new byte[33 * 17 * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 7);
+        }
+        Image image = createImage(Format.RGB8, 33, 17, ColorSpace.sRGB, pixels);
+        Image sync = MipMapGenerator.createMipMaps(image, MipMapGenerator.Filter.KAISER);
+        Image async = MipMapGenerator.generateMipMapsAsync(image, MipMapGenerator.Filter.KAISER).get();
+
+        assertArrayEquals(sync.getMipMapSizes(), async.getMipMapSizes());
+        assertEquals(sync.getData(0), async.getData(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompressedImagesAreRejected() {
+        Image image = createImage(Format.DXT1, 4, 4, ColorSpace.Linear, new byte[8]);
+        MipMapGenerator.createMipMaps(image, MipMapGenerator.Filter.BOX);
+    }
+}
@@ -599,6 +599,28 @@ public class JoglGL implements GL, GL2, GL3, GL4 {
 	public void glPatchParameter(int count) {
         GLContext.getCurrentGL().getGL3().glPatchParameteri(com.jogamp.opengl.GL3.GL_PATCH_VERTICES, count);
     }
+
+    @Override
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+        // JOGL 2.3.2 only takes the commands from client memory, not as an
+        // offset into the bound indirect buffer, see JoglContext
+        throw new RendererException("glMultiDrawElementsIndirect with a buffer offset is not supported by JOGL");
+    }
+
+    @Override
+    public void glBufferStorage(int target, long size, int flags) {
+        GLContext.getCurrentGL().getGL4().glBufferStorage(target, size, null, flags);
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        return GLContext.getCurrentGL().getGL3().glMapBufferRange(target, offset, length, access);
+    }
+
+    @Override
+    public void glUnmapBuffer(int target) {
+        GLContext.getCurrentGL().getGL3().glUnmapBuffer(target);
+    }
     
     @Override
 	public void glDeleteVertexArrays(IntBuffer arrays) {
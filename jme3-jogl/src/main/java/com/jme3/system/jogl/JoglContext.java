@@ -41,6 +41,7 @@ import com.jme3.opencl.Device;
 import com.jme3.opencl.PlatformChooser;
 import com.jme3.opencl.jocl.JoclDevice;
 import com.jme3.opencl.jocl.JoclPlatform;
+import com.jme3.renderer.Caps;
 import com.jme3.renderer.Renderer;
 import com.jme3.renderer.RendererException;
 import com.jme3.renderer.jogl.JoglGL;
@@ -198,7 +199,7 @@ public abstract class JoglContext implements JmeContext {
             }
 
             renderer = new GLRenderer(gl, glext, glfbo);
-            renderer.initialize();
+            initializeRenderer();
         } else {
             throw new UnsupportedOperationException("Unsupported renderer: " + settings.getRenderer());
         }
@@ -228,6 +229,18 @@ public abstract class JoglContext implements JmeContext {
             initOpenCL();
         }
     }
+
+    /**
+     * Initializes the renderer for the current GL context.
+     * <p>
+     * JOGL 2.3.2 has no glMultiDrawElementsIndirect that takes an offset into
+     * the bound indirect buffer, so {@link Caps#MultiDrawIndirect} is not
+     * reported and multi-draw meshes fall back to one draw call per command.
+     */
+    protected void initializeRenderer() {
+        renderer.initialize();
+        renderer.getCaps().remove(Caps.MultiDrawIndirect);
+    }
     
     @SuppressWarnings("unchecked")
     protected void initOpenCL() {
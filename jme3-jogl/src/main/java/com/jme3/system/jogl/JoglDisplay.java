@@ -248,7 +248,7 @@ public class JoglDisplay extends JoglAbstractDisplay {
             super.internalCreate();
             logger.fine("Display created.");
 
-            renderer.initialize();
+            initializeRenderer();
             listener.initialize();
         }
     }
@@ -159,7 +159,7 @@ public class JoglNewtDisplay extends JoglNewtAbstractDisplay {
             super.internalCreate();
             logger.fine("Display created.");
 
-            renderer.initialize();
+            initializeRenderer();
             listener.initialize();
         }
     }
@@ -455,6 +455,26 @@ public final class LwjglGL implements GL, GL2, GL3, GL4 {
     public void glPatchParameter(int count) {
         GL40.glPatchParameteri(GL40.GL_PATCH_VERTICES,count);
     }
+
+    @Override
+    public void glMultiDrawElementsIndirect(int mode, int type, long indirect, int drawCount, int stride) {
+        GL43.glMultiDrawElementsIndirect(mode, type, indirect, drawCount, stride);
+    }
+
+    @Override
+    public void glBufferStorage(int target, long size, int flags) {
+        GL44.glBufferStorage(target, size, flags);
+    }
+
+    @Override
+    public ByteBuffer glMapBufferRange(int target, long offset, long length, int access) {
+        return GL30.glMapBufferRange(target, offset, length, access, null);
+    }
+
+    @Override
+    public void glUnmapBuffer(int target) {
+        GL15.glUnmapBuffer(target);
+    }
     
     @Override
     public void glDeleteVertexArrays(IntBuffer arrays) {
@@ -122,8 +122,8 @@ public class BresenhamTerrainPicker implements TerrainPicker {
                     float distance = worldPickRay.origin.distance(intersection);
                     CollisionResult cr = new CollisionResult(intersection, distance);
                     cr.setGeometry(patch);
-                    results.addCollision(cr);
                     cr.setContactNormal(hit.getNormal());
+                    results.addCollision(cr);
                     return intersection;
                 }
 
@@ -149,9 +149,9 @@ public class BresenhamTerrainPicker implements TerrainPicker {
                     // we found an intersection, so return that!
                     float distance = worldPickRay.origin.distance(intersection);
                     CollisionResult cr = new CollisionResult(intersection, distance);
-                    results.addCollision(cr);
                     cr.setGeometry(patch);
                     cr.setContactNormal(hit.getNormal());
+                    results.addCollision(cr);
                     return intersection;
                 }
 